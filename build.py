@@ -264,6 +264,7 @@ CTX.INPUT['executors'] = """
  aggregateexecutor.cpp
  deleteexecutor.cpp
  executorutil.cpp
+ hashjoinexecutor.cpp
  indexcountexecutor.cpp
  indexscanexecutor.cpp
  insertexecutor.cpp
@@ -305,6 +306,7 @@ CTX.INPUT['plannodes'] = """
  abstractscannode.cpp
  aggregatenode.cpp
  deletenode.cpp
+ hashjoinnode.cpp
  indexscannode.cpp
  indexcountnode.cpp
  tablecountnode.cpp
@@ -368,6 +370,7 @@ CTX.INPUT['storage'] = """
  tableutil.cpp
  temptable.cpp
  TempTableLimits.cpp
+ TempTableSpillFile.cpp
  TupleBlock.cpp
  TupleStreamBase.cpp
 """
@@ -461,6 +464,9 @@ if whichtests in ("${eetestsuite}", "executors"):
     CTX.TESTS['executors'] = """
     OptimizedProjectorTest
     MergeReceiveExecutorTest
+    SeqScanExecutorTest
+    SpillingExecutorTest
+    HashJoinExecutorTest
     """
 
 
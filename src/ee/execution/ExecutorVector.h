@@ -115,9 +115,10 @@ private:
     ExecutorVector(int64_t fragmentId,
                    int64_t logThreshold,
                    int64_t memoryLimit,
+                   const std::string& spillDirectory,
                    PlanNodeFragment* fragment)
         : m_fragId(fragmentId)
-        , m_limits(memoryLimit, logThreshold)
+        , m_limits(memoryLimit, logThreshold, spillDirectory)
         , m_fragment(fragment)
     { }
 
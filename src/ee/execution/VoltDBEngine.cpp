@@ -179,7 +179,8 @@ VoltDBEngine::initialize(int32_t clusterIndex,
                          int32_t defaultDrBufferSize,
                          int64_t tempTableMemoryLimit,
                          bool createDrReplicatedStream,
-                         int32_t compactionThreshold)
+                         int32_t compactionThreshold,
+                         std::string tempTableSpillDirectory)
 {
     m_clusterIndex = clusterIndex;
     m_siteId = siteId;
@@ -187,6 +188,10 @@ VoltDBEngine::initialize(int32_t clusterIndex,
     m_tempTableMemoryLimit = tempTableMemoryLimit;
     m_compactionThreshold = compactionThreshold;
 
+    // Temp tables that would exceed the memory limit spill to this directory.
+    // Without one they fail at the limit instead.
+    m_tempTableSpillDirectory = tempTableSpillDirectory;
+
     // Instantiate our catalog - it will be populated later on by load()
     m_catalog.reset(new catalog::Catalog());
 
@@ -558,6 +563,15 @@ bool VoltDBEngine::send(Table* dependency) {
     return true;
 }
 
+bool VoltDBEngine::send(Table* dependency, TupleIterator& tuples, int32_t tupleCount) {
+    VOLT_DEBUG("Sending streamed Dependency from C++");
+    m_resultOutput.writeInt(-1); // legacy placeholder for old output id
+    if (!dependency->serializeTo(m_resultOutput, tuples, tupleCount))
+        return false;
+    m_numResultDependencies++;
+    return true;
+}
+
 int VoltDBEngine::loadNextDependency(Table* destination) {
     return m_topend->loadNextDependency(m_currentInputDepId, &m_stringPool, destination);
 }
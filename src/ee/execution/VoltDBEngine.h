@@ -96,6 +96,7 @@ class TableCatalogDelegate;
 class TempTableLimits;
 class Topend;
 class TheHashinator;
+class TupleIterator;
 
 const int64_t DEFAULT_TEMP_TABLE_MEMORY = 1024 * 1024 * 100;
 
@@ -118,7 +119,8 @@ class __attribute__((visibility("default"))) VoltDBEngine {
                         int32_t defaultDrBufferSize,
                         int64_t tempTableMemoryLimit,
                         bool createDrReplicatedStream,
-                        int32_t compactionThreshold = 95);
+                        int32_t compactionThreshold = 95,
+                        std::string tempTableSpillDirectory = "");
         virtual ~VoltDBEngine();
 
         // ------------------------------------------------------------------
@@ -185,6 +187,11 @@ class __attribute__((visibility("default"))) VoltDBEngine {
         // Dependency Transfer Functions
         // -------------------------------------------------
         bool send(Table* dependency);
+        /**
+         * Send a dependency with the column header of the given table and
+         * the given tuples, which have its schema, in place of its own rows.
+         */
+        bool send(Table* dependency, TupleIterator& tuples, int32_t tupleCount);
         int loadNextDependency(Table* destination);
 
         // -------------------------------------------------
@@ -409,6 +416,10 @@ class __attribute__((visibility("default"))) VoltDBEngine {
             return (m_tempTableMemoryLimit * 3) / 4;
         }
 
+        const std::string& tempTableSpillDirectory() const {
+            return m_tempTableSpillDirectory;
+        }
+
         int32_t getPartitionId() const {
             return m_partitionId;
         }
@@ -484,6 +495,7 @@ class __attribute__((visibility("default"))) VoltDBEngine {
         boost::scoped_ptr<TheHashinator> m_hashinator;
         size_t m_startOfResultBuffer;
         int64_t m_tempTableMemoryLimit;
+        std::string m_tempTableSpillDirectory;
 
         /*
          * Catalog delegates hashed by path.
@@ -80,7 +80,7 @@ class AbstractExecutor {
      */
     inline AbstractPlanNode* getPlanNode() { return m_abstractNode; }
 
-    inline void cleanupTempOutputTable()
+    virtual void cleanupTempOutputTable()
     {
         if (m_tmpOutputTable) {
             VOLT_TRACE("Clearing output table...");
@@ -54,6 +54,8 @@
 #include "plannodes/limitnode.h"
 #include "storage/temptable.h"
 #include "storage/tableiterator.h"
+#include "storage/TempTableLimits.h"
+#include "storage/TempTableSpillFile.h"
 
 #include "boost/foreach.hpp"
 #include "boost/unordered_map.hpp"
@@ -68,6 +70,16 @@
 #include <utility>
 
 namespace voltdb {
+
+/*
+ * Partitioned hash aggregation: the number of partition files to spill new groups into,
+ * how many times a partition may be partitioned again, and how many new groups to add
+ * between checks of the memory used by the groups.
+ */
+static const int SPILL_PARTITION_COUNT = 16;
+static const int MAX_SPILL_DEPTH = 3;
+static const int SPILL_CHECK_GROUP_INTERVAL = 256;
+
 /*
  * Type of the hash set used to check for column aggregate distinctness
  */
@@ -811,13 +823,20 @@ bool AggregateHashExecutor::p_execute(const NValueArray& params)
     ProgressMonitorProxy pmp(m_engine, this);
 
     TableTuple nextTuple = AggregateHashExecutor::p_execute_init(params, &pmp, inputSchema);
+    if (m_tmpOutputTable->m_limits != NULL && m_tmpOutputTable->m_limits->canSpill()) {
+        m_spillLimits = m_tmpOutputTable->m_limits;
+    }
 
     VOLT_TRACE("looping..");
     while (it.next(nextTuple)) {
         assert(m_earlyReturn == false); // hash aggregation can not early return for limit
         AggregateHashExecutor::p_execute_tuple(nextTuple);
     }
+    if ( ! m_partitions.empty()) {
+        aggregateSpilledPartitions();
+    }
     AggregateHashExecutor::p_execute_finish();
+    m_spillLimits = NULL;
 
     cleanupInputTempTable(input_table);
     return true;
@@ -831,8 +850,13 @@ bool AggregateHashExecutor::p_execute_tuple(const TableTuple& nextTuple) {
     // Search for the matching group.
     HashAggregateMapType::const_iterator keyIter = m_hash.find(nextGroupByKeyTuple);
 
-    // Group not found. Make a new entry in the hash for this new group.
+    // Group not found. Make a new entry in the hash for this new group,
+    // unless new groups are being spilled to partition files.
     if (keyIter == m_hash.end()) {
+        if ( ! m_partitions.empty()) {
+            spillTuple(nextTuple);
+            return false;
+        }
         VOLT_TRACE("hash aggregate: new group..");
         aggregateRow = new (m_memoryPool, m_aggTypes.size()) AggregateRow();
         m_hash.insert(HashAggregateMapType::value_type(nextGroupByKeyTuple, aggregateRow));
@@ -848,6 +872,12 @@ bool AggregateHashExecutor::p_execute_tuple(const TableTuple& nextTuple) {
         // so force a new tuple allocation to hold the next candidate key.
         nextGroupByKeyTuple.move(NULL);
 
+        // Checking the pool size is not free, so only do it every so many new groups.
+        if (m_spillLimits != NULL && ++m_groupsSinceSpillCheck == SPILL_CHECK_GROUP_INTERVAL) {
+            m_groupsSinceSpillCheck = 0;
+            chargeGroupMemory();
+        }
+
         if (m_aggTypes.size() == 0) {
             insertOutputTuple(aggregateRow);
             return false;
@@ -867,7 +897,15 @@ bool AggregateHashExecutor::p_execute_tuple(const TableTuple& nextTuple) {
 
 void AggregateHashExecutor::p_execute_finish() {
     VOLT_TRACE("finalizing..");
+    flushGroups();
+    releaseGroupMemory();
+    m_spillDepth = 0;
+    m_groupsSinceSpillCheck = 0;
+    m_partitions.clear();
+    AggregateExecutorBase::p_execute_finish();
+}
 
+void AggregateHashExecutor::flushGroups() {
     // If there is no aggregation, results are already inserted already
     if (m_aggTypes.size() != 0) {
         for (HashAggregateMapType::const_iterator iter = m_hash.begin(); iter != m_hash.end(); iter++) {
@@ -881,7 +919,81 @@ void AggregateHashExecutor::p_execute_finish() {
 
     // Clean up
     m_hash.clear();
-    AggregateExecutorBase::p_execute_finish();
+}
+
+void AggregateHashExecutor::chargeGroupMemory() {
+    int64_t groupBytes = m_memoryPool.getAllocatedMemory();
+    int64_t growth = groupBytes - m_chargedGroupBytes;
+    // The groups keep growing until the next check, so start spilling while
+    // the limit still has room for them to grow by as much again.
+    if (m_spillDepth < MAX_SPILL_DEPTH && m_spillLimits->shouldSpill(2 * growth)) {
+        startSpilling();
+    }
+    if (growth > 0) {
+        m_chargedGroupBytes = groupBytes;
+        m_spillLimits->increaseAllocated(static_cast<int>(growth));
+    }
+}
+
+void AggregateHashExecutor::releaseGroupMemory() {
+    if (m_chargedGroupBytes > 0) {
+        assert(m_spillLimits != NULL);
+        m_spillLimits->reduceAllocated(static_cast<int>(m_chargedGroupBytes));
+        m_chargedGroupBytes = 0;
+    }
+}
+
+void AggregateHashExecutor::startSpilling() {
+    VOLT_DEBUG("hash aggregate: spilling new groups at depth %d to '%s'",
+               m_spillDepth, m_spillLimits->getSpillDirectory().c_str());
+    for (int ii = 0; ii < SPILL_PARTITION_COUNT; ii++) {
+        boost::shared_ptr<TempTableSpillFile> partition(
+                new TempTableSpillFile(m_spillLimits->getSpillDirectory(), m_inputSchema));
+        m_partitions.push_back(std::make_pair(partition, m_spillDepth + 1));
+    }
+}
+
+void AggregateHashExecutor::spillTuple(const TableTuple& nextTuple) {
+    // Salt the hash with the depth so that a partition that spills again
+    // gets split differently than its parent.
+    TableTuple& groupByKeyTuple = m_nextGroupByKeyStorage;
+    size_t partition = groupByKeyTuple.hashCode(m_spillDepth + 1) % m_partitions.size();
+    m_partitions[partition].first->append(nextTuple);
+}
+
+void AggregateHashExecutor::aggregateSpilledPartitions() {
+    // Spilled tuples are read back into storage that survives the purges between partitions.
+    std::vector<char> storage(m_inputSchema->tupleLength() + TUPLE_HEADER_SIZE);
+    TableTuple spilledTuple(&storage[0], m_inputSchema);
+
+    SpilledPartitions pending;
+    pending.swap(m_partitions);
+    while ( ! pending.empty()) {
+        boost::shared_ptr<TempTableSpillFile> partition = pending.back().first;
+        m_spillDepth = pending.back().second;
+        pending.pop_back();
+        if (partition->tupleCount() == 0) {
+            continue;
+        }
+
+        // None of the groups aggregated so far can occur in this partition.
+        flushGroups();
+        TableTuple& nextGroupByKeyTuple = m_nextGroupByKeyStorage;
+        nextGroupByKeyTuple.move(NULL);
+        m_memoryPool.purge();
+        releaseGroupMemory();
+        m_groupsSinceSpillCheck = 0;
+
+        partition->rewind();
+        while (partition->next(spilledTuple)) {
+            AggregateHashExecutor::p_execute_tuple(spilledTuple);
+        }
+        partition.reset();
+
+        // This partition spilled in turn.
+        pending.insert(pending.end(), m_partitions.begin(), m_partitions.end());
+        m_partitions.clear();
+    }
 }
 
 AggregateSerialExecutor::~AggregateSerialExecutor() {}
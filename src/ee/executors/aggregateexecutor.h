@@ -55,8 +55,16 @@
 #include "expressions/abstractexpression.h"
 #include "execution/ProgressMonitorProxy.h"
 
+#include "boost/shared_ptr.hpp"
+
+#include <utility>
+#include <vector>
+
 namespace voltdb {
 
+class TempTableLimits;
+class TempTableSpillFile;
+
 /*
  * Base class for an individual aggregate that aggregates a specific
  * column for a group
@@ -270,7 +278,8 @@ class AggregateHashExecutor : public AggregateExecutorBase
 {
 public:
     AggregateHashExecutor(VoltDBEngine* engine, AbstractPlanNode* abstract_node) :
-        AggregateExecutorBase(engine, abstract_node) { }
+        AggregateExecutorBase(engine, abstract_node), m_spillLimits(NULL),
+        m_chargedGroupBytes(0), m_spillDepth(0), m_groupsSinceSpillCheck(0) { }
 
     // empty destructor defined in .cpp file because of it is called virtually (not inline)
     // same reason for serial and partial
@@ -281,9 +290,49 @@ public:
     bool p_execute_tuple(const TableTuple& nextTuple);
     void p_execute_finish();
 
+    void cleanupTempOutputTable() {
+        releaseGroupMemory();
+        AggregateExecutorBase::cleanupTempOutputTable();
+    }
+
 private:
+    typedef std::vector<std::pair<boost::shared_ptr<TempTableSpillFile>, int> > SpilledPartitions;
+
     virtual bool p_execute(const NValueArray& params);
+
+    /*
+     * Partitioned aggregation for when the groups outgrow the temp table memory limit:
+     * the groups already in the hash table keep aggregating, while input tuples for
+     * any other group are spilled to a partition file chosen by the hash of their
+     * group by key. Each partition is then aggregated on its own, partitioning again
+     * (with a different hash) if it too outgrows the limit.
+     */
+    void startSpilling();
+    void spillTuple(const TableTuple& nextTuple);
+    void aggregateSpilledPartitions();
+
+    /// Insert the results of the groups in the hash table and release their memory.
+    void flushGroups();
+
+    /*
+     * The memory pool holding the groups is charged to the temp table limits
+     * like a temp table, so that it counts towards the limit it is checked
+     * against, and released when the pool is purged.
+     */
+    void chargeGroupMemory();
+    void releaseGroupMemory();
+
     HashAggregateMapType m_hash;
+
+    // Only set for non-inlined execution when spilling is possible.
+    TempTableLimits* m_spillLimits;
+    // How much of the memory pool is currently charged to m_spillLimits.
+    int64_t m_chargedGroupBytes;
+    // The partitioning level of the input currently being aggregated.
+    int m_spillDepth;
+    int m_groupsSinceSpillCheck;
+    // The partition files of the input currently being aggregated, empty until it spills.
+    SpilledPartitions m_partitions;
 };
 
 /**
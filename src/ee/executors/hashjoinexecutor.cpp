@@ -0,0 +1,265 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "hashjoinexecutor.h"
+
+#include "common/debuglog.h"
+#include "common/tabletuple.h"
+#include "executors/aggregateexecutor.h"
+#include "execution/ProgressMonitorProxy.h"
+#include "expressions/abstractexpression.h"
+#include "storage/table.h"
+#include "storage/temptable.h"
+#include "storage/tableiterator.h"
+#include "storage/TempTableLimits.h"
+#include "plannodes/hashjoinnode.h"
+#include "plannodes/limitnode.h"
+
+using namespace std;
+using namespace voltdb;
+
+// A rough per-entry cost of the hash table: the entry itself plus the
+// node's link and the bucket pointer that boost::unordered_multimap keeps for it.
+static const int HASH_TABLE_ENTRY_SIZE = static_cast<int>(sizeof(std::pair<const size_t, char*>) +
+                                                          2 * sizeof(void*));
+
+HashJoinExecutor::~HashJoinExecutor()
+{
+    releaseHashTable();
+}
+
+bool HashJoinExecutor::p_init(AbstractPlanNode* abstract_node,
+                              TempTableLimits* limits)
+{
+    VOLT_TRACE("init HashJoin Executor");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(abstract_node);
+    assert(node);
+    assert(node->getOuterHashKeys().size() == node->getInnerHashKeys().size());
+    assert( ! node->getOuterHashKeys().empty());
+
+    // Create output table based on output schema from the plan
+    setTempOutputTable(limits);
+    assert(m_tmpOutputTable);
+    m_limits = limits;
+
+    // NULL tuple for outer join
+    if (node->getJoinType() == JOIN_TYPE_LEFT) {
+        Table* inner_table = node->getInputTable(1);
+        assert(inner_table);
+        m_null_tuple.init(inner_table->schema());
+    }
+
+    // Inline aggregation can be serial, partial or hash
+    m_aggExec = voltdb::getInlineAggregateExecutor(m_abstractNode);
+
+    return true;
+}
+
+bool HashJoinExecutor::hashKeys(const std::vector<AbstractExpression*>& keys,
+                                const TableTuple* outerTuple,
+                                const TableTuple* innerTuple,
+                                size_t& hash)
+{
+    hash = 0;
+    for (int ii = 0; ii < keys.size(); ii++) {
+        const NValue value = keys[ii]->eval(outerTuple, innerTuple);
+        if (value.isNull()) {
+            return false;
+        }
+        value.hashCombine(hash);
+    }
+    return true;
+}
+
+void HashJoinExecutor::releaseHashTable()
+{
+    m_hashTable.clear();
+    if (m_hashTableMemory > 0) {
+        assert(m_limits);
+        m_limits->reduceAllocated(static_cast<int>(m_hashTableMemory));
+        m_hashTableMemory = 0;
+    }
+}
+
+bool HashJoinExecutor::p_execute(const NValueArray &params) {
+    VOLT_DEBUG("executing HashJoin...");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    assert(node);
+    assert(node->getInputTableCount() == 2);
+
+    // output table must be a temp table
+    assert(m_tmpOutputTable);
+
+    Table* outer_table = node->getInputTable();
+    assert(outer_table);
+
+    Table* inner_table = node->getInputTable(1);
+    assert(inner_table);
+
+    VOLT_TRACE ("input table left:\n %s", outer_table->debug().c_str());
+    VOLT_TRACE ("input table right:\n %s", inner_table->debug().c_str());
+
+    AbstractExpression *preJoinPredicate = node->getPreJoinPredicate();
+    AbstractExpression *joinPredicate = node->getJoinPredicate();
+    AbstractExpression *wherePredicate = node->getWherePredicate();
+    const std::vector<AbstractExpression*>& outerHashKeys = node->getOuterHashKeys();
+    const std::vector<AbstractExpression*>& innerHashKeys = node->getInnerHashKeys();
+
+    // Join type
+    JoinType join_type = node->getJoinType();
+    assert(join_type == JOIN_TYPE_INNER || join_type == JOIN_TYPE_LEFT);
+
+    LimitPlanNode* limit_node = dynamic_cast<LimitPlanNode*>(node->getInlinePlanNode(PLAN_NODE_TYPE_LIMIT));
+    int limit = -1;
+    int offset = -1;
+    if (limit_node) {
+        limit_node->getLimitAndOffsetByReference(params, limit, offset);
+    }
+
+    int outer_cols = outer_table->columnCount();
+    int inner_cols = inner_table->columnCount();
+    TableTuple outer_tuple(outer_table->schema());
+    TableTuple inner_tuple(inner_table->schema());
+    const TableTuple& null_tuple = m_null_tuple.tuple();
+
+    ProgressMonitorProxy pmp(m_engine, this);
+    HashTableReleaser releaser(this);
+
+    //
+    // Build phase: hash every inner tuple with non-null keys.
+    //
+    size_t hash;
+    TableIterator iterator1 = inner_table->iterator();
+    while (iterator1.next(inner_tuple)) {
+        pmp.countdownProgress();
+        if ( ! hashKeys(innerHashKeys, NULL, &inner_tuple, hash)) {
+            continue;
+        }
+        m_limits->increaseAllocated(HASH_TABLE_ENTRY_SIZE);
+        m_hashTableMemory += HASH_TABLE_ENTRY_SIZE;
+        m_hashTable.insert(HashJoinMapType::value_type(hash, inner_tuple.address()));
+    }
+    VOLT_TRACE("hash join built %d entries", (int)m_hashTable.size());
+
+    //
+    // Probe phase: one hash lookup per outer tuple.
+    //
+    TableTuple join_tuple;
+    if (m_aggExec != NULL) {
+        VOLT_TRACE("Init inline aggregate...");
+        const TupleSchema * aggInputSchema = node->getTupleSchemaPreAgg();
+        join_tuple = m_aggExec->p_execute_init(params, &pmp, aggInputSchema, m_tmpOutputTable);
+    } else {
+        join_tuple = m_tmpOutputTable->tempTuple();
+    }
+
+    TableIterator iterator0 = outer_table->iteratorDeletingAsWeGo();
+    int tuple_ctr = 0;
+    int tuple_skipped = 0;
+    bool earlyReturned = false;
+    while ((limit == -1 || tuple_ctr < limit) && iterator0.next(outer_tuple)) {
+        pmp.countdownProgress();
+
+        join_tuple.setNValues(0, outer_tuple, 0, outer_cols);
+
+        // did this loop body find at least one match for this tuple?
+        bool match = false;
+        // For outer joins if outer tuple fails pre-join predicate
+        // (join expression based on the outer table only)
+        // it can't match any of inner tuples
+        if ((preJoinPredicate == NULL || preJoinPredicate->eval(&outer_tuple, NULL).isTrue()) &&
+            hashKeys(outerHashKeys, &outer_tuple, NULL, hash)) {
+
+            std::pair<HashJoinMapType::const_iterator, HashJoinMapType::const_iterator> candidates =
+                m_hashTable.equal_range(hash);
+            for (HashJoinMapType::const_iterator iter = candidates.first;
+                 iter != candidates.second && (limit == -1 || tuple_ctr < limit);
+                 ++iter) {
+                pmp.countdownProgress();
+                inner_tuple.move(iter->second);
+                // The join predicate includes the hash key equalities,
+                // so it also weeds out any hash collisions.
+                if (joinPredicate == NULL || joinPredicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                    match = true;
+                    // Filter the joined tuple
+                    if (wherePredicate == NULL || wherePredicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                        // Check if we have to skip this tuple because of offset
+                        if (tuple_skipped < offset) {
+                            tuple_skipped++;
+                            continue;
+                        }
+                        ++tuple_ctr;
+                        // Matched! Complete the joined tuple with the inner column values.
+                        join_tuple.setNValues(outer_cols, inner_tuple, 0, inner_cols);
+                        if (m_aggExec != NULL) {
+                            if (m_aggExec->p_execute_tuple(join_tuple)) {
+                                // Get enough rows for LIMIT
+                                earlyReturned = true;
+                                break;
+                            }
+                        } else {
+                            m_tmpOutputTable->insertTempTuple(join_tuple);
+                            pmp.countdownProgress();
+                        }
+                    }
+                }
+            }
+        }
+
+        //
+        // Left Outer Join
+        //
+        if (join_type == JOIN_TYPE_LEFT && !match && (limit == -1 || tuple_ctr < limit)) {
+            // Still needs to pass the filter
+            if (wherePredicate == NULL || wherePredicate->eval(&outer_tuple, &null_tuple).isTrue()) {
+                // Check if we have to skip this tuple because of offset
+                if (tuple_skipped < offset) {
+                    tuple_skipped++;
+                    continue;
+                }
+                ++tuple_ctr;
+                join_tuple.setNValues(outer_cols, null_tuple, 0, inner_cols);
+                if (m_aggExec != NULL) {
+                    if (m_aggExec->p_execute_tuple(join_tuple)) {
+                        earlyReturned = true;
+                    }
+                } else {
+                    m_tmpOutputTable->insertTempTuple(join_tuple);
+                    pmp.countdownProgress();
+                }
+            }
+        }
+
+        if (earlyReturned) {
+            // Get enough rows for LIMIT inlined with aggregation
+            break;
+        }
+    }
+
+    if (m_aggExec != NULL) {
+        m_aggExec->p_execute_finish();
+    }
+
+    // The hash table references inner tuples, so release it before the inner table.
+    releaseHashTable();
+    cleanupInputTempTable(inner_table);
+    cleanupInputTempTable(outer_table);
+
+    return (true);
+}
@@ -0,0 +1,97 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef HSTOREHASHJOINEXECUTOR_H
+#define HSTOREHASHJOINEXECUTOR_H
+
+#include "common/common.h"
+#include "common/tabletuple.h"
+#include "common/valuevector.h"
+#include "executors/abstractexecutor.h"
+
+#include "boost/unordered_map.hpp"
+
+#include <vector>
+
+namespace voltdb {
+
+class AbstractExpression;
+class AggregateExecutorBase;
+class TempTableLimits;
+
+/**
+ * Executor for PLAN_NODE_TYPE_HASHJOIN.
+ * The inner input is read once into a hash table keyed on the combined hash of its
+ * hash key values. Each outer tuple then probes that table with its own hash key values
+ * and the full join predicate is applied to the inner tuples found there, so hash
+ * collisions never produce false matches. Otherwise this behaves exactly like the
+ * NestLoopExecutor: it supports inner and left outer joins, preserves the order of the
+ * outer input, and honors inline LIMIT/OFFSET and inline aggregation.
+ * The memory used by the hash table is charged to the fragment's TempTableLimits.
+ */
+class HashJoinExecutor : public AbstractExecutor {
+public:
+    HashJoinExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node) :
+        AbstractExecutor(engine, abstract_node),
+        m_limits(NULL), m_aggExec(NULL), m_hashTableMemory(0) { }
+    ~HashJoinExecutor();
+
+protected:
+    bool p_init(AbstractPlanNode*,
+                TempTableLimits* limits);
+    bool p_execute(const NValueArray &params);
+
+private:
+    // Maps the hash of an inner tuple's key values to the address of the inner tuple.
+    typedef boost::unordered_multimap<size_t, char*> HashJoinMapType;
+
+    /**
+     * Combine the hashes of the key expressions evaluated against the given tuples.
+     * Return false if any key value is NULL, since such a tuple can not match anything.
+     */
+    static bool hashKeys(const std::vector<AbstractExpression*>& keys,
+                         const TableTuple* outerTuple,
+                         const TableTuple* innerTuple,
+                         size_t& hash);
+
+    void releaseHashTable();
+
+    // Releases the hash table when p_execute exits, normally or by an exception
+    // (e.g. when the hash table itself exceeds the temp table memory limit).
+    class HashTableReleaser {
+    public:
+        HashTableReleaser(HashJoinExecutor* executor) : m_executor(executor) { }
+        ~HashTableReleaser() { m_executor->releaseHashTable(); }
+    private:
+        HashJoinExecutor* const m_executor;
+    };
+
+    StandAloneTupleStorage m_null_tuple;
+
+    TempTableLimits* m_limits;
+
+    AggregateExecutorBase* m_aggExec;
+
+    HashJoinMapType m_hashTable;
+
+    // Bytes currently charged to m_limits on behalf of m_hashTable.
+    int64_t m_hashTableMemory;
+};
+
+}
+
+#endif
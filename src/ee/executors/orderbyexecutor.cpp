@@ -55,13 +55,105 @@
 #include "storage/temptable.h"
 #include "storage/tableiterator.h"
 #include "storage/tablefactory.h"
+#include "storage/TempTableSpillFile.h"
+
+#include "boost/shared_ptr.hpp"
 
 #include <algorithm>
+#include <queue>
 #include <vector>
 
 using namespace voltdb;
 using namespace std;
 
+namespace {
+
+// The share of the temp table memory limit that the tuples of one sorted run may take.
+const int64_t SPILL_RUN_MEMORY_FRACTION = 4;
+// The smallest number of tuples sorted in memory for each run of a spilling sort.
+const size_t MIN_SPILL_RUN_TUPLE_COUNT = 1024;
+
+typedef boost::shared_ptr<TempTableSpillFile> SpillFilePtr;
+
+// Sort a run of tuples and write (at most runOutputLimit of) them to a new spill file.
+SpillFilePtr spillSortedRun(vector<TableTuple>& xs,
+                            const AbstractExecutor::TupleComparer& comparer,
+                            size_t runOutputLimit,
+                            const TupleSchema* schema,
+                            const std::string& directory)
+{
+    if (runOutputLimit < xs.size()) {
+        partial_sort(xs.begin(), xs.begin() + runOutputLimit, xs.end(), comparer);
+        xs.resize(runOutputLimit);
+    } else {
+        sort(xs.begin(), xs.end(), comparer);
+    }
+    SpillFilePtr run(new TempTableSpillFile(directory, schema));
+    for (vector<TableTuple>::iterator it = xs.begin(); it != xs.end(); it++) {
+        run->append(*it);
+    }
+    run->rewind();
+    return run;
+}
+
+} // anonymous namespace
+
+SpilledRunMerger::SpilledRunMerger(const TupleSchema* schema,
+                                   const AbstractExecutor::TupleComparer& comparer,
+                                   const vector<SpillFilePtr>& runs,
+                                   int limit, int offset)
+    : m_runs(runs)
+    , m_headStorage(runs.size() * (schema->tupleLength() + TUPLE_HEADER_SIZE))
+    , m_queue(RunHeadComparer(comparer, m_heads))
+    , m_lastRun(-1)
+    , m_remaining(0)
+{
+    const size_t tupleLength = schema->tupleLength() + TUPLE_HEADER_SIZE;
+    for (size_t ii = 0; ii < m_runs.size(); ii++) {
+        m_heads.push_back(TableTuple(&m_headStorage[ii * tupleLength], schema));
+        m_remaining += m_runs[ii]->tupleCount();
+    }
+    for (size_t ii = 0; ii < m_runs.size(); ii++) {
+        advance(ii);
+    }
+
+    // Skip the offset up front so that the remaining count is exact.
+    TableTuple skipped(schema);
+    for (int ii = 0; ii < offset && next(skipped); ii++) {
+    }
+    if (limit >= 0 && limit < m_remaining) {
+        m_remaining = limit;
+    }
+}
+
+void SpilledRunMerger::advance(size_t run)
+{
+    if (m_runs[run]->next(m_heads[run])) {
+        m_queue.push(run);
+    }
+    else {
+        // Give the scratch file back as soon as the run is exhausted.
+        m_runs[run].reset();
+    }
+}
+
+bool SpilledRunMerger::next(TableTuple& out)
+{
+    if (m_lastRun >= 0) {
+        advance(static_cast<size_t>(m_lastRun));
+        m_lastRun = -1;
+    }
+    if (m_remaining == 0 || m_queue.empty()) {
+        return false;
+    }
+    size_t run = m_queue.top();
+    m_queue.pop();
+    out.move(m_heads[run].address());
+    m_lastRun = run;
+    --m_remaining;
+    return true;
+}
+
 bool
 OrderByExecutor::p_init(AbstractPlanNode* abstract_node,
                         TempTableLimits* limits)
@@ -129,10 +221,31 @@ OrderByExecutor::p_execute(const NValueArray &params)
 
     VOLT_TRACE("Running OrderBy '%s'", m_abstractNode->debug().c_str());
     VOLT_TRACE("Input Table:\n '%s'", input_table->debug().c_str());
+    ProgressMonitorProxy pmp(m_engine, this);
+    m_spilledOutput.reset();
+
+    //
+    // If the sorted copy would not fit alongside the input under the temp table
+    // memory limit, sort through disk so the input can be released first.
+    //
+    TempTable* tmp_input_table = dynamic_cast<TempTable*>(input_table);
+    if (tmp_input_table != NULL && output_table->m_limits != NULL) {
+        int64_t outputTupleCount = tmp_input_table->tempTableTupleCount();
+        if (limit >= 0 && limit + offset < outputTupleCount) {
+            outputTupleCount = limit + offset;
+        }
+        int64_t outputBytes = outputTupleCount *
+            (input_table->schema()->tupleLength() + TUPLE_HEADER_SIZE);
+        if (output_table->m_limits->shouldSpill(outputBytes)) {
+            sortBySpilling(node, tmp_input_table, output_table, limit, offset, pmp);
+            VOLT_TRACE("Result of OrderBy:\n '%s'", output_table->debug().c_str());
+            return true;
+        }
+    }
+
     TableIterator iterator = input_table->iterator();
     TableTuple tuple(input_table->schema());
     vector<TableTuple> xs;
-    ProgressMonitorProxy pmp(m_engine, this);
     while (iterator.next(tuple))
     {
         pmp.countdownProgress();
@@ -183,5 +296,63 @@ OrderByExecutor::p_execute(const NValueArray &params)
     return true;
 }
 
+void
+OrderByExecutor::sortBySpilling(OrderByPlanNode* node, TempTable* input_table,
+                                TempTable* output_table, int limit, int offset,
+                                ProgressMonitorProxy& pmp)
+{
+    const TupleSchema* schema = input_table->schema();
+    const std::string& directory = output_table->m_limits->getSpillDirectory();
+    AbstractExecutor::TupleComparer comparer(node->getSortExpressions(), node->getSortDirections());
+    // Keep the tuples of each run to a share of the memory limit.
+    size_t runTupleCount = static_cast<size_t>(output_table->m_limits->getMemoryLimit() /
+            SPILL_RUN_MEMORY_FRACTION / (schema->tupleLength() + TUPLE_HEADER_SIZE));
+    runTupleCount = std::max(runTupleCount, MIN_SPILL_RUN_TUPLE_COUNT);
+    // Only the first limit + offset tuples of a run can make it into the output.
+    size_t runOutputLimit = runTupleCount;
+    if (limit >= 0 && static_cast<size_t>(limit + offset) < runOutputLimit) {
+        runOutputLimit = limit + offset;
+    }
+
+    //
+    // Cut the input into sorted runs on disk.
+    //
+    vector<SpillFilePtr> runs;
+    vector<TableTuple> xs;
+    TableIterator iterator = input_table->iterator();
+    TableTuple tuple(schema);
+    while (iterator.next(tuple)) {
+        pmp.countdownProgress();
+        assert(tuple.isActive());
+        xs.push_back(tuple);
+        if (xs.size() == runTupleCount) {
+            runs.push_back(spillSortedRun(xs, comparer, runOutputLimit, schema, directory));
+            xs.clear();
+        }
+    }
+    if ( ! xs.empty()) {
+        runs.push_back(spillSortedRun(xs, comparer, runOutputLimit, schema, directory));
+    }
+    VOLT_DEBUG("OrderBy spilled %d sorted runs to '%s'", static_cast<int>(runs.size()), directory.c_str());
+
+    // Everything the output needs is on disk now, so give back the input's memory.
+    cleanupInputTempTable(input_table);
+
+    m_spilledOutput.reset(new SpilledRunMerger(schema, comparer, runs, limit, offset));
+    if (m_streamSpilledOutput) {
+        // The SEND above merges the runs into the result buffer.
+        return;
+    }
+
+    //
+    // Some other executor reads the output table, merge the runs into it.
+    //
+    while (m_spilledOutput->next(tuple)) {
+        output_table->insertTupleNonVirtual(tuple);
+        pmp.countdownProgress();
+    }
+    m_spilledOutput.reset();
+}
+
 OrderByExecutor::~OrderByExecutor() {
 }
@@ -49,12 +49,73 @@
 #include "common/common.h"
 #include "common/valuevector.h"
 #include "executors/abstractexecutor.h"
+#include "storage/TupleIterator.h"
+
+#include "boost/scoped_ptr.hpp"
+#include "boost/shared_ptr.hpp"
+
+#include <queue>
+#include <vector>
 
 namespace voltdb {
 
     class UndoLog;
     class ReadWriteSet;
     class LimitPlanNode;
+    class OrderByPlanNode;
+    class ProgressMonitorProxy;
+    class TempTable;
+    class TempTableSpillFile;
+
+    /**
+     * Merges the sorted runs of a spilled ORDER BY into one sorted
+     * sequence, honouring its LIMIT and OFFSET. Each tuple handed out
+     * stays valid until the next call to next().
+     */
+    class SpilledRunMerger : public TupleIterator {
+    public:
+        SpilledRunMerger(const TupleSchema* schema,
+                         const AbstractExecutor::TupleComparer& comparer,
+                         const std::vector<boost::shared_ptr<TempTableSpillFile> >& runs,
+                         int limit, int offset);
+
+        bool next(TableTuple& out);
+
+        /** The number of tuples left to hand out. */
+        int64_t remainingTupleCount() const { return m_remaining; }
+
+    private:
+        // Orders run indexes by the current head tuple of each run, smallest head on top of the queue.
+        struct RunHeadComparer {
+            RunHeadComparer(const AbstractExecutor::TupleComparer& comparer,
+                            const std::vector<TableTuple>& heads)
+                : m_comparer(comparer), m_heads(heads)
+            { }
+
+            bool operator()(size_t a, size_t b) const {
+                return m_comparer(m_heads[b], m_heads[a]);
+            }
+
+        private:
+            AbstractExecutor::TupleComparer m_comparer;
+            const std::vector<TableTuple>& m_heads;
+        };
+
+        // no copies, no assignment
+        SpilledRunMerger(SpilledRunMerger const&);
+        SpilledRunMerger operator=(SpilledRunMerger const&);
+
+        /** Read the next tuple of a run into its head, and queue the run again if it has one. */
+        void advance(size_t run);
+
+        std::vector<boost::shared_ptr<TempTableSpillFile> > m_runs;
+        std::vector<char> m_headStorage;
+        std::vector<TableTuple> m_heads;
+        std::priority_queue<size_t, std::vector<size_t>, RunHeadComparer> m_queue;
+        // The run whose head was handed out last, it is advanced on the next call.
+        int64_t m_lastRun;
+        int64_t m_remaining;
+    };
 
     /**
      *
@@ -62,17 +123,49 @@ namespace voltdb {
     class OrderByExecutor : public AbstractExecutor {
     public:
         OrderByExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node)
-            : AbstractExecutor(engine, abstract_node), limit_node(NULL)
+            : AbstractExecutor(engine, abstract_node), limit_node(NULL),
+              m_streamSpilledOutput(false)
             { }
         ~OrderByExecutor();
 
+        /**
+         * Called by a SEND directly above this ORDER BY. When the sort
+         * spills, its runs are then left on disk for the SEND to merge
+         * straight into the result buffer, and the output table stays
+         * empty. Any other parent gets the merged output in the output table.
+         */
+        void streamSpilledOutput() { m_streamSpilledOutput = true; }
+
+        /**
+         * The sorted output of the last execution when it was left in spill
+         * files, or NULL when it is in the output table.
+         */
+        SpilledRunMerger* getSpilledOutput() { return m_spilledOutput.get(); }
+
+        void cleanupTempOutputTable() {
+            m_spilledOutput.reset();
+            AbstractExecutor::cleanupTempOutputTable();
+        }
+
     protected:
         bool p_init(AbstractPlanNode* abstract_node,
                     TempTableLimits* limits);
         bool p_execute(const NValueArray &params);
 
     private:
+        /**
+         * External merge sort used when copying the sorted input into the
+         * output table would exceed the temp table memory limit: the input is
+         * written out as sorted runs and released. The runs are then merged
+         * as the output is consumed, see streamSpilledOutput().
+         */
+        void sortBySpilling(OrderByPlanNode* node, TempTable* input_table,
+                            TempTable* output_table, int limit, int offset,
+                            ProgressMonitorProxy& pmp);
+
         LimitPlanNode *limit_node;
+        bool m_streamSpilledOutput;
+        boost::scoped_ptr<SpilledRunMerger> m_spilledOutput;
     };
 
 }
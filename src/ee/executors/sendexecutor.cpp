@@ -49,6 +49,7 @@
 #include "common/common.h"
 #include "common/tabletuple.h"
 #include "common/FatalException.hpp"
+#include "executors/orderbyexecutor.h"
 #include "plannodes/sendnode.h"
 
 #include "execution/VoltDBEngine.h"
@@ -68,6 +69,13 @@ bool SendExecutor::p_init(AbstractPlanNode* abstractNode,
     VOLT_TRACE("init Send Executor");
     assert(dynamic_cast<SendPlanNode*>(m_abstractNode));
     assert(m_abstractNode->getInputTableCount() == 1);
+
+    // When the sort below spills to disk, merge its sorted runs into the
+    // result as they are serialized rather than into its output table.
+    m_orderByChild = dynamic_cast<OrderByExecutor*>(abstractNode->getChildren()[0]->getExecutor());
+    if (m_orderByChild != NULL) {
+        m_orderByChild->streamSpilledOutput();
+    }
     return true;
 }
 
@@ -77,6 +85,19 @@ bool SendExecutor::p_execute(const NValueArray &params) {
     Table* inputTable = m_abstractNode->getInputTable();
     assert(inputTable);
     //inputTable->setDependencyId(m_dependencyId);//Multiple send executors sharing the same input table apparently.
+    SpilledRunMerger* spilledOutput = (m_orderByChild != NULL) ?
+            m_orderByChild->getSpilledOutput() : NULL;
+    if (spilledOutput != NULL) {
+        // The input table is empty, its rows are still in the sort's spill files.
+        if (!m_engine->send(inputTable, *spilledOutput,
+                            static_cast<int32_t>(spilledOutput->remainingTupleCount()))) {
+            VOLT_ERROR("Failed to send spilled table '%s'", inputTable->name().c_str());
+            return false;
+        }
+        m_orderByChild->cleanupTempOutputTable();
+        return true;
+    }
+
     // Just blast the input table on through VoltDBEngine!
     if (!m_engine->send(inputTable)) {
         VOLT_ERROR("Failed to send table '%s'", inputTable->name().c_str());
@@ -53,13 +53,14 @@
 
 namespace voltdb {
 
+class OrderByExecutor;
 class SendPlanNode;
 
 class SendExecutor : public AbstractExecutor
 {
 public:
     SendExecutor(VoltDBEngine *engine, AbstractPlanNode* abstractNode)
-        : AbstractExecutor(engine, abstractNode)
+        : AbstractExecutor(engine, abstractNode), m_orderByChild(NULL)
     {
         m_engine = engine;
     }
@@ -71,6 +72,8 @@ protected:
 
 private:
     VoltDBEngine *m_engine;
+    /// An ORDER BY child whose spilled output is merged straight into the result.
+    OrderByExecutor *m_orderByChild;
 };
 
 }
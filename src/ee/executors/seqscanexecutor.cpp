@@ -99,6 +99,20 @@ bool SeqScanExecutor::p_init(AbstractPlanNode* abstract_node,
                              node->getTargetTable());
     }
 
+    //
+    // INLINE PROJECTION
+    // Columns that are copied unchanged from the scanned tuple are
+    // projected with as few memory copies as possible.
+    //
+    ProjectionPlanNode* projection_node = dynamic_cast<ProjectionPlanNode*>(node->getInlinePlanNode(PLAN_NODE_TYPE_PROJECTION));
+    if (projection_node != NULL) {
+        const TupleSchema* input_schema = isSubquery ?
+                node->getChildren()[0]->getOutputTable()->schema() :
+                node->getTargetTable()->schema();
+        m_projector = OptimizedProjector(projection_node->getOutputColumnExpressions());
+        m_projector.optimize(projection_node->getOutputTable()->schema(), input_schema);
+    }
+
     // Inline aggregation can be serial, partial or hash
     m_aggExec = voltdb::getInlineAggregateExecutor(node);
 
@@ -141,11 +155,7 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
     // change any nodes in our expression tree to be ready for the
     // projection operations in execute
     //
-    int num_of_columns = -1;
     ProjectionPlanNode* projection_node = dynamic_cast<ProjectionPlanNode*>(node->getInlinePlanNode(PLAN_NODE_TYPE_PROJECTION));
-    if (projection_node != NULL) {
-        num_of_columns = static_cast<int> (projection_node->getOutputColumnExpressions().size());
-    }
     //
     // OPTIMIZATION: NESTED LIMIT
     // How nice! We can also cut off our scanning with a nested limit!
@@ -223,13 +233,10 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
                 // Nested Projection
                 // Project (or replace) values from input tuple
                 //
-                if (projection_node != NULL)
+                if (m_projector.numSteps() > 0)
                 {
                     VOLT_TRACE("inline projection...");
-                    for (int ctr = 0; ctr < num_of_columns; ctr++) {
-                        NValue value = projection_node->getOutputColumnExpressions()[ctr]->eval(&tuple, NULL);
-                        temp_tuple.setNValue(ctr, value);
-                    }
+                    m_projector.exec(temp_tuple, tuple);
 
                     if (m_aggExec != NULL) {
                         if (m_aggExec->p_execute_tuple(temp_tuple)) {
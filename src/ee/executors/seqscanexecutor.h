@@ -49,6 +49,7 @@
 #include "common/common.h"
 #include "common/valuevector.h"
 #include "executors/abstractexecutor.h"
+#include "executors/OptimizedProjector.hpp"
 #include "execution/VoltDBEngine.h"
 
 namespace voltdb
@@ -62,6 +63,7 @@ namespace voltdb
         SeqScanExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node)
             : AbstractExecutor(engine, abstract_node)
             , m_aggExec(NULL)
+            , m_projector()
         {}
     protected:
         bool p_init(AbstractPlanNode* abstract_node,
@@ -70,6 +72,7 @@ namespace voltdb
 
     private:
         AggregateExecutorBase* m_aggExec;
+        OptimizedProjector m_projector;
 
     };
 }
@@ -19,21 +19,27 @@
 #define _EE_STORAGE_TEMPTABLELIMITS_H_
 
 #include <stdint.h>
+#include <string>
 
 namespace voltdb {
 
 /**
  * Track the amount of memory used by temp tables in a plan fragment's executors.
  * Log or throw exceptions based on thresholds.
+ * When a spill directory is configured, executors that can process their input
+ * in pieces (ORDER BY, hash aggregation) consult shouldSpill() and move work to
+ * scratch files in that directory instead of running into the memory limit.
  */
 class TempTableLimits {
 public:
-    TempTableLimits(int64_t memoryLimit = 1024 * 1024 * 100, int64_t logThreshold = -1)
+    TempTableLimits(int64_t memoryLimit = 1024 * 1024 * 100, int64_t logThreshold = -1,
+                    const std::string& spillDirectory = "")
         : m_currMemoryInBytes(0)
         , m_peakMemoryInBytes(0)
         , m_logThreshold(logThreshold)
         , m_memoryLimit(memoryLimit)
         , m_logLatch(false)
+        , m_spillDirectory(spillDirectory)
     { }
 
     /**
@@ -48,6 +54,20 @@ public:
     int64_t getPeakMemoryInBytes() const { return m_peakMemoryInBytes; }
     void resetPeakMemory() { m_peakMemoryInBytes = m_currMemoryInBytes; }
 
+    int64_t getMemoryLimit() const { return m_memoryLimit; }
+
+    /// True if there is both a memory limit to stay under and a place to spill to.
+    bool canSpill() const { return m_memoryLimit > 0 && ! m_spillDirectory.empty(); }
+    const std::string& getSpillDirectory() const { return m_spillDirectory; }
+
+    /**
+     * Return true if spilling is possible and accumulating the given number of
+     * additional bytes in memory would exceed the memory limit.
+     */
+    bool shouldSpill(int64_t additionalBytes) const {
+        return canSpill() && m_currMemoryInBytes + additionalBytes > m_memoryLimit;
+    }
+
 private:
     /// The current amount of memory used by temp tables for this plan fragment.
     int64_t m_currMemoryInBytes;
@@ -63,6 +83,8 @@ private:
     /// True if we have already generated a log message for
     /// exceeding the log threshold and not yet dropped below it.
     bool m_logLatch;
+    /// The scratch directory for spill files. Empty disables spilling.
+    const std::string m_spillDirectory;
 };
 
 } // namespace voltdb
@@ -0,0 +1,97 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "TempTableSpillFile.h"
+
+#include "common/SQLException.h"
+
+#include <cerrno>
+#include <cstring>
+#include <stdlib.h>
+#include <unistd.h>
+#include <vector>
+
+namespace voltdb {
+
+TempTableSpillFile::TempTableSpillFile(const std::string& directory, const TupleSchema* schema)
+    : m_file(NULL)
+    , m_directory(directory)
+    , m_tupleLength(schema->tupleLength() + TUPLE_HEADER_SIZE)
+    , m_tupleCount(0)
+    , m_tuplesRead(0)
+{
+    std::string pathTemplate = directory + "/volt_temp_spill_XXXXXX";
+    std::vector<char> path(pathTemplate.begin(), pathTemplate.end());
+    path.push_back('\0');
+    int fd = mkstemp(&path[0]);
+    if (fd < 0) {
+        throwIOError("create");
+    }
+    unlink(&path[0]);
+    m_file = fdopen(fd, "w+b");
+    if (m_file == NULL) {
+        close(fd);
+        throwIOError("open");
+    }
+}
+
+TempTableSpillFile::~TempTableSpillFile()
+{
+    if (m_file != NULL) {
+        fclose(m_file);
+    }
+}
+
+void TempTableSpillFile::append(const TableTuple& tuple)
+{
+    assert(m_tuplesRead == 0);
+    if (fwrite(tuple.address(), m_tupleLength, 1, m_file) != 1) {
+        throwIOError("write");
+    }
+    ++m_tupleCount;
+}
+
+void TempTableSpillFile::rewind()
+{
+    if (fflush(m_file) != 0 || fseek(m_file, 0, SEEK_SET) != 0) {
+        throwIOError("rewind");
+    }
+    m_tuplesRead = 0;
+}
+
+bool TempTableSpillFile::next(TableTuple& tuple)
+{
+    if (m_tuplesRead == m_tupleCount) {
+        return false;
+    }
+    if (fread(tuple.address(), m_tupleLength, 1, m_file) != 1) {
+        throwIOError("read");
+    }
+    ++m_tuplesRead;
+    return true;
+}
+
+void TempTableSpillFile::throwIOError(const char* operation) const
+{
+    char msg[1024];
+    snprintf(msg, sizeof(msg),
+             "Unable to %s temp table spill file in directory '%s': %s.  Aborting.",
+             operation, m_directory.c_str(), strerror(errno));
+    throw SQLException(SQLException::volt_temp_table_memory_overflow, msg);
+}
+
+} // namespace voltdb
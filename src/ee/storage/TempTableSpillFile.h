@@ -0,0 +1,77 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef _EE_STORAGE_TEMPTABLESPILLFILE_H_
+#define _EE_STORAGE_TEMPTABLESPILLFILE_H_
+
+#include "common/tabletuple.h"
+
+#include <cstdio>
+#include <string>
+#include <stdint.h>
+
+namespace voltdb {
+
+/**
+ * An anonymous scratch file holding a sequence of temp table tuples for
+ * executors that would otherwise exceed their TempTableLimits.
+ *
+ * Only the fixed-size tuple image (header plus inlined data) is written.
+ * Like TempTable::insertTempTuple, uninlined objects are not copied -- they are
+ * owned by a persistent table or the temp string pool and outlive the fragment's
+ * temp tables, so the pointers in a spilled image remain valid when it is read back.
+ *
+ * The file is unlinked as soon as it is created so that it never outlives the
+ * spill file object, even if the process dies.
+ */
+class TempTableSpillFile {
+public:
+    TempTableSpillFile(const std::string& directory, const TupleSchema* schema);
+    ~TempTableSpillFile();
+
+    /** Append the image of the given tuple. Only valid before rewind(). */
+    void append(const TableTuple& tuple);
+
+    /** Flush pending writes and position the file to read back from the first tuple. */
+    void rewind();
+
+    /**
+     * Copy the next spilled tuple image into the storage of the given tuple,
+     * which must have the schema the file was created with.
+     * Return false when all the tuples have been read.
+     */
+    bool next(TableTuple& tuple);
+
+    int64_t tupleCount() const { return m_tupleCount; }
+
+private:
+    // no copies, no assignment
+    TempTableSpillFile(TempTableSpillFile const&);
+    TempTableSpillFile operator=(TempTableSpillFile const&);
+
+    void throwIOError(const char* operation) const;
+
+    FILE* m_file;
+    const std::string m_directory;
+    const size_t m_tupleLength;
+    int64_t m_tupleCount;
+    int64_t m_tuplesRead;
+};
+
+} // namespace voltdb
+
+#endif // _EE_STORAGE_TEMPTABLESPILLFILE_H_
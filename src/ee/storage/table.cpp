@@ -375,6 +375,30 @@ bool Table::serializeTo(SerializeOutput &serialize_io) {
     return true;
 }
 
+bool Table::serializeTo(SerializeOutput &serialize_io, TupleIterator &tuples, int32_t tupleCount) {
+    std::size_t pos = serialize_io.position();
+    serialize_io.writeInt(-1);
+
+    if (!serializeColumnHeaderTo(serialize_io))
+        return false;
+
+    serialize_io.writeInt(tupleCount);
+    int64_t written_count = 0;
+    TableTuple tuple(m_schema);
+    while (tuples.next(tuple)) {
+        tuple.serializeTo(serialize_io);
+        ++written_count;
+    }
+    assert(written_count == tupleCount);
+
+    // length prefix is non-inclusive
+    int32_t sz = static_cast<int32_t>(serialize_io.position() - pos - sizeof(int32_t));
+    assert(sz > 0);
+    serialize_io.writeIntAt(pos, sz);
+
+    return true;
+}
+
 bool Table::serializeToWithoutTotalSize(SerializeOutput &serialize_io) {
     if (!serializeColumnHeaderTo(serialize_io))
         return false;
@@ -67,6 +67,8 @@
 
 namespace voltdb {
 
+class TupleIterator;
+
 const size_t COLUMN_DESCRIPTOR_SIZE = 1 + 4 + 4; // type, name offset, name length
 
 /**
@@ -205,6 +207,11 @@ class Table {
     size_t getColumnHeaderSizeToSerialize(bool includeTotalSize) const;
     size_t getAccurateSizeToSerialize(bool includeTotalSize);
     bool serializeTo(SerializeOutput &serialize_out);
+    /*
+     * Serialize this table's column header followed by the given tuples,
+     * which must have this table's schema, instead of its own rows.
+     */
+    bool serializeTo(SerializeOutput &serialize_out, TupleIterator &tuples, int32_t tupleCount);
     bool serializeToWithoutTotalSize(SerializeOutput &serialize_io);
     bool serializeColumnHeaderTo(SerializeOutput &serialize_io);
 
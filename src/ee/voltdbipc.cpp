@@ -587,6 +587,8 @@ int8_t VoltDBIPC::initialize(struct ipc_command *cmd) {
         int64_t tempTableMemory;
         int32_t createDrReplicatedStream;
         int32_t hostnameLength;
+        int32_t tempTableSpillDirectoryLength;
+        // hostname followed by the temp table spill directory
         char data[0];
     }__attribute__((packed));
     struct initialize * cs = (struct initialize*) cmd;
@@ -604,8 +606,10 @@ int8_t VoltDBIPC::initialize(struct ipc_command *cmd) {
     cs->createDrReplicatedStream = ntohl(cs->createDrReplicatedStream);
     bool createDrReplicatedStream = cs->createDrReplicatedStream != 0;
     cs->hostnameLength = ntohl(cs->hostnameLength);
+    cs->tempTableSpillDirectoryLength = ntohl(cs->tempTableSpillDirectoryLength);
 
     std::string hostname(cs->data, cs->hostnameLength);
+    std::string tempTableSpillDirectory(cs->data + cs->hostnameLength, cs->tempTableSpillDirectoryLength);
     try {
         m_engine = new VoltDBEngine(this, new voltdb::StdoutLogProxy());
         m_engine->getLogManager()->setLogLevels(cs->logLevels);
@@ -625,7 +629,9 @@ int8_t VoltDBIPC::initialize(struct ipc_command *cmd) {
                                  cs->drClusterId,
                                  cs->defaultDrBufferSize,
                                  cs->tempTableMemory,
-                                 createDrReplicatedStream) == true) {
+                                 createDrReplicatedStream,
+                                 95, // the default compaction threshold
+                                 tempTableSpillDirectory) == true) {
             return kErrorCode_Success;
         }
     } catch (const FatalException &e) {
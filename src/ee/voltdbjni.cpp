@@ -269,7 +269,8 @@ SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeIniti
     jint defaultDrBufferSize,
     jlong tempTableMemory,
     jboolean createDrReplicatedStream,
-    jint compactionThreshold)
+    jint compactionThreshold,
+    jbyteArray tempTableSpillDirectory)
 {
     VOLT_DEBUG("nativeInitialize() start");
     VoltDBEngine *engine = castToEngine(enginePtr);
@@ -284,6 +285,10 @@ SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeIniti
         jbyte *hostChars = env->GetByteArrayElements( hostname, NULL);
         std::string hostString(reinterpret_cast<char*>(hostChars), env->GetArrayLength(hostname));
         env->ReleaseByteArrayElements( hostname, hostChars, JNI_ABORT);
+        jbyte *spillChars = env->GetByteArrayElements( tempTableSpillDirectory, NULL);
+        std::string spillString(reinterpret_cast<char*>(spillChars),
+                                env->GetArrayLength(tempTableSpillDirectory));
+        env->ReleaseByteArrayElements( tempTableSpillDirectory, spillChars, JNI_ABORT);
         // initialization is separated from constructor so that constructor
         // never fails.
         VOLT_DEBUG("calling initialize...");
@@ -297,7 +302,8 @@ SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeIniti
                                    defaultDrBufferSize,
                                    tempTableMemory,
                                    createDrReplicatedStream,
-                                   static_cast<int32_t>(compactionThreshold));
+                                   static_cast<int32_t>(compactionThreshold),
+                                   spillString);
         if (success) {
             VOLT_DEBUG("initialize succeeded");
             return org_voltdb_jni_ExecutionEngine_ERRORCODE_SUCCESS;
@@ -23,6 +23,9 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -43,13 +46,24 @@ import org.voltdb.VoltDB;
 
 import com.google_voltpatches.common.base.Throwables;
 
+/**
+ * The connection(s) to one other host in the mesh. Traffic may be striped across
+ * several TCP connections, called lanes, so that more than one network thread
+ * services a pair of hosts. Lane 0 is the connection made while joining the mesh;
+ * it carries heartbeats, agreement and other traffic addressed to the negative
+ * (non-execution) site ids, as well as poison pills. Messages for execution sites
+ * go to lane 1 + (site id % (lanes - 1)) so every destination always uses the same
+ * lane and sees messages in the order they were sent. Ordering between different
+ * destinations is not preserved when there is more than one lane. The extra lanes
+ * are connected after the mesh is established, until then their messages are held.
+ */
 public class ForeignHost {
     private static final VoltLogger hostLog = new VoltLogger("HOST");
     private static RateLimitedLogger rateLimitedLogger;
     private static long m_logRate;
 
     final PicoNetwork m_network;
-    final FHInputHandler m_handler;
+    private final Lane m_lanes[];
     private final HostMessenger m_hostMessenger;
     private final Integer m_hostId;
     final InetSocketAddress m_listeningAddress;
@@ -57,6 +71,9 @@ public class ForeignHost {
     private boolean m_closing;
     boolean m_isUp;
 
+    // set once reads are enabled so that lanes attached afterwards start reading immediately
+    private Set<Long> m_verbotenThreads;
+
     // hold onto the socket so we can kill it
     private final Socket m_socket;
 
@@ -76,6 +93,78 @@ public class ForeignHost {
     public static final int CRASH_ME = 1;
     public static final int CRASH_SPECIFIED = 2;
 
+    /**
+     * One connection to the foreign host. Sends made before the connection is attached
+     * are queued and flushed to the network in order once it is. A lane is shut down
+     * once, after which it refuses a connection and drops sends.
+     */
+    private class Lane {
+        private PicoNetwork m_laneNetwork;
+        private final FHInputHandler m_laneHandler = new FHInputHandler();
+        private ArrayDeque<Object> m_pending;
+        private boolean m_shutdown = false;
+
+        Lane(PicoNetwork network) {
+            m_laneNetwork = network;
+            m_pending = network == null ? new ArrayDeque<Object>() : null;
+        }
+
+        synchronized void enqueue(DeferredSerialization ds) {
+            if (m_shutdown) {
+                return;
+            }
+            if (m_laneNetwork == null) {
+                m_pending.offer(ds);
+            } else {
+                m_laneNetwork.enqueue(ds);
+            }
+        }
+
+        synchronized void enqueue(ByteBuffer buf) {
+            if (m_shutdown) {
+                return;
+            }
+            if (m_laneNetwork == null) {
+                m_pending.offer(buf);
+            } else {
+                m_laneNetwork.enqueue(buf);
+            }
+        }
+
+        synchronized boolean attach(PicoNetwork network) {
+            if (m_laneNetwork != null || m_shutdown) {
+                return false;
+            }
+            m_laneNetwork = network;
+            Object o;
+            while ((o = m_pending.poll()) != null) {
+                if (o instanceof DeferredSerialization) {
+                    network.enqueue((DeferredSerialization)o);
+                } else {
+                    network.enqueue((ByteBuffer)o);
+                }
+            }
+            m_pending = null;
+            return true;
+        }
+
+        synchronized PicoNetwork network() {
+            return m_laneNetwork;
+        }
+
+        synchronized void shutdown() throws InterruptedException {
+            if (m_shutdown) {
+                return;
+            }
+            m_shutdown = true;
+            if (m_laneNetwork != null) {
+                m_laneNetwork.shutdownAsync();
+            } else {
+                m_pending = null;
+            }
+        }
+    }
+
     /** ForeignHost's implementation of InputHandler */
     public class FHInputHandler extends VoltProtocolHandler {
 
@@ -145,8 +234,26 @@ public class ForeignHost {
             InetSocketAddress listeningAddress, PicoNetwork network)
     throws IOException
     {
+        this(host, hostId, socket, deadHostTimeout, listeningAddress, network, 1);
+    }
+
+    /**
+     * Create a ForeignHost with the given number of lanes. The socket and network are
+     * lane 0, the other lanes are connected later via {@link #attachLane}
+     */
+    ForeignHost(HostMessenger host, int hostId, SocketChannel socket, int deadHostTimeout,
+            InetSocketAddress listeningAddress, PicoNetwork network, int lanes)
+    throws IOException
+    {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("A foreign host needs at least one lane, not " + lanes);
+        }
         m_hostMessenger = host;
-        m_handler = new FHInputHandler();
+        m_lanes = new Lane[lanes];
+        m_lanes[0] = new Lane(network);
+        for (int ii = 1; ii < lanes; ii++) {
+            m_lanes[ii] = new Lane(null);
+        }
         m_hostId = hostId;
         m_closing = false;
         m_isUp = true;
@@ -158,8 +265,63 @@ public class ForeignHost {
         setLogRate(deadHostTimeout);
     }
 
-    public void enableRead(Set<Long> verbotenThreads) {
-        m_network.start(m_handler, verbotenThreads);
+    public synchronized void enableRead(Set<Long> verbotenThreads) {
+        m_verbotenThreads = verbotenThreads;
+        for (Lane lane : m_lanes) {
+            PicoNetwork network = lane.network();
+            if (network != null) {
+                network.start(lane.m_laneHandler, verbotenThreads);
+            }
+        }
+    }
+
+    int laneCount() {
+        return m_lanes.length;
+    }
+
+    /**
+     * Attach the connection for one of the extra lanes. Anything already sent
+     * on the lane is flushed to it in order.
+     */
+    synchronized void attachLane(int lane, SocketChannel socket) throws IOException {
+        if (lane < 1 || lane >= m_lanes.length) {
+            socket.close();
+            throw new IOException("Host " + m_hostId + " has no lane " + lane + ", it has " + m_lanes.length);
+        }
+        if (m_closing) {
+            socket.close();
+            return;
+        }
+        if (!attachLaneNetwork(lane, new PicoNetwork(socket))) {
+            socket.close();
+            throw new IOException("Lane " + lane + " to host " + m_hostId + " is already connected");
+        }
+    }
+
+    /**
+     * Attach the network of an extra lane and start it if reads are enabled,
+     * false if the lane already has one or has been shut down
+     */
+    synchronized boolean attachLaneNetwork(int lane, PicoNetwork network) {
+        if (!m_lanes[lane].attach(network)) {
+            return false;
+        }
+        if (m_verbotenThreads != null) {
+            network.start(m_lanes[lane].m_laneHandler, m_verbotenThreads);
+        }
+        return true;
+    }
+
+    /** The networks of all the connected lanes */
+    List<PicoNetwork> networks() {
+        List<PicoNetwork> networks = new ArrayList<PicoNetwork>(m_lanes.length);
+        for (Lane lane : m_lanes) {
+            PicoNetwork network = lane.network();
+            if (network != null) {
+                networks.add(network);
+            }
+        }
+        return networks;
     }
 
     synchronized void close()
@@ -168,7 +330,9 @@ public class ForeignHost {
         if (m_closing) return;
         m_closing = true;
         try {
-            m_network.shutdownAsync();
+            for (Lane lane : m_lanes) {
+                lane.shutdown();
+            }
         } catch (InterruptedException e) {
             Throwables.propagate(e);
         }
@@ -184,6 +348,10 @@ public class ForeignHost {
             m_socket.setSoLinger(false, 0);
             Thread.sleep(25);
             m_socket.close();
+            // Lane 0 stops on its own once its socket is closed
+            for (int ii = 1; ii < m_lanes.length; ii++) {
+                m_lanes[ii].shutdown();
+            }
             Thread.sleep(25);
             System.gc();
             Thread.sleep(25);
@@ -219,42 +387,11 @@ public class ForeignHost {
 
         // if this link is "gone silent" for partition tests, just drop the message on the floor
         if (!m_linkCutForTest.get()) {
-            m_network.enqueue(
-                    new DeferredSerialization() {
-                        @Override
-                        public final void serialize(final ByteBuffer buf) throws IOException {
-                            buf.putInt(buf.capacity() - 4);
-                            buf.putLong(message.m_sourceHSId);
-                            buf.putInt(destinations.length);
-                            for (int ii = 0; ii < destinations.length; ii++) {
-                                buf.putLong(destinations[ii]);
-                            }
-                            message.flattenToBuffer(buf);
-                            buf.flip();
-                        }
-
-                        @Override
-                        public final void cancel() {
-                        /*
-                         * Can this be removed?
-                         */
-                        }
-
-                        @Override
-                        public String toString() {
-                            return message.getClass().getName();
-                        }
-
-                        @Override
-                        public int getSerializedSize() {
-                            final int len = 4            /* length prefix */
-                                    + 8            /* source hsid */
-                                    + 4            /* destinationCount */
-                                    + 8 * destinations.length  /* destination list */
-                                    + message.getSerializedSize();
-                            return len;
-                        }
-                    });
+            if (m_lanes.length == 1) {
+                m_lanes[0].enqueue(serializer(destinations, message));
+            } else {
+                sendStriped(destinations, message);
+            }
         }
 
         long current_time = EstTime.currentTimeMillis();
@@ -287,6 +424,88 @@ public class ForeignHost {
         }
     }
 
+    /**
+     * Split the destinations by lane, sites at negative (non-execution) ids stay on lane 0
+     */
+    private void sendStriped(final long destinations[], final VoltMessage message) {
+        final int dataLanes = m_lanes.length - 1;
+        int laneOfFirst = laneFor(destinations[0], dataLanes);
+        boolean sameLane = true;
+        for (int ii = 1; ii < destinations.length && sameLane; ii++) {
+            sameLane = laneFor(destinations[ii], dataLanes) == laneOfFirst;
+        }
+        if (sameLane) {
+            m_lanes[laneOfFirst].enqueue(serializer(destinations, message));
+            return;
+        }
+
+        int counts[] = new int[m_lanes.length];
+        for (long destination : destinations) {
+            counts[laneFor(destination, dataLanes)]++;
+        }
+        long laneDestinations[][] = new long[m_lanes.length][];
+        for (int lane = 0; lane < m_lanes.length; lane++) {
+            if (counts[lane] > 0) {
+                laneDestinations[lane] = new long[counts[lane]];
+                counts[lane] = 0;
+            }
+        }
+        for (long destination : destinations) {
+            int lane = laneFor(destination, dataLanes);
+            laneDestinations[lane][counts[lane]++] = destination;
+        }
+        for (int lane = 0; lane < m_lanes.length; lane++) {
+            if (laneDestinations[lane] != null) {
+                m_lanes[lane].enqueue(serializer(laneDestinations[lane], message));
+            }
+        }
+    }
+
+    static int laneFor(long destinationHSId, int dataLanes) {
+        int siteId = CoreUtils.getSiteIdFromHSId(destinationHSId);
+        if (siteId < 0) {
+            return 0;
+        }
+        return 1 + siteId % dataLanes;
+    }
+
+    private static DeferredSerialization serializer(final long destinations[], final VoltMessage message) {
+        return new DeferredSerialization() {
+            @Override
+            public final void serialize(final ByteBuffer buf) throws IOException {
+                buf.putInt(buf.capacity() - 4);
+                buf.putLong(message.m_sourceHSId);
+                buf.putInt(destinations.length);
+                for (int ii = 0; ii < destinations.length; ii++) {
+                    buf.putLong(destinations[ii]);
+                }
+                message.flattenToBuffer(buf);
+                buf.flip();
+            }
+
+            @Override
+            public final void cancel() {
+            /*
+             * Can this be removed?
+             */
+            }
+
+            @Override
+            public String toString() {
+                return message.getClass().getName();
+            }
+
+            @Override
+            public int getSerializedSize() {
+                final int len = 4            /* length prefix */
+                        + 8            /* source hsid */
+                        + 4            /* destinationCount */
+                        + 8 * destinations.length  /* destination list */
+                        + message.getSerializedSize();
+                return len;
+            }
+        };
+    }
 
     String hostnameAndIPAndPort() {
         return m_network.getHostnameAndIPAndPort();
@@ -417,7 +636,7 @@ public class ForeignHost {
         message.put(errBytes);
         message.putInt(cause);
         message.flip();
-        m_network.enqueue(message);
+        m_lanes[0].enqueue(message);
     }
 
     public void updateDeadHostTimeout(int timeout) {
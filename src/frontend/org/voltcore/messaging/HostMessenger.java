@@ -17,6 +17,7 @@
 
 package org.voltcore.messaging;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
@@ -127,6 +128,12 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         public long backwardsTimeForgivenessWindow = 1000 * 60 * 60 * 24 * 7;
         public VoltMessageFactory factory = new VoltMessageFactory();
         public int networkThreads =  Math.max(2, CoreUtils.availableProcessors() / 4);
+        /*
+         * Number of connections to open to each other host. Lane 0 carries heartbeats
+         * and agreement traffic, site traffic is striped across the others by site id.
+         * The joining host picks the count for the connections it makes.
+         */
+        public int foreignHostLanes = Integer.getInteger("foreignHostLanes", 1);
         public Queue<String> coreBindIds;
         public AtomicBoolean isPaused = new AtomicBoolean(false);
 
@@ -176,6 +183,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 js.key("deadhosttimeout").value(deadHostTimeout);
                 js.key("backwardstimeforgivenesswindow").value(backwardsTimeForgivenessWindow);
                 js.key("networkThreads").value(networkThreads);
+                js.key("foreignHostLanes").value(foreignHostLanes);
                 js.endObject();
 
                 return js.toString();
@@ -293,6 +301,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 m_config.coordinatorIp,
                 m_config.internalInterface,
                 m_config.internalPort, m_config.isPaused,
+                Math.max(1, m_config.foreignHostLanes),
                 this);
 
         // Register a clean shutdown hook for the network threads.  This gets cranky
@@ -633,12 +642,12 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
      * and put it in the map of foreign hosts
      */
     @Override
-    public void notifyOfJoin(int hostId, SocketChannel socket, InetSocketAddress listeningAddress) {
+    public void notifyOfJoin(int hostId, SocketChannel socket, InetSocketAddress listeningAddress, int lanes) {
         m_networkLog.info(getHostId() + " notified of " + hostId);
         prepSocketChannel(socket);
         ForeignHost fhost = null;
         try {
-            fhost = new ForeignHost(this, hostId, socket, m_config.deadHostTimeout, listeningAddress, new PicoNetwork(socket));
+            fhost = new ForeignHost(this, hostId, socket, m_config.deadHostTimeout, listeningAddress, new PicoNetwork(socket), lanes);
             putForeignHost(hostId, fhost);
             fhost.enableRead(VERBOTEN_THREADS);
         } catch (java.io.IOException e) {
@@ -646,6 +655,21 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         }
     }
 
+    /*
+     * An additional lane to a host that is already in the mesh has connected
+     */
+    @Override
+    public void notifyOfLane(int hostId, int lane, SocketChannel socket) throws Exception {
+        ForeignHost fhost = m_foreignHosts.get(hostId);
+        if (fhost == null) {
+            socket.close();
+            throw new IOException("Lane " + lane + " connected for unknown host " + hostId);
+        }
+        m_networkLog.info(getHostId() + " notified of lane " + lane + " to " + hostId);
+        prepSocketChannel(socket);
+        fhost.attachLane(lane, socket);
+    }
+
     @Override
     public void notifyAsPaused() {
         m_config.isPaused.set(true);
@@ -704,9 +728,10 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
      * opaque to the HostMessenger, it can be any string. The request string can
      * be used to make further decision on whether or not to accept the request
      * in the MembershipAcceptor.
+     * @param lanes The number of connections the joining host will make to each host
      */
     @Override
-    public void requestJoin(SocketChannel socket, InetSocketAddress listeningAddress, String request) throws Exception {
+    public void requestJoin(SocketChannel socket, InetSocketAddress listeningAddress, String request, int lanes) throws Exception {
         /*
          * Generate the host id via creating an ephemeral sequential node
          */
@@ -754,7 +779,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 /*
                  * Now add the host to the mailbox system
                  */
-                fhost = new ForeignHost(this, hostId, socket, m_config.deadHostTimeout, listeningAddress, new PicoNetwork(socket));
+                fhost = new ForeignHost(this, hostId, socket, m_config.deadHostTimeout, listeningAddress, new PicoNetwork(socket), lanes);
                 putForeignHost(hostId, fhost);
                 fhost.enableRead(VERBOTEN_THREADS);
             } catch (Exception e) {
@@ -873,7 +898,8 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
             prepSocketChannel(sockets[ii]);
             ForeignHost fhost = null;
             try {
-                fhost = new ForeignHost(this, hosts[ii], sockets[ii], m_config.deadHostTimeout, listeningAddresses[ii], new PicoNetwork(sockets[ii]));
+                fhost = new ForeignHost(this, hosts[ii], sockets[ii], m_config.deadHostTimeout,
+                        listeningAddresses[ii], new PicoNetwork(sockets[ii]), Math.max(1, m_config.foreignHostLanes));
                 putForeignHost(hosts[ii], fhost);
             } catch (java.io.IOException e) {
                 org.voltdb.VoltDB.crashLocalVoltDB("", true, e);
@@ -1365,7 +1391,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         ArrayList<IOStatsIntf> picoNetworks = new ArrayList<IOStatsIntf>(fhosts.size());
 
         for (ForeignHost fh : fhosts.values()) {
-            picoNetworks.add(fh.m_network);
+            picoNetworks.addAll(fh.networks());
         }
 
         return m_network.getIOStats(interval, picoNetworks);
@@ -75,13 +75,19 @@ public class SocketJoiner {
     public interface JoinHandler {
         /*
          * Notify that a specific host has joined with the specified host id.
+         * It will connect the specified number of lanes in total.
          */
-        public void notifyOfJoin(int hostId, SocketChannel socket, InetSocketAddress listeningAddress);
+        public void notifyOfJoin(int hostId, SocketChannel socket, InetSocketAddress listeningAddress, int lanes);
 
         /*
          * A node wants to join the socket mesh
          */
-        public void requestJoin(SocketChannel socket, InetSocketAddress listeningAddress, String request) throws Exception;
+        public void requestJoin(SocketChannel socket, InetSocketAddress listeningAddress, String request, int lanes) throws Exception;
+
+        /*
+         * A host already in the mesh connected one of its additional lanes
+         */
+        public void notifyOfLane(int hostId, int lane, SocketChannel socket) throws Exception;
 
         public void notifyAsPaused();
         /*
@@ -108,6 +114,9 @@ public class SocketJoiner {
     private Selector m_selector;
     private final JoinHandler m_joinHandler;
 
+    // number of connections this node opens to each host when it joins the mesh
+    private final int m_lanes;
+
     // from configuration data
     int m_internalPort = 3021;
     String m_internalInterface = "";
@@ -238,9 +247,19 @@ public class SocketJoiner {
             String internalInterface,
             int internalPort, AtomicBoolean isPaused,
             JoinHandler jh) {
-        if (internalInterface == null || coordIp == null || jh == null) {
+        this(coordIp, internalInterface, internalPort, isPaused, 1, jh);
+    }
+
+    public SocketJoiner(
+            InetSocketAddress coordIp,
+            String internalInterface,
+            int internalPort, AtomicBoolean isPaused,
+            int lanes,
+            JoinHandler jh) {
+        if (internalInterface == null || coordIp == null || jh == null || lanes < 1) {
             throw new IllegalArgumentException();
         }
+        m_lanes = lanes;
         m_coordIp = coordIp;
         m_joinHandler = jh;
         m_internalInterface = internalInterface;
@@ -410,9 +429,11 @@ public class SocketJoiner {
 
             hostLog.info("Received request type " + type);
             if (type.equals("REQUEST_HOSTID")) {
-                m_joinHandler.requestJoin( sc, listeningAddress, jsObj.optString("request"));
+                m_joinHandler.requestJoin( sc, listeningAddress, jsObj.optString("request"), jsObj.optInt("lanes", 1));
             } else if (type.equals("PUBLISH_HOSTID")){
-                m_joinHandler.notifyOfJoin(jsObj.getInt("hostId"), sc, listeningAddress);
+                m_joinHandler.notifyOfJoin(jsObj.getInt("hostId"), sc, listeningAddress, jsObj.optInt("lanes", 1));
+            } else if (type.equals("PUBLISH_LANE")) {
+                m_joinHandler.notifyOfLane(jsObj.getInt("hostId"), jsObj.getInt("lane"), sc);
             } else {
                 throw new RuntimeException("Unexpected message type " + type + " from " + remoteAddress);
             }
@@ -558,6 +579,7 @@ public class SocketJoiner {
             JSONObject jsObj = new JSONObject();
             jsObj.put("type", "REQUEST_HOSTID");
             jsObj.put("request", request);
+            jsObj.put("lanes", m_lanes);
 
             // put the version compatibility status in the json
             jsObj.put("versionString", localVersionString);
@@ -664,6 +686,7 @@ public class SocketJoiner {
                 jsObj = new JSONObject();
                 jsObj.put("type", "PUBLISH_HOSTID");
                 jsObj.put("hostId", m_localHostId);
+                jsObj.put("lanes", m_lanes);
                 jsObj.put("port", m_internalPort);
                 jsObj.put(
                         "address",
@@ -725,11 +748,57 @@ public class SocketJoiner {
              * It will init the agreement site and then we are done.
              */
             m_joinHandler.notifyOfHosts( m_localHostId, hostIds, hostSockets, listeningAddresses);
+
+            /*
+             * With the mesh and the agreement site up, connect the additional lanes.
+             * Messages sent on them in the meantime are held by the foreign hosts.
+             */
+            for (int ii = 0; ii < hostIds.length; ii++) {
+                for (int lane = 1; lane < m_lanes; lane++) {
+                    connectLane(hostIds[ii], listeningAddresses[ii], lane);
+                }
+            }
         } catch (ClosedByInterruptException e) {
             //This is how shutdown is done
         }
     }
 
+    /*
+     * Open an additional connection to a host that is already part of the mesh
+     */
+    private void connectLane(int hostId, InetSocketAddress hostAddr, int lane) throws Exception {
+        SocketChannel laneSocket = SocketChannel.open(hostAddr);
+        laneSocket.socket().setTcpNoDelay(true);
+        laneSocket.socket().setPerformancePreferences(0, 2, 1);
+        final String remoteAddress = laneSocket.socket().getRemoteSocketAddress().toString();
+
+        // The timestamp is sent on every connection, skew was already checked
+        ByteBuffer currentTimeBuf = ByteBuffer.allocate(8);
+        while (currentTimeBuf.hasRemaining()) {
+            laneSocket.read(currentTimeBuf);
+        }
+
+        JSONObject jsObj = new JSONObject();
+        jsObj.put("type", "PUBLISH_LANE");
+        jsObj.put("hostId", m_localHostId);
+        jsObj.put("lane", lane);
+        jsObj.put("port", m_internalPort);
+        jsObj.put("versionString", VoltDB.instance().getVersionString());
+
+        byte jsBytes[] = jsObj.toString(4).getBytes(Constants.UTF8ENCODING);
+        ByteBuffer publishLane = ByteBuffer.allocate(4 + jsBytes.length);
+        publishLane.putInt(jsBytes.length);
+        publishLane.put(jsBytes).flip();
+        while (publishLane.hasRemaining()) {
+            laneSocket.write(publishLane);
+        }
+
+        // versions were validated when the first connection was made
+        readJSONObjFromWire(laneSocket, remoteAddress);
+
+        m_joinHandler.notifyOfLane(hostId, lane, laneSocket);
+    }
+
     private static void checkClockSkew(List<Long> skews)
     {
         long maxSkew = Collections.max(skews);
@@ -75,13 +75,20 @@ public class NIOReadStream {
     }
 
     void getBytes(byte[] output) {
-        if (m_totalAvailable < output.length) {
-            throw new IllegalStateException("Requested " + output.length + " bytes; only have "
+        getBytes(output, output.length);
+    }
+
+    /**
+     * Copy the next length bytes into the start of output, which may be longer
+     */
+    void getBytes(byte[] output, int length) {
+        if (m_totalAvailable < length) {
+            throw new IllegalStateException("Requested " + length + " bytes; only have "
                     + m_totalAvailable + " bytes; call tryRead() first");
         }
 
         int bytesCopied = 0;
-        while (bytesCopied < output.length) {
+        while (bytesCopied < length) {
             BBContainer firstC = m_readBuffers.peekFirst();
             if (firstC == null) {
                 // Steal the write buffer
@@ -95,7 +102,7 @@ public class NIOReadStream {
 
             // Copy bytes from first into output
             int bytesRemaining = first.remaining();
-            int bytesToCopy = output.length - bytesCopied;
+            int bytesToCopy = length - bytesCopied;
             if (bytesToCopy > bytesRemaining) bytesToCopy = bytesRemaining;
             first.get(output, bytesCopied, bytesToCopy);
             bytesCopied += bytesToCopy;
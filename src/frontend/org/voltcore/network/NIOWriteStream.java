@@ -131,6 +131,14 @@ public class NIOWriteStream extends NIOWriteStreamBase implements WriteStream {
         return oldlist;
     }
 
+    @Override
+    protected synchronized void requeueUnserialized(ArrayDeque<DeferredSerialization> oldlist) {
+        if (oldlist == m_queuedWrites) return;
+        oldlist.addAll(m_queuedWrites);
+        m_queuedWrites.clear();
+        m_queuedWrites = oldlist;
+    }
+
     /**
      * Called when not all queued data could be flushed to the channel
      */
@@ -25,6 +25,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.ChunkedDeferredSerialization;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.RateLimitedLogger;
@@ -47,6 +48,20 @@ public abstract class NIOWriteStreamBase {
      */
     protected final ArrayDeque<BBContainer> m_queuedBuffers = new ArrayDeque<BBContainer>();
 
+    /*
+     * Messages larger than this are serialized a chunk at a time if they support it. This only
+     * bounds the pool buffers a message takes up, the message itself is already in memory and
+     * still goes out as a single message.
+     */
+    static final int CHUNKED_WRITE_THRESHOLD = Integer.getInteger("CHUNKED_WRITE_THRESHOLD", 1024 * 1024);
+    static final int CHUNKED_WRITE_SIZE = 256 * 1024;
+
+    /**
+     * Message being serialized a chunk at a time and the number of its bytes left to serialize
+     */
+    protected ChunkedDeferredSerialization m_chunkedWrite = null;
+    protected int m_chunkedWriteRemaining = 0;
+
     protected long m_bytesWritten = 0;
     protected long m_messagesWritten = 0;
 
@@ -81,6 +96,11 @@ public abstract class NIOWriteStreamBase {
     }
 
     public boolean isEmpty()
+    {
+        return buffersEmpty() && m_chunkedWrite == null;
+    }
+
+    private boolean buffersEmpty()
     {
         return m_queuedBuffers.isEmpty() && m_currentWriteBuffer == null;
     }
@@ -89,6 +109,13 @@ public abstract class NIOWriteStreamBase {
 
     protected abstract ArrayDeque<DeferredSerialization> getQueuedWrites();
 
+    /**
+     * Put the writes left in a list returned by getQueuedWrites() back ahead of
+     * the writes queued since, when serialization stops before the end of the list.
+     */
+    protected void requeueUnserialized(ArrayDeque<DeferredSerialization> oldlist) {
+    }
+
     /**
      * Swap the two queues of DeferredSerializations and serialize everything into the queue
      * of pending buffers
@@ -97,6 +124,13 @@ public abstract class NIOWriteStreamBase {
      */
     final int swapAndSerializeQueuedWrites(final NetworkDBBPool pool) throws IOException {
         int processedWrites = 0;
+        // A message written in chunks goes out before anything queued behind it,
+        // and its next chunk is serialized once the previous one has been written
+        if (m_chunkedWrite != null) {
+            if (!buffersEmpty()) return 0;
+            serializeNextChunk(pool);
+            if (m_chunkedWrite != null) return 0;
+        }
         final ArrayDeque<DeferredSerialization> oldlist = getQueuedWrites();
         if (oldlist.isEmpty()) return 0;
 
@@ -106,6 +140,16 @@ public abstract class NIOWriteStreamBase {
             processedWrites++;
             final int serializedSize = ds.getSerializedSize();
             if (serializedSize == DeferredSerialization.EMPTY_MESSAGE_LENGTH) continue;
+            if (serializedSize > CHUNKED_WRITE_THRESHOLD && ds instanceof ChunkedDeferredSerialization) {
+                m_chunkedWrite = (ChunkedDeferredSerialization)ds;
+                m_chunkedWriteRemaining = serializedSize;
+                serializeNextChunk(pool);
+                if (m_chunkedWrite != null) {
+                    requeueUnserialized(oldlist);
+                    break;
+                }
+                continue;
+            }
             BBContainer outCont = m_queuedBuffers.peekLast();
             ByteBuffer outbuf = null;
             if (outCont == null || !outCont.b().hasRemaining()) {
@@ -156,6 +200,37 @@ public abstract class NIOWriteStreamBase {
         return processedWrites;
     }
 
+    /*
+     * Serialize the next chunk of m_chunkedWrite straight into pool buffers
+     */
+    private void serializeNextChunk(final NetworkDBBPool pool) throws IOException {
+        int toSerialize = Math.min(m_chunkedWriteRemaining, CHUNKED_WRITE_SIZE);
+        final int bytesQueued = toSerialize;
+        m_chunkedWriteRemaining -= toSerialize;
+        while (toSerialize > 0) {
+            BBContainer outCont = m_queuedBuffers.peekLast();
+            if (outCont == null || !outCont.b().hasRemaining()) {
+                outCont = pool.acquire();
+                outCont.b().clear();
+                m_queuedBuffers.offer(outCont);
+            }
+            final ByteBuffer outbuf = outCont.b();
+            final int length = Math.min(toSerialize, outbuf.remaining());
+            final int oldLimit = outbuf.limit();
+            outbuf.limit(outbuf.position() + length);
+            final ByteBuffer slice = outbuf.slice();
+            m_chunkedWrite.serializeChunk(slice);
+            checkSloppySerialization(slice, m_chunkedWrite);
+            outbuf.position(outbuf.limit());
+            outbuf.limit(oldLimit);
+            toSerialize -= length;
+        }
+        if (m_chunkedWriteRemaining == 0) {
+            m_chunkedWrite = null;
+        }
+        updateQueued(bytesQueued, true);
+    }
+
     private static final boolean ASSERT_ON;
     static {
         boolean assertOn = false;
@@ -199,6 +274,10 @@ public abstract class NIOWriteStreamBase {
             bytesReleased += c.b().remaining();
             c.discard();
         }
+        if (m_chunkedWrite != null) {
+            m_chunkedWrite.cancel();
+            m_chunkedWrite = null;
+        }
         updateQueued(-bytesReleased, false);
     }
 
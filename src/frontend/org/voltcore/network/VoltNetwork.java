@@ -87,6 +87,7 @@ import jsr166y.ThreadLocalRandom;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.network.VoltNetworkPool.IOStatsIntf;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.LatencyWatchdog;
 import org.voltcore.utils.Pair;
 
@@ -285,11 +286,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
     @Override
     public void run() {
         final ThreadLocalRandom r = ThreadLocalRandom.current();
-        if (m_coreBindId != null) {
-            // Remove Affinity for now to make this dependency dissapear from the client.
-            // Goal is to remove client dependency on this class in the medium term.
-            //PosixJNAAffinity.INSTANCE.setAffinity(m_coreBindId);
-        }
+        CoreUtils.bindToCores(m_coreBindId);
         try {
             while (m_shouldStop == false) {
                 try {
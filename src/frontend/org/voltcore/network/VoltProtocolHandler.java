@@ -76,14 +76,24 @@ public abstract class VoltProtocolHandler implements InputHandler {
             assert m_nextLength > 0;
         }
         if (m_nextLength > 0 && inputStream.dataAvailable() >= m_nextLength) {
-            result = ByteBuffer.allocate(m_nextLength);
-            inputStream.getBytes(result.array());
+            result = allocateMessageBuffer(m_nextLength);
+            inputStream.getBytes(result.array(), m_nextLength);
             m_nextLength = 0;
             m_sequenceId++;
         }
         return result;
     }
 
+    /**
+     * Allocate the heap buffer the next message is read into. The buffer must be backed
+     * by an array starting at offset 0, with position 0 and limit equal to length.
+     * Handlers that are finished with each message by the time handleMessage returns
+     * can override this to reuse a buffer rather than allocate one per message.
+     */
+    protected ByteBuffer allocateMessageBuffer(int length) {
+        return ByteBuffer.allocate(length);
+    }
+
     @Override
     public void started(Connection c) {
     }
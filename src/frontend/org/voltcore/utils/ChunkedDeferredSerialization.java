@@ -0,0 +1,38 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A DeferredSerialization for messages large enough that they shouldn't be serialized in one piece.
+ * A network write stream serializes such a message a chunk at a time, serializing the next chunk
+ * only once the previous one has been written to the socket, and writes nothing else to the
+ * connection until the whole message is out. Everywhere else it is serialized in one piece as usual.
+ *
+ * Only the copy into network buffers is chunked. The message is still fully built in memory by
+ * whoever queued it, and the receiver still sees and buffers one message of the full size.
+ */
+public interface ChunkedDeferredSerialization extends DeferredSerialization {
+    /**
+     * Serialize the next buf.remaining() bytes of the message, continuing where the previous call
+     * stopped. Called instead of serialize() after getSerializedSize().
+     */
+    void serializeChunk(ByteBuffer buf) throws IOException;
+}
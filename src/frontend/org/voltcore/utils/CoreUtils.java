@@ -85,6 +85,46 @@ public class CoreUtils {
         }
     };
 
+    /**
+     * Binds the calling thread to a set of cores given in the core binding format
+     * of the bindings command line options.
+     */
+    public interface CoreBinder {
+        public void bindToCores(String cores);
+    }
+
+    /*
+     * Thread affinity needs a native library the client doesn't ship with, so code shared
+     * with the client binds threads through this, which is only set by the server when
+     * it places threads itself.
+     */
+    private static volatile CoreBinder m_coreBinder = null;
+
+    /**
+     * Install the binder bindToCores uses, or null to make bindToCores do nothing.
+     */
+    public static void setCoreBinder(CoreBinder binder) {
+        m_coreBinder = binder;
+    }
+
+    /**
+     * @return true if a binder has been installed
+     */
+    public static boolean hasCoreBinder() {
+        return m_coreBinder != null;
+    }
+
+    /**
+     * Bind the calling thread to the given cores if a binder has been installed,
+     * otherwise do nothing.
+     */
+    public static void bindToCores(String cores) {
+        final CoreBinder binder = m_coreBinder;
+        if (binder != null && cores != null) {
+            binder.bindToCores(cores);
+        }
+    }
+
     public static final ExecutorService SAMETHREADEXECUTOR = new ExecutorService() {
 
         @Override
@@ -726,11 +766,7 @@ public class CoreUtils {
                 Runnable runnable = new Runnable() {
                     @Override
                     public void run() {
-                        if (core != null) {
-                            // Remove Affinity for now to make this dependency dissapear from the client.
-                            // Goal is to remove client dependency on this class in the medium term.
-                            //PosixJNAAffinity.INSTANCE.setAffinity(core);
-                        }
+                        bindToCores(core);
                         try {
                             r.run();
                         } catch (Throwable t) {
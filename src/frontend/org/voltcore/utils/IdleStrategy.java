@@ -0,0 +1,65 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+/**
+ * How a consumer thread waits when its queue is empty. The consumer calls
+ * {@link #idle(int, long)} each time it finds nothing to do and parks as soon
+ * as the strategy returns true; producers unpark it when they add work.
+ */
+public interface IdleStrategy {
+
+    /**
+     * @param idleCount   number of consecutive empty polls so far, starting at 0
+     * @param idleStartNanos {@link System#nanoTime()} of the first empty poll
+     * @return true if the consumer should now park until woken by a producer
+     */
+    public boolean idle(int idleCount, long idleStartNanos);
+
+    /** Park as soon as the queue is empty. */
+    public static final IdleStrategy PARK = new IdleStrategy() {
+        @Override
+        public boolean idle(int idleCount, long idleStartNanos) {
+            return true;
+        }
+    };
+
+    /**
+     * Busy spin for the given number of nanoseconds before parking. Trades a core
+     * for lower wake-up latency when work arrives in quick succession.
+     */
+    public static class SpinThenPark implements IdleStrategy {
+        private final long m_spinNanos;
+
+        public SpinThenPark(long spinNanos) {
+            m_spinNanos = spinNanos;
+        }
+
+        @Override
+        public boolean idle(int idleCount, long idleStartNanos) {
+            return System.nanoTime() - idleStartNanos > m_spinNanos;
+        }
+    }
+
+    /**
+     * The strategy selected by the QUEUE_SPIN_MICROS system property,
+     * which already governs {@link CoreUtils#queueSpinTake}.
+     */
+    public static final IdleStrategy DEFAULT = CoreUtils.QUEUE_SPIN_MICROSECONDS > 0 ?
+            new SpinThenPark(CoreUtils.QUEUE_SPIN_MICROSECONDS) : PARK;
+}
@@ -0,0 +1,196 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An unbounded, lock-free, multi-producer single-consumer FIFO queue.
+ *
+ * Elements are stored in fixed size array chunks linked together, so an offer
+ * costs one atomic increment and one volatile store and only allocates when a
+ * chunk fills up, unlike the node-per-element linked queues. Producers claim a
+ * slot in the current tail chunk with an atomic increment; the producer that
+ * overflows a chunk links in the next one. The consumer walks the chunks and
+ * drops each one once it has been drained.
+ *
+ * Elements offered by a single producer are consumed in the order they were
+ * offered. {@link #poll()}, {@link #take(IdleStrategy)} and {@link #isEmpty()}
+ * may only be called from the one consumer thread.
+ */
+public class MpscChunkedArrayQueue<E> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    private static final class Chunk<E> {
+        final AtomicReferenceArray<E> m_slots;
+        // Number of slots claimed by producers, may run past the chunk size
+        final AtomicLong m_claimed = new AtomicLong();
+        volatile Chunk<E> m_next;
+
+        Chunk(int size) {
+            m_slots = new AtomicReferenceArray<E>(size);
+        }
+
+        @SuppressWarnings("rawtypes")
+        static final AtomicReferenceFieldUpdater<Chunk, Chunk> s_nextUpdater =
+                AtomicReferenceFieldUpdater.newUpdater(Chunk.class, Chunk.class, "m_next");
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<MpscChunkedArrayQueue, Chunk> s_producerChunkUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(MpscChunkedArrayQueue.class, Chunk.class, "m_producerChunk");
+
+    private final int m_chunkSize;
+
+    // Producer side: the chunk new elements go into
+    private volatile Chunk<E> m_producerChunk;
+
+    // Consumer side: only touched by the consumer thread
+    private Chunk<E> m_consumerChunk;
+    private int m_consumerOffset;
+
+    // Set by the consumer before it parks, producers unpark it when they see it set
+    private volatile boolean m_consumerWaiting;
+    private volatile Thread m_consumerThread;
+
+    public MpscChunkedArrayQueue() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public MpscChunkedArrayQueue(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        m_chunkSize = chunkSize;
+        m_consumerChunk = new Chunk<E>(chunkSize);
+        m_producerChunk = m_consumerChunk;
+    }
+
+    /**
+     * Add an element to the tail of the queue. The queue is unbounded so this always succeeds.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        for (;;) {
+            Chunk<E> chunk = m_producerChunk;
+            long slot = chunk.m_claimed.getAndIncrement();
+            if (slot < m_chunkSize) {
+                // Volatile store so the check of m_consumerWaiting below can't be reordered before it
+                chunk.m_slots.set((int) slot, e);
+                if (m_consumerWaiting) {
+                    LockSupport.unpark(m_consumerThread);
+                }
+                return true;
+            }
+
+            // The chunk is full, make sure there is a next one and move the producers on to it.
+            // Losing either race is fine, some other producer has done the work.
+            Chunk<E> next = chunk.m_next;
+            if (next == null) {
+                Chunk<E> newChunk = new Chunk<E>(m_chunkSize);
+                next = Chunk.s_nextUpdater.compareAndSet(chunk, null, newChunk) ? newChunk : chunk.m_next;
+            }
+            s_producerChunkUpdater.compareAndSet(this, chunk, next);
+        }
+    }
+
+    /**
+     * Remove and return the head of the queue, or null if it is empty.
+     */
+    public E poll() {
+        Chunk<E> chunk = m_consumerChunk;
+        int offset = m_consumerOffset;
+        if (offset == m_chunkSize) {
+            Chunk<E> next = chunk.m_next;
+            if (next == null) {
+                return null;
+            }
+            m_consumerChunk = chunk = next;
+            m_consumerOffset = offset = 0;
+        }
+
+        E e = chunk.m_slots.get(offset);
+        if (e == null) {
+            if (chunk.m_claimed.get() <= offset) {
+                return null;
+            }
+            // A producer has claimed the slot but not stored its element yet, it is a few instructions away
+            while ((e = chunk.m_slots.get(offset)) == null) {
+                Thread.yield();
+            }
+        }
+        // Release the reference now rather than when the whole chunk is dropped
+        chunk.m_slots.lazySet(offset, null);
+        m_consumerOffset = offset + 1;
+        return e;
+    }
+
+    /**
+     * Remove and return the head of the queue, waiting for an element to be offered
+     * as directed by the idle strategy if the queue is empty.
+     */
+    public E take(IdleStrategy idleStrategy) throws InterruptedException {
+        E e = poll();
+        if (e != null) {
+            return e;
+        }
+        m_consumerThread = Thread.currentThread();
+        long idleStartNanos = System.nanoTime();
+        int idleCount = 0;
+        for (;;) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (idleStrategy.idle(idleCount++, idleStartNanos)) {
+                m_consumerWaiting = true;
+                // Check again now that producers will wake us up
+                e = poll();
+                if (e == null) {
+                    LockSupport.park(this);
+                }
+                m_consumerWaiting = false;
+            }
+            else {
+                e = poll();
+            }
+            if (e != null) {
+                return e;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        Chunk<E> chunk = m_consumerChunk;
+        int offset = m_consumerOffset;
+        if (offset == m_chunkSize) {
+            chunk = chunk.m_next;
+            if (chunk == null) {
+                return true;
+            }
+            offset = 0;
+        }
+        return chunk.m_claimed.get() <= offset;
+    }
+}
@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltdb.catalog.Catalog;
@@ -79,6 +80,10 @@ public class CatalogContext {
      */
     public final PlannerTool m_ptool;
 
+    // Planners not currently lent out to an ad hoc planner thread. Each has its own
+    // HSQL session, more are loaded on demand when all of them are in use.
+    private final ConcurrentLinkedQueue<PlannerTool> m_idlePlanners = new ConcurrentLinkedQueue<PlannerTool>();
+
     // PRIVATE
     private final InMemoryJarfile m_jarfile;
 
@@ -136,6 +141,7 @@ public class CatalogContext {
 
         m_jdbc = new JdbcDatabaseMetaDataGenerator(catalog, m_defaultProcs, m_jarfile);
         m_ptool = new PlannerTool(cluster, database, catalogHash);
+        m_idlePlanners.offer(m_ptool);
         catalogVersion = version;
 
         if (procedures != null) {
@@ -148,6 +154,23 @@ public class CatalogContext {
         }
     }
 
+    /**
+     * Get a planner for this catalog version that no other thread is using,
+     * loading a new one if they are all busy. Give it back with
+     * {@link #releasePlannerTool(PlannerTool)} when done.
+     */
+    public PlannerTool acquirePlannerTool() {
+        PlannerTool ptool = m_idlePlanners.poll();
+        if (ptool == null) {
+            ptool = new PlannerTool(cluster, database, catalogHash);
+        }
+        return ptool;
+    }
+
+    public void releasePlannerTool(PlannerTool ptool) {
+        m_idlePlanners.offer(ptool);
+    }
+
     public Cluster getCluster() {
         return cluster;
     }
@@ -64,6 +64,7 @@ import org.voltcore.network.VoltNetworkPool;
 import org.voltcore.network.VoltPort;
 import org.voltcore.network.VoltProtocolHandler;
 import org.voltcore.network.WriteStream;
+import org.voltcore.utils.ChunkedDeferredSerialization;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.EstTime;
@@ -856,12 +857,16 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
      * Runs on the network thread to prepare client response. If a transaction needs to be
      * restarted, it will get restarted here.
      */
-    public class ClientResponseWork implements DeferredSerialization {
+    public class ClientResponseWork implements ChunkedDeferredSerialization {
         private final ClientInterfaceHandleManager cihm;
         private final InitiateResponseMessage response;
         private final Procedure catProc;
         private ClientResponseImpl clientResponse;
 
+        // Response being serialized a chunk at a time and the buffer it is up to
+        private ByteBuffer[] chunkBuffers;
+        private int chunkIndex;
+
         private ClientResponseWork(InitiateResponseMessage response,
                                    ClientInterfaceHandleManager cihm,
                                    Procedure catProc)
@@ -879,8 +884,33 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             clientResponse.flattenToBuffer(buf);
         }
 
+        @Override
+        public void serializeChunk(ByteBuffer buf) throws IOException
+        {
+            if (chunkBuffers == null) {
+                chunkBuffers = clientResponse.getSerializedBuffers();
+                chunkIndex = 0;
+            }
+            while (buf.hasRemaining()) {
+                ByteBuffer src = chunkBuffers[chunkIndex];
+                if (src.remaining() > buf.remaining()) {
+                    final int oldLimit = src.limit();
+                    src.limit(src.position() + buf.remaining());
+                    buf.put(src);
+                    src.limit(oldLimit);
+                } else {
+                    buf.put(src);
+                    chunkIndex++;
+                }
+            }
+            if (chunkIndex == chunkBuffers.length) {
+                chunkBuffers = null;
+            }
+        }
+
         @Override
         public void cancel() {
+            chunkBuffers = null;
         }
 
         @Override
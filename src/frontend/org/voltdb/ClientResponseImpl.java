@@ -24,6 +24,7 @@ import java.util.concurrent.TimeUnit;
 import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONString;
 import org.json_voltpatches.JSONStringer;
+import org.json_voltpatches.JSONWriter;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ClientUtils;
 import org.voltdb.common.Constants;
@@ -213,6 +214,45 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
      * @return buf to allow call chaining.
      */
     public ByteBuffer flattenToBuffer(ByteBuffer buf) {
+        flattenHeaderToBuffer(buf);
+        for (VoltTable vt : results)
+        {
+            vt.flattenToBuffer(buf);
+        }
+        return buf;
+    }
+
+    /**
+     * The serialized response, length prefix included, as a list of buffers
+     * ready to be copied out in order. The result tables are not copied, the
+     * buffers of the tables are shared read only, so the tables stay in memory
+     * until the last of them has been copied. The response is still a single
+     * message to the client, subject to its usual size limit.
+     */
+    public ByteBuffer[] getSerializedBuffers() {
+        final int msgsize = getSerializedSize();
+        int headerSize = msgsize;
+        for (VoltTable vt : results) {
+            headerSize -= vt.getSerializedSize();
+        }
+        ByteBuffer[] buffers = new ByteBuffer[1 + results.length * 2];
+        ByteBuffer header = ByteBuffer.allocate(4 + headerSize);
+        header.putInt(msgsize);
+        flattenHeaderToBuffer(header);
+        header.flip();
+        buffers[0] = header;
+        for (int i = 0; i < results.length; i++) {
+            ByteBuffer table = results[i].m_buffer.asReadOnlyBuffer();
+            table.position(0);
+            ByteBuffer length = ByteBuffer.allocate(4);
+            length.putInt(0, table.limit());
+            buffers[1 + i * 2] = length;
+            buffers[2 + i * 2] = table;
+        }
+        return buffers;
+    }
+
+    private void flattenHeaderToBuffer(ByteBuffer buf) {
         assert setProperly;
         buf.put((byte)0); //version
         buf.putLong(clientHandle);
@@ -242,11 +282,6 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
             buf.putInt(m_hash.intValue());
         }
         buf.putShort((short) results.length);
-        for (VoltTable vt : results)
-        {
-            vt.flattenToBuffer(buf);
-        }
-        return buf;
     }
 
     @Override
@@ -295,24 +330,7 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
     public String toJSONString() {
         JSONStringer js = new JSONStringer();
         try {
-            js.object();
-
-            js.key(JSON_STATUS_KEY);
-            js.value(status);
-            js.key(JSON_APPSTATUS_KEY);
-            js.value(appStatus);
-            js.key(JSON_STATUSSTRING_KEY);
-            js.value(statusString);
-            js.key(JSON_APPSTATUSSTRING_KEY);
-            js.value(appStatusString);
-            js.key(JSON_RESULTS_KEY);
-            js.array();
-            for (VoltTable o : results) {
-                js.value(o);
-            }
-            js.endArray();
-
-            js.endObject();
+            toJSONWriter(js);
         }
         catch (JSONException e) {
             e.printStackTrace();
@@ -321,6 +339,31 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         return js.toString();
     }
 
+    /**
+     * Write the JSON representation of this response to a JSONWriter, the
+     * result tables a row at a time, without building the whole document in memory.
+     */
+    public void toJSONWriter(JSONWriter js) throws JSONException {
+        js.object();
+
+        js.key(JSON_STATUS_KEY);
+        js.value(status);
+        js.key(JSON_APPSTATUS_KEY);
+        js.value(appStatus);
+        js.key(JSON_STATUSSTRING_KEY);
+        js.value(statusString);
+        js.key(JSON_APPSTATUSSTRING_KEY);
+        js.value(appStatusString);
+        js.key(JSON_RESULTS_KEY);
+        js.array();
+        for (VoltTable o : results) {
+            o.toJSONWriter(js);
+        }
+        js.endArray();
+
+        js.endObject();
+    }
+
     /**
      * @return MD5 hash as int of the tables in the result. Only hashes first bits of big results.
      */
@@ -45,6 +45,7 @@ import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.messaging.FastSerializer;
+import org.voltdb.sysprocs.saverestore.ColumnarChunkCodec;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.PosixAdvise;
@@ -100,6 +101,12 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     @SuppressWarnings("unused")
     private final String m_tableName;
 
+    /*
+     * Set for columnar snapshots, tuple blocks are transposed and encoded
+     * per column and compressed with LZ4 instead of Snappy
+     */
+    private final ColumnarChunkCodec m_columnarCodec;
+
     private final AtomicInteger m_outstandingWriteTasks = new AtomicInteger(0);
     private final ReentrantLock m_outstandingWriteTasksLock = new ReentrantLock();
     private final Condition m_noMoreOutstandingWriteTasksCondition =
@@ -163,7 +170,36 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
                 schemaTable,
                 txnId,
                 timestamp,
-                new int[] { 0, 0, 0, 2 });
+                false);
+    }
+
+    public DefaultSnapshotDataTarget(
+            final File file,
+            final int hostId,
+            final String clusterName,
+            final String databaseName,
+            final String tableName,
+            final int numPartitions,
+            final boolean isReplicated,
+            final List<Integer> partitionIds,
+            final VoltTable schemaTable,
+            final long txnId,
+            final long timestamp,
+            final boolean columnar) throws IOException {
+        this(
+                file,
+                hostId,
+                clusterName,
+                databaseName,
+                tableName,
+                numPartitions,
+                isReplicated,
+                partitionIds,
+                schemaTable,
+                txnId,
+                timestamp,
+                new int[] { 0, 0, 0, 2 },
+                columnar);
     }
 
     public DefaultSnapshotDataTarget(
@@ -180,12 +216,44 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             final long timestamp,
             int version[]
             ) throws IOException {
+        this(
+                file,
+                hostId,
+                clusterName,
+                databaseName,
+                tableName,
+                numPartitions,
+                isReplicated,
+                partitionIds,
+                schemaTable,
+                txnId,
+                timestamp,
+                version,
+                false);
+    }
+
+    public DefaultSnapshotDataTarget(
+            final File file,
+            final int hostId,
+            final String clusterName,
+            final String databaseName,
+            final String tableName,
+            final int numPartitions,
+            final boolean isReplicated,
+            final List<Integer> partitionIds,
+            final VoltTable schemaTable,
+            final long txnId,
+            final long timestamp,
+            int version[],
+            boolean columnar
+            ) throws IOException {
         String hostname = CoreUtils.getHostnameOrAddress();
         m_file = file;
         m_tableName = tableName;
         m_fos = new FileOutputStream(file);
         m_channel = m_fos.getChannel();
         m_needsFinalClose = !isReplicated;
+        m_columnarCodec = columnar ? ColumnarChunkCodec.forSchema(schemaTable) : null;
         final FastSerializer fs = new FastSerializer();
         fs.writeInt(0);//CRC
         fs.writeInt(0);//Header length placeholder
@@ -206,6 +274,9 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             stringer.key("isReplicated").value(isReplicated);
             stringer.key("isCompressed").value(true);
             stringer.key("checksumType").value("CRC32C");
+            if (columnar) {
+                stringer.key("chunkFormat").value(SnapshotFormat.COLUMNAR.name());
+            }
             stringer.key("timestamp").value(timestamp);
             /*
              * The timestamp string is for human consumption, automated stuff should use
@@ -445,7 +516,11 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
              * that is 16 bytes, but 4 of those are done by CompressionService
              */
             cont.b().position(12);
-            compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont);
+            if (m_columnarCodec != null) {
+                compressionTask = m_columnarCodec.compressAndCRC32cAsync(tupleData, cont);
+            } else {
+                compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont);
+            }
         }
         final Future<BBContainer> compressionTaskFinal = compressionTask;
 
@@ -556,7 +631,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
 
     @Override
     public SnapshotFormat getFormat() {
-        return SnapshotFormat.NATIVE;
+        return m_columnarCodec != null ? SnapshotFormat.COLUMNAR : SnapshotFormat.NATIVE;
     }
 
     /**
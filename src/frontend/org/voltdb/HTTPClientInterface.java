@@ -17,10 +17,16 @@
 
 package org.voltdb;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.Enumeration;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -35,6 +41,8 @@ import org.ietf.jgss.GSSException;
 import org.ietf.jgss.GSSManager;
 import org.ietf.jgss.GSSName;
 import org.ietf.jgss.Oid;
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONWriter;
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.EstTime;
@@ -86,6 +94,11 @@ public class HTTPClientInterface {
     });
 
     public final static int MAX_QUERY_PARAM_SIZE = 2 * 1024 * 1024; // 2MB
+
+    // Procedure responses are written straight to the response stream through a buffer
+    // of this size, and gzipped on the fly if the client accepts it and they are big enough
+    static final int RESPONSE_BUFFER_SIZE = 64 * 1024;
+    static final int GZIP_MIN_RESPONSE_SIZE = Integer.getInteger("HTTP_GZIP_MIN_RESPONSE_SIZE", 16 * 1024);
     public final static int MAX_FORM_KEYS = 512;
 
     public void setTimeout(int seconds) {
@@ -118,14 +131,11 @@ public class HTTPClientInterface {
                 }
                 return;
             }
-            ClientResponseImpl rimpl = (ClientResponseImpl) clientResponse;
-            String msg = rimpl.toJSONString();
-
-            // handle jsonp pattern
-            // http://en.wikipedia.org/wiki/JSON#The_Basic_Idea:_Retrieving_JSON_via_Script_Tags
-            msg = asJsonp(m_jsonp, msg);
-
-            m_continuation.setAttribute("result", msg);
+            // the response is written out as JSON when the request resumes
+            if (m_jsonp != null) {
+                m_continuation.setAttribute("jsonp", m_jsonp);
+            }
+            m_continuation.setAttribute("response", clientResponse);
             try {
                 m_continuation.resume();
             } catch (IllegalStateException e) {
@@ -162,6 +172,101 @@ public class HTTPClientInterface {
     public void stop() {
     }
 
+    /**
+     * Stream a procedure response to the client as JSON, gzipped if the client accepts
+     * it and the response is big enough to be worth it.
+     */
+    private static void writeResponse(Request request, HttpServletResponse rsp, ClientResponseImpl clientResponse,
+            String jsonp) throws IOException {
+        rsp.setStatus(HttpServletResponse.SC_OK);
+        OutputStream out = rsp.getOutputStream();
+        GZIPOutputStream gzip = null;
+        if (acceptsGzip(request) && estimatedSize(clientResponse) >= GZIP_MIN_RESPONSE_SIZE) {
+            rsp.setHeader(HttpHeader.CONTENT_ENCODING.asString(), "gzip");
+            rsp.setHeader(HttpHeader.VARY.asString(), HttpHeader.ACCEPT_ENCODING.asString());
+            out = gzip = new GZIPOutputStream(out, RESPONSE_BUFFER_SIZE);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), RESPONSE_BUFFER_SIZE);
+        writeJSON(clientResponse, jsonp, writer);
+        writer.flush();
+        if (gzip != null) {
+            gzip.finish();
+        }
+    }
+
+    static void writeJSON(ClientResponseImpl clientResponse, String jsonp, Writer writer) throws IOException {
+        // handle jsonp pattern
+        // http://en.wikipedia.org/wiki/JSON#The_Basic_Idea:_Retrieving_JSON_via_Script_Tags
+        if (jsonp != null) {
+            writer.write(jsonp);
+            writer.write("( ");
+        }
+        try {
+            clientResponse.toJSONWriter(new JSONWriter(writer));
+        } catch (JSONException e) {
+            throw new IOException("Failed to write response as JSON", e);
+        }
+        if (jsonp != null) {
+            writer.write(" )");
+        }
+    }
+
+    private static boolean acceptsGzip(Request request) {
+        return acceptsGzip(request.getHeaders(HttpHeader.ACCEPT_ENCODING.asString()));
+    }
+
+    /**
+     * Whether the Accept-Encoding header values allow gzip. An explicit gzip (or x-gzip)
+     * coding decides by its q-value, q=0 meaning not acceptable; otherwise a * wildcard
+     * with a non-zero q-value allows it. A malformed q-value counts as 0.
+     */
+    static boolean acceptsGzip(Enumeration<String> acceptEncodings) {
+        float gzipQuality = -1;
+        float anyQuality = -1;
+        while (acceptEncodings != null && acceptEncodings.hasMoreElements()) {
+            String header = acceptEncodings.nextElement();
+            if (header == null) {
+                continue;
+            }
+            for (String coding : header.split(",")) {
+                String[] params = coding.split(";");
+                String name = params[0].trim().toLowerCase();
+                float quality = 1;
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    int eq = param.indexOf('=');
+                    if (eq > 0 && param.substring(0, eq).trim().equalsIgnoreCase("q")) {
+                        try {
+                            quality = Float.parseFloat(param.substring(eq + 1).trim());
+                        } catch (NumberFormatException e) {
+                            quality = 0;
+                        }
+                    }
+                }
+                if (name.equals("gzip") || name.equals("x-gzip")) {
+                    gzipQuality = Math.max(gzipQuality, quality);
+                } else if (name.equals("*")) {
+                    anyQuality = Math.max(anyQuality, quality);
+                }
+            }
+        }
+        if (gzipQuality >= 0) {
+            return gzipQuality > 0;
+        }
+        return anyQuality > 0;
+    }
+
+    /**
+     * The serialized size of the result tables, a rough lower bound of the size of their JSON
+     */
+    private static int estimatedSize(ClientResponseImpl clientResponse) {
+        int size = 0;
+        for (VoltTable table : clientResponse.getResults()) {
+            size += table.getSerializedSize();
+        }
+        return size;
+    }
+
     public final static String asJsonp(String jsonp, String msg) {
         if (jsonp == null) return msg;
         StringBuilder sb = new StringBuilder(jsonp.length() + msg.length() + 8);
@@ -211,6 +316,18 @@ public class HTTPClientInterface {
         }
 
         final Continuation continuation = ContinuationSupport.getContinuation(request);
+        ClientResponseImpl procResponse = (ClientResponseImpl)continuation.getAttribute("response");
+        if (procResponse != null) {
+            try {
+                writeResponse(request, response, procResponse, (String)continuation.getAttribute("jsonp"));
+                request.setHandled(true);
+            } catch (IllegalStateException | IOException e){
+               // Thrown when we shut down the server via the JSON/HTTP (web studio) API
+               // Essentially we're closing everything down from underneath the HTTP request.
+                m_log.warn("JSON failed to send response: ", e);
+            }
+            return;
+        }
         String result = (String)continuation.getAttribute("result");
         if (result != null) {
             try {
@@ -343,6 +343,135 @@ public class ParameterSet implements JSONString {
         return opi.value;
     }
 
+    /**
+     * Reads serialized parameters straight into the run() arguments of one procedure
+     * signature, without building a ParameterSet. It is built once when the procedure
+     * is loaded, picking for each parameter the wire type it can read without
+     * conversion. A value sent with that type (or, for a long, a narrower integer) is
+     * read by a reader for its type, every other value is read by readOneParameter and
+     * left for ParameterConverter.tryToMakeCompatible to convert.
+     */
+    public static final class SignatureReader {
+        // wire type read directly for each parameter, null if none is
+        private final VoltType[] m_directTypes;
+
+        private SignatureReader(Class<?>[] paramTypes) {
+            m_directTypes = new VoltType[paramTypes.length];
+            for (int i = 0; i < paramTypes.length; i++) {
+                m_directTypes[i] = directType(paramTypes[i]);
+            }
+        }
+
+        public Object[] read(ByteBuffer in) throws IOException {
+            short count = in.getShort();
+            if (count < 0) {
+                throw new IllegalArgumentException("Invalid parameter length " + count + " for ParameterSet." );
+            }
+            Object[] params = new Object[count];
+            for (int i = 0; i < count; ++i) {
+                final VoltType directType = i < m_directTypes.length ? m_directTypes[i] : null;
+                final byte nextTypeByte = in.get(in.position());
+                if (directType == null) {
+                    params[i] = readOneParameter(in).value;
+                }
+                else if (nextTypeByte == directType.getValue()) {
+                    in.get();
+                    params[i] = readDirect(directType, in);
+                }
+                else if (directType == VoltType.BIGINT && isNarrowInteger(nextTypeByte)) {
+                    in.get();
+                    params[i] = readAsLong(nextTypeByte, in);
+                }
+                else {
+                    params[i] = readOneParameter(in).value;
+                }
+            }
+            return params;
+        }
+    }
+
+    public static SignatureReader readerForSignature(Class<?>[] paramTypes) {
+        return new SignatureReader(paramTypes);
+    }
+
+    /**
+     * The wire type whose values need no conversion for a run() parameter type
+     */
+    private static VoltType directType(Class<?> paramType) {
+        if (paramType == long.class) return VoltType.BIGINT;
+        if (paramType == int.class) return VoltType.INTEGER;
+        if (paramType == short.class) return VoltType.SMALLINT;
+        if (paramType == byte.class) return VoltType.TINYINT;
+        if (paramType == double.class) return VoltType.FLOAT;
+        if (paramType == String.class) return VoltType.STRING;
+        if (paramType == byte[].class) return VoltType.VARBINARY;
+        if (paramType == TimestampType.class) return VoltType.TIMESTAMP;
+        return null;
+    }
+
+    private static boolean isNarrowInteger(byte typeByte) {
+        return typeByte == VoltType.INTEGER.getValue() ||
+               typeByte == VoltType.SMALLINT.getValue() ||
+               typeByte == VoltType.TINYINT.getValue();
+    }
+
+    /**
+     * Read a value of one of the types directType returns, as readOneParameter does
+     */
+    private static Object readDirect(VoltType type, ByteBuffer in) {
+        switch (type) {
+            case TINYINT:
+                return in.get();
+            case SMALLINT:
+                return in.getShort();
+            case INTEGER:
+                return in.getInt();
+            case BIGINT:
+                return in.getLong();
+            case FLOAT:
+                return in.getDouble();
+            case STRING: {
+                final int len = in.getInt();
+                if (len == VoltType.NULL_STRING_LENGTH) {
+                    return VoltType.NULL_STRING_OR_VARBINARY;
+                }
+                final byte[] encodedString = new byte[len];
+                in.get(encodedString);
+                return new String(encodedString, Constants.UTF8ENCODING);
+            }
+            case VARBINARY: {
+                final int len = in.getInt();
+                if (len == VoltType.NULL_STRING_LENGTH) {
+                    return VoltType.NULL_STRING_OR_VARBINARY;
+                }
+                final byte[] value = new byte[len];
+                in.get(value);
+                return value;
+            }
+            case TIMESTAMP:
+                return new TimestampType(in.getLong());
+            default:
+                throw new RuntimeException("ParameterSet doesn't support type " + type);
+        }
+    }
+
+    /**
+     * Read a narrower integer widened to a long, mapping its null to the long null
+     * as ParameterConverter does
+     */
+    private static Object readAsLong(byte typeByte, ByteBuffer in) {
+        if (typeByte == VoltType.INTEGER.getValue()) {
+            final int value = in.getInt();
+            return value == VoltType.NULL_INTEGER ? VoltType.NULL_BIGINT : (long) value;
+        }
+        if (typeByte == VoltType.SMALLINT.getValue()) {
+            final short value = in.getShort();
+            return value == VoltType.NULL_SMALLINT ? VoltType.NULL_BIGINT : (long) value;
+        }
+        final byte value = in.get();
+        return value == VoltType.NULL_TINYINT ? VoltType.NULL_BIGINT : (long) value;
+    }
+
     static Object getAKosherArray(Object[] array) {
         int tables = 0;
         int integers = 0;
@@ -89,6 +89,18 @@ public class PlannerStatsCollector extends StatsSource {
     long m_cache2Hits = 0;
     long m_lastCache2Hits = 0;
 
+    /**
+     * Cache 1 evictions
+     */
+    long m_cache1Evictions = 0;
+    long m_lastCache1Evictions = 0;
+
+    /**
+     * Cache 2 evictions
+     */
+    long m_cache2Evictions = 0;
+    long m_lastCache2Evictions = 0;
+
     /**
      * Cache misses
      */
@@ -96,9 +108,9 @@ public class PlannerStatsCollector extends StatsSource {
     long m_lastCacheMisses = 0;
 
     /**
-     * Time of last planning start
+     * Time of last planning start, per thread since the ad hoc planner threads share this collector
      */
-    Long m_currentStartTime = null;
+    final ThreadLocal<Long> m_currentStartTime = new ThreadLocal<Long>();
 
     /**
      * Total amount of planning time
@@ -180,12 +192,23 @@ public class PlannerStatsCollector extends StatsSource {
     /**
      * Called before doing planning. Starts timer.
      */
-    public void startStatsCollection() {
+    public synchronized void startStatsCollection() {
         if (getInvocations() % m_collectionFrequency == 0) {
-            m_currentStartTime = System.nanoTime();
+            m_currentStartTime.set(System.nanoTime());
         }
     }
 
+    /**
+     * Record the number of entries evicted from each cache level since the caches were created.
+     *
+     * @param cache1Evictions  evictions from the level 1 cache
+     * @param cache2Evictions  evictions from the level 2 cache
+     */
+    public synchronized void updateCacheEvictions(long cache1Evictions, long cache2Evictions) {
+        m_cache1Evictions = cache1Evictions;
+        m_cache2Evictions = cache2Evictions;
+    }
+
     /**
      * Called after planning or failing to plan. Records timer and cache stats.
      *
@@ -194,9 +217,10 @@ public class PlannerStatsCollector extends StatsSource {
      * @param cacheUse     where the planned statement came from
      * @param partitionId  partition id
      */
-    public void endStatsCollection(long cache1Size, long cache2Size, CacheUse cacheUse, long partitionId) {
-        if (m_currentStartTime != null) {
-            long delta = System.nanoTime() - m_currentStartTime;
+    public synchronized void endStatsCollection(long cache1Size, long cache2Size, CacheUse cacheUse, long partitionId) {
+        Long startTime = m_currentStartTime.get();
+        if (startTime != null) {
+            long delta = System.nanoTime() - startTime;
             if (delta < 0) {
                 if (Math.abs(delta) > 1000000000) {
                     log.info("Planner statistics recorded a negative planning time larger than one second: " +
@@ -210,7 +234,7 @@ public class PlannerStatsCollector extends StatsSource {
                 m_lastMinPlanningTime = Math.min(delta, m_lastMinPlanningTime);
                 m_lastMaxPlanningTime = Math.max(delta, m_lastMaxPlanningTime);
             }
-            m_currentStartTime = null;
+            m_currentStartTime.remove();
         }
 
         m_cache1Level = cache1Size;
@@ -242,7 +266,7 @@ public class PlannerStatsCollector extends StatsSource {
      * @param values Values of each column of the row of stats. Used as output.
      */
     @Override
-    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+    protected synchronized void updateStatsRow(Object rowKey, Object rowValues[]) {
         super.updateStatsRow(rowKey, rowValues);
 
         rowValues[columnNameToIndex.get("PARTITION_ID")] = m_partitionId;
@@ -255,6 +279,8 @@ public class PlannerStatsCollector extends StatsSource {
         long cache2Hits  = m_cache2Hits;
         long cacheMisses = m_cacheMisses;
         long failureCount = m_failures;
+        long cache1Evictions = m_cache1Evictions;
+        long cache2Evictions = m_cache2Evictions;
 
         if (m_interval) {
             totalTimedExecutionTime = m_totalPlanningTime - m_lastTimedPlanningTime;
@@ -283,6 +309,12 @@ public class PlannerStatsCollector extends StatsSource {
             failureCount = m_failures - m_lastFailures;
             m_lastFailures = m_failures;
 
+            cache1Evictions = m_cache1Evictions - m_lastCache1Evictions;
+            m_lastCache1Evictions = m_cache1Evictions;
+
+            cache2Evictions = m_cache2Evictions - m_lastCache2Evictions;
+            m_lastCache2Evictions = m_cache2Evictions;
+
             m_lastInvocations = m_invocations;
         }
 
@@ -302,6 +334,8 @@ public class PlannerStatsCollector extends StatsSource {
             rowValues[columnNameToIndex.get("PLAN_TIME_AVG")] = 0L;
         }
         rowValues[columnNameToIndex.get("FAILURES")] = failureCount;
+        rowValues[columnNameToIndex.get("CACHE1_EVICTIONS")] = cache1Evictions;
+        rowValues[columnNameToIndex.get("CACHE2_EVICTIONS")] = cache2Evictions;
     }
 
     /**
@@ -322,6 +356,8 @@ public class PlannerStatsCollector extends StatsSource {
         columns.add(new ColumnInfo("PLAN_TIME_MAX", VoltType.BIGINT));
         columns.add(new ColumnInfo("PLAN_TIME_AVG", VoltType.BIGINT));
         columns.add(new ColumnInfo("FAILURES",      VoltType.BIGINT));
+        columns.add(new ColumnInfo("CACHE1_EVICTIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("CACHE2_EVICTIONS", VoltType.BIGINT));
     }
 
     @Override
@@ -0,0 +1,210 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.HdrHistogram_voltpatches.Histogram;
+import org.HdrHistogram_voltpatches.SingleWriterRecorder;
+import org.voltcore.utils.CompressionStrategySnappy;
+import org.voltdb.catalog.Procedure;
+
+/**
+ * Latency histograms of every invocation of a procedure and of every batch of SQL it executes,
+ * exposed as the PROCEDUREDETAIL statistics. There is one row for the whole procedure and one
+ * for each statement. The EE runs a batch as a unit, so a statement is charged the execution
+ * time of each voltExecuteSQL batch it is part of.
+ *
+ * Values are recorded by the site thread into a recorder and drained by the stats agent, the
+ * serialized histogram is included in each row so that the rows of all sites can be merged.
+ */
+class ProcedureDetailStatsCollector extends SiteStatsSource {
+
+    /** Name of the row covering whole invocations of the procedure */
+    static final String WHOLE_PROCEDURE = "<ALL>";
+
+    static final int SIGNIFICANT_DIGITS = 2;
+
+    /**
+     * Latencies of one procedure or statement. The recorder is written by the site thread,
+     * the rest is only touched by the stats agent while holding the lock on this object.
+     */
+    static class LatencyDetail {
+        final String m_name;
+        final SingleWriterRecorder m_recorder = new SingleWriterRecorder(SIGNIFICANT_DIGITS);
+        private Histogram m_sample;
+        private Histogram m_total;
+        private Histogram m_sinceLastInterval;
+
+        // site thread only, avoids charging a statement twice for one batch
+        long m_lastBatch = -1;
+
+        LatencyDetail(String name) {
+            m_name = name;
+        }
+
+        /**
+         * Drain the recorder and return the histogram to report, since the beginning
+         * or since the last interval poll.
+         */
+        synchronized Histogram poll(boolean interval) {
+            m_sample = m_recorder.getIntervalHistogram(m_sample);
+            if (m_total == null) {
+                m_total = new Histogram(SIGNIFICANT_DIGITS);
+                m_sinceLastInterval = new Histogram(SIGNIFICANT_DIGITS);
+            }
+            m_total.add(m_sample);
+            m_sinceLastInterval.add(m_sample);
+            if (interval) {
+                Histogram retval = m_sinceLastInterval.copy();
+                m_sinceLastInterval.reset();
+                return retval;
+            }
+            return m_total.copy();
+        }
+    }
+
+    private static class DetailRow {
+        final String m_statement;
+        final Histogram m_histogram;
+
+        DetailRow(String statement, Histogram histogram) {
+            m_statement = statement;
+            m_histogram = histogram;
+        }
+    }
+
+    private final Procedure m_catProc;
+    private final int m_partitionId;
+
+    private final LatencyDetail m_procedure = new LatencyDetail(WHOLE_PROCEDURE);
+    private final ConcurrentHashMap<String, LatencyDetail> m_statements =
+            new ConcurrentHashMap<String, LatencyDetail>();
+
+    // site thread only
+    private long m_batchStartTime;
+    private long m_batchCount = 0;
+    private final List<LatencyDetail> m_batchStatements = new ArrayList<LatencyDetail>();
+
+    public ProcedureDetailStatsCollector(long siteId, int partitionId, Procedure catProc) {
+        super(siteId, false);
+        m_partitionId = partitionId;
+        m_catProc = catProc;
+    }
+
+    /**
+     * Record the execution time of one invocation of the procedure, in nanoseconds
+     */
+    final void recordProcedure(long delta) {
+        if (delta >= 0) {
+            m_procedure.m_recorder.recordValue(delta);
+        }
+    }
+
+    /**
+     * Called before a batch of SQL executes with the statements it contains
+     */
+    final void beginBatch(List<ProcedureRunner.QueuedSQL> batch) {
+        m_batchCount++;
+        for (ProcedureRunner.QueuedSQL qs : batch) {
+            String name = qs.stmt.stmtName;
+            if (name == null) {
+                // ad hoc SQL is not in the catalog, there is nothing to name it by
+                continue;
+            }
+            LatencyDetail detail = m_statements.get(name);
+            if (detail == null) {
+                detail = new LatencyDetail(name);
+                m_statements.put(name, detail);
+            }
+            if (detail.m_lastBatch != m_batchCount) {
+                detail.m_lastBatch = m_batchCount;
+                m_batchStatements.add(detail);
+            }
+        }
+        m_batchStartTime = System.nanoTime();
+    }
+
+    /**
+     * Called when the batch started by the last {@link #beginBatch} is done, successfully or not
+     */
+    final void endBatch() {
+        final long delta = System.nanoTime() - m_batchStartTime;
+        if (delta >= 0) {
+            for (LatencyDetail detail : m_batchStatements) {
+                detail.m_recorder.recordValue(delta);
+            }
+        }
+        m_batchStatements.clear();
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<VoltTable.ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new VoltTable.ColumnInfo("PARTITION_ID", VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo("PROCEDURE", VoltType.STRING));
+        columns.add(new VoltTable.ColumnInfo("STATEMENT", VoltType.STRING));
+        columns.add(new VoltTable.ColumnInfo("INVOCATIONS", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("P50", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("P99", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("P999", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("MAX", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("HISTOGRAM", VoltType.VARBINARY));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        super.updateStatsRow(rowKey, rowValues);
+        DetailRow row = (DetailRow)rowKey;
+        Histogram h = row.m_histogram;
+        rowValues[columnNameToIndex.get("PARTITION_ID")] = m_partitionId;
+        rowValues[columnNameToIndex.get("PROCEDURE")] = m_catProc.getClassname();
+        rowValues[columnNameToIndex.get("STATEMENT")] = row.m_statement;
+        rowValues[columnNameToIndex.get("INVOCATIONS")] = h.getTotalCount();
+        rowValues[columnNameToIndex.get("P50")] = h.getValueAtPercentile(50.0);
+        rowValues[columnNameToIndex.get("P99")] = h.getValueAtPercentile(99.0);
+        rowValues[columnNameToIndex.get("P999")] = h.getValueAtPercentile(99.9);
+        rowValues[columnNameToIndex.get("MAX")] = h.getMaxValue();
+        rowValues[columnNameToIndex.get("HISTOGRAM")] = h.toCompressedBytes(CompressionStrategySnappy.INSTANCE);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        List<Object> rows = new ArrayList<Object>(m_statements.size() + 1);
+        addRow(rows, m_procedure, interval);
+        for (LatencyDetail detail : m_statements.values()) {
+            addRow(rows, detail, interval);
+        }
+        return rows.iterator();
+    }
+
+    private static void addRow(List<Object> rows, LatencyDetail detail, boolean interval) {
+        Histogram h = detail.poll(interval);
+        if (h.getTotalCount() > 0) {
+            rows.add(new DetailRow(detail.m_name, h));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return m_catProc.getTypeName();
+    }
+}
@@ -103,6 +103,8 @@ public class ProcedureRunner {
     protected final VoltProcedure m_procedure;
     protected Method m_procMethod;
     protected Class<?>[] m_paramTypes;
+    // reads serialized parameters into run() arguments, null for sysprocs
+    protected ParameterSet.SignatureReader m_paramReader;
 
     // per txn state (are reset after call)
     //
@@ -125,6 +127,7 @@ public class ProcedureRunner {
     // per procedure state and catalog info
     //
     protected ProcedureStatsCollector m_statsCollector;
+    protected ProcedureDetailStatsCollector m_detailStatsCollector;
     protected final Procedure m_catProc;
     protected final boolean m_isSysProc;
     protected final boolean m_isSinglePartition;
@@ -208,10 +211,19 @@ public class ProcedureRunner {
 
         m_procedure.init(this);
 
-        m_statsCollector = new ProcedureStatsCollector(
+        m_detailStatsCollector = new ProcedureDetailStatsCollector(
                 m_site.getCorrespondingSiteId(),
                 m_site.getCorrespondingPartitionId(),
                 m_catProc);
+        m_statsCollector = new ProcedureStatsCollector(
+                m_site.getCorrespondingSiteId(),
+                m_site.getCorrespondingPartitionId(),
+                m_catProc,
+                m_detailStatsCollector);
+        VoltDB.instance().getStatsAgent().registerStatsSource(
+                StatsSelector.PROCEDUREDETAIL,
+                site.getCorrespondingSiteId(),
+                m_detailStatsCollector);
         VoltDB.instance().getStatsAgent().registerStatsSource(
                 StatsSelector.PROCEDURE,
                 site.getCorrespondingSiteId(),
@@ -249,6 +261,24 @@ public class ProcedureRunner {
         return m_cachedRNG;
     }
 
+    /**
+     * The parameters of an invocation to pass to call(). Parameters that are still
+     * serialized are read straight into the run() argument types of this procedure,
+     * without building a ParameterSet. Sysprocs and invocations whose ParameterSet
+     * already exists use the ParameterSet.
+     */
+    public Object[] readParameters(StoredProcedureInvocation invocation) {
+        final ByteBuffer serializedParams = (m_paramReader != null) ? invocation.getUndeserializedParams() : null;
+        if (serializedParams == null) {
+            return invocation.getParams().toArray();
+        }
+        try {
+            return m_paramReader.read(serializedParams);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @SuppressWarnings("finally")
     public ClientResponseImpl call(Object... paramListIn) {
         // verify per-txn state has been reset
@@ -394,8 +424,7 @@ public class ProcedureRunner {
 
             // Record statistics for procedure call.
             StoredProcedureInvocation invoc = (m_txnState != null ? m_txnState.getInvocation() : null);
-            ParameterSet paramSet = (invoc != null ? invoc.getParams() : null);
-            m_statsCollector.endProcedure(abort, error, results, paramSet);
+            m_statsCollector.endProcedure(abort, error, results, invoc);
 
             // don't leave empty handed
             if (results == null) {
@@ -722,6 +751,7 @@ public class ProcedureRunner {
             // increment the number of voltExecuteSQL calls for this proc
             m_batchIndex++;
             m_site.setBatch(m_batchIndex);
+            m_detailStatsCollector.beginBatch(m_batch);
 
             // if batch is small (or reasonable size), do it in one go
             if (batchSize <= MAX_BATCH_SIZE) {
@@ -764,6 +794,7 @@ public class ProcedureRunner {
             }
         }
         finally {
+            m_detailStatsCollector.endBatch();
             m_batch.clear();
         }
     }
@@ -992,6 +1023,7 @@ public class ProcedureRunner {
 
         stmt.isReadOnly = catStmt.getReadonly();
         stmt.isReplicatedTableDML = catStmt.getReplicatedtabledml();
+        stmt.stmtName = catStmt.getTypeName();
 
         stmt.site = m_site;
 
@@ -1026,6 +1058,9 @@ public class ProcedureRunner {
             if (m_procMethod == null && m_language == Language.JAVA) {
                 throw new RuntimeException("No \"run\" method found in: " + m_procedure.getClass().getName());
             }
+            if (!m_isSysProc) {
+                m_paramReader = ParameterSet.readerForSignature(m_paramTypes);
+            }
             // iterate through the fields and deal with sql statements
             stmtMap = m_language.accept(sqlStatementsRetriever, this);
         }
@@ -1067,6 +1102,7 @@ public class ProcedureRunner {
 
                     m_paramTypes[param.getIndex()] = type.classFromType();
                 }
+                m_paramReader = ParameterSet.readerForSignature(m_paramTypes);
             }
             catch (Exception e) {
                 // shouldn't throw anything outside of the compiler
@@ -71,6 +71,12 @@ class ProcedureStatsCollector extends SiteStatsSource {
      */
     private long m_currentStartTime = -1;
 
+    /**
+     * Time the procedure was last started, taken on every invocation for the latency histograms
+     */
+    private long m_detailStartTime = -1;
+    private final ProcedureDetailStatsCollector m_detail;
+
     /**
      * Count of the number of aborts (user initiated or DB initiated)
      */
@@ -131,16 +137,31 @@ class ProcedureStatsCollector extends SiteStatsSource {
      * Constructor requires no args because it has access to the enclosing classes members.
      */
     public ProcedureStatsCollector(long siteId, int partitionId, Procedure catProc) {
+        this(siteId, partitionId, catProc, null);
+    }
+
+    /**
+     * @param detail If not null every invocation is timed and recorded in its histogram
+     */
+    public ProcedureStatsCollector(long siteId, int partitionId, Procedure catProc,
+            ProcedureDetailStatsCollector detail) {
         super(siteId, false);
         m_partitionId = partitionId;
         m_catProc = catProc;
+        m_detail = detail;
     }
 
     /**
      * Called when a procedure begins executing. Caches the time the procedure starts.
      */
     public final void beginProcedure() {
-        if (m_invocations % timeCollectionInterval == 0) {
+        if (m_detail != null) {
+            m_detailStartTime = System.nanoTime();
+            if (m_invocations % timeCollectionInterval == 0) {
+                m_currentStartTime = m_detailStartTime;
+            }
+        }
+        else if (m_invocations % timeCollectionInterval == 0) {
             m_currentStartTime = System.nanoTime();
         }
     }
@@ -153,11 +174,19 @@ class ProcedureStatsCollector extends SiteStatsSource {
             boolean aborted,
             boolean failed,
             VoltTable[] results,
-            ParameterSet parameterSet) {
+            StoredProcedureInvocation invocation) {
+        long endTime = -1;
+        if (m_detailStartTime > 0) {
+            endTime = System.nanoTime();
+            m_detail.recordProcedure(endTime - m_detailStartTime);
+            m_detailStartTime = -1;
+        }
         if (m_currentStartTime > 0) {
             // This is a sampled invocation.
             // Update timings and size statistics.
-            final long endTime = System.nanoTime();
+            if (endTime == -1) {
+                endTime = System.nanoTime();
+            }
             final long delta = endTime - m_currentStartTime;
             if (delta < 0)
             {
@@ -192,7 +221,7 @@ class ProcedureStatsCollector extends SiteStatsSource {
                 m_lastMinResultSize = Math.min(resultSize, m_lastMinResultSize);
                 m_lastMaxResultSize = Math.max(resultSize, m_lastMaxResultSize);
                 long parameterSetSize = (
-                        parameterSet != null ? parameterSet.getSerializedSize() : 0);
+                        invocation != null ? invocation.getSerializedParamsSize() : 0);
                 m_totalParameterSetSize += parameterSetSize;
                 m_minParameterSetSize = Math.min(parameterSetSize, m_minParameterSetSize);
                 m_maxParameterSetSize = Math.max(parameterSetSize, m_maxParameterSetSize);
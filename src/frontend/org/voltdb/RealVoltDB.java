@@ -107,6 +107,7 @@ import org.voltdb.dtxn.LatencyHistogramStats;
 import org.voltdb.dtxn.LatencyStats;
 import org.voltdb.dtxn.SiteTracker;
 import org.voltdb.export.ExportManager;
+import org.voltdb.export.ExportStats;
 import org.voltdb.importer.ImportManager;
 import org.voltdb.iv2.BaseInitiator;
 import org.voltdb.iv2.Cartographer;
@@ -132,6 +133,7 @@ import org.voltdb.utils.Encoder;
 import org.voltdb.utils.HTTPAdminListener;
 import org.voltdb.utils.LogKeys;
 import org.voltdb.utils.MiscUtils;
+import org.voltdb.utils.NumaTopology;
 import org.voltdb.utils.PlatformProperties;
 import org.voltdb.utils.SystemStatsCollector;
 import org.voltdb.utils.VoltFile;
@@ -147,6 +149,8 @@ import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 import com.google_voltpatches.common.util.concurrent.SettableFuture;
 
+import vanilla.java.affinity.impl.PosixJNAAffinity;
+
 /**
  * RealVoltDB initializes global server components, like the messaging
  * layer, ExecutionSite(s), and ClientInterface. It provides accessors
@@ -323,6 +327,9 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
 
     private ListeningExecutorService m_computationService;
 
+    // set when the threads are placed across the NUMA nodes
+    private NumaTopology m_numaTopology;
+
     private Thread m_configLogger;
 
     // methods accessed via the singleton
@@ -444,8 +451,13 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             m_configLogger = null;
             ActivePlanRepository.clear();
 
+            initializeNumaPlacement();
+
             // set up site structure
             final int computationThreads = Math.max(2, CoreUtils.availableProcessors() / 4);
+            if (m_numaTopology != null && m_config.m_computationCoreBindings.isEmpty()) {
+                m_numaTopology.assignBindings(computationThreads, m_config.m_computationCoreBindings);
+            }
             m_computationService =
                     CoreUtils.getListeningExecutorService(
                             "Computation service thread",
@@ -756,6 +768,8 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             m_commandLogStats = new CommandLogStats(m_commandLog);
             getStatsAgent().registerStatsSource(StatsSelector.COMMANDLOG, 0, m_commandLogStats);
 
+            getStatsAgent().registerStatsSource(StatsSelector.EXPORT, 0, new ExportStats());
+
             /*
              * Initialize the command log on rejoin and join before configuring the IV2
              * initiators.  This will prevent them from receiving transactions
@@ -853,6 +867,9 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
              */
             try {
                 final String serializedCatalog = m_catalogContext.catalog.serialize();
+                if (m_numaTopology != null && m_config.m_executionCoreBindings.isEmpty()) {
+                    m_numaTopology.assignBindings(m_iv2Initiators.size(), m_config.m_executionCoreBindings);
+                }
                 boolean createMpDRGateway = true;
                 for (Initiator iv2init : m_iv2Initiators.values()) {
                     iv2init.configure(
@@ -1645,6 +1662,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                 }
                 if (sysType.getTemptables() != null) {
                     hostLog.info("Max temptable size set to " + sysType.getTemptables().getMaxsize() + " mb");
+                    hostLog.info("Temptable spilling to disk " + (sysType.getTemptables().isSpill() ? "enabled" : "disabled"));
                 }
                 if (sysType.getSnapshot() != null) {
                     hostLog.info("Snapshot priority set to " + sysType.getSnapshot().getPriority() + " [0 - 10]");
@@ -1793,6 +1811,35 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         }
     }
 
+    /**
+     * With NUMA placement each site, computation and network thread is bound to the
+     * CPUs of one NUMA node, spreading the threads of each kind round robin across the
+     * nodes. Bindings given explicitly on the command line are left alone.
+     */
+    private void initializeNumaPlacement() {
+        m_numaTopology = null;
+        if (!m_config.m_numaBindings) {
+            return;
+        }
+        NumaTopology topology = NumaTopology.getLocal();
+        if (!topology.isPlaceable()) {
+            hostLog.info("NUMA placement is not used for host topology " + topology);
+            return;
+        }
+        if (!PosixJNAAffinity.LOADED) {
+            hostLog.warn("NUMA placement is not used, unable to set thread affinity on this platform");
+            return;
+        }
+        CoreUtils.setCoreBinder(new CoreUtils.CoreBinder() {
+            @Override
+            public void bindToCores(String cores) {
+                PosixJNAAffinity.INSTANCE.setAffinity(cores);
+            }
+        });
+        m_numaTopology = topology;
+        hostLog.info("Placing sites, computation and network threads across NUMA nodes " + topology);
+    }
+
     /**
      * Start the voltcore HostMessenger. This joins the node
      * to the existing cluster. In the non rejoin case, this
@@ -1821,6 +1868,9 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         hmconfig.zkInterface = m_config.m_zkInterface;
         hmconfig.deadHostTimeout = m_config.m_deadHostTimeoutMS;
         hmconfig.factory = new VoltDbMessageFactory();
+        if (m_numaTopology != null && m_config.m_networkCoreBindings.isEmpty()) {
+            m_numaTopology.assignBindings(hmconfig.networkThreads, m_config.m_networkCoreBindings);
+        }
         hmconfig.coreBindIds = m_config.m_networkCoreBindings;
         hmconfig.isPaused.set(m_config.m_isPaused);
 
@@ -2053,6 +2103,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         hostLog.info("Elastic duration set to " + sysSettings.getElasticduration() + " milliseconds");
         hostLog.info("Elastic throughput set to " + sysSettings.getElasticthroughput() + " mb/s");
         hostLog.info("Max temptable size set to " + sysSettings.getTemptablemaxsize() + " mb");
+        hostLog.info("Temptable spilling to disk " + (sysSettings.getTemptablespill() ? "enabled" : "disabled"));
         hostLog.info("Snapshot priority set to " + sysSettings.getSnapshotpriority() + " [0 - 10]");
 
         if (sysSettings.getQuerytimeout() > 0) {
@@ -64,6 +64,9 @@ public class SQLStmt {
 
     boolean inCatalog;
 
+    // name of the catalog statement, used to attribute latency in PROCEDUREDETAIL statistics
+    String stmtName;
+
     // used to clean up plans
     SiteProcedureConnection site;
 
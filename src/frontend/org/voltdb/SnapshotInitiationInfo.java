@@ -207,7 +207,7 @@ public class SnapshotInitiationInfo
             m_format = SnapshotFormat.getEnumIgnoreCase(formatString);
         } catch (IllegalArgumentException argException) {
             throw new Exception("@SnapshotSave format param is a " + m_format +
-                    " and should be one of [\"native\" | \"csv\"]");
+                    " and should be one of [\"native\" | \"columnar\" | \"csv\"]");
         }
         m_data = (String)params[0];
     }
@@ -483,6 +483,9 @@ public class SnapshotSaveAPI
         if (format == SnapshotFormat.NATIVE) {
             plan = new NativeSnapshotWritePlan();
         }
+        else if (format == SnapshotFormat.COLUMNAR) {
+            plan = new NativeSnapshotWritePlan(SnapshotFormat.COLUMNAR);
+        }
         else if (format == SnapshotFormat.CSV) {
             plan = new CSVSnapshotWritePlan();
         }
@@ -64,6 +64,10 @@ public class StatsAgent extends OpsAgent
             request.aggregateTables =
             aggregateProcedureOutputStats(request.aggregateTables);
             break;
+        case PROCEDUREDETAIL:
+            request.aggregateTables =
+            aggregateProcedureDetailStats(request.aggregateTables);
+            break;
 
         default:
         }
@@ -179,6 +183,29 @@ public class StatsAgent extends OpsAgent
         return new VoltTable[] { timeTable.sortByOutput("PROCEDURE_OUTPUT") };
     }
 
+    /**
+     * Produce PROCEDUREDETAIL aggregation, merging the latency histograms of all sites
+     */
+    private VoltTable[] aggregateProcedureDetailStats(VoltTable[] baseStats)
+    {
+        if (baseStats == null || baseStats.length != 1) {
+            return baseStats;
+        }
+
+        StatsProcDetailTable detailTable = new StatsProcDetailTable();
+        baseStats[0].resetRowPosition();
+        while (baseStats[0].advanceRow()) {
+            String pname = baseStats[0].getString("PROCEDURE");
+            detailTable.updateTable(!isReadOnlyProcedure(pname),
+                    baseStats[0].getLong("TIMESTAMP"),
+                    pname,
+                    baseStats[0].getString("STATEMENT"),
+                    baseStats[0].getLong("PARTITION_ID"),
+                    baseStats[0].getVarbinary("HISTOGRAM"));
+        }
+        return new VoltTable[] { detailTable.getTable() };
+    }
+
 
     /**
      * Need to release references to catalog related stats sources
@@ -188,6 +215,8 @@ public class StatsAgent extends OpsAgent
         m_procInfo = getProcInfoSupplier();
         registeredStatsSources.put(StatsSelector.PROCEDURE,
                                    new NonBlockingHashMap<Long, NonBlockingHashSet<StatsSource>>());
+        registeredStatsSources.put(StatsSelector.PROCEDUREDETAIL,
+                                   new NonBlockingHashMap<Long, NonBlockingHashSet<StatsSource>>());
     }
 
     @Override
@@ -397,6 +426,9 @@ public class StatsAgent extends OpsAgent
         case PROCEDUREPROFILE:
             stats = collectStats(StatsSelector.PROCEDURE, interval);
             break;
+        case PROCEDUREDETAIL:
+            stats = collectStats(StatsSelector.PROCEDUREDETAIL, interval);
+            break;
         case STARVATION:
             stats = collectStats(StatsSelector.STARVATION, interval);
             break;
@@ -436,6 +468,9 @@ public class StatsAgent extends OpsAgent
         case IMPORTER:
             stats = collectStats(StatsSelector.IMPORTER, interval);
             break;
+        case EXPORT:
+            stats = collectStats(StatsSelector.EXPORT, interval);
+            break;
         default:
             // Should have been successfully groomed in collectStatsImpl().  Log something
             // for our information but let the null check below return harmlessly
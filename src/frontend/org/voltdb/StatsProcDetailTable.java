@@ -0,0 +1,114 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.HdrHistogram_voltpatches.Histogram;
+import org.voltcore.utils.CompressionStrategySnappy;
+
+public class StatsProcDetailTable {
+
+    // One row per procedure and statement, keyed by procedure name then statement name
+    TreeMap<String, TreeMap<String, ProcDetailRow>> m_table = new TreeMap<String, TreeMap<String, ProcDetailRow>>();
+
+    // Latency histogram of one procedure or statement merged across sites and hosts
+    static class ProcDetailRow
+    {
+        long timestamp;
+        final String procedure;
+        final String statement;
+        final Histogram histogram = new Histogram(ProcedureDetailStatsCollector.SIGNIFICANT_DIGITS);
+
+        // track which partitions have been witnessed.
+        private final Set<Long> seenPartitions = new TreeSet<Long>();
+
+        public ProcDetailRow(long timestamp, String procedure, String statement)
+        {
+            this.timestamp = timestamp;
+            this.procedure = procedure;
+            this.statement = statement;
+        }
+
+        // Merge the histogram of one site into this row.
+        // dedup flag indicates if only one replica of each partition should be counted.
+        void updateWith(boolean dedup, long timestamp, long partition, AbstractHistogram in)
+        {
+            this.timestamp = Math.max(this.timestamp, timestamp);
+            if (!dedup || seenPartitions.add(partition)) {
+                histogram.add(in);
+            }
+        }
+    }
+
+    // Add or update the corresponding row. dedup flag indicates if we should dedup data based on partition for proc.
+    public void updateTable(boolean dedup, long timestamp, String procedure, String statement, long partition,
+            byte[] compressedHistogram)
+    {
+        TreeMap<String, ProcDetailRow> statements = m_table.get(procedure);
+        if (statements == null) {
+            statements = new TreeMap<String, ProcDetailRow>();
+            m_table.put(procedure, statements);
+        }
+        ProcDetailRow row = statements.get(statement);
+        if (row == null) {
+            row = new ProcDetailRow(timestamp, procedure, statement);
+            statements.put(statement, row);
+        }
+        row.updateWith(dedup, timestamp, partition,
+                AbstractHistogram.fromCompressedBytes(compressedHistogram, CompressionStrategySnappy.INSTANCE));
+    }
+
+    // Return table ordered by procedure, with the whole procedure ahead of its statements
+    public VoltTable getTable()
+    {
+        VoltTable result = new VoltTable(
+                new VoltTable.ColumnInfo("TIMESTAMP", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("PROCEDURE", VoltType.STRING),
+                new VoltTable.ColumnInfo("STATEMENT", VoltType.STRING),
+                new VoltTable.ColumnInfo("INVOCATIONS", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("P50", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("P99", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("P999", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("MAX", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("HISTOGRAM", VoltType.VARBINARY));
+        for (TreeMap<String, ProcDetailRow> statements : m_table.values()) {
+            ProcDetailRow whole = statements.get(ProcedureDetailStatsCollector.WHOLE_PROCEDURE);
+            if (whole != null) {
+                addRow(result, whole);
+            }
+            for (ProcDetailRow row : statements.values()) {
+                if (row != whole) {
+                    addRow(result, row);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void addRow(VoltTable result, ProcDetailRow row)
+    {
+        Histogram h = row.histogram;
+        result.addRow(row.timestamp, row.procedure, row.statement, h.getTotalCount(),
+                h.getValueAtPercentile(50.0), h.getValueAtPercentile(99.0), h.getValueAtPercentile(99.9),
+                h.getMaxValue(), h.toCompressedBytes(CompressionStrategySnappy.INSTANCE));
+    }
+}
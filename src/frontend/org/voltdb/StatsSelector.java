@@ -34,6 +34,7 @@ public enum StatsSelector {
     SNAPSHOTSTATUS,
     PROCEDUREINPUT,
     PROCEDUREOUTPUT,
+    PROCEDUREDETAIL,  // latency percentiles of each procedure and its statements
 
     /*
      * DRPRODUCERPARTITION and DRPRODUCERNODE are internal names
@@ -54,5 +55,6 @@ public enum StatsSelector {
     CPU,            // Return CPU Stats
 
     COMMANDLOG,     // return number of outstanding bytes and txns on this node
-    IMPORTER
+    IMPORTER,
+    EXPORT          // export overflow of each stream on this node
 }
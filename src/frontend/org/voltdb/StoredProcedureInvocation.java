@@ -170,6 +170,25 @@ public class StoredProcedureInvocation implements JSONString {
         return clientHandle;
     }
 
+    /**
+     * The serialized parameters if they have not been deserialized into a ParameterSet,
+     * null otherwise. Reading them does not create the ParameterSet.
+     */
+    ByteBuffer getUndeserializedParams() {
+        if (serializedParams == null || params.isDone()) {
+            return null;
+        }
+        return serializedParams.duplicate();
+    }
+
+    /** The serialized size of the parameters, without deserializing them if they are serialized */
+    int getSerializedParamsSize() {
+        if (serializedParams != null) {
+            return serializedParams.remaining();
+        }
+        return getParams().getSerializedSize();
+    }
+
     /** Read into an serialized parameter buffer to extract a single parameter */
     Object getParameterAtIndex(int partitionIndex) {
         try {
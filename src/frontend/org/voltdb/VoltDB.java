@@ -210,6 +210,8 @@ public class VoltDB {
         public final Queue<String> m_computationCoreBindings = new ArrayDeque<String>();
         public final Queue<String> m_executionCoreBindings = new ArrayDeque<String>();
         public String m_commandLogBinding = null;
+        /** Spread the sites, computation and network threads across the NUMA nodes */
+        public boolean m_numaBindings = false;
 
         /**
          * Allow a secret CLI config option to test multiple versions of VoltDB running together.
@@ -392,6 +394,8 @@ public class VoltDB {
                         m_executionCoreBindings.offer(core);
                     }
                     System.out.println("Execution bindings are " + m_executionCoreBindings);
+                } else if (arg.equals("numabindings")) {
+                    m_numaBindings = true;
                 } else if (arg.startsWith("commandlogbinding")) {
                     String binding = args[++i];
                     if (binding.split(",").length > 1) {
@@ -30,6 +30,7 @@ import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.json_voltpatches.JSONString;
 import org.json_voltpatches.JSONStringer;
+import org.json_voltpatches.JSONWriter;
 import org.voltdb.client.ClientUtils;
 import org.voltdb.common.Constants;
 import org.voltdb.types.GeographyPointValue;
@@ -1557,42 +1558,51 @@ public final class VoltTable extends VoltTableRow implements JSONString {
     public String toJSONString() {
         JSONStringer js = new JSONStringer();
         try {
+            toJSONWriter(js);
+        }
+        catch (JSONException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to serialized a table to JSON.", e);
+        }
+        return js.toString();
+    }
 
-            js.object();
+    /**
+     * Write the JSON representation of this table to a JSONWriter, a row at a time,
+     * without building the whole document in memory.
+     * @param js The JSONWriter to write to.
+     * @throws JSONException if the writer fails.
+     */
+    public void toJSONWriter(JSONWriter js) throws JSONException {
+        js.object();
 
-            // status code (1 byte)
-            js.key(JSON_STATUS_KEY).value(getStatusCode());
+        // status code (1 byte)
+        js.key(JSON_STATUS_KEY).value(getStatusCode());
 
-            // column schema
-            js.key(JSON_SCHEMA_KEY).array();
-            for (int i = 0; i < getColumnCount(); i++) {
-                js.object();
-                js.key(JSON_NAME_KEY).value(getColumnName(i));
-                js.key(JSON_TYPE_KEY).value(getColumnType(i).getValue());
-                js.endObject();
-            }
-            js.endArray();
+        // column schema
+        js.key(JSON_SCHEMA_KEY).array();
+        for (int i = 0; i < getColumnCount(); i++) {
+            js.object();
+            js.key(JSON_NAME_KEY).value(getColumnName(i));
+            js.key(JSON_TYPE_KEY).value(getColumnType(i).getValue());
+            js.endObject();
+        }
+        js.endArray();
 
-            // row data
-            js.key(JSON_DATA_KEY).array();
-            VoltTableRow row = cloneRow();
-            row.resetRowPosition();
-            while (row.advanceRow()) {
-                js.array();
-                for (int i = 0; i < getColumnCount(); i++) {
-                    row.putJSONRep(i, js);
-                }
-                js.endArray();
+        // row data
+        js.key(JSON_DATA_KEY).array();
+        VoltTableRow row = cloneRow();
+        row.resetRowPosition();
+        while (row.advanceRow()) {
+            js.array();
+            for (int i = 0; i < getColumnCount(); i++) {
+                row.putJSONRep(i, js);
             }
             js.endArray();
-
-            js.endObject();
         }
-        catch (JSONException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to serialized a table to JSON.", e);
-        }
-        return js.toString();
+        js.endArray();
+
+        js.endObject();
     }
 
     /**
@@ -152,6 +152,27 @@ public interface Client {
     public boolean callProcedureWithTimeout(ProcedureCallback callback, int queryTimeout, String procName, Object... parameters)
     throws IOException, NoConnectionsException;
 
+    /**
+     * <p>Asynchronously invoke a batch of procedures. The calls are routed as if they had been
+     * invoked one at a time, but the calls bound for the same server are serialized together
+     * and written to the network in a single write, which is much cheaper than a write per call
+     * for clients that submit many small invocations.</p>
+     *
+     * <p>The callback is invoked once per call with that call's response. Responses for calls
+     * sent to different servers may arrive in any order and on different threads.
+     * If there is backpressure this call will block until the whole batch is queued.
+     * If configureBlocking(false) is invoked then it will return immediately without
+     * queueing any of the calls. Check the return value to determine if queueing actually took place.</p>
+     *
+     * @param callback {@link ProcedureCallback} that will be invoked with each procedure's results.
+     * @param calls the procedures to invoke with their parameter values.
+     * @return <code>true</code> if the procedures were queued and <code>false</code> otherwise.
+     * @throws NoConnectionsException if this {@link Client} instance is not connected to any servers.
+     * @throws IOException if there is a Java network or connection problem.
+     */
+    public boolean callProcedureBatch(ProcedureCallback callback, List<ProcedureCall> calls)
+    throws IOException, NoConnectionsException;
+
     /**
      * <p>Asynchronously invoke a replicated procedure. If there is backpressure
      * this call will block until the invocation is queued. If configureBlocking(false) is invoked
@@ -51,6 +51,7 @@ public class ClientConfig {
     long m_procedureCallTimeoutNanos = DEFAULT_PROCEDURE_TIMOUT_NANOS;
     long m_connectionResponseTimeoutMS = DEFAULT_CONNECTION_TIMOUT_MS;
     boolean m_useClientAffinity = true;
+    boolean m_reuseResponseBuffers = false;
     Subject m_subject = null;
     boolean m_reconnectOnConnectionLoss;
     long m_initialConnectionRetryIntervalMS = DEFAULT_INITIAL_CONNECTION_RETRY_INTERVAL_MS;
@@ -322,6 +323,23 @@ public class ClientConfig {
         m_useClientAffinity = on;
     }
 
+    /**
+     * <p>Read responses into a buffer that is reused for every response on a connection
+     * instead of allocating a buffer per response. The {@link org.voltdb.VoltTable}s in a response
+     * are views over that buffer, so this cuts the garbage generated by applications
+     * that read many small results.</p>
+     *
+     * <p>With this enabled the response given to an asynchronous {@link ProcedureCallback}
+     * and its results are only valid until the callback returns. A callback that hands
+     * the response off to another thread must copy what it needs first. Synchronous
+     * calls are unaffected.</p>
+     *
+     * @param on Enable or disable reusing response buffers.
+     */
+    public void setReuseResponseBuffers(boolean on) {
+        m_reuseResponseBuffers = on;
+    }
+
     /**
      * <p>Attempts to reconnect to a node with retry after connection loss. See the {@link ReconnectStatusListener}.</p>
      *
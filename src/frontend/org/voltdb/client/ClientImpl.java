@@ -22,6 +22,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -104,6 +105,7 @@ public final class ClientImpl implements Client, ReplicaProcCaller {
                 config.m_useClientAffinity,
                 config.m_subject);
         m_distributer.addClientStatusListener(m_listener);
+        m_distributer.setReuseResponseBuffers(config.m_reuseResponseBuffers);
         String username = config.m_username;
         if (config.m_subject != null) {
             username = ClientConfig.getUserNameFromSubject(config.m_subject);
@@ -359,6 +361,65 @@ public final class ClientImpl implements Client, ReplicaProcCaller {
         return private_callProcedure(callback, 0, invocation, unit.toNanos(timeout));
     }
 
+    @Override
+    public boolean callProcedureBatch(ProcedureCallback callback, List<ProcedureCall> calls)
+    throws IOException, NoConnectionsException {
+        if (m_isShutdown) {
+            return false;
+        }
+        if (calls.isEmpty()) {
+            return true;
+        }
+        if (callback == null) {
+            callback = new NullCallback();
+        }
+
+        final List<ProcedureInvocation> invocations = new ArrayList<ProcedureInvocation>(calls.size());
+        for (ProcedureCall call : calls) {
+            final long handle = m_handle.getAndIncrement();
+            call.setHandle(handle);
+            invocations.add(new ProcedureInvocation(handle, call.getProcName(), call.getParameters()));
+        }
+
+        final long nowNanos = System.nanoTime();
+
+        //Blessed threads (the ones that invoke callbacks) are not subject to backpressure
+        boolean isBlessed = m_blessedThreadIds.contains(Thread.currentThread().getId());
+        if (!m_blockingQueue) {
+            return m_distributer.queue(invocations, callback, isBlessed, nowNanos,
+                    Distributer.USE_DEFAULT_CLIENT_TIMEOUT);
+        }
+        while (!m_distributer.queue(invocations, callback, isBlessed, nowNanos,
+                Distributer.USE_DEFAULT_CLIENT_TIMEOUT)) {
+            final long delta = Math.max(1, System.nanoTime() - nowNanos);
+            final long timeout = m_distributer.getProcedureTimeoutNanos();
+            try {
+                if (backpressureBarrier(nowNanos, timeout - delta)) {
+                    // Timed out waiting for backpressure to clear, none of the calls were queued
+                    for (int i = 0; i < invocations.size(); i++) {
+                        final ClientResponseImpl r = new ClientResponseImpl(
+                                ClientResponse.CONNECTION_TIMEOUT,
+                                ClientResponse.UNINITIALIZED_APP_STATUS_CODE,
+                                "",
+                                new VoltTable[0],
+                                String.format("No response received in the allotted time (set to %d ms).",
+                                        TimeUnit.NANOSECONDS.toMillis(timeout)));
+                        r.setClientHandle(invocations.get(i).getHandle());
+                        try {
+                            callback.clientCallback(r);
+                        } catch (Throwable t) {
+                            m_distributer.uncaughtException(callback, r, t);
+                        }
+                    }
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                throw new java.io.InterruptedIOException("Interrupted while invoking procedures asynchronously");
+            }
+        }
+        return true;
+    }
+
     /**
      * Asynchronously invoke a replicated procedure. If there is backpressure
      * this call will block until the invocation is queued. If configureBlocking(false) is invoked
@@ -792,6 +853,11 @@ public final class ClientImpl implements Client, ReplicaProcCaller {
 
     }
 
+    //Hidden method for getPartitionForProcedure
+    public long getPartitionForProcedure(String procName, Object[] params) {
+        return m_distributer.getPartitionForProcedure(procName, params);
+    }
+
     public HashinatorLiteType getHashinatorType() {
         return m_distributer.getHashinatorType();
     }
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -34,6 +35,7 @@ import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
@@ -55,6 +57,7 @@ import org.voltcore.network.VoltNetworkPool;
 import org.voltcore.network.VoltNetworkPool.IOStatsIntf;
 import org.voltcore.network.VoltProtocolHandler;
 import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.Pair;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.VoltTable;
@@ -98,6 +101,12 @@ class Distributer {
     private final boolean m_useMultipleThreads;
     private final boolean m_useClientAffinity;
 
+    // Read responses into one buffer per connection instead of one per response,
+    // the results handed to asynchronous callbacks are only valid until the callback returns
+    private boolean m_reuseResponseBuffers = false;
+    // Larger responses get a buffer of their own so a rare big result doesn't stay pinned
+    static final int MAX_REUSED_RESPONSE_BUFFER_SIZE = 256 * 1024;
+
     private static final class Procedure {
         final static int PARAMETER_NONE = -1;
         private final boolean multiPart;
@@ -354,6 +363,10 @@ class Distributer {
         private final NonBlockingHashMap<String, ClientStats> m_stats = new NonBlockingHashMap<String, ClientStats>();
         private Connection m_connection;
         private volatile boolean m_isConnected = true;
+        // Only touched by the network thread reading this connection
+        private ByteBuffer m_responseBuffer;
+        // Buffers and deferred serializations enqueued to the write stream
+        private final AtomicLong m_serializationsEnqueued = new AtomicLong(0);
 
         volatile long m_lastResponseTimeNanos = System.nanoTime();
         boolean m_outstandingPing = false;
@@ -369,6 +382,45 @@ class Distributer {
          */
         public void createWork(final long nowNanos, long handle, String name, ByteBuffer c,
                 ProcedureCallback callback, boolean ignoreBackpressure, long timeoutNanos) {
+            if (registerWork(nowNanos, handle, name, callback, ignoreBackpressure, timeoutNanos)) {
+                m_connection.writeStream().enqueue(c);
+                m_serializationsEnqueued.incrementAndGet();
+            }
+        }
+
+        /*
+         * Register the callbacks for a batch of invocations and write all of the
+         * invocations that are still eligible to go out with a single enqueue.
+         * The invocations are serialized by the network thread directly into its pooled
+         * buffers so there is no intermediate heap buffer per invocation.
+         * serializedSizes holds the size of each invocation including its length prefix,
+         * computed up front so that nothing can fail once callbacks are registered.
+         */
+        void createWork(final long nowNanos, List<ProcedureInvocation> invocations, int[] serializedSizes,
+                ProcedureCallback callback, boolean ignoreBackpressure, long timeoutNanos) {
+            final List<ProcedureInvocation> toWrite = new ArrayList<ProcedureInvocation>(invocations.size());
+            int serializedSize = 0;
+            for (int i = 0; i < invocations.size(); i++) {
+                final ProcedureInvocation invocation = invocations.get(i);
+                if (registerWork(nowNanos, invocation.getHandle(), invocation.getProcName(),
+                                 callback, ignoreBackpressure, timeoutNanos)) {
+                    toWrite.add(invocation);
+                    serializedSize += serializedSizes[i];
+                }
+            }
+            if (!toWrite.isEmpty()) {
+                m_connection.writeStream().enqueue(new InvocationBatch(toWrite, serializedSize));
+                m_serializationsEnqueued.incrementAndGet();
+            }
+        }
+
+        /*
+         * Do the rate limiting and callback bookkeeping for an invocation.
+         * Returns true if the invocation should be written to the connection,
+         * false if the callback has already been invoked with a timeout or connection lost response.
+         */
+        private boolean registerWork(final long nowNanos, long handle, String name,
+                ProcedureCallback callback, boolean ignoreBackpressure, long timeoutNanos) {
             assert(callback != null);
 
             //How long from the starting point in time to wait to get this stuff done
@@ -396,7 +448,7 @@ class Distributer {
                  */
                 final long deltaNanos = Math.max(1, System.nanoTime() - nowNanos);
                     invokeCallbackWithTimeout(name, callback, deltaNanos, afterRateLimitNanos,  timeoutNanos, handle, ignoreBackpressure);
-                return;
+                return false;
             }
 
             assert(m_callbacks.containsKey(handle) == false);
@@ -423,12 +475,13 @@ class Distributer {
             if (!m_isConnected) {
                 //Check if the disconnect or expiration already handled the callback
                 if (m_callbacks.remove(handle) == null) {
-                    return;
+                    return false;
                 }
-                final ClientResponse r = new ClientResponseImpl(
+                final ClientResponseImpl r = new ClientResponseImpl(
                         ClientResponse.CONNECTION_LOST, new VoltTable[0],
                         "Connection to database host (" + m_connection.getHostnameAndIPAndPort() +
                 ") was lost before a response was received");
+                r.setClientHandle(handle);
                 try {
                     callback.clientCallback(r);
                 } catch (Exception e) {
@@ -441,10 +494,9 @@ class Distributer {
 
                 //for bookkeeping, but it feels dishonest to call this here
                 m_rateLimiter.transactionResponseReceived(nowNanos, -1, ignoreBackpressure);
-                return;
-            } else {
-                m_connection.writeStream().enqueue(c);
+                return false;
             }
+            return true;
         }
 
         /*
@@ -531,6 +583,7 @@ class Distributer {
                 throw new RuntimeException(e);
             }
             m_connection.writeStream().enqueue(buf);
+            m_serializationsEnqueued.incrementAndGet();
             m_outstandingPing = true;
         }
 
@@ -575,6 +628,39 @@ class Distributer {
             stats.update(roundTripNanos, clusterRoundTrip, abort, failure, timeout);
         }
 
+        @Override
+        protected ByteBuffer allocateMessageBuffer(int length) {
+            if (!m_reuseResponseBuffers || length > MAX_REUSED_RESPONSE_BUFFER_SIZE) {
+                return super.allocateMessageBuffer(length);
+            }
+            if (m_responseBuffer == null || m_responseBuffer.capacity() < length) {
+                m_responseBuffer = ByteBuffer.allocate(Math.max(length, 8192));
+            }
+            m_responseBuffer.clear();
+            m_responseBuffer.limit(length);
+            return m_responseBuffer;
+        }
+
+        /*
+         * Give a response read into the reused buffer a copy of its own, for
+         * the callers that hold on to it past the end of handleMessage
+         */
+        private ClientResponseImpl detachResponse(ByteBuffer buf, ClientResponseImpl response) {
+            if (buf != m_responseBuffer) {
+                return response;
+            }
+            final ByteBuffer copy = ByteBuffer.allocate(buf.limit());
+            copy.put(buf.array(), buf.arrayOffset(), buf.limit());
+            copy.flip();
+            final ClientResponseImpl detached = new ClientResponseImpl();
+            try {
+                detached.initFromBuffer(copy);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return detached;
+        }
+
         @Override
         public void handleMessage(ByteBuffer buf, Connection c) {
             long nowNanos = System.nanoTime();
@@ -619,6 +705,7 @@ class Distributer {
             if (stuff == null) {
                 // also ignore internal (topology and procedure) calls
                 if (handle >= 0) {
+                    response = detachResponse(buf, response);
                     // notify any listeners of the late response
                     for (ClientStatusListenerExt listener : m_listeners) {
                         listener.lateProcedureResponse(
@@ -634,6 +721,10 @@ class Distributer {
                 final long deltaNanos = Math.max(1, nowNanos - callTimeNanos);
                 final ProcedureCallback cb = stuff.callback;
                 assert(cb != null);
+                if (cb instanceof SyncCallback) {
+                    // The synchronous caller reads the response on its own thread
+                    response = detachResponse(buf, response);
+                }
                 final byte status = response.getStatus();
                 boolean abort = false;
                 boolean error = false;
@@ -759,16 +850,16 @@ class Distributer {
             }
 
             //Invoke callbacks for all queued invocations with a failure response
-            final ClientResponse r =
-                new ClientResponseImpl(
-                        ClientResponse.CONNECTION_LOST, new VoltTable[0],
-                        "Connection to database host (" + m_connection.getHostnameAndIPAndPort() +
-                ") was lost before a response was received");
+            final String message = "Connection to database host (" + m_connection.getHostnameAndIPAndPort() +
+                ") was lost before a response was received";
             for (Map.Entry<Long, CallbackBookeeping> e : m_callbacks.entrySet()) {
                 //Check for race with other threads
                 if (m_callbacks.remove(e.getKey()) == null) {
                     continue;
                 }
+                final ClientResponseImpl r =
+                    new ClientResponseImpl(ClientResponse.CONNECTION_LOST, new VoltTable[0], message);
+                r.setClientHandle(e.getKey());
                 final CallbackBookeeping callBk = e.getValue();
                 try {
                     callBk.callback.clientCallback(r);
@@ -1025,132 +1116,299 @@ class Distributer {
         assert(cb != null);
 
         NodeConnection cxn = null;
-        boolean backpressure = true;
 
         /*
          * Synchronization is necessary to ensure that m_connections is not modified
          * as well as to ensure that backpressure is reported correctly
          */
         synchronized (this) {
-            final int totalConnections = m_connections.size();
+            if (m_connections.isEmpty()) {
+                throw new NoConnectionsException("No connections.");
+            }
+
+            final Route route = pickConnection(invocation, ignoreBackpressure, m_nextConnection);
+            cxn = route.m_cxn;
+            if (cxn == null) {
+                for (ClientStatusListenerExt s : m_listeners) {
+                    s.backpressure(true);
+                }
+            }
+            else {
+                commitRoute(route);
+            }
+        }
 
-            if (totalConnections == 0) {
+        /*
+         * Do the heavy weight serialization outside the synchronized block.
+         * createWork synchronizes on an individual connection which allows for more concurrency
+         */
+        if (cxn != null) {
+            ByteBuffer buf = null;
+            try {
+                buf = serializeSPI(invocation);
+            } catch (Exception e) {
+                Throwables.propagate(e);
+            }
+            cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure, timeoutNanos);
+        }
+
+        return cxn != null;
+    }
+
+    /**
+     * Queue a batch of invocations, routing each one as {@link #queue(ProcedureInvocation, ProcedureCallback,
+     * boolean, long, long)} would and writing the invocations bound for each connection with a single enqueue.
+     * The batch is queued all or nothing: if any invocation would hit backpressure none are queued.
+     * @param invocations
+     * @param cb Callback invoked with the response of each invocation
+     * @param ignoreBackpressure If true the invocations will be queued even if there is backpressure
+     * @param nowNanos Current time in nanoseconds using System.nanoTime
+     * @param timeoutNanos nanoseconds from nowNanos where timeout should fire
+     * @return True if the batch was queued and false if it was not queued due to backpressure
+     * @throws NoConnectionsException
+     */
+    boolean queue(
+            List<ProcedureInvocation> invocations,
+            ProcedureCallback cb,
+            final boolean ignoreBackpressure, final long nowNanos, final long timeoutNanos)
+            throws NoConnectionsException {
+        assert(invocations != null);
+        assert(cb != null);
+
+        /*
+         * Size every invocation before anything is routed or registered, so that an
+         * invocation that can't be serialized fails the batch without side effects.
+         */
+        final int[] serializedSizes = new int[invocations.size()];
+        for (int i = 0; i < serializedSizes.length; i++) {
+            serializedSizes[i] = 4 + invocations.get(i).getSerializedSize();
+        }
+
+        // Insertion ordered so connections are written to in the order of their first invocation
+        final Map<NodeConnection, List<Integer>> batches = new LinkedHashMap<NodeConnection, List<Integer>>();
+
+        synchronized (this) {
+            if (m_connections.isEmpty()) {
                 throw new NoConnectionsException("No connections.");
             }
 
             /*
-             * Check if the master for the partition is known. No back pressure check to ensure correct
-             * routing, but backpressure will be managed anyways. This is where we guess partition based on client
-             * affinity and known topology (hashinator initialized).
+             * Route the whole batch before touching the round robin position or the
+             * affinity stats, a batch that hits backpressure leaves no trace.
              */
-            if (m_useClientAffinity && (m_hashinator != null)) {
-                final Procedure procedureInfo = m_procedureInfo.get(invocation.getProcName());
-                Integer hashedPartition = -1;
-
-                if (procedureInfo != null) {
-                    hashedPartition = Constants.MP_INIT_PID;
-                    if (( ! procedureInfo.multiPart) &&
-                        // User may have passed too few parameters to allow dispatching.
-                        // Avoid an indexing error here to fall through to the proper ProcCallException.
-                            (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
-                        hashedPartition = m_hashinator.getHashedPartitionForParameter(
-                                procedureInfo.partitionParameterType,
-                                invocation.getPartitionParamValue(procedureInfo.partitionParameter));
+            final List<Route> routes = new ArrayList<Route>(invocations.size());
+            int nextConnection = m_nextConnection;
+            for (ProcedureInvocation invocation : invocations) {
+                final Route route = pickConnection(invocation, ignoreBackpressure, nextConnection);
+                if (route.m_cxn == null) {
+                    for (ClientStatusListenerExt s : m_listeners) {
+                        s.backpressure(true);
                     }
-                    /*
-                     * If the procedure is read only and single part, load balance across replicas
-                     */
-                    if (!procedureInfo.multiPart && procedureInfo.readOnly) {
-                        NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
-                        if (partitionReplicas != null && partitionReplicas.length > 0) {
-                            cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
-                            if (cxn.hadBackPressure()) {
-                                //See if there is one without backpressure, make sure it's still connected
-                                for (NodeConnection nc : partitionReplicas) {
-                                    if (!nc.hadBackPressure() && nc.m_isConnected) {
-                                        cxn = nc;
-                                        break;
-                                    }
+                    return false;
+                }
+                routes.add(route);
+                nextConnection = route.m_nextConnection;
+            }
+
+            for (int i = 0; i < routes.size(); i++) {
+                final Route route = routes.get(i);
+                commitRoute(route);
+                List<Integer> batch = batches.get(route.m_cxn);
+                if (batch == null) {
+                    batch = new ArrayList<Integer>();
+                    batches.put(route.m_cxn, batch);
+                }
+                batch.add(i);
+            }
+        }
+
+        for (Map.Entry<NodeConnection, List<Integer>> e : batches.entrySet()) {
+            final List<ProcedureInvocation> batch = new ArrayList<ProcedureInvocation>(e.getValue().size());
+            final int[] batchSizes = new int[e.getValue().size()];
+            for (int i = 0; i < batchSizes.length; i++) {
+                batch.add(invocations.get(e.getValue().get(i)));
+                batchSizes[i] = serializedSizes[e.getValue().get(i)];
+            }
+            e.getKey().createWork(nowNanos, batch, batchSizes, cb, ignoreBackpressure, timeoutNanos);
+        }
+        return true;
+    }
+
+    /*
+     * Where an invocation is to be sent. Picking a route has no side effects,
+     * the round robin position and affinity stats are updated by commitRoute()
+     * once the invocation is actually going to be queued.
+     */
+    private static class Route {
+        // null if the invocation can't be sent because of backpressure
+        final NodeConnection m_cxn;
+        // the round robin position after this invocation
+        final int m_nextConnection;
+        // the partition the invocation was hashed to, null without client affinity
+        final Integer m_hashedPartition;
+        final boolean m_affinity;
+        final boolean m_readOnly;
+
+        Route(NodeConnection cxn, int nextConnection, Integer hashedPartition,
+                boolean affinity, boolean readOnly) {
+            m_cxn = cxn;
+            m_nextConnection = nextConnection;
+            m_hashedPartition = hashedPartition;
+            m_affinity = affinity;
+            m_readOnly = readOnly;
+        }
+    }
+
+    /*
+     * Choose the connection an invocation should be sent on, using client affinity if the
+     * topology is known and falling back to round robin from nextConnection. The route has
+     * no connection if the chosen connection has backpressure. Must be called while
+     * synchronized on this.
+     */
+    private Route pickConnection(ProcedureInvocation invocation, boolean ignoreBackpressure, int nextConnection) {
+        final int totalConnections = m_connections.size();
+        NodeConnection cxn = null;
+        boolean backpressure = true;
+        Integer hashedPartition = null;
+        boolean affinity = false;
+        boolean readOnly = false;
+
+        /*
+         * Check if the master for the partition is known. No back pressure check to ensure correct
+         * routing, but backpressure will be managed anyways. This is where we guess partition based on client
+         * affinity and known topology (hashinator initialized).
+         */
+        if (m_useClientAffinity && (m_hashinator != null)) {
+            final Procedure procedureInfo = m_procedureInfo.get(invocation.getProcName());
+            hashedPartition = -1;
+
+            if (procedureInfo != null) {
+                hashedPartition = Constants.MP_INIT_PID;
+                if (( ! procedureInfo.multiPart) &&
+                    // User may have passed too few parameters to allow dispatching.
+                    // Avoid an indexing error here to fall through to the proper ProcCallException.
+                        (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
+                    hashedPartition = m_hashinator.getHashedPartitionForParameter(
+                            procedureInfo.partitionParameterType,
+                            invocation.getPartitionParamValue(procedureInfo.partitionParameter));
+                }
+                /*
+                 * If the procedure is read only and single part, load balance across replicas
+                 */
+                if (!procedureInfo.multiPart && procedureInfo.readOnly) {
+                    NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
+                    if (partitionReplicas != null && partitionReplicas.length > 0) {
+                        cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
+                        if (cxn.hadBackPressure()) {
+                            //See if there is one without backpressure, make sure it's still connected
+                            for (NodeConnection nc : partitionReplicas) {
+                                if (!nc.hadBackPressure() && nc.m_isConnected) {
+                                    cxn = nc;
+                                    break;
                                 }
                             }
-                            if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                                backpressure = false;
-                            }
                         }
-                    } else {
-                        /*
-                         * Writes have to go to the master
-                         */
-                        cxn = m_partitionMasters.get(hashedPartition);
-                        if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
+                        if (!cxn.hadBackPressure() || ignoreBackpressure) {
                             backpressure = false;
                         }
                     }
-                }
-                if (cxn != null && !cxn.m_isConnected) {
-                    // Would be nice to log something here
-                    // Client affinity picked a connection that was actually disconnected.  Reset to null
-                    // and let the round-robin choice pick a connection
-                    cxn = null;
-                }
-                ClientAffinityStats stats = m_clientAffinityStats.get(hashedPartition);
-                if (stats == null) {
-                    stats = new ClientAffinityStats(hashedPartition, 0, 0, 0, 0);
-                    m_clientAffinityStats.put(hashedPartition, stats);
-                }
-                if (cxn != null) {
-                    if (procedureInfo != null && procedureInfo.readOnly) {
-                        stats.addAffinityRead();
-                    }
-                    else {
-                        stats.addAffinityWrite();
-                    }
-                }
-                // account these here because we lose the partition ID and procedure info once we
-                // bust out of this scope.
-                else {
-                    if (procedureInfo != null && procedureInfo.readOnly) {
-                        stats.addRrRead();
-                    }
-                    else {
-                        stats.addRrWrite();
-                    }
-                }
-            }
-            if (cxn == null) {
-                for (int i=0; i < totalConnections; ++i) {
-                    cxn = m_connections.get(Math.abs(++m_nextConnection % totalConnections));
-                    if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                        // serialize and queue the invocation
+                } else {
+                    /*
+                     * Writes have to go to the master
+                     */
+                    cxn = m_partitionMasters.get(hashedPartition);
+                    if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
                         backpressure = false;
-                        break;
                     }
                 }
             }
-
-            if (backpressure) {
+            if (cxn != null && !cxn.m_isConnected) {
+                // Would be nice to log something here
+                // Client affinity picked a connection that was actually disconnected.  Reset to null
+                // and let the round-robin choice pick a connection
                 cxn = null;
-                for (ClientStatusListenerExt s : m_listeners) {
-                    s.backpressure(true);
+            }
+            // remember these for the stats because we lose the partition ID and procedure info
+            // once we bust out of this scope.
+            affinity = cxn != null;
+            readOnly = procedureInfo != null && procedureInfo.readOnly;
+        }
+        if (cxn == null) {
+            for (int i=0; i < totalConnections; ++i) {
+                cxn = m_connections.get(Math.abs(++nextConnection % totalConnections));
+                if (!cxn.hadBackPressure() || ignoreBackpressure) {
+                    // serialize and queue the invocation
+                    backpressure = false;
+                    break;
                 }
             }
         }
 
-        /*
-         * Do the heavy weight serialization outside the synchronized block.
-         * createWork synchronizes on an individual connection which allows for more concurrency
-         */
-        if (cxn != null) {
-            ByteBuffer buf = null;
-            try {
-                buf = serializeSPI(invocation);
-            } catch (Exception e) {
-                Throwables.propagate(e);
+        return new Route(backpressure ? null : cxn, nextConnection, hashedPartition, affinity, readOnly);
+    }
+
+    /*
+     * Account for an invocation that is about to be queued on its route.
+     * Must be called while synchronized on this.
+     */
+    private void commitRoute(Route route) {
+        m_nextConnection = route.m_nextConnection;
+        if (route.m_hashedPartition == null) {
+            return;
+        }
+        ClientAffinityStats stats = m_clientAffinityStats.get(route.m_hashedPartition);
+        if (stats == null) {
+            stats = new ClientAffinityStats(route.m_hashedPartition, 0, 0, 0, 0);
+            m_clientAffinityStats.put(route.m_hashedPartition, stats);
+        }
+        if (route.m_affinity) {
+            if (route.m_readOnly) {
+                stats.addAffinityRead();
+            }
+            else {
+                stats.addAffinityWrite();
             }
-            cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure, timeoutNanos);
         }
+        else {
+            if (route.m_readOnly) {
+                stats.addRrRead();
+            }
+            else {
+                stats.addRrWrite();
+            }
+        }
+    }
 
-        return !backpressure;
+    /*
+     * Writes a batch of invocations as one message on the network thread,
+     * each invocation with its own length prefix as the server expects.
+     */
+    private static class InvocationBatch implements DeferredSerialization {
+        private final List<ProcedureInvocation> m_invocations;
+        private final int m_serializedSize;
+
+        InvocationBatch(List<ProcedureInvocation> invocations, int serializedSize) {
+            m_invocations = invocations;
+            m_serializedSize = serializedSize;
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf) throws IOException {
+            for (ProcedureInvocation invocation : m_invocations) {
+                final int lengthPosition = buf.position();
+                buf.position(lengthPosition + 4);
+                invocation.flattenToBuffer(buf);
+                buf.putInt(lengthPosition, buf.position() - lengthPosition - 4);
+            }
+        }
+
+        @Override
+        public void cancel() {}
+
+        @Override
+        public int getSerializedSize() {
+            return m_serializedSize;
+        }
     }
 
     /**
@@ -1216,6 +1474,35 @@ class Distributer {
         return retval;
     }
 
+    /*
+     * The number of buffers or deferred serializations enqueued to each connection so far,
+     * by connection id. A batch of invocations for one connection is a single serialization.
+     */
+    Map<Long, Long> getSerializationsEnqueuedSnapshot() {
+        Map<Long, Long> retval = new TreeMap<Long, Long>();
+        for (NodeConnection conn : m_connections) {
+            retval.put(conn.connectionId(), conn.m_serializationsEnqueued.get());
+        }
+        return retval;
+    }
+
+    /*
+     * The number of write buffers each connection has drained to its channel so far, by
+     * connection id. Serializations enqueued together may be copied into the same pooled
+     * write buffer and a large one spans several, so this counts buffers, not serializations.
+     */
+    Map<Long, Long> getMessagesWrittenSnapshot() throws ExecutionException, InterruptedException {
+        Map<Long, Pair<String, long[]>> ioStats = m_network.getIOStats(false, ImmutableList.<IOStatsIntf>of());
+        Map<Long, Long> retval = new TreeMap<Long, Long>();
+        for (NodeConnection conn : m_connections) {
+            Pair<String, long[]> perConnIOStats = ioStats.get(conn.connectionId());
+            if (perConnIOStats != null) {
+                retval.put(conn.connectionId(), perConnIOStats.getSecond()[3]);
+            }
+        }
+        return retval;
+    }
+
     Map<Long, ClientIOStats> getIOStatsSnapshot() {
         Map<Long, ClientIOStats> retval = new TreeMap<Long, ClientIOStats>();
 
@@ -1381,6 +1668,35 @@ class Distributer {
         return m_hashinator.getHashedPartitionForParameter(typeValue, value);
     }
 
+    /**
+     * The partition whose master connection calls to a procedure with the given parameters are
+     * pinned to, so that calls for the same partition run in the order they were queued. Returns
+     * -1 if the call may take another route: the procedure is multi-partition or read only
+     * (reads are spread across the replicas), its partitioning or the topology is not known,
+     * client affinity is off, or the master connection of the partition is not connected.
+     *
+     * @param procName name of the procedure
+     * @param params parameters of the call
+     * @return
+     */
+    public synchronized long getPartitionForProcedure(String procName, Object[] params) {
+        if (!m_useClientAffinity || m_hashinator == null) {
+            return -1;
+        }
+        final Procedure procedureInfo = m_procedureInfo.get(procName);
+        if (procedureInfo == null || procedureInfo.multiPart || procedureInfo.readOnly ||
+                procedureInfo.partitionParameter >= params.length) {
+            return -1;
+        }
+        final int partition = m_hashinator.getHashedPartitionForParameter(procedureInfo.partitionParameterType,
+                params[procedureInfo.partitionParameter]);
+        final NodeConnection master = m_partitionMasters.get(partition);
+        if (master == null || !master.m_isConnected) {
+            return -1;
+        }
+        return partition;
+    }
+
     public HashinatorLiteType getHashinatorType() {
         if (m_hashinator == null) {
             return HashinatorLiteType.LEGACY;
@@ -1399,4 +1715,8 @@ class Distributer {
     long getProcedureTimeoutNanos() {
         return m_procedureCallTimeoutNanos;
     }
+
+    void setReuseResponseBuffers(boolean reuse) {
+        m_reuseResponseBuffers = reuse;
+    }
 }
@@ -0,0 +1,59 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+/**
+ * A procedure name and its parameter values, one element of a batch passed to
+ * {@link Client#callProcedureBatch(ProcedureCallback, java.util.List)}.
+ * The client assigns the handle when the batch is queued.
+ */
+public class ProcedureCall {
+
+    private final String m_procName;
+    private final Object[] m_parameters;
+    private long m_handle = -1;
+
+    /**
+     * @param procName class name (not qualified by package) of the procedure to execute.
+     * @param parameters vararg list of procedure's parameter values.
+     */
+    public ProcedureCall(String procName, Object... parameters) {
+        m_procName = procName;
+        m_parameters = parameters;
+    }
+
+    public String getProcName() {
+        return m_procName;
+    }
+
+    public Object[] getParameters() {
+        return m_parameters;
+    }
+
+    /**
+     * The client handle of the call, which the response to it carries as well,
+     * or -1 if the call has not been queued.
+     */
+    public long getHandle() {
+        return m_handle;
+    }
+
+    void setHandle(long handle) {
+        m_handle = handle;
+    }
+}
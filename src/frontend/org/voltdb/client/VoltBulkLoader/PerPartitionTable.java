@@ -26,7 +26,9 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
@@ -68,6 +70,21 @@ public class PerPartitionTable {
     final VoltType[] m_columnTypes;
     //Size of the batches this table submits (minimum of all values provided by VoltBulkLoaders)
     volatile int m_minBatchTriggerSize;
+    //Size of the next batch, below m_minBatchTriggerSize while adaptive sizing is backing off
+    volatile int m_batchSize;
+    //Adaptive batch sizing is disabled while the latency target is 0
+    volatile long m_latencyTargetNanos = 0;
+    //Guards the adaptive batch sizing state. It is updated from the network thread, so it
+    //must not share the monitor insertRowInTable holds while blocked on a full queue.
+    private final Object m_latencyLock = new Object();
+    //Moving average of the round trip time of recent batches
+    private double m_avgLatencyNanos = 0;
+    //Bounds the batches in flight for this partition, null if unbounded
+    volatile Semaphore m_inFlight = null;
+    //Set while a task to drain full batches is queued or running
+    private final AtomicBoolean m_drainScheduled = new AtomicBoolean(false);
+    //Table used to retry the rows of a failed batch one at a time
+    private final VoltTable m_failedRowTable;
     //Insert procedure name
     final String m_procName;
     //Name of table
@@ -79,6 +96,8 @@ public class PerPartitionTable {
     // batch of rows to m_failedQueue for row by row processing on m_failureProcessor.
     class PartitionProcedureCallback implements ProcedureCallback {
         final List<VoltBulkLoaderRow> m_batchRowList;
+        // Permit held by this batch while it is in flight
+        Semaphore m_permit = null;
 
         PartitionProcedureCallback(List<VoltBulkLoaderRow> batchRowList) {
             m_batchRowList = batchRowList;
@@ -87,6 +106,9 @@ public class PerPartitionTable {
         // Called by Client to inform us of the status of the bulk insert.
         @Override
         public void clientCallback(ClientResponse response) throws InterruptedException {
+            if (m_permit != null) {
+                m_permit.release();
+            }
             if (response.getStatus() != ClientResponse.SUCCESS) {
                 // Queue up all rows for individual processing by originating BulkLoader's FailureProcessor.
                 m_es.execute(new Runnable() {
@@ -101,6 +123,7 @@ public class PerPartitionTable {
                 });
             }
             else {
+                recordBatchLatency(response.getClientRoundtripNanos());
                 m_batchRowList.get(0).m_loader.m_outstandingRowCount.addAndGet(-1 * m_batchRowList.size());
                 m_batchRowList.get(0).m_loader.m_loaderCompletedCnt.addAndGet(m_batchRowList.size());
             }
@@ -116,6 +139,7 @@ public class PerPartitionTable {
         m_upsert = (byte) (firstLoader.m_upsert ? 1:0);
         m_partitionRowQueue = new LinkedBlockingQueue<VoltBulkLoaderRow>(minBatchTriggerSize*5);
         m_minBatchTriggerSize = minBatchTriggerSize;
+        m_batchSize = minBatchTriggerSize;
         m_columnInfo = firstLoader.m_colInfo;
         m_partitionedColumnIndex = firstLoader.m_partitionedColumnIndex;
         m_columnTypes = firstLoader.m_columnTypes;
@@ -123,6 +147,7 @@ public class PerPartitionTable {
         m_tableName = tableName;
 
         table = new VoltTable(m_columnInfo);
+        m_failedRowTable = new VoltTable(m_columnInfo);
 
         m_es = CoreUtils.getSingleThreadExecutor(tableName + "-" + partitionId);
     }
@@ -131,6 +156,9 @@ public class PerPartitionTable {
         if (m_minBatchTriggerSize >= minBatchTriggerSize) {
             // This will generate a batch of arbitrary length when the next insert is made
             m_minBatchTriggerSize = minBatchTriggerSize;
+            synchronized (m_latencyLock) {
+                m_batchSize = Math.min(m_batchSize, minBatchTriggerSize);
+            }
             return true;
         }
         else {
@@ -138,21 +166,70 @@ public class PerPartitionTable {
         }
      }
 
+    /**
+     * Let the batch size adapt to the round trip time of the batches: halve it while the
+     * average exceeds the target and grow it back towards the configured size while batches
+     * take less than half the target. A target of 0 restores fixed size batches.
+     */
+    void setLatencyTarget(long latencyTargetNanos) {
+        synchronized (m_latencyLock) {
+            m_latencyTargetNanos = Math.max(0, latencyTargetNanos);
+            m_avgLatencyNanos = 0;
+            m_batchSize = m_minBatchTriggerSize;
+        }
+    }
+
+    /**
+     * Bound the number of batches of this partition waiting for a response, 0 for no bound.
+     * Once the bound is reached the partition stops converting rows until a batch completes.
+     */
+    void setMaxInFlightBatches(int maxInFlightBatches) {
+        m_inFlight = maxInFlightBatches > 0 ? new Semaphore(maxInFlightBatches) : null;
+    }
+
+    private void recordBatchLatency(long nanos) {
+        if (m_latencyTargetNanos <= 0 || nanos < 0) {
+            return;
+        }
+        synchronized (m_latencyLock) {
+            final long target = m_latencyTargetNanos;
+            if (target <= 0) {
+                return;
+            }
+            m_avgLatencyNanos = (m_avgLatencyNanos == 0) ? nanos : (0.8 * m_avgLatencyNanos + 0.2 * nanos);
+            final int maxSize = m_minBatchTriggerSize;
+            if (m_avgLatencyNanos > target) {
+                m_batchSize = Math.max(Math.max(1, maxSize / 16), m_batchSize / 2);
+                // batches already in flight were built at the old size, start the average over
+                m_avgLatencyNanos = 0;
+            }
+            else if (m_avgLatencyNanos < target / 2) {
+                m_batchSize = Math.min(maxSize, m_batchSize + Math.max(1, maxSize / 16));
+            }
+        }
+    }
+
     /**
      * Synchronized so that when the a single batch is filled up, we only queue one task to
      * drain the queue. The task will drain the queue until it doesn't contain a single batch.
      */
     synchronized void insertRowInTable(final VoltBulkLoaderRow nextRow) throws InterruptedException {
         m_partitionRowQueue.put(nextRow);
-        if (m_partitionRowQueue.size() == m_minBatchTriggerSize) {
+        if (m_partitionRowQueue.size() >= m_batchSize && m_drainScheduled.compareAndSet(false, true)) {
             m_es.execute(new Runnable() {
                 @Override
                 public void run() {
                     try {
-                        while (m_partitionRowQueue.size() >= m_minBatchTriggerSize) {
-                            loadTable(buildTable(), table);
-                        }
+                        do {
+                            while (m_partitionRowQueue.size() >= m_batchSize) {
+                                loadTable(buildTable(), table);
+                            }
+                            m_drainScheduled.set(false);
+                            // A row inserted after the last check did not schedule a drain
+                        } while (m_partitionRowQueue.size() >= m_batchSize &&
+                                m_drainScheduled.compareAndSet(false, true));
                     } catch (Exception e) {
+                        m_drainScheduled.set(false);
                         loaderLog.error("Failed to load batch", e);
                     }
                 }
@@ -169,7 +246,12 @@ public class PerPartitionTable {
         return m_es.submit(new Callable<Boolean>() {
             @Override
             public Boolean call() throws Exception {
-                loadTable(buildTable(), table);
+                // The batch size may have backed off below what is queued
+                int pending = m_partitionRowQueue.size();
+                do {
+                    pending -= m_batchSize;
+                    loadTable(buildTable(), table);
+                } while (pending > 0);
                 return true;
             }
         });
@@ -186,7 +268,8 @@ public class PerPartitionTable {
     }
 
     private void reinsertFailed(List<VoltBulkLoaderRow> rows) throws Exception {
-        VoltTable tmpTable = new VoltTable(m_columnInfo);
+        // Only used on m_es, and loadTable() clears it once the row is serialized
+        VoltTable tmpTable = m_failedRowTable;
         for (final VoltBulkLoaderRow row : rows) {
             // No need to check error here if a correctedLine has come here it was
             // previously successful.
@@ -222,8 +305,9 @@ public class PerPartitionTable {
     }
 
     private PartitionProcedureCallback buildTable() {
-        ArrayList<VoltBulkLoaderRow> buf = new ArrayList<VoltBulkLoaderRow>(m_minBatchTriggerSize);
-        m_partitionRowQueue.drainTo(buf, m_minBatchTriggerSize);
+        final int batchSize = m_batchSize;
+        ArrayList<VoltBulkLoaderRow> buf = new ArrayList<VoltBulkLoaderRow>(batchSize);
+        m_partitionRowQueue.drainTo(buf, batchSize);
         ListIterator<VoltBulkLoaderRow> it = buf.listIterator();
         while (it.hasNext()) {
             VoltBulkLoaderRow currRow = it.next();
@@ -253,6 +337,14 @@ public class PerPartitionTable {
             return;
         }
 
+        if (callback instanceof PartitionProcedureCallback) {
+            Semaphore inFlight = m_inFlight;
+            if (inFlight != null) {
+                inFlight.acquire();
+                ((PartitionProcedureCallback) callback).m_permit = inFlight;
+            }
+        }
+
         try {
             if (m_isMP) {
                 m_clientImpl.callProcedure(callback, m_procName, m_tableName, m_upsert, toSend);
@@ -266,6 +358,17 @@ public class PerPartitionTable {
                     ClientResponse.CONNECTION_LOST, new VoltTable[0],
                     "Connection to database was lost");
             callback.clientCallback(r);
+        } catch (Exception e) {
+            // The callback will never run, so give back the permit the batch was holding
+            if (callback instanceof PartitionProcedureCallback) {
+                final PartitionProcedureCallback ppc = (PartitionProcedureCallback) callback;
+                if (ppc.m_permit != null) {
+                    ppc.m_permit.release();
+                    ppc.m_permit = null;
+                }
+            }
+            toSend.clearRowData();
+            throw e;
         }
         toSend.clearRowData();
     }
@@ -286,6 +286,37 @@ public class VoltBulkLoader {
         }
     }
 
+    /**
+     * Let the size of the batches submitted for this table adapt to how long they take. While
+     * the average round trip time of recent batches exceeds the target the batch size is halved,
+     * down to a sixteenth of the maximum batch size, and while it is under half the target the
+     * batch size grows back towards the maximum. This affects all VoltBulkLoader instances
+     * working on the same table.
+     *
+     * @param latencyTarget Target round trip time of a batch, <code>0</code> for fixed size batches
+     * @param unit Unit of the target
+     */
+    public void setBatchLatencyTarget(long latencyTarget, TimeUnit unit) {
+        for (int i = m_firstPartitionTable; i <= m_lastPartitionTable; i++) {
+            m_partitionTable[i].setLatencyTarget(unit.toNanos(latencyTarget));
+        }
+    }
+
+    /**
+     * Bound the number of batches of each partition of this table that may wait for a response
+     * at the same time. Once a partition reaches the bound its rows queue up, and eventually
+     * insertRow() blocks, until one of its batches completes. By default only the Client's own
+     * limit on outstanding transactions applies. This affects all VoltBulkLoader instances
+     * working on the same table.
+     *
+     * @param maxInFlightBatches Batches per partition, <code>0</code> for no bound
+     */
+    public void setMaxInFlightBatches(int maxInFlightBatches) {
+        for (int i = m_firstPartitionTable; i <= m_lastPartitionTable; i++) {
+            m_partitionTable[i].setMaxInFlightBatches(maxInFlightBatches);
+        }
+    }
+
     void generateError(Object rowHandle, Object[] objectList, String errMessage) {
         VoltTable[] dummyTable = new VoltTable[1];
         dummyTable[0] = new VoltTable(m_colInfo);
@@ -18,12 +18,8 @@
 package org.voltdb.compiler;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.voltdb.common.Constants;
 import org.voltdb.planner.BoundPlan;
@@ -31,6 +27,7 @@ import org.voltdb.utils.Encoder;
 
 import com.google_voltpatches.common.cache.Cache;
 import com.google_voltpatches.common.cache.CacheBuilder;
+import com.google_voltpatches.common.cache.Weigher;
 
 /**
  * Keep a cache two level cache of plans generated by the Ad Hoc
@@ -43,6 +40,11 @@ import com.google_voltpatches.common.cache.CacheBuilder;
  * statement mapped to core parameterized plans. These parameterized
  * plans need parameter values and sql literals in order to be
  * actually used.
+ *
+ * Both levels are segmented concurrent caches with approximate LRU eviction,
+ * so planner threads only contend when they hit the same segment. Literal
+ * plans too big for one segment's share of the memory budget are kept in a
+ * small single segment cache of their own.
  */
 public class AdHocCompilerCache implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -82,26 +84,21 @@ public class AdHocCompilerCache implements Serializable {
     // max cache size for parameterized plans
     final long MAX_LITERAL_MEM  = Long.getLong("ADHOC_COMPILER_CACHE_MAX_LITERAL_MEM_BYTES", 32*1024*1024);
     final int MAX_CORE_ENTRIES;
+    // number of independently locked segments in each level
+    final int CONCURRENCY_LEVEL = Integer.getInteger("ADHOC_COMPILER_CACHE_CONCURRENCY", 16);
+    // part of the literal memory budget set aside for plans too big for one segment
+    final long MAX_OVERSIZED_LITERAL_MEM;
+    // plans weighing more than this go to the oversized literal cache
+    final long MAX_SEGMENT_LITERAL_WEIGHT;
 
     /** cache of literals to full plans */
-    final Map<String, AdHocPlannedStatement> m_literalCache;
+    final Cache<String, AdHocPlannedStatement> m_literalCache;
+    /** cache of literals to full plans that would not fit in a segment of m_literalCache */
+    final Cache<String, AdHocPlannedStatement> m_oversizedLiteralCache;
     /** cache of parameterized plan descriptions to one or more core parameterized plans,
      *  each plan optionally has its own requirements for which parameters need to be bound
      *  to what values to enable its specialized (expression-indexed) plan. */
-    final Map<String, List<BoundPlan> > m_coreCache;
-
-    // placeholder stats used during development that may/may not survive
-    long m_literalHits = 0;
-    long m_literalQueries = 0;
-    long m_literalInsertions = 0;
-    long m_literalEvictions = 0;
-    long m_planHits = 0;
-    long m_planQueries = 0;
-    long m_planInsertions = 0;
-    long m_planEvictions = 0;
-
-    /** {@see this#startPeriodicStatsPrinting() } */
-    Timer m_statsTimer = null;
+    final Cache<String, List<BoundPlan> > m_coreCache;
 
     /**
      * Constructor with default cache sizes.
@@ -114,129 +111,66 @@ public class AdHocCompilerCache implements Serializable {
      * Constructor with specific cache sizes is only called directly for testing.
      *
      * @param maxLiteralEntries cache size for literals
-     * @param maxLiteralMem cache memory for literals
+     * @param maxCoreEntries cache size for parameterized plans
      */
     AdHocCompilerCache(int maxLiteralEntries, int maxCoreEntries) {
         MAX_LITERAL_ENTRIES = maxLiteralEntries;
         MAX_CORE_ENTRIES = maxCoreEntries;
 
-        // an LRU cache map
-        m_literalCache = new AdHocStatementCache(MAX_LITERAL_ENTRIES, MAX_LITERAL_MEM);
-
-        // an LRU cache map
-        m_coreCache = new LinkedHashMap<String, List<BoundPlan> >(MAX_CORE_ENTRIES * 2, .75f, true) {
-            private static final long serialVersionUID = 1L;
+        // Guava splits maximumWeight and maximumSize evenly across its segments, so a
+        // plan larger than one segment's share would be evicted as soon as it was cached.
+        // A quarter of the literal memory budget goes to a single segment cache for such
+        // plans; they are rare enough that sharing one lock between them costs nothing.
+        MAX_OVERSIZED_LITERAL_MEM = MAX_LITERAL_MEM / 4;
+        final long segmentedLiteralMem = MAX_LITERAL_MEM - MAX_OVERSIZED_LITERAL_MEM;
+
+        // Bound the literal cache by both entry count and on-heap size: every entry
+        // weighs at least its share of the memory budget for the maximum entry count.
+        // Like Guava does for maximumSize, keep room for at least 20 such entries in
+        // each segment, so small test caches end up with a single segment.
+        final int minLiteralWeight = (int) Math.max(1, segmentedLiteralMem / MAX_LITERAL_ENTRIES);
+        int literalSegments = 1;
+        while (literalSegments < CONCURRENCY_LEVEL && literalSegments * 20 <= MAX_LITERAL_ENTRIES) {
+            literalSegments <<= 1;
+        }
+        MAX_SEGMENT_LITERAL_WEIGHT = segmentedLiteralMem / literalSegments;
 
-            // This method is called just after a new entry has been added
+        Weigher<String, AdHocPlannedStatement> literalWeigher = new Weigher<String, AdHocPlannedStatement>() {
             @Override
-            public boolean removeEldestEntry(Map.Entry<String, List<BoundPlan> > eldest) {
-                if (size() > MAX_CORE_ENTRIES) {
-                    ++m_planEvictions;
-                    return true;
-                }
-                return false;
+            public int weigh(String sql, AdHocPlannedStatement plan) {
+                return Math.max(minLiteralWeight, plan.getSerializedSize());
             }
-
         };
-    }
-
-    // define a LinkedHashMap based LRU cache bounds by both entry number and entry value on-heap size
-    // without changing Map.Entry, only works for value of type AdHocPlannedStatement
-    // only extend put, remove,clear and removeEldestEntry methods to account weight
-    public class AdHocStatementCache extends LinkedHashMap<String, AdHocPlannedStatement>{
-       private static final long serialVersionUID = 2988383448026641836L;
-        private final int maxEntries;
-        private final long maxMemory; // in bytes
-        private long currentMemory;   // in bytes
-
-        public AdHocStatementCache() {
-            // default max entry of 1000
-            // default max value size of 32MB
-            this(1000, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries) {
-            this(maxEntries, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries, final long maxMemory) {
-            // set accessOrder to true for LRU
-            super(maxEntries * 2, .75f, true);
-            this.maxEntries = maxEntries;
-            this.maxMemory = maxMemory;
-            this.currentMemory = 0;
-        }
-
-        // This method is called just after a new entry has been added
-        @Override
-        public boolean removeEldestEntry(final Map.Entry<String, AdHocPlannedStatement> eldest) {
-            if ((size() > maxEntries) || (this.currentMemory > this.maxMemory))  {
-                ++m_literalEvictions;
-                this.currentMemory -= eldest.getValue().getSerializedSize();
-                return true;
-            }
-            return false;
-        }
-
-        @Override
-        public AdHocPlannedStatement put(String key, AdHocPlannedStatement value) {
-            this.currentMemory += value.getSerializedSize();
-            return super.put(key,value);
-        }
-
-        @Override
-        public AdHocPlannedStatement remove(Object key) {
-            AdHocPlannedStatement value = super.remove(key);
-            if (value != null) {
-                this.currentMemory -= value.getSerializedSize();
-            }
-            return value;
-        }
-
-        @Override
-        public void clear() {
-            super.clear();
-            this.currentMemory = 0;
-        }
-    }
-
-    /**
-     * Stats printing method used during development.
-     * Probably shouldn't live past real stats integration.
-     */
-    synchronized void printStats() {
-        String line1 = String.format("CACHE STATS - Literals: Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_literalHits, m_literalQueries, (m_literalHits * 100.0) / m_literalQueries,
-                m_literalInsertions, m_literalEvictions);
-        String line2 = String.format("CACHE STATS - Plans:    Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_planHits, m_planQueries, (m_planHits * 100.0) /m_planQueries,
-                m_planInsertions, m_planEvictions);
-
-        System.out.print(line1 + line2);
-        System.out.flush();
-
-        // reset these
-        m_literalHits = 0;
-        m_literalQueries = 0;
-        m_literalInsertions = 0;
-        m_literalEvictions = 0;
-        m_planHits = 0;
-        m_planQueries = 0;
-        m_planInsertions = 0;
-        m_planEvictions = 0;
+        m_literalCache = CacheBuilder.newBuilder()
+                .concurrencyLevel(literalSegments)
+                .maximumWeight(segmentedLiteralMem)
+                .weigher(literalWeigher)
+                .recordStats()
+                .build();
+        m_oversizedLiteralCache = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(MAX_OVERSIZED_LITERAL_MEM)
+                .weigher(literalWeigher)
+                .recordStats()
+                .build();
+
+        m_coreCache = CacheBuilder.newBuilder()
+                .concurrencyLevel(CONCURRENCY_LEVEL)
+                .maximumSize(MAX_CORE_ENTRIES)
+                .recordStats()
+                .build();
     }
 
     /**
      * @param sql SQL literal
      * @return full, ready-to-go plan
      */
-    public synchronized AdHocPlannedStatement getWithSQL(String sql) {
-        ++m_literalQueries;
-        AdHocPlannedStatement retval = m_literalCache.get(sql);
-        if (retval != null) {
-            ++m_literalHits;
+    public AdHocPlannedStatement getWithSQL(String sql) {
+        AdHocPlannedStatement plan = m_literalCache.getIfPresent(sql);
+        if (plan == null) {
+            plan = m_oversizedLiteralCache.getIfPresent(sql);
         }
-        return retval;
+        return plan;
     }
 
     /**
@@ -244,13 +178,8 @@ public class AdHocCompilerCache implements Serializable {
      * SQL statement
      * @return A CorePlan that needs parameter values to run.
      */
-    public synchronized List<BoundPlan> getWithParsedToken(String parsedToken) {
-        ++m_planQueries;
-        List<BoundPlan> retval = m_coreCache.get(parsedToken);
-        if (retval != null) {
-            ++m_planHits;
-        }
-        return retval;
+    public List<BoundPlan> getWithParsedToken(String parsedToken) {
+        return m_coreCache.getIfPresent(parsedToken);
     }
 
     /**
@@ -271,12 +200,12 @@ public class AdHocCompilerCache implements Serializable {
      * @param hasUserQuestionMarkParameters is user provided parameterized query
      * @param hasAutoParameterizedException is the auto parameterized query has parameter exception
      */
-    public synchronized void put(String sql,
-                                 String parsedToken,
-                                 AdHocPlannedStatement planIn,
-                                 String[] extractedLiterals,
-                                 boolean hasUserQuestionMarkParameters,
-                                 boolean hasAutoParameterizedException)
+    public void put(String sql,
+                    String parsedToken,
+                    AdHocPlannedStatement planIn,
+                    String[] extractedLiterals,
+                    boolean hasUserQuestionMarkParameters,
+                    boolean hasAutoParameterizedException)
     {
         assert(sql != null);
         assert(parsedToken != null);
@@ -288,26 +217,20 @@ public class AdHocCompilerCache implements Serializable {
         // it means that a query can not be both user parameterized query and auto parameterized query.
         assert(!hasUserQuestionMarkParameters || !hasAutoParameterizedException);
 
-        // uncomment this to get some raw stdout cache performance stats every 5s
-        //startPeriodicStatsPrinting();
-
         // deal with L2 cache
         if (! hasAutoParameterizedException) {
             BoundPlan matched = null;
             BoundPlan unmatched = new BoundPlan(planIn.core, planIn.parameterBindings(extractedLiterals));
-            // deal with the parameterized plan cache first
-            List<BoundPlan> boundVariants = m_coreCache.get(parsedToken);
+            // deal with the parameterized plan cache first.
+            // The variants lists are copy on write so readers can iterate one while another planner adds to it.
+            List<BoundPlan> boundVariants = m_coreCache.getIfPresent(parsedToken);
             if (boundVariants == null) {
-                boundVariants = new ArrayList<BoundPlan>();
-                m_coreCache.put(parsedToken, boundVariants);
-                // Note that there is an edge case in which more than one plan is getting counted as one
-                // "plan insertion". This only happens when two different plans arose from the same parameterized
-                // query (token) because one invocation used the correct constants to trigger an expression index and
-                // another invocation did not.  These are not counted separately (which would have to happen below
-                // after each call to boundVariants.add) because they are not evicted separately.
-                // It seems saner to use consistent units when counting insertions vs. evictions.
-                ++m_planInsertions;
-            } else {
+                CopyOnWriteArrayList<BoundPlan> newVariants = new CopyOnWriteArrayList<BoundPlan>();
+                newVariants.add(unmatched);
+                // Lost the race if another planner has cached a list for this token in the meantime
+                boundVariants = m_coreCache.asMap().putIfAbsent(parsedToken, newVariants);
+            }
+            if (boundVariants != null) {
                 for (BoundPlan boundPlan : boundVariants) {
                     if (boundPlan.equals(unmatched)) {
                         matched = boundPlan;
@@ -322,40 +245,28 @@ public class AdHocCompilerCache implements Serializable {
                         plan.setBoundConstants(matched.m_constants);
                     }
                 }
-            }
-            if (matched == null) {
-                // Don't count insertions (of possibly repeated tokens) here
-                //  -- see the comment above where only UNIQUE token insertions are being counted, instead.
-                boundVariants.add(unmatched);
+                else {
+                    // Another planner may have just added an equal variant, don't add it twice
+                    ((CopyOnWriteArrayList<BoundPlan>) boundVariants).addIfAbsent(unmatched);
+                }
             }
         }
 
         // then deal with the L1 cache
+        // Plans bigger than the whole oversized budget are left to the L2 cache.
         if (! hasUserQuestionMarkParameters) {
-            AdHocPlannedStatement cachedPlan = m_literalCache.get(sql);
-            if (cachedPlan == null) {
-                m_literalCache.put(sql, plan);
-                ++m_literalInsertions;
+            int size = plan.getSerializedSize();
+            Cache<String, AdHocPlannedStatement> literalCache = null;
+            if (size <= MAX_SEGMENT_LITERAL_WEIGHT) {
+                literalCache = m_literalCache;
             }
-            else {
-                assert(cachedPlan.equals(plan));
+            else if (size <= MAX_OVERSIZED_LITERAL_MEM) {
+                literalCache = m_oversizedLiteralCache;
+            }
+            if (literalCache != null) {
+                AdHocPlannedStatement cachedPlan = literalCache.asMap().putIfAbsent(sql, plan);
+                assert(cachedPlan == null || cachedPlan.equals(plan));
             }
-        }
-    }
-
-    /**
-     * Start a timer that prints cache stats to the console every 5s.
-     * Used for development until we get better stats integration.
-     */
-    public void startPeriodicStatsPrinting() {
-        if (m_statsTimer == null) {
-            m_statsTimer = new Timer();
-            m_statsTimer.scheduleAtFixedRate(new TimerTask() {
-                @Override
-                public void run() {
-                    printStats();
-                }
-            }, 5000, 5000);
         }
     }
 
@@ -364,7 +275,7 @@ public class AdHocCompilerCache implements Serializable {
      * @return  literal cache size as a count
      */
     public int getLiteralCacheSize() {
-        return m_literalCache.size();
+        return (int) (m_literalCache.size() + m_oversizedLiteralCache.size());
     }
 
     /**
@@ -372,6 +283,21 @@ public class AdHocCompilerCache implements Serializable {
      * @return  core cache size as a count
      */
     public int getCoreCacheSize() {
-        return m_coreCache.size();
+        return (int) m_coreCache.size();
+    }
+
+    /**
+     * Return the number of entries evicted from the literal cache since it was created.
+     */
+    public long getLiteralCacheEvictions() {
+        return m_literalCache.stats().evictionCount() +
+               m_oversizedLiteralCache.stats().evictionCount();
+    }
+
+    /**
+     * Return the number of entries evicted from the core (parameterized) cache since it was created.
+     */
+    public long getCoreCacheEvictions() {
+        return m_coreCache.stats().evictionCount();
     }
 }
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -55,6 +56,10 @@ public class AsyncCompilerAgent {
     // if more than this amount of work is queued, reject new work
     static public final int MAX_QUEUE_DEPTH = 250;
 
+    // number of threads planning ad hoc SQL at once, each uses its own planner and HSQL session
+    static public final int PLANNER_THREADS =
+        Integer.getInteger("ADHOC_PLANNER_THREADS", Math.min(CoreUtils.availableProcessors(), 4));
+
     // accept work via this mailbox
     Mailbox m_mailbox;
 
@@ -66,10 +71,16 @@ public class AsyncCompilerAgent {
     // of Europe, Scandinavia, and the sub-continent.
     final AsyncCompilerAgentHelper m_helper;
 
-    // do work in this executor service
+    // do work in this executor service. Catalog changes are made here one at a time,
+    // in the order they arrived, ad hoc DML and queries are passed on to m_plannerEs.
     final ListeningExecutorService m_es =
         CoreUtils.getBoundedSingleThreadExecutor("Ad Hoc Planner", MAX_QUEUE_DEPTH);
 
+    // plan ad hoc DML and queries in this pool, first come first served
+    final ListeningExecutorService m_plannerEs =
+        CoreUtils.getListeningExecutorService("Ad Hoc Planner Pool", PLANNER_THREADS,
+                new LinkedBlockingQueue<Runnable>(MAX_QUEUE_DEPTH), null);
+
     // Enable debug hooks when the "asynccompilerdebug" sys prop is set to "true" or "yes".
     private final static MiscUtils.BooleanSystemProperty DEBUG_MODE =
             new MiscUtils.BooleanSystemProperty("asynccompilerdebug");
@@ -86,6 +97,10 @@ public class AsyncCompilerAgent {
             m_es.shutdown();
             m_es.awaitTermination(120, TimeUnit.SECONDS);
         }
+        if (m_plannerEs != null) {
+            m_plannerEs.shutdown();
+            m_plannerEs.awaitTermination(120, TimeUnit.SECONDS);
+        }
     }
 
     public void createMailbox(final HostMessenger hostMessenger, final long hsId) {
@@ -231,8 +246,7 @@ public class AsyncCompilerAgent {
             return;
         }
         else if (!hasDDL) {
-            final AsyncCompilerResult result = compileAdHocPlan(w);
-            w.completionHandler.onCompletion(result);
+            submitToPlannerPool(w);
         }
         else {
             // We have adhoc DDL.  Is it okay to run it?
@@ -312,13 +326,45 @@ public class AsyncCompilerAgent {
         dispatchCatalogChangeWork(w);
     }
 
+    private void submitToPlannerPool(final AdHocPlannerWork w) {
+        try {
+            m_plannerEs.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // Don't let exceptions escape
+                    AsyncCompilerResult result;
+                    try {
+                        result = compileAdHocPlan(w);
+                    }
+                    catch (RuntimeException e) {
+                        result = AsyncCompilerResult.makeErrorResult(w,
+                                String.format("Unexpected async compiler exception for %s: %s: %s",
+                                        w.getClass().getName(),
+                                        e.getLocalizedMessage(),
+                                        "Please contact VoltDB support with this message."));
+                    }
+                    w.completionHandler.onCompletion(result);
+                }
+            });
+        } catch (RejectedExecutionException rejected) {
+            generateErrorResult("Ad Hoc Planner task queue is full. Try again.", w);
+        }
+    }
+
     public void compileAdHocPlanForProcedure(final AdHocPlannerWork apw) {
-        m_es.submit(new Runnable() {
-            @Override
-            public void run(){
-                apw.completionHandler.onCompletion(compileAdHocPlan(apw));
-            }
-        });
+        try {
+            m_plannerEs.submit(new Runnable() {
+                @Override
+                public void run(){
+                    apw.completionHandler.onCompletion(compileAdHocPlan(apw));
+                }
+            });
+        } catch (RejectedExecutionException rejected) {
+            // The procedure expects a planned batch back, so the error goes in an empty one
+            apw.completionHandler.onCompletion(new AdHocPlannedStmtBatch(apw,
+                    new ArrayList<AdHocPlannedStatement>(), -1, null, null,
+                    "Ad Hoc Planner task queue is full. Try again."));
+        }
     }
 
     private void dispatchCatalogChangeWork(CatalogChangeWork work)
@@ -354,7 +400,17 @@ public class AsyncCompilerAgent {
             context = VoltDB.instance().getCatalogContext();
         }
 
-        final PlannerTool ptool = context.m_ptool;
+        // borrow a planner no other planner thread is using
+        final PlannerTool ptool = context.acquirePlannerTool();
+        try {
+            return compileAdHocPlan(work, ptool);
+        }
+        finally {
+            context.releasePlannerTool(ptool);
+        }
+    }
+
+    private AsyncCompilerResult compileAdHocPlan(AdHocPlannerWork work, PlannerTool ptool) {
 
         List<String> errorMsgs = new ArrayList<String>();
         List<AdHocPlannedStatement> stmts = new ArrayList<AdHocPlannedStatement>();
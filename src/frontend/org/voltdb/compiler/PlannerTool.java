@@ -312,6 +312,7 @@ public class PlannerTool {
         }
         finally {
             if (m_plannerStats != null) {
+                m_plannerStats.updateCacheEvictions(m_cache.getLiteralCacheEvictions(), m_cache.getCoreCacheEvictions());
                 m_plannerStats.endStatsCollection(m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(), cacheUse, -1);
             }
         }
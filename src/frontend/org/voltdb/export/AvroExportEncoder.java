@@ -0,0 +1,195 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.voltdb.VoltType;
+import org.voltdb.types.VoltDecimalHelper;
+
+/**
+ * Encodes export rows as Avro binary datums, one record per row, back to back.
+ * The record schema, from {@link #getSchema()}, has a field per column, each a
+ * union of null and the column's type:
+ * TINYINT, SMALLINT and INTEGER are ints, BIGINT and TIMESTAMP (microseconds since the
+ * epoch) are longs, FLOAT is a double, STRING a string, VARBINARY and GEOGRAPHY are bytes,
+ * DECIMAL is bytes with the decimal logical type and GEOGRAPHY_POINT a record of doubles.
+ * Values are copied from the block into the encoder's buffer without being decoded into objects.
+ */
+public class AvroExportEncoder extends ExportEncoder {
+
+    private static final int NULL_BRANCH = 0;
+    private static final int VALUE_BRANCH = 1;
+
+    private final Schema m_schema;
+    // columns encoded as Avro ints rather than longs
+    private final boolean[] m_intColumns;
+    private BinaryEncoder m_encoder;
+    // for copying values out of direct buffers
+    private final byte[] m_scratch = new byte[8192];
+
+    public AvroExportEncoder(AdvertisedDataSource source) {
+        super(source);
+        m_intColumns = new boolean[m_types.length];
+        Schema point = null;
+        List<Schema.Field> fields = new ArrayList<Schema.Field>(m_types.length);
+        for (int col = 0; col < m_types.length; col++) {
+            Schema type;
+            switch (m_types[col]) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+                m_intColumns[col] = true;
+                type = Schema.create(Schema.Type.INT);
+                break;
+            case BIGINT:
+            case TIMESTAMP:
+                type = Schema.create(Schema.Type.LONG);
+                break;
+            case FLOAT:
+                type = Schema.create(Schema.Type.DOUBLE);
+                break;
+            case STRING:
+                type = Schema.create(Schema.Type.STRING);
+                break;
+            case DECIMAL:
+                type = Schema.create(Schema.Type.BYTES);
+                type.addProp("logicalType", "decimal");
+                type.addProp("precision", JsonNodeFactory.instance.numberNode(VoltDecimalHelper.kDefaultPrecision));
+                type.addProp("scale", JsonNodeFactory.instance.numberNode(VoltDecimalHelper.kDefaultScale));
+                break;
+            case GEOGRAPHY_POINT:
+                // a named type is defined once and referred to by name after that
+                if (point == null) {
+                    point = Schema.createRecord("GeographyPoint", null, getClass().getPackage().getName(), false);
+                    point.setFields(Arrays.asList(
+                            new Schema.Field("longitude", Schema.create(Schema.Type.DOUBLE), null, null),
+                            new Schema.Field("latitude", Schema.create(Schema.Type.DOUBLE), null, null)));
+                }
+                type = point;
+                break;
+            default:
+                type = Schema.create(Schema.Type.BYTES);
+                break;
+            }
+            fields.add(new Schema.Field(avroName(source.columnName(col)),
+                    Schema.createUnion(Arrays.asList(Schema.create(Schema.Type.NULL), type)),
+                    null, null));
+        }
+        m_schema = Schema.createRecord(avroName(source.tableName), null, getClass().getPackage().getName(), false);
+        m_schema.setFields(fields);
+    }
+
+    /**
+     * Avro names start with a letter or underscore and continue with letters, digits and underscores
+     */
+    private static String avroName(String name) {
+        StringBuilder sb = new StringBuilder(name.length() + 1);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_' ||
+                    (i > 0 && c >= '0' && c <= '9');
+            sb.append(valid ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    public Schema getSchema() {
+        return m_schema;
+    }
+
+    @Override
+    protected void beginBlock(OutputStream out) throws IOException {
+        m_encoder = EncoderFactory.get().binaryEncoder(out, m_encoder);
+    }
+
+    @Override
+    protected void beginRow() throws IOException {
+    }
+
+    @Override
+    protected void writeNull(int column) throws IOException {
+        m_encoder.writeIndex(NULL_BRANCH);
+    }
+
+    @Override
+    protected void writeLong(int column, long value) throws IOException {
+        m_encoder.writeIndex(VALUE_BRANCH);
+        if (m_intColumns[column]) {
+            m_encoder.writeInt((int) value);
+        } else {
+            m_encoder.writeLong(value);
+        }
+    }
+
+    @Override
+    protected void writeDouble(int column, double value) throws IOException {
+        m_encoder.writeIndex(VALUE_BRANCH);
+        m_encoder.writeDouble(value);
+    }
+
+    @Override
+    protected void writeDecimal(int column, int scale, ByteBuffer buf, int length) throws IOException {
+        // the unscaled value is already big endian two's complement, as the decimal logical type wants
+        writeBytes(column, buf, length);
+    }
+
+    @Override
+    protected void writeBytes(int column, ByteBuffer buf, int length) throws IOException {
+        m_encoder.writeIndex(VALUE_BRANCH);
+        // bytes and strings are a length followed by the raw bytes
+        m_encoder.writeLong(length);
+        if (buf.hasArray()) {
+            m_encoder.writeFixed(buf.array(), buf.arrayOffset() + buf.position(), length);
+            buf.position(buf.position() + length);
+        } else {
+            int remaining = length;
+            while (remaining > 0) {
+                int chunk = Math.min(remaining, m_scratch.length);
+                buf.get(m_scratch, 0, chunk);
+                m_encoder.writeFixed(m_scratch, 0, chunk);
+                remaining -= chunk;
+            }
+        }
+    }
+
+    @Override
+    protected void writePoint(int column, double longitude, double latitude) throws IOException {
+        m_encoder.writeIndex(VALUE_BRANCH);
+        m_encoder.writeDouble(longitude);
+        m_encoder.writeDouble(latitude);
+    }
+
+    @Override
+    protected void endRow() throws IOException {
+    }
+
+    @Override
+    protected void endBlock() throws IOException {
+        m_encoder.flush();
+    }
+}
@@ -29,7 +29,9 @@ import java.util.Iterator;
 import java.util.concurrent.Callable;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.json_voltpatches.JSONArray;
@@ -111,6 +113,8 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
     private final Integer m_executorLock = new Integer(0);
     private final LinkedTransferQueue<RunnableWithES> m_queuedActions = new LinkedTransferQueue<>();
     private RunnableWithES m_firstAction = null;
+    //Writes out overflow blocks the committed buffers have been coalescing for too long
+    private volatile ScheduledFuture<?> m_flushExpiredOverflowTask = null;
 
     /**
      * Create a new data source.
@@ -456,6 +460,32 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         }
     }
 
+    /**
+     * The overflow counters of the committed buffers, read on the executor that owns them.
+     * Null if the data source has been shut down.
+     */
+    public StreamBlockQueue.OverflowStats getOverflowStats() {
+        try {
+            ListeningExecutorService es = getExecutorService();
+            if (es==null) {
+                return m_committedBuffers.getStats();
+            }
+            else {
+                return es.submit(new Callable<StreamBlockQueue.OverflowStats>() {
+                    @Override
+                    public StreamBlockQueue.OverflowStats call() throws Exception {
+                        return m_committedBuffers.getStats();
+                    }
+                }).get();
+            }
+        } catch (RejectedExecutionException e) {
+            return null;
+        } catch (Throwable t) {
+            Throwables.propagate(t);
+            return null;
+        }
+    }
+
     private void pushExportBufferImpl(
             long uso,
             ByteBuffer buffer,
@@ -594,6 +624,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             @Override
             public void run() {
                 try {
+                    cancelFlushExpiredOverflow();
                     m_committedBuffers.closeAndDelete();
                 } catch(IOException e) {
                     exportLog.rateLimitedLog(60, Level.WARN, e, "Error closing commit buffers");
@@ -668,6 +699,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             @Override
             public void run() {
                 try {
+                    cancelFlushExpiredOverflow();
                     m_committedBuffers.close();
                 } catch (IOException e) {
                     exportLog.error(e);
@@ -1019,10 +1051,57 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                     m_queuedActions.clear();
                 }
                 m_executor = es;
+                scheduleFlushExpiredOverflow();
             }
         }
     }
 
+    /*
+     * The committed buffers only check how long overflow blocks have been coalescing in
+     * memory when the next block is pushed. Check every coalescing period on the executor
+     * so that the tail of a stream that went quiet gets written to the overflow file.
+     */
+    private void scheduleFlushExpiredOverflow() {
+        if (StreamBlockQueue.COALESCE_MILLIS <= 0) {
+            return;
+        }
+        m_flushExpiredOverflowTask = VoltDB.instance().scheduleWork(new Runnable() {
+            @Override
+            public void run() {
+                final ListeningExecutorService es = m_executor;
+                if (es.isShutdown()) {
+                    // Nothing left to flush, don't keep waking up for a closed source
+                    cancelFlushExpiredOverflow();
+                    return;
+                }
+                try {
+                    es.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (es.isShutdown()) {
+                                return;
+                            }
+                            try {
+                                m_committedBuffers.flushExpired();
+                            } catch (IOException e) {
+                                VoltDB.crashLocalVoltDB("Unable to write to export overflow.", true, e);
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException rej) {
+                    //Shut down between the check and the submit
+                }
+            }
+        }, StreamBlockQueue.COALESCE_MILLIS, StreamBlockQueue.COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelFlushExpiredOverflow() {
+        final ScheduledFuture<?> task = m_flushExpiredOverflowTask;
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
     public ListeningExecutorService getExecutorService() {
         return m_executor;
     }
@@ -0,0 +1,171 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.voltdb.VoltType;
+
+/**
+ * Transcodes the rows of an export block, as the EE serializes them into its export
+ * tuple streams, straight into another binary format. Rows are walked in place in the
+ * block buffer and each value is handed to the format's write methods as a primitive,
+ * or as a region of the block for variable length values, so nothing is allocated per
+ * row or per value.
+ *
+ * Every row is a 4 byte length, a null mask with one bit per column, then the values of
+ * the columns that aren't null. The columns are the export metadata columns followed by
+ * the columns of the table, all described by the AdvertisedDataSource. Integers are little
+ * endian, decimals a scale byte, a length byte and a 16 byte big endian two's complement
+ * unscaled value.
+ */
+public abstract class ExportEncoder {
+
+    protected final AdvertisedDataSource m_source;
+    protected final VoltType[] m_types;
+    private final int m_nullArrayLength;
+
+    protected ExportEncoder(AdvertisedDataSource source) {
+        m_source = source;
+        m_types = source.columnTypes.toArray(new VoltType[source.columnTypes.size()]);
+        m_nullArrayLength = ((m_types.length + 7) & -8) >> 3;
+    }
+
+    /**
+     * Build the encoder for a format, either one of the built in formats or the name of
+     * an ExportEncoder subclass with a constructor taking an AdvertisedDataSource.
+     */
+    public static ExportEncoder forFormat(String format, AdvertisedDataSource source) {
+        if ("avro".equalsIgnoreCase(format)) {
+            return new AvroExportEncoder(source);
+        }
+        try {
+            Constructor<? extends ExportEncoder> ctor = Class.forName(format)
+                    .asSubclass(ExportEncoder.class).getConstructor(AdvertisedDataSource.class);
+            return ctor.newInstance(source);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unknown export encoding format " + format, e);
+        }
+    }
+
+    /**
+     * Encode every row of a block to a stream. The block is read from its position
+     * to its limit, which must hold whole rows, and its position isn't changed.
+     * @return the number of rows encoded
+     */
+    public int encode(ByteBuffer block, OutputStream out) throws IOException {
+        final ByteBuffer buf = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int rows = 0;
+        beginBlock(out);
+        while (buf.hasRemaining()) {
+            final int rowLength = buf.getInt();
+            final int rowStart = buf.position();
+            if (rowLength < m_nullArrayLength || rowLength > buf.remaining()) {
+                throw new IOException("Corrupt export row length " + rowLength + " at offset " + (rowStart - 4));
+            }
+            buf.position(rowStart + m_nullArrayLength);
+            beginRow();
+            for (int col = 0; col < m_types.length; col++) {
+                if ((buf.get(rowStart + (col >> 3)) & (0x80 >> (col & 7))) != 0) {
+                    writeNull(col);
+                    continue;
+                }
+                switch (m_types[col]) {
+                case TINYINT:
+                    writeLong(col, buf.get());
+                    break;
+                case SMALLINT:
+                    writeLong(col, buf.getShort());
+                    break;
+                case INTEGER:
+                    writeLong(col, buf.getInt());
+                    break;
+                case BIGINT:
+                case TIMESTAMP:
+                    writeLong(col, buf.getLong());
+                    break;
+                case FLOAT:
+                    writeDouble(col, buf.getDouble());
+                    break;
+                case DECIMAL: {
+                    final int scale = buf.get();
+                    final int length = buf.get();
+                    writeDecimal(col, scale, buf, length);
+                    break;
+                }
+                case STRING:
+                case VARBINARY:
+                case GEOGRAPHY: {
+                    final int length = buf.getInt();
+                    writeBytes(col, buf, length);
+                    break;
+                }
+                case GEOGRAPHY_POINT: {
+                    final double longitude = buf.getDouble();
+                    final double latitude = buf.getDouble();
+                    writePoint(col, longitude, latitude);
+                    break;
+                }
+                default:
+                    throw new IOException("Unsupported export column type " + m_types[col]);
+                }
+            }
+            endRow();
+            if (buf.position() != rowStart + rowLength) {
+                throw new IOException("Export row at offset " + (rowStart - 4) + " has length " + rowLength +
+                        " but " + (buf.position() - rowStart) + " bytes were decoded");
+            }
+            rows++;
+        }
+        endBlock();
+        return rows;
+    }
+
+    protected abstract void beginBlock(OutputStream out) throws IOException;
+
+    protected abstract void beginRow() throws IOException;
+
+    protected abstract void writeNull(int column) throws IOException;
+
+    /** TINYINT, SMALLINT, INTEGER, BIGINT and TIMESTAMP (microseconds since the epoch) */
+    protected abstract void writeLong(int column, long value) throws IOException;
+
+    protected abstract void writeDouble(int column, double value) throws IOException;
+
+    /**
+     * The big endian unscaled value of a DECIMAL is the next length bytes of the buffer,
+     * the encoder must consume them.
+     */
+    protected abstract void writeDecimal(int column, int scale, ByteBuffer buf, int length) throws IOException;
+
+    /**
+     * The UTF-8 bytes of a STRING, the bytes of a VARBINARY or the serialized GEOGRAPHY
+     * are the next length bytes of the buffer, the encoder must consume them.
+     */
+    protected abstract void writeBytes(int column, ByteBuffer buf, int length) throws IOException;
+
+    protected abstract void writePoint(int column, double longitude, double latitude) throws IOException;
+
+    protected abstract void endRow() throws IOException;
+
+    protected abstract void endBlock() throws IOException;
+}
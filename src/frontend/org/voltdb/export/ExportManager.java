@@ -20,6 +20,7 @@ package org.voltdb.export;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -641,6 +642,28 @@ public class ExportManager
         m_generations.clear();
     }
 
+    /**
+     * The data sources of every generation on this node.
+     */
+    static List<ExportDataSource> getDataSources() {
+        List<ExportDataSource> sources = new ArrayList<ExportDataSource>();
+        ExportManager instance = instance();
+        if (instance == null) {
+            return sources;
+        }
+        try {
+            for (ExportGeneration generation : instance.m_generations.values()) {
+                for (Map<String, ExportDataSource> partitionSources : generation.getDataSourceByPartition().values()) {
+                    sources.addAll(partitionSources.values());
+                }
+            }
+        } catch (Exception e) {
+            //Don't let a generation changing under the stats collection fail it
+            exportLog.error(e);
+        }
+        return sources;
+    }
+
     public static long getQueuedExportBytes(int partitionId, String signature) {
         ExportManager instance = instance();
         try {
@@ -0,0 +1,142 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Overflow of each export stream on this node, one row per table and partition.
+ * The counters are totals since the stream was opened. The drain rate is the
+ * bytes drained since the previous collection over the time since then.
+ */
+public class ExportStats extends StatsSource {
+
+    private static final VoltLogger exportLog = new VoltLogger("EXPORT");
+
+    public enum StatName {
+        TABLE_NAME,
+        PARTITION_ID,
+        QUEUED_BYTES,
+        PENDING_BYTES,
+        BLOCKS_OVERFLOWED,
+        DISK_WRITES,
+        AVG_DISK_WRITE_MICROS,
+        MAX_DISK_WRITE_MICROS,
+        DRAINED_BYTES,
+        DRAIN_RATE_BYTES_PER_SEC
+    };
+
+    private static class Row {
+        final ExportDataSource m_source;
+        final StreamBlockQueue.OverflowStats m_stats;
+        final long m_drainRate;
+
+        Row(ExportDataSource source, StreamBlockQueue.OverflowStats stats, long drainRate) {
+            m_source = source;
+            m_stats = stats;
+            m_drainRate = drainRate;
+        }
+    }
+
+    // Bytes drained and System.nanoTime() at the previous collection, by data source
+    private Map<ExportDataSource, long[]> m_lastDrained = new IdentityHashMap<ExportDataSource, long[]>();
+
+    public ExportStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo(StatName.TABLE_NAME.name(), VoltType.STRING));
+        columns.add(new ColumnInfo(StatName.PARTITION_ID.name(), VoltType.INTEGER));
+        columns.add(new ColumnInfo(StatName.QUEUED_BYTES.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.PENDING_BYTES.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.BLOCKS_OVERFLOWED.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.DISK_WRITES.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.AVG_DISK_WRITE_MICROS.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.MAX_DISK_WRITE_MICROS.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.DRAINED_BYTES.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.DRAIN_RATE_BYTES_PER_SEC.name(), VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        Row row = (Row) rowKey;
+        StreamBlockQueue.OverflowStats stats = row.m_stats;
+        rowValues[columnNameToIndex.get(StatName.TABLE_NAME.name())] = row.m_source.getTableName();
+        rowValues[columnNameToIndex.get(StatName.PARTITION_ID.name())] = row.m_source.getPartitionId();
+        rowValues[columnNameToIndex.get(StatName.QUEUED_BYTES.name())] = stats.queuedBytes;
+        rowValues[columnNameToIndex.get(StatName.PENDING_BYTES.name())] = stats.pendingBytes;
+        rowValues[columnNameToIndex.get(StatName.BLOCKS_OVERFLOWED.name())] = stats.blocksOverflowed;
+        rowValues[columnNameToIndex.get(StatName.DISK_WRITES.name())] = stats.diskWrites;
+        rowValues[columnNameToIndex.get(StatName.AVG_DISK_WRITE_MICROS.name())] = stats.diskWrites == 0 ? 0 :
+            TimeUnit.NANOSECONDS.toMicros(stats.totalDiskWriteNanos / stats.diskWrites);
+        rowValues[columnNameToIndex.get(StatName.MAX_DISK_WRITE_MICROS.name())] =
+            TimeUnit.NANOSECONDS.toMicros(stats.maxDiskWriteNanos);
+        rowValues[columnNameToIndex.get(StatName.DRAINED_BYTES.name())] = stats.drainedBytes;
+        rowValues[columnNameToIndex.get(StatName.DRAIN_RATE_BYTES_PER_SEC.name())] = row.m_drainRate;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        ArrayList<Object> rows = new ArrayList<Object>();
+        Map<ExportDataSource, long[]> lastDrained = new IdentityHashMap<ExportDataSource, long[]>();
+        for (ExportDataSource source : ExportManager.getDataSources()) {
+            StreamBlockQueue.OverflowStats stats;
+            try {
+                stats = source.getOverflowStats();
+            } catch (Exception e) {
+                exportLog.warn("Unable to collect overflow stats of export table " + source.getTableName() +
+                        " partition " + source.getPartitionId(), e);
+                continue;
+            }
+            if (stats == null) {
+                continue;
+            }
+            final long now = System.nanoTime();
+            // Streams seen for the first time are measured from when they were opened
+            long[] last = m_lastDrained.get(source);
+            if (last == null) {
+                last = new long[] { 0, stats.openedNanos };
+            }
+            rows.add(new Row(source, stats, drainRate(stats.drainedBytes - last[0], now - last[1])));
+            lastDrained.put(source, new long[] { stats.drainedBytes, now });
+        }
+        // Forget the sources that are gone
+        m_lastDrained = lastDrained;
+        return rows.iterator();
+    }
+
+    static long drainRate(long bytes, long nanos) {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return (long) (bytes * (double) TimeUnit.SECONDS.toNanos(1) / nanos);
+    }
+}
@@ -22,14 +22,16 @@ import java.nio.ByteOrder;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
-import org.voltdb.utils.BinaryDeque;
 import org.voltdb.utils.BinaryDeque.BinaryDequeTruncator;
 import org.voltdb.utils.BinaryDeque.TruncatorResponse;
 import org.voltdb.utils.PersistentBinaryDeque;
 import org.voltdb.utils.PersistentBinaryDeque.ByteBufferTruncatorResponse;
+import org.voltdb.utils.PersistentBinaryDeque.DequeStats;
 import org.voltdb.utils.VoltFile;
 
 /**
@@ -40,11 +42,60 @@ import org.voltdb.utils.VoltFile;
  *
  * portion of the queue
  *
+ * Blocks that overflow are not written one at a time. Consecutive blocks are coalesced in memory
+ * and written to the persistent deque as a single block once they reach a size or an age budget,
+ * or as soon as they are needed for polling or a sync. Once enough overflow data has been written
+ * without an fsync, or it has been written for long enough, the queue fsyncs on its own so that
+ * the data at risk stays bounded without an fsync per block. Offering a block only checks the
+ * budgets as it arrives, the owner calls flushExpired periodically so that the tail of a stream
+ * that went quiet doesn't stay in memory.
  */
 public class StreamBlockQueue {
 
     private static final VoltLogger exportLog = new VoltLogger("EXPORT");
 
+    // Overflow blocks are coalesced until they reach this many bytes or this age
+    static final int COALESCE_BYTES = Integer.getInteger("EXPORT_OVERFLOW_COALESCE_BYTES", 2 * 1024 * 1024);
+    static final long COALESCE_MILLIS = Long.getLong("EXPORT_OVERFLOW_COALESCE_MILLIS", 100);
+
+    // Overflow written since the last fsync is fsynced at this many bytes or this age, 0 disables either
+    static final long SYNC_BYTES = Long.getLong("EXPORT_OVERFLOW_SYNC_BYTES", 64L * 1024 * 1024);
+    static final long SYNC_MILLIS = Long.getLong("EXPORT_OVERFLOW_SYNC_MILLIS", 10 * 1000);
+
+    /**
+     * Counters for one queue since it was opened, times are in nanoseconds.
+     * ExportStats reports them for @Statistics EXPORT.
+     */
+    public static class OverflowStats {
+        // Bytes waiting to be coalesced plus the bytes in the persistent deque
+        public final long queuedBytes;
+        public final long pendingBytes;
+        public final long blocksOverflowed;
+        // Writes of coalesced blocks to the persistent deque and how long they took
+        public final long diskWrites;
+        public final long totalDiskWriteNanos;
+        public final long maxDiskWriteNanos;
+        // Bytes of export data that left the queue
+        public final long drainedBytes;
+        // System.nanoTime() when the queue was opened
+        public final long openedNanos;
+        public final DequeStats dequeStats;
+
+        OverflowStats(long queuedBytes, long pendingBytes, long blocksOverflowed, long diskWrites,
+                long totalDiskWriteNanos, long maxDiskWriteNanos, long drainedBytes, long openedNanos,
+                DequeStats dequeStats) {
+            this.queuedBytes = queuedBytes;
+            this.pendingBytes = pendingBytes;
+            this.blocksOverflowed = blocksOverflowed;
+            this.diskWrites = diskWrites;
+            this.totalDiskWriteNanos = totalDiskWriteNanos;
+            this.maxDiskWriteNanos = maxDiskWriteNanos;
+            this.drainedBytes = drainedBytes;
+            this.openedNanos = openedNanos;
+            this.dequeStats = dequeStats;
+        }
+    }
+
     /**
      * Deque containing reference to stream blocks that are in memory. Some of these
      * stream blocks may still be persisted to disk others are stored completely in memory
@@ -54,17 +105,37 @@ public class StreamBlockQueue {
     /**
      * A deque for persisting data to disk both for persistence and as a means of overflowing storage
      */
-    private final BinaryDeque m_persistentDeque;
+    private final PersistentBinaryDeque m_persistentDeque;
+
+    /**
+     * Overflow blocks with contiguous USOs that will be written to the persistent deque as one block.
+     * They come after everything in the persistent deque.
+     */
+    private final ArrayDeque<StreamBlock> m_pendingDeque = new ArrayDeque<StreamBlock>();
+    private long m_pendingBytes = 0;
+    private long m_pendingSinceMillis;
 
     private final String m_nonce;
 
+    // Overflow written since the last fsync
+    private long m_unsyncedBytes = 0;
+    private long m_lastSyncMillis = System.currentTimeMillis();
+
+    // Stats
+    private long m_blocksOverflowed = 0;
+    private long m_diskWrites = 0;
+    private long m_totalDiskWriteNanos = 0;
+    private long m_maxDiskWriteNanos = 0;
+    private long m_drainedBytes = 0;
+    private final long m_openedNanos = System.nanoTime();
+
     public StreamBlockQueue(String path, String nonce) throws java.io.IOException {
         m_persistentDeque = new PersistentBinaryDeque( nonce, new VoltFile(path), exportLog);
         m_nonce = nonce;
     }
 
     public boolean isEmpty() throws IOException {
-        if (m_memoryDeque.isEmpty() && m_persistentDeque.isEmpty()) {
+        if (m_memoryDeque.isEmpty() && m_pendingDeque.isEmpty() && m_persistentDeque.isEmpty()) {
             return true;
         }
         return false;
@@ -83,6 +154,11 @@ public class StreamBlockQueue {
         BBContainer cont = null;
         try {
             cont = m_persistentDeque.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+            if (cont == null && !m_pendingDeque.isEmpty()) {
+                //The coalesced blocks are next, write them out and read them back
+                flushPending();
+                cont = m_persistentDeque.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+            }
         } catch (IOException e) {
             exportLog.error(e);
         }
@@ -173,19 +249,24 @@ public class StreamBlockQueue {
         } else {
             sb = pollPersistentDeque(true);
         }
+        if (sb != null) {
+            m_drainedBytes += sb.totalUso();
+        }
         return sb;
     }
 
     public StreamBlock pop() {
+        StreamBlock sb;
         if (m_memoryDeque.isEmpty()) {
-            StreamBlock sb = pollPersistentDeque(true);
+            sb = pollPersistentDeque(true);
             if (sb == null) {
                 throw new java.util.NoSuchElementException();
             }
-            return sb;
         } else {
-            return m_memoryDeque.pop();
+            sb = m_memoryDeque.pop();
         }
+        m_drainedBytes += sb.totalUso();
+        return sb;
     }
 
     /*
@@ -194,12 +275,12 @@ public class StreamBlockQueue {
     public void offer(StreamBlock streamBlock) throws IOException {
         //Already have two blocks, put it in the deque
         if (m_memoryDeque.size() > 1) {
-            m_persistentDeque.offer(streamBlock.asBBContainer());
+            overflow(streamBlock);
         } else {
             //Don't offer into the memory deque if there is anything waiting to be
             //polled out of the persistent deque. Check the persistent deque
             if (pollPersistentDeque(false) != null) {
-               m_persistentDeque.offer( streamBlock.asBBContainer());
+               overflow(streamBlock);
             } else {
             //Persistent deque is empty put this in memory
                m_memoryDeque.offer(streamBlock);
@@ -207,6 +288,95 @@ public class StreamBlockQueue {
         }
     }
 
+    /*
+     * Add a block to the ones being coalesced, writing them out first if the block
+     * doesn't continue them or would take them over budget
+     */
+    private void overflow(StreamBlock streamBlock) throws IOException {
+        m_blocksOverflowed++;
+        StreamBlock last = m_pendingDeque.peekLast();
+        if (last != null && (last.uso() + last.totalUso() != streamBlock.uso()
+                || m_pendingBytes + streamBlock.totalUso() > COALESCE_BYTES)) {
+            flushPending();
+        }
+        if (m_pendingDeque.isEmpty()) {
+            m_pendingSinceMillis = System.currentTimeMillis();
+        }
+        m_pendingDeque.offer(streamBlock);
+        m_pendingBytes += streamBlock.totalUso();
+
+        if (m_pendingBytes >= COALESCE_BYTES
+                || System.currentTimeMillis() - m_pendingSinceMillis >= COALESCE_MILLIS) {
+            flushPending();
+        }
+    }
+
+    /*
+     * Write the coalesced blocks to the persistent deque as one block with the USO of the first,
+     * and fsync if that takes the overflow written since the last fsync over budget
+     */
+    private void flushPending() throws IOException {
+        if (m_pendingDeque.isEmpty()) {
+            return;
+        }
+        final BBContainer cont;
+        if (m_pendingDeque.size() == 1) {
+            cont = m_pendingDeque.poll().asBBContainer();
+        } else {
+            cont = DBBPool.allocateDirect((int)(StreamBlock.HEADER_SIZE + m_pendingBytes));
+            final ByteBuffer b = cont.b();
+            b.putLong(m_pendingDeque.peek().uso());
+            StreamBlock sb;
+            while ((sb = m_pendingDeque.poll()) != null) {
+                final BBContainer blockCont = sb.asBBContainer();
+                try {
+                    blockCont.b().position(StreamBlock.HEADER_SIZE);
+                    b.put(blockCont.b());
+                } finally {
+                    blockCont.discard();
+                }
+            }
+            b.flip();
+        }
+        final long size = m_pendingBytes;
+        m_pendingBytes = 0;
+
+        //The persistent deque discards the container once it is written
+        final long startNanos = System.nanoTime();
+        m_persistentDeque.offer(cont);
+        final long writeNanos = System.nanoTime() - startNanos;
+        m_diskWrites++;
+        m_totalDiskWriteNanos += writeNanos;
+        m_maxDiskWriteNanos = Math.max(m_maxDiskWriteNanos, writeNanos);
+
+        m_unsyncedBytes += size;
+        if ((SYNC_BYTES > 0 && m_unsyncedBytes >= SYNC_BYTES)
+                || (SYNC_MILLIS > 0 && System.currentTimeMillis() - m_lastSyncMillis >= SYNC_MILLIS)) {
+            syncPersistentDeque();
+        }
+    }
+
+    /*
+     * Write out the coalesced blocks once the oldest has waited out the age budget, and fsync
+     * the overflow once it has gone unsynced for longer than its budget. Offering only checks
+     * the budgets when the next block arrives, this enforces them when no more blocks come.
+     */
+    public void flushExpired() throws IOException {
+        final long now = System.currentTimeMillis();
+        if (!m_pendingDeque.isEmpty() && now - m_pendingSinceMillis >= COALESCE_MILLIS) {
+            flushPending();
+        }
+        if (m_unsyncedBytes > 0 && SYNC_MILLIS > 0 && now - m_lastSyncMillis >= SYNC_MILLIS) {
+            syncPersistentDeque();
+        }
+    }
+
+    private void syncPersistentDeque() throws IOException {
+        m_persistentDeque.sync();
+        m_unsyncedBytes = 0;
+        m_lastSyncMillis = System.currentTimeMillis();
+    }
+
     /*
      * Push all the buffers that are in memory to disk
      * and then have the persistent deque sync.
@@ -214,6 +384,7 @@ public class StreamBlockQueue {
      * buffers to disk
      */
     public void sync(boolean nofsync) throws IOException {
+        flushPending();
         if (m_memoryDeque.peek() != null && !m_memoryDeque.peek().isPersisted()) {
             ArrayDeque<BBContainer> buffersToPush = new ArrayDeque<BBContainer>();
             while (m_memoryDeque.peek() != null) {
@@ -238,10 +409,23 @@ public class StreamBlockQueue {
         }
 
         if (!nofsync) {
-            m_persistentDeque.sync();
+            syncPersistentDeque();
+        }
+        if (exportLog.isDebugEnabled()) {
+            OverflowStats stats = getStats();
+            exportLog.debug("Export stream " + m_nonce + " has " + stats.queuedBytes + " bytes queued, "
+                    + stats.blocksOverflowed + " blocks overflowed in " + stats.diskWrites + " writes averaging "
+                    + (stats.diskWrites == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(stats.totalDiskWriteNanos / stats.diskWrites))
+                    + " micros, " + stats.drainedBytes + " bytes drained");
         }
     }
 
+    public OverflowStats getStats() throws IOException {
+        return new OverflowStats(m_pendingBytes + m_persistentDeque.sizeInBytes() - (8 * m_persistentDeque.getNumObjects()),
+                m_pendingBytes, m_blocksOverflowed, m_diskWrites, m_totalDiskWriteNanos, m_maxDiskWriteNanos,
+                m_drainedBytes, m_openedNanos, m_persistentDeque.getStats());
+    }
+
     public long sizeInBytes() throws IOException {
         long memoryBlockUsage = 0;
         for (StreamBlock b : m_memoryDeque) {
@@ -249,7 +433,7 @@ public class StreamBlockQueue {
                                                     //to make book keeping consistent when flushed to disk
         }
         //Subtract USO from on disk size
-        return memoryBlockUsage + m_persistentDeque.sizeInBytes() - (8 * m_persistentDeque.getNumObjects());
+        return memoryBlockUsage + m_pendingBytes + m_persistentDeque.sizeInBytes() - (8 * m_persistentDeque.getNumObjects());
     }
 
     public void close() throws IOException {
@@ -266,10 +450,16 @@ public class StreamBlockQueue {
         for (StreamBlock sb : m_memoryDeque) {
             sb.discard();
         }
+        for (StreamBlock sb : m_pendingDeque) {
+            sb.discard();
+        }
+        m_pendingDeque.clear();
+        m_pendingBytes = 0;
     }
 
     public void truncateToTxnId(final long txnId, final int nullArrayLength) throws IOException {
         assert(m_memoryDeque.isEmpty());
+        flushPending();
         m_persistentDeque.parseAndTruncate(new BinaryDequeTruncator() {
 
         @Override
@@ -320,7 +510,7 @@ public class StreamBlockQueue {
 
     @Override
     public void finalize() {
-        if (!m_memoryDeque.isEmpty()) {
+        if (!m_memoryDeque.isEmpty() || !m_pendingDeque.isEmpty()) {
             exportLog.error("Finalized StreamBlockQueue with items in the memory deque");
         }
     }
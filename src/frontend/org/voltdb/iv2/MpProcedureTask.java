@@ -19,6 +19,7 @@ package org.voltdb.iv2;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -60,10 +61,21 @@ public class MpProcedureTask extends ProcedureTask
     MpProcedureTask(Mailbox mailbox, String procName, TransactionTaskQueue queue,
                   Iv2InitiateTaskMessage msg, List<Long> pInitiators, Map<Integer, Long> partitionMasters,
                   long buddyHSId, boolean isRestart)
+    {
+        this(mailbox, procName, queue, msg, pInitiators, partitionMasters,
+             Collections.singletonList(buddyHSId), isRestart);
+    }
+
+    /**
+     * @param localHSIds the local sites this transaction may borrow, the first one is its buddy
+     */
+    MpProcedureTask(Mailbox mailbox, String procName, TransactionTaskQueue queue,
+                  Iv2InitiateTaskMessage msg, List<Long> pInitiators, Map<Integer, Long> partitionMasters,
+                  List<Long> localHSIds, boolean isRestart)
     {
         super(mailbox, procName,
               new MpTransactionState(mailbox, msg, pInitiators, partitionMasters,
-                                     buddyHSId, isRestart),
+                                     localHSIds, isRestart),
               queue);
         m_isRestart = isRestart;
         m_msg = msg;
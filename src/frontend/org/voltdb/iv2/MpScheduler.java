@@ -314,14 +314,26 @@ public class MpScheduler extends Scheduler
         if (task == null) {
             task = new MpProcedureTask(m_mailbox, procedureName,
                     m_pendingTasks, mp, m_iv2Masters, m_partitionMasters,
-                    m_buddyHSIds.get(m_nextBuddy), false);
+                    nextBuddies(), false);
         }
 
-        m_nextBuddy = (m_nextBuddy++) % m_buddyHSIds.size();
+        m_nextBuddy = (m_nextBuddy + 1) % m_buddyHSIds.size();
         m_outstandingTxns.put(task.m_txnState.txnId, task.m_txnState);
         m_pendingTasks.offer(task);
     }
 
+    /**
+     * The local sites starting with the buddy of the next transaction, so that
+     * consecutive transactions borrow different sites first.
+     */
+    private List<Long> nextBuddies()
+    {
+        List<Long> buddies = new ArrayList<Long>(m_buddyHSIds.size());
+        buddies.addAll(m_buddyHSIds.subList(m_nextBuddy, m_buddyHSIds.size()));
+        buddies.addAll(m_buddyHSIds.subList(0, m_nextBuddy));
+        return buddies;
+    }
+
     /**
      * Hacky way to only run @BalancePartitions as n-partition transactions for now.
      * @return true if it's an n-partition transaction
@@ -401,10 +413,10 @@ public class MpScheduler extends Scheduler
         if (task == null) {
             task = new MpProcedureTask(m_mailbox, procedureName,
                     m_pendingTasks, mp, m_iv2Masters, m_partitionMasters,
-                    m_buddyHSIds.get(m_nextBuddy), true);
+                    nextBuddies(), true);
         }
 
-        m_nextBuddy = (m_nextBuddy++) % m_buddyHSIds.size();
+        m_nextBuddy = (m_nextBuddy + 1) % m_buddyHSIds.size();
         m_outstandingTxns.put(task.m_txnState.txnId, task.m_txnState);
         m_pendingTasks.offer(task);
     }
@@ -18,6 +18,7 @@
 package org.voltdb.iv2;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -70,6 +71,9 @@ public class MpTransactionState extends TransactionState
     final List<Long> m_useHSIds = new ArrayList<Long>();
     final Map<Integer, Long> m_masterHSIds = Maps.newHashMap();
     long m_buddyHSId;
+    // Local sites a read-only batch of replicated table reads can be spread across,
+    // starting with the buddy
+    final List<Long> m_localHSIds = new ArrayList<Long>();
     FragmentTaskMessage m_remoteWork = null;
     FragmentTaskMessage m_localWork = null;
     boolean m_haveDistributedInitTask = false;
@@ -79,12 +83,22 @@ public class MpTransactionState extends TransactionState
                        TransactionInfoBaseMessage notice,
                        List<Long> useHSIds, Map<Integer, Long> partitionMasters,
                        long buddyHSId, boolean isRestart)
+    {
+        this(mailbox, notice, useHSIds, partitionMasters,
+                Collections.singletonList(buddyHSId), isRestart);
+    }
+
+    MpTransactionState(Mailbox mailbox,
+                       TransactionInfoBaseMessage notice,
+                       List<Long> useHSIds, Map<Integer, Long> partitionMasters,
+                       List<Long> localHSIds, boolean isRestart)
     {
         super(mailbox, notice);
         m_initiationMsg = (Iv2InitiateTaskMessage)notice;
         m_useHSIds.addAll(useHSIds);
         m_masterHSIds.putAll(partitionMasters);
-        m_buddyHSId = buddyHSId;
+        m_localHSIds.addAll(localHSIds);
+        m_buddyHSId = localHSIds.get(0);
         m_isRestart = isRestart;
     }
 
@@ -255,53 +269,119 @@ public class MpTransactionState extends TransactionState
         // cleaning up if it decides new work is necessary that is local-only.
         m_remoteWork = null;
 
-        BorrowTaskMessage borrowmsg = new BorrowTaskMessage(m_localWork);
-        m_localWork.m_sourceHSId = m_mbox.getHSId();
-        // if we created a bogus fragment to distribute to serialize restart and borrow tasks,
-        // don't include the empty dependencies we got back in the borrow fragment.
-        if (!usedNullFragment) {
-            borrowmsg.addInputDepMap(m_remoteDepTables);
+        List<FragmentResponseMessage> responses;
+        if (!usedNullFragment && canSpreadLocalWork()) {
+            responses = spreadLocalWork();
         }
-        m_mbox.send(m_buddyHSId, borrowmsg);
-
-        FragmentResponseMessage msg;
-        while (true){
-            msg = pollForResponses();
-            assert(msg.getTableCount() > 0);
-            // If this is a restarted TXN, verify that this is not a stale message from a different Dependency
-            if (!m_isRestart || (msg.m_sourceHSId == m_buddyHSId &&
-                    msg.getTableDependencyIdAtIndex(0) == m_localWork.getOutputDepId(0))) {
-                // Will roll-back and throw if this message has an exception
-                checkForException(msg);
-                break;
-            } else {
-                // It's possible to receive stale responses from remote sites on restart,
-                // ignore those
-                assert m_isRestart;
+        else {
+            BorrowTaskMessage borrowmsg = new BorrowTaskMessage(m_localWork);
+            m_localWork.m_sourceHSId = m_mbox.getHSId();
+            // if we created a bogus fragment to distribute to serialize restart and borrow tasks,
+            // don't include the empty dependencies we got back in the borrow fragment.
+            if (!usedNullFragment) {
+                borrowmsg.addInputDepMap(m_remoteDepTables);
+            }
+            m_mbox.send(m_buddyHSId, borrowmsg);
+
+            FragmentResponseMessage msg;
+            while (true){
+                msg = pollForResponses();
+                assert(msg.getTableCount() > 0);
+                // If this is a restarted TXN, verify that this is not a stale message from a different Dependency
+                if (!m_isRestart || (msg.m_sourceHSId == m_buddyHSId &&
+                        msg.getTableDependencyIdAtIndex(0) == m_localWork.getOutputDepId(0))) {
+                    // Will roll-back and throw if this message has an exception
+                    checkForException(msg);
+                    break;
+                } else {
+                    // It's possible to receive stale responses from remote sites on restart,
+                    // ignore those
+                    assert m_isRestart;
+                }
             }
+            responses = Collections.singletonList(msg);
         }
         m_localWork = null;
 
-        // Build results from the FragmentResponseMessage
+        // Build results from the FragmentResponseMessages
         // This is similar to dependency tracking...maybe some
         // sane way to merge it
         Map<Integer, List<VoltTable>> results =
             new HashMap<Integer, List<VoltTable>>();
-        for (int i = 0; i < msg.getTableCount(); i++) {
-            int this_depId = msg.getTableDependencyIdAtIndex(i);
-            VoltTable this_dep = msg.getTableAtIndex(i);
-            List<VoltTable> tables = results.get(this_depId);
-            if (tables == null) {
-                tables = new ArrayList<VoltTable>();
-                results.put(this_depId, tables);
+        for (FragmentResponseMessage msg : responses) {
+            for (int i = 0; i < msg.getTableCount(); i++) {
+                int this_depId = msg.getTableDependencyIdAtIndex(i);
+                VoltTable this_dep = msg.getTableAtIndex(i);
+                List<VoltTable> tables = results.get(this_depId);
+                if (tables == null) {
+                    tables = new ArrayList<VoltTable>();
+                    results.put(this_depId, tables);
+                }
+                tables.add(this_dep);
             }
-            tables.add(this_dep);
         }
 
         // Need some sanity check that we got all of the expected output dependencies?
         return results;
     }
 
+    /**
+     * A read-only batch whose local fragments take no input dependencies only reads
+     * replicated tables, which every local site has a copy of, so its fragments can
+     * run on several local sites at once.
+     */
+    private boolean canSpreadLocalWork()
+    {
+        return !m_isRestart &&
+                isReadOnly() &&
+                m_localHSIds.size() > 1 &&
+                m_localWork.getFragmentCount() > 1 &&
+                !m_localWork.isSysProcTask() &&
+                m_remoteDepTables.isEmpty() &&
+                m_localWork.getAllUnorderedInputDepIds().length == 0;
+    }
+
+    /**
+     * Deal the fragments of the local work round-robin to the local sites as borrow
+     * tasks and wait for all of them to respond.
+     */
+    private List<FragmentResponseMessage> spreadLocalWork()
+    {
+        final int fragmentCount = m_localWork.getFragmentCount();
+        final int siteCount = Math.min(m_localHSIds.size(), fragmentCount);
+        List<List<Integer>> assignments = new ArrayList<List<Integer>>(siteCount);
+        for (int i = 0; i < siteCount; i++) {
+            assignments.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < fragmentCount; i++) {
+            assignments.get(i % siteCount).add(i);
+        }
+
+        Set<Long> waiting = new HashSet<Long>();
+        for (int i = 0; i < siteCount; i++) {
+            FragmentTaskMessage work = m_localWork.withFragments(assignments.get(i));
+            work.m_sourceHSId = m_mbox.getHSId();
+            long hsid = m_localHSIds.get(i);
+            waiting.add(hsid);
+            m_mbox.send(hsid, new BorrowTaskMessage(work));
+        }
+
+        // Collect every response before looking for failures so that no response
+        // of this batch is left behind for the next one
+        List<FragmentResponseMessage> responses = new ArrayList<FragmentResponseMessage>(siteCount);
+        while (!waiting.isEmpty()) {
+            FragmentResponseMessage msg = pollForResponses();
+            if (waiting.remove(msg.m_sourceHSId)) {
+                responses.add(msg);
+            }
+        }
+        for (FragmentResponseMessage msg : responses) {
+            // Will roll-back and throw if this message has an exception
+            checkForException(msg);
+        }
+        return responses;
+    }
+
     private FragmentResponseMessage pollForResponses()
     {
         FragmentResponseMessage msg = null;
@@ -65,13 +65,18 @@ abstract public class ProcedureTask extends TransactionTask
         final InitiateResponseMessage response = new InitiateResponseMessage(task);
 
         try {
+            ProcedureRunner runner = siteConnection.getProcedureRunner(m_procName);
             Object[] callerParams = null;
             /*
              * Parameters are lazily deserialized. We may not find out until now
              * that the parameter set is corrupt
              */
             try {
-                callerParams = task.getParameters();
+                if (runner != null) {
+                    callerParams = runner.readParameters(task.getStoredProcedureInvocation());
+                } else {
+                    callerParams = task.getParameters();
+                }
             } catch (RuntimeException e) {
                 Writer result = new StringWriter();
                 PrintWriter pw = new PrintWriter(result);
@@ -88,7 +93,6 @@ abstract public class ProcedureTask extends TransactionTask
             }
 
             ClientResponseImpl cr = null;
-            ProcedureRunner runner = siteConnection.getProcedureRunner(m_procName);
             if (runner == null) {
                 String error =
                         "Procedure " + m_procName + " is not present in the catalog. "  +
@@ -17,6 +17,7 @@
 
 package org.voltdb.iv2;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
@@ -651,6 +652,11 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         ExecutionEngine eeTemp = null;
         Deployment deploy = m_context.cluster.getDeployment().get("deployment");
         final int defaultDrBufferSize = Integer.getInteger("DR_DEFAULT_BUFFER_SIZE", 512 * 1024); // 512KB
+        // Without a spill directory temp tables fail at the memory limit
+        final String tempTableSpillDirectory =
+                deploy.getSystemsettings().get("systemsettings").getTemptablespill() ?
+                CatalogUtil.getTempTableSpill(new File(m_context.cluster.getVoltroot())).getAbsolutePath() :
+                null;
         try {
             if (m_backend == BackendTarget.NATIVE_EE_JNI) {
                 eeTemp =
@@ -663,6 +669,7 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                         m_context.cluster.getDrclusterid(),
                         defaultDrBufferSize,
                         deploy.getSystemsettings().get("systemsettings").getTemptablemaxsize(),
+                        tempTableSpillDirectory,
                         hashinatorConfig,
                         m_mpDrGateway != null);
             }
@@ -679,6 +686,7 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                         defaultDrBufferSize,
                         m_context.cluster.getDeployment().get("deployment").
                         getSystemsettings().get("systemsettings").getTemptablemaxsize(),
+                        tempTableSpillDirectory,
                         hashinatorConfig,
                         m_mpDrGateway != null);
                 eeTemp = (ExecutionEngine) spyMethod.invoke(null, internalEE);
@@ -695,6 +703,7 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                             m_context.cluster.getDrclusterid(),
                             defaultDrBufferSize,
                             deploy.getSystemsettings().get("systemsettings").getTemptablemaxsize(),
+                            tempTableSpillDirectory,
                             m_backend,
                             VoltDB.instance().getConfig().m_ipcPort,
                             hashinatorConfig,
@@ -17,17 +17,30 @@
 
 package org.voltdb.iv2;
 
-import java.util.concurrent.LinkedTransferQueue;
-
-import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.IdleStrategy;
+import org.voltcore.utils.MpscChunkedArrayQueue;
 import org.voltdb.StarvationTracker;
 
-/** SiteTaskerScheduler orders SiteTaskers for execution. */
+/**
+ * SiteTaskerScheduler orders SiteTaskers for execution.
+ * Any thread may offer tasks; only the site thread may take or poll them.
+ */
 public class SiteTaskerQueue
 {
-    private final LinkedTransferQueue<SiteTasker> m_tasks = new LinkedTransferQueue<SiteTasker>();
+    private final MpscChunkedArrayQueue<SiteTasker> m_tasks = new MpscChunkedArrayQueue<SiteTasker>();
+    private final IdleStrategy m_idleStrategy;
     private StarvationTracker m_starvationTracker;
 
+    public SiteTaskerQueue()
+    {
+        this(IdleStrategy.DEFAULT);
+    }
+
+    public SiteTaskerQueue(IdleStrategy idleStrategy)
+    {
+        m_idleStrategy = idleStrategy;
+    }
+
     public boolean offer(SiteTasker task)
     {
         return m_tasks.offer(task);
@@ -43,7 +56,7 @@ public class SiteTaskerQueue
             return task;
         }
         try {
-            return CoreUtils.queueSpinTake(m_tasks);
+            return m_tasks.take(m_idleStrategy);
         } finally {
             m_starvationTracker.endStarvation();
         }
@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -36,6 +37,7 @@ import org.voltdb.client.ClientStatsContext;
 import org.voltdb.client.BatchTimeoutOverrideType;
 import org.voltdb.client.NoConnectionsException;
 import org.voltdb.client.ProcCallException;
+import org.voltdb.client.ProcedureCall;
 import org.voltdb.client.ProcedureCallback;
 
 /**
@@ -363,6 +365,43 @@ public class JDBC4ClientConnection implements Closeable {
         }
     }
 
+    /**
+     * Executes a batch of procedures asynchronously, then calls the provided user callback with the
+     * server response of each call upon its completion. The response carries the handle of its call.
+     *
+     * @param callback
+     *            the user-specified callback to call with each server response.
+     * @param calls
+     *            the procedures to execute with their parameters.
+     * @return the result of the submission false if the client connection was terminated and unable
+     *         to post the requests to the server, true otherwise.
+     */
+    public boolean executeBatchAsync(ProcedureCallback callback, List<ProcedureCall> calls)
+            throws NoConnectionsException, IOException
+    {
+        ClientImpl currentClient = this.getClient();
+        try {
+            return currentClient.callProcedureBatch(callback, calls);
+        }
+        catch (NoConnectionsException e) {
+            this.dropClient(currentClient);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the partition whose master connection a call is pinned to, or -1 if the call may
+     * be routed to another connection: it is an ad hoc, multi-partition or read only call, the
+     * client doesn't know how the procedure is partitioned, or the master isn't connected.
+     *
+     * @param call
+     *            the procedure to execute with its parameters.
+     */
+    public long getPartitionForCall(ProcedureCall call) throws IOException
+    {
+        return this.getClient().getPartitionForProcedure(call.getProcName(), call.getParameters());
+    }
+
     /**
      * Executes a procedure asynchronously, returning a Future that can be used by the caller to
      * wait upon completion before processing the server response.
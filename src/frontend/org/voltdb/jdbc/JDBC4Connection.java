@@ -45,10 +45,13 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
     public static final String COMMIT_THROW_EXCEPTION = "jdbc.committhrowexception";
     public static final String ROLLBACK_THROW_EXCEPTION = "jdbc.rollbackthrowexception";
     public static final String QUERYTIMEOUT_UNIT = "jdbc.querytimeout.unit";
+    // Most statements of a batch that are sent without having received their response
+    public static final String BATCH_MAX_OUTSTANDING = "jdbc.batch.maxoutstanding";
 
     protected final JDBC4ClientConnection NativeConnection;
     protected final String User;
     protected TimeUnit queryTimeOutUnit = TimeUnit.SECONDS;
+    protected int batchMaxOutstanding = 1000;
     private boolean isClosed = false;
     private Properties props;
     private boolean autoCommit = true;
@@ -61,6 +64,10 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
         if (this.props.getProperty(JDBC4Connection.QUERYTIMEOUT_UNIT, "Seconds").equalsIgnoreCase("milliseconds")) {
             this.queryTimeOutUnit = TimeUnit.MILLISECONDS;
         }
+        String maxOutstanding = this.props.getProperty(JDBC4Connection.BATCH_MAX_OUTSTANDING);
+        if (maxOutstanding != null && Integer.parseInt(maxOutstanding) > 0) {
+            this.batchMaxOutstanding = Integer.parseInt(maxOutstanding);
+        }
     }
 
     private void checkClosed() throws SQLException
@@ -87,7 +87,8 @@ public class JDBC4PreparedStatement extends JDBC4Statement implements java.sql.P
     public void addBatch() throws SQLException
     {
         checkClosed();
-        if (this.Query.isOfType(VoltSQL.TYPE_EXEC,VoltSQL.TYPE_SELECT)) {
+        // Procedure calls are allowed, their update count is the first value of their first result
+        if (this.Query.isOfType(VoltSQL.TYPE_SELECT)) {
             throw SQLError.get(SQLError.ILLEGAL_STATEMENT, this.Query.toSqlString());
         }
         this.addBatch(this.Query.getExecutableQuery(this.parameters));
@@ -26,15 +26,23 @@ import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
+import org.voltdb.ClientResponseImpl;
 import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcCallException;
+import org.voltdb.client.ProcedureCall;
+import org.voltdb.client.ProcedureCallback;
 import org.voltdb.parser.JDBCParser;
 import org.voltdb.parser.SQLLexer;
 import org.voltdb.parser.JDBCParser.ParsedCall;
@@ -55,6 +63,8 @@ public class JDBC4Statement implements java.sql.Statement
         private final byte type;
         private final byte queryType;   // Type of query EXEC'd by @AdHoc
         private final Object[] parameters;
+        // Default insert procedure that runs this insert, used to send batched inserts to their partition
+        private String insertProcedure = null;
 
         private VoltSQL(String[] sql, int parameterCount, byte type)
         {
@@ -126,24 +136,7 @@ public class JDBC4Statement implements java.sql.Statement
             {
                 ClientResponse response = e.getClientResponse();
                 if (response != null) {
-                    // Map response status to specific JDBC exception, mostly GENERAL_ERROR except
-                    // for connection problems.
-                    switch (response.getStatus()) {
-                    case ClientResponse.CONNECTION_LOST:
-                        throw SQLError.get(e, SQLError.CONNECTION_CLOSED, "CONNECTION_LOST", e.getMessage());
-                    case ClientResponse.CONNECTION_TIMEOUT:
-                        throw SQLError.get(e, SQLError.CONNECTION_FAILURE, "CONNECTION_TIMEOUT", e.getMessage());
-                    case ClientResponse.SERVER_UNAVAILABLE:
-                        throw SQLError.get(e, SQLError.CONNECTION_FAILURE, "CONNECTION_UNAVAILABLE", e.getMessage());
-                    case ClientResponse.USER_ABORT:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "USER_ABORT", e.getMessage());
-                    case ClientResponse.UNEXPECTED_FAILURE:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "UNEXPECTED_FAILURE", e.getMessage());
-                    case ClientResponse.GRACEFUL_FAILURE:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "GRACEFUL_FAILURE", e.getMessage());
-                    default:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, String.format("status=%d", (int)response.getStatus()), e.getMessage());
-                    }
+                    throw responseError(response, e, e.getMessage());
                 } else {
                     throw SQLError.get(e, SQLError.GENERAL_ERROR, e.getMessage());
                 }
@@ -154,6 +147,43 @@ public class JDBC4Statement implements java.sql.Statement
             }
         }
 
+        // The call executing this query asynchronously
+        protected ProcedureCall toProcedureCall()
+        {
+            if (this.type == TYPE_EXEC && this.insertProcedure != null) {
+                // Skip the SQL text @AdHoc would take, the procedure takes the column values
+                return new ProcedureCall(this.insertProcedure,
+                        Arrays.copyOfRange(this.parameters, 1, this.parameters.length));
+            }
+            if (this.type == TYPE_EXEC) {
+                return new ProcedureCall(this.sql[0], this.parameters);
+            } else {
+                return new ProcedureCall("@AdHoc", this.sql[0]);
+            }
+        }
+
+        // Map response status to specific JDBC exception, mostly GENERAL_ERROR except
+        // for connection problems.
+        static SQLException responseError(ClientResponse response, Exception cause, String message)
+        {
+            switch (response.getStatus()) {
+            case ClientResponse.CONNECTION_LOST:
+                return SQLError.get(cause, SQLError.CONNECTION_CLOSED, "CONNECTION_LOST", message);
+            case ClientResponse.CONNECTION_TIMEOUT:
+                return SQLError.get(cause, SQLError.CONNECTION_FAILURE, "CONNECTION_TIMEOUT", message);
+            case ClientResponse.SERVER_UNAVAILABLE:
+                return SQLError.get(cause, SQLError.CONNECTION_FAILURE, "CONNECTION_UNAVAILABLE", message);
+            case ClientResponse.USER_ABORT:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "USER_ABORT", message);
+            case ClientResponse.UNEXPECTED_FAILURE:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "UNEXPECTED_FAILURE", message);
+            case ClientResponse.GRACEFUL_FAILURE:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "GRACEFUL_FAILURE", message);
+            default:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, String.format("status=%d", (int)response.getStatus()), message);
+            }
+        }
+
         public static boolean isUpdateResult(VoltTable table)
         {
             return ((table.getColumnName(0).length() == 0 || table.getColumnName(0).equals("modified_tuples"))&& table.getRowCount() == 1 && table.getColumnCount() == 1 && table.getColumnType(0) == VoltType.BIGINT);
@@ -179,7 +209,9 @@ public class JDBC4Statement implements java.sql.Statement
                 for (int i = 0; i < params.length; ++i) {
                     paramsOut[i+1] = params[i];
                 }
-                return new VoltSQL(new String[] {"@AdHoc"}, this.parameterCount, TYPE_EXEC, this.type, paramsOut);
+                VoltSQL query = new VoltSQL(new String[] {"@AdHoc"}, this.parameterCount, TYPE_EXEC, this.type, paramsOut);
+                query.insertProcedure = this.insertProcedure;
+                return query;
             }
         }
 
@@ -223,7 +255,221 @@ public class JDBC4Statement implements java.sql.Statement
                 parameterCount = queryParts.length-1;
             }
 
-            return new VoltSQL(new String[] {query}, parameterCount, type);
+            VoltSQL voltSQL = new VoltSQL(new String[] {query}, parameterCount, type);
+            if (parameterCount > 0) {
+                voltSQL.insertProcedure = JDBCParser.parseDefaultInsertProcedure(query);
+            }
+            return voltSQL;
+        }
+    }
+
+    /*
+     * Executes the statements of a batch in order. Consecutive calls of single-partition write
+     * procedures are sent asynchronously in chunks, keeping at most maxOutstanding of them without
+     * a response. Prepared inserts of every column of a partitioned table are sent as calls of the
+     * table's default insert procedure, so they are pipelined too. The client pins such calls to the connection of their partition master, so
+     * calls for the same partition are executed in the order they were sent. Every other
+     * statement (ad hoc, multi-partition, read only, or a call whose partition master is not
+     * connected) may take another connection, so it is only sent once everything before it has
+     * completed, and the statements after it wait for its response. Update counts are collected
+     * as the responses come back, responses from different connections are delivered on
+     * different threads.
+     */
+    private static class BatchExecution
+    {
+        private static final int CHUNK_SIZE = 100;
+
+        private final int[] updateCounts;
+        private final int maxOutstanding;
+        private final Semaphore outstanding;
+        // The failure of the statement with the lowest index, no more chunks are sent after a failure
+        private SQLException error = null;
+        private int errorIndex = Integer.MAX_VALUE;
+        // The statements before this one were sent
+        private int sentCount = 0;
+
+        BatchExecution(int size, int maxOutstanding)
+        {
+            this.updateCounts = new int[size];
+            Arrays.fill(this.updateCounts, EXECUTE_FAILED);
+            this.maxOutstanding = maxOutstanding;
+            this.outstanding = new Semaphore(maxOutstanding);
+        }
+
+        private class ChunkCallback implements ProcedureCallback
+        {
+            private final int start;
+            private final List<ProcedureCall> calls;
+            // Index in the chunk of each client handle, built by the first response
+            private Map<Long, Integer> indexes = null;
+
+            ChunkCallback(int start, List<ProcedureCall> calls)
+            {
+                this.start = start;
+                this.calls = calls;
+            }
+
+            private synchronized int indexOf(long handle)
+            {
+                if (indexes == null) {
+                    indexes = new HashMap<Long, Integer>(calls.size() * 2);
+                    for (int i = 0; i < calls.size(); i++) {
+                        indexes.put(calls.get(i).getHandle(), i);
+                    }
+                }
+                Integer index = indexes.get(handle);
+                return index == null ? -1 : start + index;
+            }
+
+            @Override
+            public void clientCallback(ClientResponse response) throws Exception
+            {
+                try {
+                    int index = indexOf(((ClientResponseImpl) response).getClientHandle());
+                    if (index < 0) {
+                        // Can't tell which statement it was, fail the batch at the start of the chunk
+                        failed(start, SQLError.get(SQLError.GENERAL_ERROR, response.getStatusString()));
+                    } else if (response.getStatus() != ClientResponse.SUCCESS) {
+                        failed(index, VoltSQL.responseError(response, null, response.getStatusString()));
+                    } else {
+                        try {
+                            succeeded(index, (int) response.getResults()[0].fetchRow(0).getLong(0));
+                        } catch (RuntimeException e) {
+                            failed(index, SQLError.get(e, SQLError.GENERAL_ERROR, String.valueOf(e.getMessage())));
+                        }
+                    }
+                } finally {
+                    outstanding.release();
+                }
+            }
+        }
+
+        private synchronized void succeeded(int index, int updateCount)
+        {
+            updateCounts[index] = updateCount;
+        }
+
+        private synchronized void failed(int index, SQLException e)
+        {
+            if (index < errorIndex) {
+                error = e;
+                errorIndex = index;
+            }
+        }
+
+        private synchronized void sent(int count)
+        {
+            sentCount = Math.max(sentCount, count);
+        }
+
+        private synchronized boolean hasFailed()
+        {
+            return error != null;
+        }
+
+        private boolean acquire(int permits, int index, long timeout, TimeUnit unit)
+        {
+            try {
+                if (timeout == Integer.MAX_VALUE) {
+                    outstanding.acquire(permits);
+                } else if (!outstanding.tryAcquire(permits, timeout, unit)) {
+                    failed(index, SQLError.get(SQLError.CONNECTION_FAILURE, "CONNECTION_TIMEOUT",
+                            "No response received in the allotted time"));
+                    return false;
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed(index, SQLError.get(e, SQLError.GENERAL_ERROR, "Interrupted while executing batch"));
+                return false;
+            }
+        }
+
+        // Send a chunk of calls starting at the given statement, false if it or an earlier statement failed
+        private boolean send(int start, List<ProcedureCall> calls, JDBC4ClientConnection connection,
+                long timeout, TimeUnit unit)
+        {
+            if (calls.isEmpty()) {
+                return true;
+            }
+            if (!acquire(calls.size(), start, timeout, unit)) {
+                return false;
+            }
+            boolean queued = false;
+            try {
+                queued = connection.executeBatchAsync(new ChunkCallback(start, calls), calls);
+                if (queued) {
+                    sent(start + calls.size());
+                } else {
+                    failed(start, SQLError.get(SQLError.CONNECTION_FAILURE, "Unable to queue the batch"));
+                }
+            } catch (IOException e) {
+                failed(start, SQLError.get(e, SQLError.CONNECTION_FAILURE, e.getMessage()));
+            } finally {
+                if (!queued) {
+                    outstanding.release(calls.size());
+                }
+            }
+            return queued && !hasFailed();
+        }
+
+        // Wait for the responses of everything that was sent, false if a statement failed
+        private boolean drain(int index, long timeout, TimeUnit unit)
+        {
+            if (!acquire(maxOutstanding, index, timeout, unit)) {
+                return false;
+            }
+            outstanding.release(maxOutstanding);
+            return !hasFailed();
+        }
+
+        int[] execute(List<VoltSQL> batch, JDBC4ClientConnection connection, long timeout, TimeUnit unit)
+        {
+            final int chunkSize = Math.min(CHUNK_SIZE, maxOutstanding);
+            List<ProcedureCall> calls = new ArrayList<ProcedureCall>(chunkSize);
+            int start = 0;
+            boolean ok = true;
+            for (int i = 0; i < batch.size() && ok; i++) {
+                final ProcedureCall call = batch.get(i).toProcedureCall();
+                long partition = -1;
+                try {
+                    partition = connection.getPartitionForCall(call);
+                } catch (IOException e) {
+                    failed(i, SQLError.get(e, SQLError.CONNECTION_FAILURE, e.getMessage()));
+                    break;
+                }
+                if (partition < 0) {
+                    // Not pinned to a partition master, it may overtake any statement before it
+                    // or be overtaken by any statement after it
+                    ok = send(start, calls, connection, timeout, unit) && drain(i, timeout, unit);
+                    calls = new ArrayList<ProcedureCall>(chunkSize);
+                    ok = ok && send(i, Collections.singletonList(call), connection, timeout, unit) &&
+                            drain(i + 1, timeout, unit);
+                } else {
+                    if (calls.isEmpty()) {
+                        start = i;
+                    }
+                    calls.add(call);
+                    if (calls.size() == chunkSize) {
+                        ok = send(start, calls, connection, timeout, unit);
+                        calls = new ArrayList<ProcedureCall>(chunkSize);
+                    }
+                }
+            }
+            if (ok) {
+                send(start, calls, connection, timeout, unit);
+            }
+
+            // Wait for the responses of everything that was sent
+            drain(batch.size(), timeout, unit);
+            synchronized (this) {
+                if (error != null) {
+                    // Counts of the statements that were sent, up to the failed one if none after it were
+                    return Arrays.copyOf(updateCounts,
+                            Math.min(updateCounts.length, Math.max(sentCount, errorIndex + 1)));
+                }
+                return updateCounts.clone();
+            }
         }
     }
 
@@ -412,6 +658,9 @@ public class JDBC4Statement implements java.sql.Statement
     }
 
     // Submits a batch of commands to the database for execution and if all commands execute successfully, returns an array of update counts.
+    // The commands are pipelined, see BatchExecution. Once one fails no more are sent, the BatchUpdateException
+    // has an update count for every command that was sent, EXECUTE_FAILED for those that failed. Commands sent
+    // along with the failed one may have executed, the counts end at the failed one if none were.
     @Override
     public int[] executeBatch() throws SQLException
     {
@@ -421,34 +670,26 @@ public class JDBC4Statement implements java.sql.Statement
             return new int[0];
         }
 
-        int[] updateCounts = new int[batch.size()];
-        // keep a running total of update counts
-        int runningUpdateCount = 0;
-
-        int i = 0;
+        BatchExecution execution = new BatchExecution(batch.size(), sourceConnection.batchMaxOutstanding);
+        int[] updateCounts;
         try {
-            for (; i < batch.size(); i++) {
-
-                setCurrentResult(
-                        null,
-                        (int) batch.get(i).execute(
-                                sourceConnection.NativeConnection,
-                                this.m_timeout,
-                                sourceConnection.queryTimeOutUnit)[0].fetchRow(
-                                0).getLong(0));
-                updateCounts[i] = this.lastUpdateCount;
-                runningUpdateCount += this.lastUpdateCount;
-            }
-        } catch (SQLException x) {
-            updateCounts[i] = EXECUTE_FAILED;
-            throw new BatchUpdateException(Arrays.copyOf(updateCounts, i + 1),
-                    x);
+            updateCounts = execution.execute(batch, sourceConnection.NativeConnection,
+                    this.m_timeout, sourceConnection.queryTimeOutUnit);
         } finally {
             clearBatch();
         }
-        // replace the update count from the last statement with the update count
-        // from the last batch.
-        this.lastUpdateCount = runningUpdateCount;
+        synchronized (execution) {
+            if (execution.error != null) {
+                throw new BatchUpdateException(updateCounts, execution.error);
+            }
+        }
+
+        // the update count is the total of the batch
+        int runningUpdateCount = 0;
+        for (int updateCount : updateCounts) {
+            runningUpdateCount += updateCount;
+        }
+        setCurrentResult(null, runningUpdateCount);
 
         return updateCounts;
     }
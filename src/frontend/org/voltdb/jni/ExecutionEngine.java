@@ -767,6 +767,8 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      * @param partitionId id of partitioned assigned to this EE
      * @param hostId id of the host this EE is running on
      * @param hostname name of the host this EE is running on
+     * @param tempTableSpillDirectory directory temp tables over the memory limit spill to,
+     *        empty to make them fail at the limit instead
      * @return error code
      */
     protected native int nativeInitialize(
@@ -780,7 +782,8 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
             int defaultDrBufferSize,
             long tempTableMemory,
             boolean createDrReplicatedStream,
-            int compactionThreshold);
+            int compactionThreshold,
+            byte tempTableSpillDirectory[]);
 
     /**
      * Sets (or re-sets) all the shared direct byte buffers in the EE.
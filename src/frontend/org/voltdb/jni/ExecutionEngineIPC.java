@@ -616,6 +616,28 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             final int port,
             final HashinatorConfig hashinatorConfig,
             final boolean createDrReplicatedStream) {
+        this(clusterIndex, siteId, partitionId, hostId, hostname, drClusterId, defaultDrBufferSize,
+             tempTableMemory, null, target, port, hashinatorConfig, createDrReplicatedStream);
+    }
+
+    /**
+     * @param tempTableSpillDirectory directory temp tables over the memory limit spill to,
+     *        or null to make them fail at the limit instead
+     */
+    public ExecutionEngineIPC(
+            final int clusterIndex,
+            final long siteId,
+            final int partitionId,
+            final int hostId,
+            final String hostname,
+            final int drClusterId,
+            final int defaultDrBufferSize,
+            final int tempTableMemory,
+            final String tempTableSpillDirectory,
+            final BackendTarget target,
+            final int port,
+            final HashinatorConfig hashinatorConfig,
+            final boolean createDrReplicatedStream) {
         super(siteId, partitionId);
 
         // m_counter = 0;
@@ -643,6 +665,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
                 drClusterId,
                 defaultDrBufferSize,
                 1024 * 1024 * tempTableMemory,
+                tempTableSpillDirectory,
                 hashinatorConfig,
                 createDrReplicatedStream);
     }
@@ -679,6 +702,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             final int drClusterId,
             final int defaultDrBufferSize,
             final long tempTableMemory,
+            final String tempTableSpillDirectory,
             final HashinatorConfig hashinatorConfig,
             final boolean createDrReplicatedStream)
     {
@@ -697,8 +721,13 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         m_data.putLong(EELoggers.getLogLevels());
         m_data.putLong(tempTableMemory);
         m_data.putInt(createDrReplicatedStream ? 1 : 0);
-        m_data.putInt((short)hostname.length());
-        m_data.put(hostname.getBytes(Charsets.UTF_8));
+        byte[] hostnameBytes = hostname.getBytes(Charsets.UTF_8);
+        byte[] spillDirectoryBytes = tempTableSpillDirectory == null ?
+                new byte[0] : tempTableSpillDirectory.getBytes(Charsets.UTF_8);
+        m_data.putInt(hostnameBytes.length);
+        m_data.putInt(spillDirectoryBytes.length);
+        m_data.put(hostnameBytes);
+        m_data.put(spillDirectoryBytes);
         try {
             m_data.flip();
             m_connection.write();
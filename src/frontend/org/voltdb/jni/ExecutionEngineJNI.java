@@ -107,8 +107,29 @@ public class ExecutionEngineJNI extends ExecutionEngine {
     private final BBContainer exceptionBufferOrigin = org.voltcore.utils.DBBPool.allocateDirect(1024 * 1024 * 5);
     private ByteBuffer exceptionBuffer = exceptionBufferOrigin.b();
 
+    /**
+     * initialize the native Engine object, with temp tables failing at the memory limit.
+     */
+    public ExecutionEngineJNI(
+            final int clusterIndex,
+            final long siteId,
+            final int partitionId,
+            final int hostId,
+            final String hostname,
+            final int drClusterId,
+            final int defaultDrBufferSize,
+            final int tempTableMemory,
+            final HashinatorConfig hashinatorConfig,
+            final boolean createDrReplicatedStream)
+    {
+        this(clusterIndex, siteId, partitionId, hostId, hostname, drClusterId, defaultDrBufferSize,
+             tempTableMemory, null, hashinatorConfig, createDrReplicatedStream);
+    }
+
     /**
      * initialize the native Engine object.
+     * @param tempTableSpillDirectory directory temp tables over the memory limit spill to,
+     *        or null to make them fail at the limit instead
      */
     public ExecutionEngineJNI(
             final int clusterIndex,
@@ -119,6 +140,7 @@ public class ExecutionEngineJNI extends ExecutionEngine {
             final int drClusterId,
             final int defaultDrBufferSize,
             final int tempTableMemory,
+            final String tempTableSpillDirectory,
             final HashinatorConfig hashinatorConfig,
             final boolean createDrReplicatedStream)
     {
@@ -148,7 +170,8 @@ public class ExecutionEngineJNI extends ExecutionEngine {
                     defaultDrBufferSize,
                     tempTableMemory * 1024 * 1024,
                     createDrReplicatedStream,
-                    EE_COMPACTION_THRESHOLD);
+                    EE_COMPACTION_THRESHOLD,
+                    tempTableSpillDirectory == null ? new byte[0] : getStringBytes(tempTableSpillDirectory));
         checkErrorCode(errorCode);
 
         setupPsetBuffer(256 * 1024); // 256k seems like a reasonable per-ee number (but is totally pulled from my a**)
@@ -213,6 +213,25 @@ public class FragmentTaskMessage extends TransactionInfoBaseMessage
         assert(selfCheck());
     }
 
+    /**
+     * Copy of this message carrying only the fragments at the given indexes,
+     * used to run the independent fragments of one batch on different sites.
+     */
+    public FragmentTaskMessage withFragments(List<Integer> indexes)
+    {
+        FragmentTaskMessage copy = new FragmentTaskMessage(getInitiatorHSId(), getCoordinatorHSId(), this);
+        copy.m_items = new ArrayList<FragmentData>(indexes.size());
+        copy.m_inputDepCount = 0;
+        for (int index : indexes) {
+            FragmentData item = m_items.get(index);
+            copy.m_items.add(item);
+            if (item.m_inputDepIds != null) {
+                copy.m_inputDepCount += item.m_inputDepIds.size();
+            }
+        }
+        return copy;
+    }
+
     public void setProcedureName(String procedureName) {
         Iv2InitiateTaskMessage it = getInitiateTask();
         if (it != null) {
@@ -40,6 +40,9 @@ public class JDBCParser
     private static final Pattern PAT_CALL_WITHOUT_PARAMETERS = Pattern.compile(
             "^\\s*\\{\\s*call\\s+([^\\s()]+)\\s*\\}\\s*$", Pattern.CASE_INSENSITIVE);
     private static final Pattern PAT_CLEAN_CALL_PARAMETERS = Pattern.compile("[\\s,]+");
+    private static final Pattern PAT_INSERT_ALL_PARAMETERS = Pattern.compile(
+            "^\\s*insert\\s+into\\s+([a-z_][a-z0-9_]*)\\s+values\\s*\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE);
 
     //========== Public Methods ==========
 
@@ -78,4 +81,20 @@ public class JDBCParser
         }
         return null;
     }
+
+    /**
+     * Get the default insert procedure of the table an insert statement inserts into, for
+     * statements like "insert into <table> values (?, ?, ...)" that give a parameter for
+     * every column. The procedure runs that same statement.
+     * @param sql  statement to parse
+     * @return     procedure name or null if the statement isn't such an insert
+     */
+    public static String parseDefaultInsertProcedure(String sql)
+    {
+        Matcher m = PAT_INSERT_ALL_PARAMETERS.matcher(sql);
+        if (m.matches()) {
+            return m.group(1).toUpperCase() + ".insert";
+        }
+        return null;
+    }
 }
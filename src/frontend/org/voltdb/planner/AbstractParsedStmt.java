@@ -68,13 +68,33 @@ public abstract class AbstractParsedStmt {
 
     protected String m_contentDeterminismMessage = null;
 
-     // Internal statement counter
-    public static int NEXT_STMT_ID = 0;
-    // Internal parameter counter
-    public static int NEXT_PARAMETER_ID = 0;
+    // Internal statement and parameter counters, reset for each statement that is parsed.
+    // They are kept per thread so that ad hoc planner threads each number their own plans.
+    private static final ThreadLocal<int[]> NEXT_IDS = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[] { 0, 0 };
+        }
+    };
+    private static final int STMT_ID = 0;
+    private static final int PARAMETER_ID = 1;
     // The unique id to identify the statement
     public int m_stmtId;
 
+    /**
+     * @return The next id for a statement or subquery of the statement being parsed
+     */
+    public static int nextStmtId() {
+        return NEXT_IDS.get()[STMT_ID]++;
+    }
+
+    /**
+     * @return The next parameter index of the statement being parsed
+     */
+    public static int nextParameterId() {
+        return NEXT_IDS.get()[PARAMETER_ID]++;
+    }
+
     public String m_sql;
 
     // The initial value is a safety net for the case of parameter-less statements.
@@ -178,7 +198,7 @@ public abstract class AbstractParsedStmt {
            throw new RuntimeException("Unexpected Element: " + stmtTypeElement.name);
        }
        // Set the unique id
-       retval.m_stmtId = NEXT_STMT_ID++;
+       retval.m_stmtId = nextStmtId();
        return retval;
    }
 
@@ -213,8 +233,9 @@ public abstract class AbstractParsedStmt {
             Database db, String joinOrder) {
 
         // reset the statement counters
-        NEXT_STMT_ID = 0;
-        NEXT_PARAMETER_ID = 0;
+        int[] nextIds = NEXT_IDS.get();
+        nextIds[STMT_ID] = 0;
+        nextIds[PARAMETER_ID] = 0;
         AbstractParsedStmt retval = getParsedStmt(stmtTypeElement, paramValues, db);
 
         parse(retval, sql, stmtTypeElement, db, joinOrder);
@@ -496,7 +517,7 @@ public abstract class AbstractParsedStmt {
         }
 
         // This is a TVE from the correlated expression
-        int paramIdx = NEXT_PARAMETER_ID++;
+        int paramIdx = nextParameterId();
         ParameterValueExpression pve = new ParameterValueExpression(paramIdx, expr);
         m_parameterTveMap.put(paramIdx, expr);
         return pve;
@@ -903,13 +924,13 @@ public abstract class AbstractParsedStmt {
     protected AbstractExpression replaceExpressionsWithPve(AbstractExpression expr) {
         assert(expr != null);
         if (expr instanceof TupleValueExpression) {
-            int paramIdx = NEXT_PARAMETER_ID++;
+            int paramIdx = nextParameterId();
             ParameterValueExpression pve = new ParameterValueExpression(paramIdx, expr);
             m_parameterTveMap.put(paramIdx, expr);
             return pve;
         }
         if (expr instanceof AggregateExpression) {
-            int paramIdx = NEXT_PARAMETER_ID++;
+            int paramIdx = nextParameterId();
             ParameterValueExpression pve = new ParameterValueExpression(paramIdx, expr);
             // Disallow aggregation of parent columns in a subquery.
             // except the case HAVING AGG(T1.C1) IN (SELECT T2.C2 ...)
@@ -1207,8 +1228,9 @@ public abstract class AbstractParsedStmt {
                 m_paramsByIndex.put(index, pve);
             }
         }
-        if (max_parameter_id >= NEXT_PARAMETER_ID) {
-            NEXT_PARAMETER_ID = (int)max_parameter_id + 1;
+        int[] nextIds = NEXT_IDS.get();
+        if (max_parameter_id >= nextIds[PARAMETER_ID]) {
+            nextIds[PARAMETER_ID] = (int)max_parameter_id + 1;
         }
     }
 
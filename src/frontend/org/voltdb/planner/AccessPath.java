@@ -29,6 +29,10 @@ public class AccessPath {
     IndexUseType use = IndexUseType.COVERING_UNIQUE_EQUALITY;
     boolean nestLoopIndexJoin = false;
     boolean requiresSendReceive = false;
+    // Join the inner node this path scans with a hash join instead of a nested loop join
+    boolean hashJoin = false;
+    // A copy of this path that is joined with a hash join is also planned
+    boolean hasHashJoinCopy = false;
     boolean keyIterate = false;
     IndexLookupType lookupType = IndexLookupType.EQ;
     SortDirectionType sortDirection = SortDirectionType.INVALID;
@@ -43,6 +47,28 @@ public class AccessPath {
     final ArrayList<AbstractExpression> bindings = new ArrayList<AbstractExpression>();
     final ArrayList<AbstractExpression> eliminatedPostExprs = new ArrayList<AbstractExpression>();
 
+    AccessPath() {
+    }
+
+    AccessPath(AccessPath other) {
+        index = other.index;
+        use = other.use;
+        nestLoopIndexJoin = other.nestLoopIndexJoin;
+        requiresSendReceive = other.requiresSendReceive;
+        hashJoin = other.hashJoin;
+        hasHashJoinCopy = other.hasHashJoinCopy;
+        keyIterate = other.keyIterate;
+        lookupType = other.lookupType;
+        sortDirection = other.sortDirection;
+        initialExpr.addAll(other.initialExpr);
+        indexExprs.addAll(other.indexExprs);
+        endExprs.addAll(other.endExprs);
+        otherExprs.addAll(other.otherExprs);
+        joinExprs.addAll(other.joinExprs);
+        bindings.addAll(other.bindings);
+        eliminatedPostExprs.addAll(other.eliminatedPostExprs);
+    }
+
     @Override
     public String toString() {
         String retval = "";
@@ -53,6 +79,7 @@ public class AccessPath {
         retval += "DIR:   " + sortDirection.toString() + "\n";
         retval += "ITER?: " + String.valueOf(keyIterate) + "\n";
         retval += "NLIJ?: " + String.valueOf(nestLoopIndexJoin) + "\n";
+        retval += "HASH?: " + String.valueOf(hashJoin) + "\n";
 
         retval += "IDX EXPRS:\n";
         int i = 0;
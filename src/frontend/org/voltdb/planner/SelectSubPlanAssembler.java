@@ -37,10 +37,12 @@ import org.voltdb.planner.parseinfo.SubqueryLeafNode;
 import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractReceivePlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.MaterializedScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
+import org.voltdb.types.ExpressionType;
 import org.voltdb.types.JoinType;
 import org.voltdb.types.PlanNodeType;
 import org.voltdb.utils.PermutationGenerator;
@@ -231,7 +233,11 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
 
             generateMorePlansForJoinTree(joinTree);
         }
-        return m_plans.poll();
+        // The best plan of each sub-query is shared by all the plans of a join order and
+        // stays linked to the last one generated. Link it to the plan handed out, so every
+        // plan is completed and costed with its sub-queries.
+        AbstractPlanNode plan = m_plans.poll();
+        return plan == null ? null : PlanAssembler.connectChildrenBestPlans(plan);
     }
 
     /**
@@ -333,6 +339,7 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
             // The inner node is a join node itself. Only naive access path is possible
             innerChildNode.m_accessPaths.add(
                     getRelevantNaivePath(parentNode.m_joinInnerOuterList, parentNode.m_joinInnerList));
+            addHashJoinAccessPaths(innerChildNode);
             return;
         }
 
@@ -398,9 +405,49 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
             innerChildNode.m_accessPaths.addAll(innerOuterAccessPaths);
         }
 
+        addHashJoinAccessPaths(innerChildNode);
         assert(innerChildNode.m_accessPaths.size() > 0);
     }
 
+    /**
+     * When the inner side is not accessed per outer row, an equi-join can build a hash table
+     * over the inner rows once and probe it per outer row instead of re-scanning them.
+     * For each access path of the inner node that is not driven by the outer tables and whose
+     * join expressions contain a usable hash key, add a copy of the path that is joined with
+     * a hash join. Both plans are then costed, so the PlanSelector decides between them and
+     * the NLIJ plans of any join-driven index paths.
+     *
+     * Each copy goes just ahead of its path. The plans of a join order are generated in
+     * access path order and the first of equally costed plans wins, so this keeps the
+     * plans that win ties, and the last plan of each join order, the same as without
+     * hash joins.
+     *
+     * @param innerChildNode The inner node of a join.
+     */
+    private static void addHashJoinAccessPaths(JoinNode innerChildNode) {
+        List<AccessPath> accessPaths = new ArrayList<AccessPath>();
+        for (AccessPath path : innerChildNode.m_accessPaths) {
+            if (path.index == null ||
+                    ! hasInnerOuterIndexExpression(innerChildNode.getTableAlias(),
+                                                   path.indexExprs,
+                                                   path.initialExpr,
+                                                   path.endExprs)) {
+                // An index scan keeps the join expressions it can't use in its otherExprs
+                List<AbstractExpression> joinClauses = new ArrayList<AbstractExpression>(path.joinExprs);
+                joinClauses.addAll(path.otherExprs);
+                if (getHashJoinNode(innerChildNode, joinClauses) != null) {
+                    AccessPath hashJoinPath = new AccessPath(path);
+                    hashJoinPath.hashJoin = true;
+                    accessPaths.add(hashJoinPath);
+                    path.hasHashJoinCopy = true;
+                }
+            }
+            accessPaths.add(path);
+        }
+        innerChildNode.m_accessPaths.clear();
+        innerChildNode.m_accessPaths.addAll(accessPaths);
+    }
+
     /**
      * generate all possible plans for the tree.
      *
@@ -574,7 +621,6 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
 
         AbstractJoinPlanNode ajNode = null;
         if (canHaveNLJ) {
-            NestLoopPlanNode nljNode = new NestLoopPlanNode();
             // get all the clauses that join the applicable two tables
             // Copy innerAccessPath.joinExprs to leave it unchanged,
             // avoiding accumulation of redundant expressions when
@@ -615,6 +661,19 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
                 // the inner node ONLY, that can not be pushed down.
                 joinClauses.addAll(innerAccessPath.otherExprs);
             }
+
+            // The hash join variants of the inner access paths are planned
+            // next to their nested loop joins, see addHashJoinAccessPaths.
+            AbstractJoinPlanNode nljNode = null;
+            if (innerAccessPath.hashJoin) {
+                nljNode = getHashJoinNode(innerJoinNode, joinClauses);
+                assert(nljNode != null);
+            }
+            else {
+                NestLoopPlanNode nlNode = new NestLoopPlanNode();
+                nlNode.setHasHashJoinAlternative(innerAccessPath.hasHashJoinCopy);
+                nljNode = nlNode;
+            }
             nljNode.setJoinPredicate(ExpressionUtil.combine(joinClauses));
 
             // combine the tails plan graph with the new head node
@@ -661,6 +720,82 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         return ajNode;
     }
 
+    /**
+     * Look for equality comparisons between an expression on the outer tables only and
+     * an expression of the same type on the inner tables only. Each such pair can be used
+     * as a hash key, with the outer operand probing a hash table built on the inner operand.
+     * The join clauses themselves are left intact -- they are still evaluated on each
+     * candidate row found by the hash lookup.
+     *
+     * @param innerJoinNode The join node for the inner side of the join.
+     * @param joinClauses The conjuncts of the join predicate.
+     * @return A HashJoinPlanNode with its hash keys set,
+     * or null if none of the join clauses can serve as a hash key.
+     */
+    private static HashJoinPlanNode getHashJoinNode(JoinNode innerJoinNode,
+                                                    List<AbstractExpression> joinClauses)
+    {
+        Collection<String> innerTableAliases = innerJoinNode.generateTableJoinOrder();
+        HashJoinPlanNode hjNode = null;
+        for (AbstractExpression clause : joinClauses) {
+            if (clause.getExpressionType() != ExpressionType.COMPARE_EQUAL) {
+                continue;
+            }
+            AbstractExpression left = clause.getLeft();
+            AbstractExpression right = clause.getRight();
+            // The key values have to hash identically on both sides,
+            // so only exact type matches qualify.
+            if (left.getValueType() != right.getValueType()) {
+                continue;
+            }
+            AbstractExpression outerKey;
+            AbstractExpression innerKey;
+            if (isHashKeyOperand(left, innerTableAliases, false) &&
+                    isHashKeyOperand(right, innerTableAliases, true)) {
+                outerKey = left;
+                innerKey = right;
+            }
+            else if (isHashKeyOperand(right, innerTableAliases, false) &&
+                    isHashKeyOperand(left, innerTableAliases, true)) {
+                outerKey = right;
+                innerKey = left;
+            }
+            else {
+                continue;
+            }
+            if (hjNode == null) {
+                hjNode = new HashJoinPlanNode();
+            }
+            hjNode.addHashKeys(outerKey, innerKey);
+        }
+        return hjNode;
+    }
+
+    /**
+     * @return true if the operand references columns of the given side of the join
+     * -- the inner tables if isInner is true, otherwise the outer tables -- and nothing
+     * else that would make its value unsuitable for a hash key.
+     */
+    private static boolean isHashKeyOperand(AbstractExpression operand,
+                                            Collection<String> innerTableAliases,
+                                            boolean isInner)
+    {
+        if (operand.hasSubquerySubexpression() || operand.hasParameterSubexpression()) {
+            return false;
+        }
+        List<TupleValueExpression> tves = ExpressionUtil.getTupleValueExpressions(operand);
+        if (tves.isEmpty()) {
+            return false;
+        }
+        for (TupleValueExpression tve : tves) {
+            if (tve.getTableAlias() == null ||
+                    innerTableAliases.contains(tve.getTableAlias()) != isInner) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * A method to filter out single-TVE expressions.
      *
@@ -24,9 +24,11 @@ import org.voltdb.planner.CompiledPlan;
 
 public class MicroOptimizationRunner {
 
-    // list all of the micro optimizations here
-    static ArrayList<MicroOptimization> optimizations = new ArrayList<MicroOptimization>();
-    static {
+    // list all of the micro optimizations here.
+    // Optimizations hold the statement being planned while they run, so each
+    // plan gets its own instances; ad hoc statements are planned concurrently.
+    private static ArrayList<MicroOptimization> optimizations() {
+        ArrayList<MicroOptimization> optimizations = new ArrayList<MicroOptimization>();
         // The orders here is important
         optimizations.add(new PushdownLimits());
         optimizations.add(new ReplaceWithIndexCounter());
@@ -37,10 +39,12 @@ public class MicroOptimizationRunner {
 
         // MP ORDER BY Optimization
         optimizations.add(new InlineOrderByIntoMergeReceive());
+        return optimizations;
     }
 
     public static void applyAll(CompiledPlan plan, AbstractParsedStmt parsedStmt)
     {
+        ArrayList<MicroOptimization> optimizations = optimizations();
         for (int i = 0; i < optimizations.size(); i++) {
             MicroOptimization opt = optimizations.get(i);
             opt.apply(plan, parsedStmt);
@@ -53,9 +53,15 @@ public abstract class AbstractPlanNode implements JSONString, Comparable<Abstrac
 
     /**
      * Internal PlanNodeId counter. Note that this member is static, which means
-     * all PlanNodes will have a unique id
+     * all PlanNodes will have a unique id. It is kept per thread so that ad hoc
+     * planner threads each number their own plans.
      */
-    private static int NEXT_PLAN_NODE_ID = 1;
+    private static final ThreadLocal<int[]> NEXT_PLAN_NODE_ID = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[] { 1 };
+        }
+    };
 
     // Keep this flag turned off in production or when testing user-accessible EXPLAIN output or when
     // using EXPLAIN output to validate plans.
@@ -79,7 +85,7 @@ public abstract class AbstractPlanNode implements JSONString, Comparable<Abstrac
      * Reset between plans
      */
     public static final void resetPlanNodeIds() {
-        NEXT_PLAN_NODE_ID = 1;
+        NEXT_PLAN_NODE_ID.get()[0] = 1;
     }
 
     public enum Members {
@@ -124,7 +130,7 @@ public abstract class AbstractPlanNode implements JSONString, Comparable<Abstrac
      * Instantiates a new plan node.
      */
     protected AbstractPlanNode() {
-        m_id = NEXT_PLAN_NODE_ID++;
+        m_id = NEXT_PLAN_NODE_ID.get()[0]++;
     }
 
     public int overrideId(int newId) {
@@ -0,0 +1,171 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.plannodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.types.PlanNodeType;
+import org.voltdb.types.SortDirectionType;
+
+/**
+ * An equi-join that hashes the inner (right) child's rows on the inner hash keys
+ * and probes the resulting hash table once per outer row with the outer hash keys.
+ * The i-th outer key is paired with the i-th inner key and both have the same value type.
+ * The hash keys only narrow the candidate inner rows -- the full join predicate is
+ * still evaluated against each candidate, so the keys never change the join semantics.
+ * Like the NestLoopPlanNode, the output preserves the order of the outer child.
+ */
+public class HashJoinPlanNode extends AbstractJoinPlanNode {
+
+    public enum Members {
+        OUTER_HASH_KEYS,
+        INNER_HASH_KEYS;
+    }
+
+    private List<AbstractExpression> m_outerHashKeys = new ArrayList<AbstractExpression>();
+    private List<AbstractExpression> m_innerHashKeys = new ArrayList<AbstractExpression>();
+
+    public HashJoinPlanNode() {
+        super();
+    }
+
+    @Override
+    public PlanNodeType getPlanNodeType() {
+        return PlanNodeType.HASHJOIN;
+    }
+
+    @Override
+    public void validate() throws Exception {
+        super.validate();
+
+        if (m_outerHashKeys.isEmpty() || m_outerHashKeys.size() != m_innerHashKeys.size()) {
+            throw new Exception("ERROR: Hash join requires matching non-empty lists of outer and inner hash keys");
+        }
+        for (AbstractExpression expr : m_outerHashKeys) {
+            expr.validate();
+        }
+        for (AbstractExpression expr : m_innerHashKeys) {
+            expr.validate();
+        }
+    }
+
+    /**
+     * Add a pair of equality operands to hash on.
+     * @param outerKey expression based only on columns of the outer child
+     * @param innerKey expression based only on columns of the inner child
+     */
+    public void addHashKeys(AbstractExpression outerKey, AbstractExpression innerKey) {
+        assert(outerKey.getValueType() == innerKey.getValueType());
+        m_outerHashKeys.add((AbstractExpression) outerKey.clone());
+        m_innerHashKeys.add((AbstractExpression) innerKey.clone());
+    }
+
+    public List<AbstractExpression> getOuterHashKeys() {
+        return m_outerHashKeys;
+    }
+
+    public List<AbstractExpression> getInnerHashKeys() {
+        return m_innerHashKeys;
+    }
+
+    @Override
+    public void resolveColumnIndexes()
+    {
+        super.resolveColumnIndexes();
+
+        final NodeSchema outer_schema = m_children.get(0).getOutputSchema();
+        final NodeSchema inner_schema = m_children.get(1).getOutputSchema();
+        resolvePredicate(m_outerHashKeys, outer_schema, inner_schema);
+        resolvePredicate(m_innerHashKeys, outer_schema, inner_schema);
+    }
+
+    @Override
+    public void computeCostEstimates(long childOutputTupleCountEstimate,
+                                     Cluster cluster,
+                                     Database db,
+                                     DatabaseEstimates estimates,
+                                     ScalarValueHints[] paramHints)
+    {
+        // Each inner tuple is read once to build the hash table and each outer
+        // tuple is read once to probe it. Unlike the NestLoopPlanNode, no inner
+        // tuple is revisited per outer tuple, so the work is linear in the size
+        // of the children.
+        long outerTupleCount = m_children.get(0).getEstimatedOutputTupleCount();
+        long innerTupleCount = m_children.get(1).getEstimatedOutputTupleCount();
+        m_estimatedOutputTupleCount = childOutputTupleCountEstimate;
+        m_estimatedProcessedTupleCount = innerTupleCount + outerTupleCount;
+    }
+
+    @Override
+    protected String explainPlanForNode(String indent) {
+        return "HASH " + this.m_joinType.toString() + " JOIN" +
+                (m_sortDirection == SortDirectionType.INVALID ? "" : " (" + m_sortDirection + ")") +
+                explainFilters(indent);
+    }
+
+    @Override
+    public void toJSONString(JSONStringer stringer) throws JSONException
+    {
+        super.toJSONString(stringer);
+        stringer.key(Members.OUTER_HASH_KEYS.name()).array();
+        for (AbstractExpression expr : m_outerHashKeys) {
+            stringer.object();
+            expr.toJSONString(stringer);
+            stringer.endObject();
+        }
+        stringer.endArray();
+        stringer.key(Members.INNER_HASH_KEYS.name()).array();
+        for (AbstractExpression expr : m_innerHashKeys) {
+            stringer.object();
+            expr.toJSONString(stringer);
+            stringer.endObject();
+        }
+        stringer.endArray();
+    }
+
+    @Override
+    public void loadFromJSONObject( JSONObject jobj, Database db ) throws JSONException
+    {
+        super.loadFromJSONObject(jobj, db);
+        AbstractExpression.loadFromJSONArrayChild(m_outerHashKeys, jobj,
+                                                  Members.OUTER_HASH_KEYS.name(), null);
+        AbstractExpression.loadFromJSONArrayChild(m_innerHashKeys, jobj,
+                                                  Members.INNER_HASH_KEYS.name(), null);
+    }
+
+    @Override
+    public void findAllExpressionsOfClass(Class< ? extends AbstractExpression> aeClass, Set<AbstractExpression> collected) {
+        super.findAllExpressionsOfClass(aeClass, collected);
+        for (AbstractExpression expr : m_outerHashKeys) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+        for (AbstractExpression expr : m_innerHashKeys) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+    }
+}
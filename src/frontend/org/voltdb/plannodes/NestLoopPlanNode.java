@@ -26,10 +26,17 @@ import org.voltdb.types.SortDirectionType;
 
 public class NestLoopPlanNode extends AbstractJoinPlanNode {
 
+    // Set by the planner when a HashJoinPlanNode over the same children is also costed
+    private boolean m_hasHashJoinAlternative = false;
+
     public NestLoopPlanNode() {
         super();
     }
 
+    public void setHasHashJoinAlternative(boolean hasHashJoinAlternative) {
+        m_hasHashJoinAlternative = hasHashJoinAlternative;
+    }
+
     @Override
     public PlanNodeType getPlanNodeType() {
         return PlanNodeType.NESTLOOP;
@@ -42,13 +49,21 @@ public class NestLoopPlanNode extends AbstractJoinPlanNode {
                                      DatabaseEstimates estimates,
                                      ScalarValueHints[] paramHints)
     {
-        // This method doesn't do anything besides what the parent method does,
-        // but it is a nice place to put a comment.
         // Since both children's' cost get included in the costing, this
-        // already mirrors the kind of estimating we do in a nestloopjoin.
-
+        // already mirrors the kind of estimating we do in a nestloopjoin
+        // when it is compared with other nestloopjoins and join orders.
         m_estimatedOutputTupleCount = childOutputTupleCountEstimate;
         m_estimatedProcessedTupleCount = childOutputTupleCountEstimate;
+        if ( ! m_hasHashJoinAlternative) {
+            return;
+        }
+        // Against a HashJoinPlanNode of the same children, which reads each
+        // side once, count the rescan of the inner child's output for every
+        // outer tuple. The hash join then costs what this node used to cost,
+        // so join order and access path choices are the same as without it.
+        long outerTupleCount = m_children.get(0).getEstimatedOutputTupleCount();
+        long innerTupleCount = m_children.get(1).getEstimatedOutputTupleCount();
+        m_estimatedProcessedTupleCount = outerTupleCount + outerTupleCount * innerTupleCount;
     }
 
     @Override
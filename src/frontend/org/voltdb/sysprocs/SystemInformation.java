@@ -53,6 +53,7 @@ import org.voltdb.catalog.User;
 import org.voltdb.dtxn.DtxnConstants;
 import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.MiscUtils;
+import org.voltdb.utils.NumaTopology;
 import org.voltdb.utils.VoltTableUtil;
 
 /**
@@ -438,6 +439,13 @@ public class SystemInformation extends VoltSystemProcedure
         if (hubAppender != null)
             port = hubAppender.getPort();
         vt.addRow(hostId, "LOG4JPORT", Integer.toString(port));
+        NumaTopology numa = NumaTopology.getLocal();
+        vt.addRow(hostId, "NUMANODES", Integer.toString(numa.getNodeCount()));
+        vt.addRow(hostId, "NUMATOPOLOGY", numa.toString());
+        VoltDB.Configuration config = VoltDB.instance().getConfig();
+        vt.addRow(hostId, "NUMAPLACEMENT",
+                Boolean.toString(config != null && config.m_numaBindings &&
+                        CoreUtils.hasCoreBinder()));
         //Add license information
         if (MiscUtils.isPro()) {
             vt.addRow(hostId, "LICENSE", VoltDB.instance().getLicenseInformation());
@@ -570,6 +578,7 @@ public class SystemInformation extends VoltSystemProcedure
         results.addRow("elasticthroughput", Integer.toString(sysSettings.getElasticthroughput()));
         results.addRow("snapshotpriority", Integer.toString(sysSettings.getSnapshotpriority()));
         results.addRow("temptablesmaxsize", Integer.toString(sysSettings.getTemptablemaxsize()));
+        results.addRow("temptablesspill", Boolean.toString(sysSettings.getTemptablespill()));
         results.addRow("querytimeout", Integer.toString(sysSettings.getQuerytimeout()));
 
         return results;
@@ -0,0 +1,483 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.utils.CompressionService;
+
+/**
+ * Encodes the tuple blocks of a columnar snapshot. A native snapshot block is a row count
+ * followed by length prefixed rows, the same layout as the rows of a VoltTable. The columnar
+ * encoding transposes a block into one chunk per column and picks the smallest of
+ * three encodings for each chunk:
+ *
+ * PLAIN       the values back to back in their VoltTable serialization
+ * RUN_LENGTH  a run count followed by the length and value of each run of equal values
+ * DICTIONARY  the distinct values followed by a one or two byte index per row, only tried
+ *             for variable length columns where low cardinality VARCHARs make it pay off
+ *
+ * The encoded block is compressed with LZ4 and prefixed with its encoded length. Decoding
+ * restores the original row major block so restore and the snapshot tools see exactly what
+ * a native snapshot would have given them.
+ */
+public class ColumnarChunkCodec {
+
+    static final byte PLAIN = 0;
+    static final byte RUN_LENGTH = 1;
+    static final byte DICTIONARY = 2;
+
+    // An index into a bigger dictionary would be as wide as most of the values it replaces
+    static final int MAX_DICTIONARY_SIZE = 65536;
+
+    private static final LZ4Factory m_lz4 = LZ4Factory.fastestInstance();
+
+    /*
+     * Blocks are a couple of megabytes so keep the working space around
+     * for the compression threads and the chunk reader to reuse
+     */
+    private static class Scratch {
+        byte[] rows = new byte[0];
+        byte[] encoded = new byte[0];
+        byte[] compressed = new byte[0];
+        int[] offsets = new int[0];
+        int[] rowIndexes = new int[0];
+        int[] dictionary = new int[0];
+        int[] hashTable = new int[0];
+        int dictionarySize;
+    }
+
+    private static final ThreadLocal<Scratch> m_scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private final VoltType[] m_types;
+    // Serialized length of each column, -1 for variable length columns
+    private final int[] m_fixedLengths;
+
+    public ColumnarChunkCodec(VoltType[] types) {
+        m_types = types.clone();
+        m_fixedLengths = new int[types.length];
+        for (int ii = 0; ii < types.length; ii++) {
+            m_fixedLengths[ii] = types[ii].isVariableLength() ? -1 : types[ii].getLengthInBytesForFixedTypes();
+        }
+    }
+
+    public static ColumnarChunkCodec forSchema(VoltTable schema) {
+        VoltType[] types = new VoltType[schema.getColumnCount()];
+        for (int ii = 0; ii < types.length; ii++) {
+            types[ii] = schema.getColumnType(ii);
+        }
+        return new ColumnarChunkCodec(types);
+    }
+
+    /**
+     * Create a codec from the serialized VoltTable header stored in a save file,
+     * the header length, a status byte, the column count and then the column types.
+     */
+    public static ColumnarChunkCodec forTableHeader(ByteBuffer header) throws IOException {
+        final int columnCount = header.getShort(5);
+        if (columnCount < 0) {
+            throw new IOException("Corrupted table header has negative column count");
+        }
+        VoltType[] types = new VoltType[columnCount];
+        for (int ii = 0; ii < columnCount; ii++) {
+            types[ii] = VoltType.get(header.get(7 + ii));
+        }
+        return new ColumnarChunkCodec(types);
+    }
+
+    /**
+     * Encode and compress the row count and rows remaining in rows, writing the encoded
+     * length and compressed block at the position of out. The position of rows is left
+     * alone, the position of out is advanced past what was written.
+     * @return the number of bytes written to out
+     */
+    public int compress(ByteBuffer rows, ByteBuffer out) throws IOException {
+        final Scratch s = m_scratch.get();
+        final int encodedLength = encode(rows, s);
+        final int maxCompressedLength = m_lz4.fastCompressor().maxCompressedLength(encodedLength);
+        if (s.compressed.length < maxCompressedLength) {
+            s.compressed = new byte[maxCompressedLength];
+        }
+        final int compressedLength = m_lz4.fastCompressor().compress(
+                s.encoded, 0, encodedLength, s.compressed, 0, maxCompressedLength);
+        if (out.remaining() < compressedLength + 4) {
+            throw new IOException("Compressed columnar chunk of " + compressedLength +
+                    " bytes does not fit in the " + out.remaining() + " bytes available");
+        }
+        out.putInt(encodedLength);
+        out.put(s.compressed, 0, compressedLength);
+        return compressedLength + 4;
+    }
+
+    /**
+     * Decompress and decode a block written by {@link #compress(ByteBuffer, ByteBuffer)},
+     * putting the original row count and rows at the position of out.
+     */
+    public void decompress(ByteBuffer compressed, ByteBuffer out) throws IOException {
+        final Scratch s = m_scratch.get();
+        final ByteBuffer in = compressed.duplicate();
+        final int encodedLength = in.getInt();
+        if (encodedLength < 4 || encodedLength > out.remaining() + m_types.length) {
+            throw new IOException("Corrupted columnar chunk has unreasonable encoded length " + encodedLength);
+        }
+        final int compressedLength = in.remaining();
+        if (s.compressed.length < compressedLength) {
+            s.compressed = new byte[compressedLength];
+        }
+        in.get(s.compressed, 0, compressedLength);
+        if (s.encoded.length < encodedLength) {
+            s.encoded = new byte[encodedLength];
+        }
+        try {
+            final int decompressedLength = m_lz4.safeDecompressor().decompress(
+                    s.compressed, 0, compressedLength, s.encoded, 0, encodedLength);
+            if (decompressedLength != encodedLength) {
+                throw new IOException("Columnar chunk decompressed to " + decompressedLength +
+                        " bytes, expected " + encodedLength);
+            }
+        } catch (LZ4Exception e) {
+            throw new IOException(e);
+        }
+        decode(ByteBuffer.wrap(s.encoded, 0, encodedLength), s, out);
+    }
+
+    /**
+     * Encode, compress and checksum the block asynchronously, following the layout of
+     * {@link CompressionService#compressAndCRC32cBufferAsync(ByteBuffer, BBContainer)}
+     * with a 4-byte CRC32C of the payload at the position of the output buffer.
+     */
+    public Future<BBContainer> compressAndCRC32cAsync(final ByteBuffer rows, final BBContainer outC) {
+        assert(outC.b().isDirect());
+        return CompressionService.submitCompressionTask(new Callable<BBContainer>() {
+            @Override
+            public BBContainer call() throws Exception {
+                final ByteBuffer out = outC.b();
+                //Reserve 4-bytes for the CRC
+                final int crcPosition = out.position();
+                out.position(crcPosition + 4);
+                final int crcCalcStart = out.position();
+                compress(rows, out);
+                out.limit(out.position());
+                out.position(crcCalcStart);
+                final int crc32c = DBBPool.getCRC32C(outC.address(), crcCalcStart, out.limit() - crcCalcStart);
+                out.putInt(crcPosition, crc32c);
+                return outC;
+            }
+        });
+    }
+
+    /*
+     * Transpose the rows into column chunks in s.encoded and return the encoded length
+     */
+    int encode(ByteBuffer rowBuffer, Scratch s) throws IOException {
+        final int length = rowBuffer.remaining();
+        if (s.rows.length < length) {
+            s.rows = new byte[length];
+        }
+        rowBuffer.duplicate().get(s.rows, 0, length);
+        final ByteBuffer in = ByteBuffer.wrap(s.rows, 0, length);
+        final int rowCount = in.getInt(0);
+        final int columnCount = m_types.length;
+        if (rowCount < 0) {
+            throw new IOException("Tuple block has negative row count " + rowCount);
+        }
+
+        // Offset of every value in the rows, one column after another
+        final int[] offsets = ensureCapacity(s.offsets, rowCount * columnCount);
+        s.offsets = offsets;
+        int position = 4;
+        for (int row = 0; row < rowCount; row++) {
+            final int rowEnd = position + 4 + in.getInt(position);
+            position += 4;
+            for (int col = 0; col < columnCount; col++) {
+                offsets[col * rowCount + row] = position;
+                position += valueLength(in, col, position);
+            }
+            if (position != rowEnd) {
+                throw new IOException("Row length does not match the serialized length of its columns");
+            }
+        }
+
+        // Every column can fall back to plain, which is smaller than the rows without their length prefixes
+        if (s.encoded.length < length + columnCount) {
+            s.encoded = new byte[length + columnCount];
+        }
+        final ByteBuffer out = ByteBuffer.wrap(s.encoded);
+        out.putInt(rowCount);
+        for (int col = 0; col < columnCount; col++) {
+            final int base = col * rowCount;
+            int plainSize = 0;
+            int runCount = 0;
+            int runLengthSize = 4;
+            int previousOffset = -1;
+            int previousLength = 0;
+            for (int row = 0; row < rowCount; row++) {
+                final int offset = offsets[base + row];
+                final int valueLength = valueLength(in, col, offset);
+                plainSize += valueLength;
+                if (previousOffset == -1 ||
+                        !sameValue(s.rows, previousOffset, previousLength, offset, valueLength)) {
+                    runCount++;
+                    runLengthSize += 4 + valueLength;
+                    previousOffset = offset;
+                    previousLength = valueLength;
+                }
+            }
+            final int dictionarySize = m_fixedLengths[col] == -1 ? buildDictionary(in, col, base, rowCount, s) : -1;
+
+            if (dictionarySize != -1 && dictionarySize < runLengthSize && dictionarySize < plainSize) {
+                out.put(DICTIONARY);
+                out.putInt(s.dictionarySize);
+                for (int ii = 0; ii < s.dictionarySize; ii++) {
+                    final int offset = s.dictionary[ii];
+                    out.put(s.rows, offset, valueLength(in, col, offset));
+                }
+                final boolean narrow = s.dictionarySize <= 256;
+                out.put((byte)(narrow ? 1 : 2));
+                for (int row = 0; row < rowCount; row++) {
+                    if (narrow) {
+                        out.put((byte)s.rowIndexes[row]);
+                    } else {
+                        out.putShort((short)s.rowIndexes[row]);
+                    }
+                }
+            } else if (runLengthSize < plainSize) {
+                out.put(RUN_LENGTH);
+                out.putInt(runCount);
+                int row = 0;
+                while (row < rowCount) {
+                    final int offset = offsets[base + row];
+                    final int valueLength = valueLength(in, col, offset);
+                    int runEnd = row + 1;
+                    while (runEnd < rowCount &&
+                            sameValue(s.rows, offset, valueLength,
+                                      offsets[base + runEnd], valueLength(in, col, offsets[base + runEnd]))) {
+                        runEnd++;
+                    }
+                    out.putInt(runEnd - row);
+                    out.put(s.rows, offset, valueLength);
+                    row = runEnd;
+                }
+            } else {
+                out.put(PLAIN);
+                for (int row = 0; row < rowCount; row++) {
+                    final int offset = offsets[base + row];
+                    out.put(s.rows, offset, valueLength(in, col, offset));
+                }
+            }
+        }
+        return out.position();
+    }
+
+    /*
+     * Collect the distinct values of the column into s.dictionary and the index of each row's
+     * value into s.rowIndexes. Returns the encoded size or -1 if the column has too many
+     * distinct values to be worth it.
+     */
+    private int buildDictionary(ByteBuffer in, int col, int base, int rowCount, Scratch s) {
+        final int limit = Math.min(MAX_DICTIONARY_SIZE, rowCount / 2);
+        if (limit < 1) {
+            return -1;
+        }
+        final int tableSize = Integer.highestOneBit(limit) * 4;
+        final int mask = tableSize - 1;
+        s.hashTable = ensureCapacity(s.hashTable, tableSize);
+        s.dictionary = ensureCapacity(s.dictionary, limit);
+        s.rowIndexes = ensureCapacity(s.rowIndexes, rowCount);
+        final int[] table = s.hashTable;
+        Arrays.fill(table, 0, tableSize, -1);
+
+        final int[] offsets = s.offsets;
+        final byte[] rows = s.rows;
+        int dictionarySize = 0;
+        int dictionaryBytes = 0;
+        for (int row = 0; row < rowCount; row++) {
+            final int offset = offsets[base + row];
+            final int valueLength = valueLength(in, col, offset);
+            int slot = hash(rows, offset, valueLength) & mask;
+            int index;
+            while ((index = table[slot]) != -1) {
+                final int entry = s.dictionary[index];
+                if (sameValue(rows, entry, valueLength(in, col, entry), offset, valueLength)) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (index == -1) {
+                if (dictionarySize == limit) {
+                    return -1;
+                }
+                index = dictionarySize++;
+                table[slot] = index;
+                s.dictionary[index] = offset;
+                dictionaryBytes += valueLength;
+            }
+            s.rowIndexes[row] = index;
+        }
+        s.dictionarySize = dictionarySize;
+        return 4 + dictionaryBytes + 1 + rowCount * (dictionarySize <= 256 ? 1 : 2);
+    }
+
+    /*
+     * Rebuild the row count and length prefixed rows from the column chunks
+     */
+    private void decode(ByteBuffer in, Scratch s, ByteBuffer out) throws IOException {
+        final int rowCount = in.getInt(0);
+        final int columnCount = m_types.length;
+        if (rowCount < 0 || (long)rowCount * 4 > out.remaining()) {
+            throw new IOException("Corrupted columnar chunk has unreasonable row count " + rowCount);
+        }
+        final int[] offsets = ensureCapacity(s.offsets, rowCount * columnCount);
+        s.offsets = offsets;
+        int position = 4;
+        for (int col = 0; col < columnCount; col++) {
+            final int base = col * rowCount;
+            final byte encoding = in.get(position++);
+            switch (encoding) {
+            case PLAIN:
+                for (int row = 0; row < rowCount; row++) {
+                    offsets[base + row] = position;
+                    position += valueLength(in, col, position);
+                }
+                break;
+            case RUN_LENGTH: {
+                final int runCount = in.getInt(position);
+                position += 4;
+                int row = 0;
+                for (int run = 0; run < runCount; run++) {
+                    final int runLength = in.getInt(position);
+                    position += 4;
+                    if (runLength < 1 || runLength > rowCount - row) {
+                        throw new IOException("Corrupted columnar chunk has a run past the last row");
+                    }
+                    for (int ii = 0; ii < runLength; ii++) {
+                        offsets[base + row++] = position;
+                    }
+                    position += valueLength(in, col, position);
+                }
+                if (row != rowCount) {
+                    throw new IOException("Corrupted columnar chunk has runs for " + row +
+                            " of " + rowCount + " rows");
+                }
+                break;
+            }
+            case DICTIONARY: {
+                final int dictionarySize = in.getInt(position);
+                position += 4;
+                if (dictionarySize < 1 || dictionarySize > MAX_DICTIONARY_SIZE) {
+                    throw new IOException("Corrupted columnar chunk has dictionary of " + dictionarySize + " values");
+                }
+                final int[] dictionary = ensureCapacity(s.dictionary, dictionarySize);
+                s.dictionary = dictionary;
+                for (int ii = 0; ii < dictionarySize; ii++) {
+                    dictionary[ii] = position;
+                    position += valueLength(in, col, position);
+                }
+                final int indexWidth = in.get(position++);
+                for (int row = 0; row < rowCount; row++) {
+                    final int index;
+                    if (indexWidth == 1) {
+                        index = in.get(position) & 0xff;
+                    } else if (indexWidth == 2) {
+                        index = in.getShort(position) & 0xffff;
+                    } else {
+                        throw new IOException("Corrupted columnar chunk has dictionary index width " + indexWidth);
+                    }
+                    position += indexWidth;
+                    if (index >= dictionarySize) {
+                        throw new IOException("Corrupted columnar chunk has dictionary index past the end");
+                    }
+                    offsets[base + row] = dictionary[index];
+                }
+                break;
+            }
+            default:
+                throw new IOException("Corrupted columnar chunk has unknown column encoding " + encoding);
+            }
+        }
+        if (position != in.limit()) {
+            throw new IOException("Corrupted columnar chunk has " + (in.limit() - position) + " trailing bytes");
+        }
+
+        final byte[] encoded = in.array();
+        out.putInt(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            int rowLength = 0;
+            for (int col = 0; col < columnCount; col++) {
+                rowLength += valueLength(in, col, offsets[col * rowCount + row]);
+            }
+            out.putInt(rowLength);
+            for (int col = 0; col < columnCount; col++) {
+                final int offset = offsets[col * rowCount + row];
+                out.put(encoded, offset, valueLength(in, col, offset));
+            }
+        }
+    }
+
+    /*
+     * Serialized length of a value, variable length values have a 4-byte length prefix that is -1 for null
+     */
+    private int valueLength(ByteBuffer buf, int col, int offset) {
+        final int fixedLength = m_fixedLengths[col];
+        if (fixedLength != -1) {
+            return fixedLength;
+        }
+        return 4 + Math.max(0, buf.getInt(offset));
+    }
+
+    private static boolean sameValue(byte[] b, int offsetA, int lengthA, int offsetB, int lengthB) {
+        if (lengthA != lengthB) {
+            return false;
+        }
+        for (int ii = 0; ii < lengthA; ii++) {
+            if (b[offsetA + ii] != b[offsetB + ii]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] b, int offset, int length) {
+        int h = 1;
+        for (int ii = offset; ii < offset + length; ii++) {
+            h = 31 * h + b[ii];
+        }
+        // Spread the low bits, the table is indexed with a mask
+        return h ^ (h >>> 16);
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        return array.length < capacity ? new int[capacity] : array;
+    }
+}
@@ -56,9 +56,25 @@ import com.google_voltpatches.common.collect.Maps;
  * responsibility for writing them is spread round-robin across the sites on a
  * node.  Partitioned tables are written to the same target per table by every
  * site on a node.
+ *
+ * The same plan writes columnar snapshots, which only differ in how the
+ * data targets encode the tuple blocks.
  */
 public class NativeSnapshotWritePlan extends SnapshotWritePlan
 {
+    private final SnapshotFormat m_format;
+
+    public NativeSnapshotWritePlan()
+    {
+        this(SnapshotFormat.NATIVE);
+    }
+
+    public NativeSnapshotWritePlan(SnapshotFormat format)
+    {
+        assert(format == SnapshotFormat.NATIVE || format == SnapshotFormat.COLUMNAR);
+        m_format = format;
+    }
+
     @Override
     public Callable<Boolean> createSetup(String file_path,
                                             String file_nonce,
@@ -110,7 +126,7 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     context.getHostId(),
                     file_path,
                     file_nonce,
-                    SnapshotFormat.NATIVE,
+                    m_format,
                     tableArray);
 
         final ArrayList<SnapshotTableTask> partitionedSnapshotTasks =
@@ -262,7 +278,7 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                 table,
                 file_path,
                 file_nonce,
-                SnapshotFormat.NATIVE,
+                m_format,
                 hostId);
 
         if (isActiveActiveDRed && table.getIsdred()) {
@@ -276,7 +292,8 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     tracker.getPartitionsForHost(hostId),
                     CatalogUtil.getVoltTable(table, CatalogUtil.DR_HIDDEN_COLUMN_INFO),
                     txnId,
-                    timestamp);
+                    timestamp,
+                    m_format == SnapshotFormat.COLUMNAR);
         }
         else {
             sdt = new DefaultSnapshotDataTarget(saveFilePath,
@@ -289,7 +306,8 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     tracker.getPartitionsForHost(hostId),
                     CatalogUtil.getVoltTable(table),
                     txnId,
-                    timestamp);
+                    timestamp,
+                    m_format == SnapshotFormat.COLUMNAR);
         }
 
         m_targets.add(sdt);
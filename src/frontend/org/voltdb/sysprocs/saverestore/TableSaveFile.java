@@ -28,7 +28,9 @@ import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.zip.Checksum;
 
@@ -43,6 +45,7 @@ import org.voltcore.utils.Bits;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.EELibraryLoader;
+import org.voltdb.SnapshotFormat;
 import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.PosixAdvise;
@@ -261,6 +264,7 @@ public class TableSaveFile
                     }
                 }
                 m_hasVersion2FormatChunks = false;
+                m_columnarCodec = null;
             } else {
                 assert(m_versionNum[3] == 1 || m_versionNum[3] == 2);
                 if (m_versionNum[3] >= 2) {
@@ -290,6 +294,15 @@ public class TableSaveFile
                 m_isReplicated = obj.getBoolean("isReplicated");
                 m_isCompressed = obj.optBoolean("isCompressed", false);
                 m_checksumType = ChecksumType.valueOf(obj.optString("checksumType", "CRC32"));
+                //Columnar chunks added later, older files won't have the field
+                if (SnapshotFormat.COLUMNAR.name().equals(obj.optString("chunkFormat", null))) {
+                    if (!m_hasVersion2FormatChunks) {
+                        throw new IOException("Columnar chunks require the version 2 chunk format");
+                    }
+                    m_columnarCodec = ColumnarChunkCodec.forTableHeader(m_tableHeader);
+                } else {
+                    m_columnarCodec = null;
+                }
                 if (!m_isReplicated) {
                     JSONArray partitionIds = obj.getJSONArray("partitionIds");
                     m_partitionIds = new int[partitionIds.length()];
@@ -369,6 +382,10 @@ public class TableSaveFile
         return m_isCompressed;
     }
 
+    public boolean isColumnar() {
+        return m_columnarCodec != null;
+    }
+
     public int getTotalPartitions() {
         return m_totalPartitions;
     }
@@ -402,6 +419,14 @@ public class TableSaveFile
         }
 
         synchronized (this) {
+            // Chunks still being decompressed will land in the available chunks
+            while (!m_pendingChunks.isEmpty()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
             while (!m_availableChunks.isEmpty()) {
                 m_availableChunks.poll().discard();
             }
@@ -415,6 +440,9 @@ public class TableSaveFile
         while ((cont = m_buffers.poll()) != null) {
             cont.discard();
         }
+        while ((cont = m_inputBuffers.poll()) != null) {
+            cont.discard();
+        }
     }
 
     public Set<Integer> getCorruptedPartitionIds() {
@@ -431,7 +459,7 @@ public class TableSaveFile
         if (m_chunkReaderException != null) {
             throw m_chunkReaderException;
         }
-        if (!m_hasMoreChunks) {
+        if (!m_hasMoreChunks && m_pendingChunks.isEmpty()) {
             final Container c = m_availableChunks.poll();
             return c;
         }
@@ -443,7 +471,8 @@ public class TableSaveFile
         }
 
         Container c = null;
-        while (c == null && (m_hasMoreChunks || !m_availableChunks.isEmpty())) {
+        while (c == null && m_chunkReaderException == null &&
+                (m_hasMoreChunks || !m_pendingChunks.isEmpty() || !m_availableChunks.isEmpty())) {
             c = m_availableChunks.poll();
             if (c == null) {
                 try {
@@ -468,7 +497,20 @@ public class TableSaveFile
         if (m_chunkReaderException != null) {
             throw m_chunkReaderException;
         }
-        return m_hasMoreChunks || !m_availableChunks.isEmpty();
+        return m_hasMoreChunks || !m_pendingChunks.isEmpty() || !m_availableChunks.isEmpty();
+    }
+
+    /*
+     * Number of chunks read from the file that are still being decompressed, for tests
+     */
+    synchronized int getPendingChunkCount() {
+        return m_pendingChunks.size();
+    }
+
+    private synchronized void markAllPartitionsCorrupted() {
+        for (int partitionId : m_partitionIds) {
+            m_corruptedPartitions.add(partitionId);
+        }
     }
 
     private final FileChannel m_saveFile;
@@ -490,6 +532,13 @@ public class TableSaveFile
     private boolean m_hasMoreChunks = true;
     private ConcurrentLinkedQueue<BBContainer> m_buffers = new ConcurrentLinkedQueue<BBContainer>();
     private final ArrayDeque<Container> m_availableChunks = new ArrayDeque<Container>();
+    /*
+     * Chunks that have been read and are being decompressed, in file order. They
+     * move to m_availableChunks once they and every chunk before them are done.
+     */
+    private final ArrayDeque<PendingChunk> m_pendingChunks = new ArrayDeque<PendingChunk>();
+    // Buffers for the compressed chunks waiting to be decompressed
+    private final ConcurrentLinkedQueue<BBContainer> m_inputBuffers = new ConcurrentLinkedQueue<BBContainer>();
     private final HashSet<Integer> m_relevantPartitionIds;
     private final ChecksumType m_checksumType;
 
@@ -500,6 +549,12 @@ public class TableSaveFile
      */
     private final boolean m_hasVersion2FormatChunks;
 
+    /*
+     * Set if the tuple blocks were written as LZ4 compressed column chunks
+     * by a columnar snapshot, they are decoded back into rows as they are read
+     */
+    private final ColumnarChunkCodec m_columnarCodec;
+
     /**
      * Maintain a list of corrupted partitions. It is possible for uncorrupted partitions
      * to be recovered from a save file in the future
@@ -520,6 +575,12 @@ public class TableSaveFile
     private Thread m_chunkReaderThread = null;
     private IOException m_chunkReaderException = null;
 
+    private static class PendingChunk {
+        // Null if the chunk was skipped or failed
+        Container m_chunk;
+        boolean m_done = false;
+    }
+
     /**
      * Thread to read chunks from the disk
      */
@@ -528,12 +589,13 @@ public class TableSaveFile
         /*
          * The old method was out of hand. Going to start a new one with a different format
          * that should be easier to understand and validate.
+         *
+         * This thread only does the IO, reading each compressed chunk into its own buffer.
+         * The chunks are checksummed and decompressed on the compression service threads
+         * so several can be decompressed at once while the caller is loading the previous ones,
+         * and are handed out in file order as they complete.
          */
         private void readChunksV2() {
-            //For reading the compressed input.
-            final BBContainer fileInputBufferC =
-                    DBBPool.allocateDirect(CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
-            final ByteBuffer fileInputBuffer = fileInputBufferC.b();
             long sinceLastFAdvise = Long.MAX_VALUE;
             long positionAtLastFAdvise = 0;
             while (m_hasMoreChunks) {
@@ -579,11 +641,10 @@ public class TableSaveFile
                 try {
                     m_chunkReads.acquire();
                 } catch (InterruptedException e) {
-                    fileInputBufferC.discard();
                     return;
                 }
                 boolean expectedAnotherChunk = false;
-                Container c = null;
+                BBContainer fileInputBufferC = null;
                 try {
 
                     /*
@@ -616,9 +677,7 @@ public class TableSaveFile
                     int generatedValue = (int)partitionIdCRC.getValue();
                     if (generatedValue != nextChunkPartitionIdCRC) {
                         chunkLengthB.position(0);
-                        for (int partitionId : m_partitionIds) {
-                            m_corruptedPartitions.add(partitionId);
-                        }
+                        markAllPartitionsCorrupted();
                         throw new IOException("Chunk partition ID CRC check failed. " +
                                 "This corrupts all partitions in this file");
                     }
@@ -636,16 +695,15 @@ public class TableSaveFile
                         throw new IOException("Corrupted TableSaveFile chunk has negative chunk length");
                     }
 
+                    fileInputBufferC = getInputBuffer();
+                    final ByteBuffer fileInputBuffer = fileInputBufferC.b();
                     if (nextChunkLength > fileInputBuffer.capacity()) {
                         throw new IOException("Corrupted TableSaveFile chunk has unreasonable length " +
                                 "> DEFAULT_CHUNKSIZE bytes");
                     }
 
                     /*
-                     * Go fetch the compressed data so that the uncompressed size is known
-                     * and use that to set nextChunkLength to be the uncompressed length,
-                     * the code ahead that constructs the volt table is expecting
-                     * the uncompressed size/data since it is producing an uncompressed table
+                     * Go fetch the compressed data, the rest of the work is done by the compression service
                      */
                     fileInputBuffer.clear();
                     fileInputBuffer.limit(nextChunkLength);
@@ -657,88 +715,31 @@ public class TableSaveFile
                         sinceLastFAdvise += read;
                     }
                     fileInputBuffer.flip();
-                    nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
 
-                    /*
-                     * Validate the rest of the chunk. This can fail if the data is corrupted
-                     * or the length value was corrupted.
-                     */
-                    final int calculatedCRC =
-                            DBBPool.getBufferCRC32C(fileInputBuffer, 0, fileInputBuffer.remaining());
-                    if (calculatedCRC != nextChunkCRC) {
-                        m_corruptedPartitions.add(nextChunkPartitionId);
-                        if (m_continueOnCorruptedChunk) {
-                            m_chunkReads.release();
-                            continue;
-                        } else {
-                            throw new IOException("CRC mismatch in saved table chunk");
-                        }
+                    final PendingChunk pending = new PendingChunk();
+                    synchronized (TableSaveFile.this) {
+                        m_pendingChunks.offer(pending);
                     }
-
-                    /*
-                     * Now allocate space to store the chunk using the VoltTable serialization representation.
-                     * The chunk will contain an integer row count preceding it so it can
-                     * be sucked straight in. There is a little funny business to overwrite the
-                     * partition id that is not part of the serialization format
-                     */
-                    c = getOutputBuffer(nextChunkPartitionId);
-
-                    /*
-                     * If the length value is wrong or not all data made it to disk this read will
-                     * not complete correctly. There could be overflow, underflow etc.
-                     * so use a try finally block to indicate that all partitions are now corrupt.
-                     * The enclosing exception handlers will do the right thing WRT to
-                     * propagating the error and closing the file.
-                     */
-                    boolean completedRead = false;
+                    final BBContainer input = fileInputBufferC;
                     try {
-                        final ByteBuffer buf = c.b();
+                        CompressionService.submitCompressionTask(new Callable<Void>() {
+                            @Override
+                            public Void call() {
+                                decompressChunk(pending, input, nextChunkPartitionId, nextChunkCRC);
+                                return null;
+                            }
+                        });
+                        fileInputBufferC = null;
+                    } catch (RejectedExecutionException e) {
                         /*
-                         * Assemble a VoltTable out of the chunk of tuples.
-                         * Put in the header that was cached in the constructor,
-                         * then copy the tuple data.
+                         * The chunk will never complete, drop it so the chunks ahead of it
+                         * and close() don't wait on it
                          */
-                        buf.clear();
-                        buf.limit(nextChunkLength  + m_tableHeader.capacity());
-                        m_tableHeader.position(0);
-                        buf.put(m_tableHeader);
-                        //Doesn't move buffer position, does change the limit
-                        CompressionService.decompressBuffer(fileInputBuffer, buf);
-                        completedRead = true;
-                    } finally {
-                        if (!completedRead) {
-                            for (int partitionId : m_partitionIds) {
-                                m_corruptedPartitions.add(partitionId);
-                            }
-                            if (m_continueOnCorruptedChunk) {
-                                m_chunkReads.release();
-                                continue;
-                            } else {
-                                throw new IOException("Failed decompression of saved table chunk");
-                            }
-                        }
-                    }
-
-                    /*
-                     * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
-                     * in case it is the length value that is corrupted
-                     */
-                    if (m_relevantPartitionIds != null) {
-                        if (!m_relevantPartitionIds.contains(nextChunkPartitionId)) {
-                            m_chunkReads.release();
-                            continue;
+                        synchronized (TableSaveFile.this) {
+                            m_pendingChunks.remove(pending);
                         }
-                    }
-
-                    /*
-                     * VoltTable wants the buffer at the home position 0
-                     */
-                    c.b().position(0);
-
-                    synchronized (TableSaveFile.this) {
-                        m_availableChunks.offer(c);
-                        c = null;
-                        TableSaveFile.this.notifyAll();
+                        m_chunkReads.release();
+                        throw new IOException("Unable to decompress saved table chunk", e);
                     }
                 } catch (EOFException eof) {
                     synchronized (TableSaveFile.this) {
@@ -775,10 +776,134 @@ public class TableSaveFile
                         TableSaveFile.this.notifyAll();
                     }
                 } finally {
-                    if (c != null) c.discard();
+                    if (fileInputBufferC != null) m_inputBuffers.offer(fileInputBufferC);
+                }
+            }
+        }
+
+        /*
+         * Validate and decompress a chunk read by readChunksV2, runs on a compression service thread
+         */
+        private void decompressChunk(PendingChunk pending, BBContainer fileInputBufferC,
+                                     int nextChunkPartitionId, int nextChunkCRC) {
+            final ByteBuffer fileInputBuffer = fileInputBufferC.b();
+            Container c = null;
+            try {
+                /*
+                 * Validate the rest of the chunk. This can fail if the data is corrupted
+                 * or the length value was corrupted.
+                 */
+                final int calculatedCRC =
+                        DBBPool.getBufferCRC32C(fileInputBuffer, 0, fileInputBuffer.remaining());
+                if (calculatedCRC != nextChunkCRC) {
+                    synchronized (TableSaveFile.this) {
+                        m_corruptedPartitions.add(nextChunkPartitionId);
+                    }
+                    if (!m_continueOnCorruptedChunk) {
+                        throw new IOException("CRC mismatch in saved table chunk");
+                    }
+                    return;
+                }
+
+                /*
+                 * Skip irrelevant chunks once the CRC has validated the compressed data,
+                 * there is no point decompressing a chunk nobody is going to look at
+                 */
+                if (m_relevantPartitionIds != null) {
+                    if (!m_relevantPartitionIds.contains(nextChunkPartitionId)) {
+                        return;
+                    }
+                }
+
+                /*
+                 * Now allocate space to store the chunk using the VoltTable serialization representation.
+                 * The chunk will contain an integer row count preceding it so it can
+                 * be sucked straight in. There is a little funny business to overwrite the
+                 * partition id that is not part of the serialization format
+                 */
+                c = getOutputBuffer(nextChunkPartitionId);
+
+                /*
+                 * If the length value is wrong or not all data made it to disk this read will
+                 * not complete correctly. There could be overflow, underflow etc.
+                 * so catch everything and indicate that all partitions are now corrupt.
+                 */
+                try {
+                    final ByteBuffer buf = c.b();
+                    /*
+                     * Assemble a VoltTable out of the chunk of tuples.
+                     * Put in the header that was cached in the constructor,
+                     * then copy the tuple data.
+                     */
+                    buf.clear();
+                    final ByteBuffer tableHeader = m_tableHeader.duplicate();
+                    tableHeader.position(0);
+                    if (m_columnarCodec != null) {
+                        buf.put(tableHeader);
+                        //Rebuilds the rows at the buffer position
+                        m_columnarCodec.decompress(fileInputBuffer, buf);
+                        buf.flip();
+                    } else {
+                        final int nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
+                        buf.limit(nextChunkLength  + tableHeader.capacity());
+                        buf.put(tableHeader);
+                        //Doesn't move buffer position, does change the limit
+                        CompressionService.decompressBuffer(fileInputBuffer, buf);
+                    }
+                } catch (Exception e) {
+                    c.discard();
+                    c = null;
+                    markAllPartitionsCorrupted();
+                    if (!m_continueOnCorruptedChunk) {
+                        throw new IOException("Failed decompression of saved table chunk", e);
+                    }
+                    return;
+                }
+
+                /*
+                 * VoltTable wants the buffer at the home position 0
+                 */
+                c.b().position(0);
+            } catch (IOException e) {
+                e.printStackTrace();
+                synchronized (TableSaveFile.this) {
+                    m_hasMoreChunks = false;
+                    if (m_chunkReaderException == null) {
+                        m_chunkReaderException = e;
+                    }
+                }
+            } catch (Throwable t) {
+                if (c != null) {
+                    c.discard();
+                    c = null;
+                }
+                synchronized (TableSaveFile.this) {
+                    m_hasMoreChunks = false;
+                    if (m_chunkReaderException == null) {
+                        m_chunkReaderException = new IOException("Failed reading saved table chunk", t);
+                    }
+                }
+            } finally {
+                m_inputBuffers.offer(fileInputBufferC);
+                /*
+                 * A chunk that isn't handed out won't be released by getNextChunk
+                 */
+                if (c == null) {
+                    m_chunkReads.release();
+                }
+                synchronized (TableSaveFile.this) {
+                    pending.m_chunk = c;
+                    pending.m_done = true;
+                    // Hand out the chunks at the head of the file that are done
+                    while (!m_pendingChunks.isEmpty() && m_pendingChunks.peek().m_done) {
+                        final Container done = m_pendingChunks.poll().m_chunk;
+                        if (done != null) {
+                            m_availableChunks.offer(done);
+                        }
+                    }
+                    TableSaveFile.this.notifyAll();
                 }
             }
-            fileInputBufferC.discard();
         }
 
         private void readChunks() {
@@ -1043,6 +1168,14 @@ public class TableSaveFile
             }
             fileInputBufferC.discard();
         }
+        private BBContainer getInputBuffer() {
+            BBContainer c = m_inputBuffers.poll();
+            if (c == null) {
+                c = DBBPool.allocateDirect(CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
+            }
+            return c;
+        }
+
         private Container getOutputBuffer(final int nextChunkPartitionId) {
             BBContainer c = m_buffers.poll();
             if (c == null) {
@@ -1068,6 +1201,12 @@ public class TableSaveFile
                 } else {
                     readChunks();
                 }
+            } catch (Throwable t) {
+                synchronized (TableSaveFile.this) {
+                    if (m_chunkReaderException == null) {
+                        m_chunkReaderException = new IOException("Failed reading saved table chunks", t);
+                    }
+                }
             } finally {
                 synchronized (TableSaveFile.this) {
                     m_hasMoreChunks = false;
@@ -78,11 +78,49 @@ public interface BinaryDeque {
     public BBContainer poll(OutputContainerFactory ocf) throws IOException;
 
     /**
-     * Persist all objects in the queue to the backing store
+     * Persist all objects in the queue to the backing store. Concurrent callers may
+     * share a single write to the backing store.
      * @throws IOException
      */
     public void sync() throws IOException;
 
+    /**
+     * A cursor that polls objects from the deque independently of any other cursor.
+     */
+    public interface BinaryDequeReader {
+        /**
+         * Return the next object for this cursor, or null if it has polled everything
+         * @param ocf
+         * @return
+         * @throws IOException
+         */
+        public BBContainer poll(OutputContainerFactory ocf) throws IOException;
+
+        public boolean isEmpty() throws IOException;
+
+        public long sizeInBytes() throws IOException;
+
+        public int getNumObjects();
+    }
+
+    /**
+     * Open a cursor, or get the one already open, that starts at the oldest object still stored
+     * in the deque. Objects are only removed from the deque once every open cursor has polled
+     * them and discarded the returned containers. The methods of the deque that read it
+     * (poll, isEmpty, sizeInBytes and getNumObjects) use a default cursor that is always open.
+     * @param cursorId
+     * @return
+     * @throws IOException
+     */
+    public BinaryDequeReader openForRead(String cursorId) throws IOException;
+
+    /**
+     * Close a cursor opened with openForRead. Objects only it was holding on to are removed.
+     * @param cursorId
+     * @throws IOException
+     */
+    public void closeCursor(String cursorId) throws IOException;
+
     /**
      * Release all resources (open files) held by the back store of the queue. Continuing to use the deque
      * will result in an exception
@@ -1087,6 +1087,7 @@ public abstract class CatalogUtil {
             catDeployment.getSystemsettings().add("systemsettings");
 
         syssettings.setTemptablemaxsize(deployment.getSystemsettings().getTemptables().getMaxsize());
+        syssettings.setTemptablespill(deployment.getSystemsettings().getTemptables().isSpill());
         syssettings.setSnapshotpriority(deployment.getSystemsettings().getSnapshot().getPriority());
         syssettings.setElasticduration(deployment.getSystemsettings().getElastic().getDuration());
         syssettings.setElasticthroughput(deployment.getSystemsettings().getElastic().getThroughput());
@@ -1809,6 +1810,23 @@ public abstract class CatalogUtil {
 
     }
 
+    /**
+     * Get the directory temp tables over the memory limit spill to. Create it if missing.
+     */
+    public static File getTempTableSpill(File voltDbRoot) {
+        File tempTableSpillPath = new VoltFile(voltDbRoot, "temptable_spill");
+        if (!tempTableSpillPath.exists()) {
+            hostLog.info("Creating temp table spill directory: " +
+                         tempTableSpillPath.getAbsolutePath());
+            if (!tempTableSpillPath.mkdirs()) {
+                hostLog.fatal("Failed to create temp table spill directory \"" +
+                              tempTableSpillPath + "\"");
+            }
+        }
+        validateDirectory("temp table spill", tempTableSpillPath);
+        return tempTableSpillPath;
+    }
+
     public static File getDROverflow(PathsType.Droverflow paths, File voltDbRoot) {
         File drOverflowPath;
         drOverflowPath = new File(paths.getPath());
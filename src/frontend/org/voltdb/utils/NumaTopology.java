@@ -0,0 +1,219 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeMap;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+
+/**
+ * The NUMA nodes of this host and the CPUs of each, as reported by Linux in
+ * /sys/devices/system/node. Hosts without the information (or another OS) are
+ * reported as a single node with all of the available processors.
+ *
+ * Used to spread the sites, computation and network threads across the nodes when
+ * NUMA placement is enabled, binding each thread to the CPUs of one node. The EE of a
+ * site is created by the site thread after it is bound, so with the default local
+ * allocation policy its heap is placed in the memory of the same node.
+ */
+public class NumaTopology {
+
+    private static final VoltLogger hostLog = new VoltLogger("HOST");
+
+    static final File SYSFS_NODE_DIR = new File("/sys/devices/system/node");
+
+    // PosixJNAAffinity takes a 64 bit CPU mask
+    static final int MAX_BINDABLE_CPU = 63;
+
+    private static NumaTopology s_local;
+
+    // CPUs of each node that has any, by node id
+    private final TreeMap<Integer, List<Integer>> m_nodes;
+
+    NumaTopology(TreeMap<Integer, List<Integer>> nodes) {
+        m_nodes = nodes;
+    }
+
+    /**
+     * @return The topology of this host, detected on first use
+     */
+    public static synchronized NumaTopology getLocal() {
+        if (s_local == null) {
+            s_local = fromSysfs(SYSFS_NODE_DIR);
+        }
+        return s_local;
+    }
+
+    static NumaTopology fromSysfs(File nodeDir) {
+        TreeMap<Integer, List<Integer>> nodes = new TreeMap<Integer, List<Integer>>();
+        File[] files = nodeDir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (!f.getName().matches("node\\d+")) {
+                    continue;
+                }
+                try {
+                    List<Integer> cpus = parseCpuList(readLine(new File(f, "cpulist")));
+                    // memory only nodes have no CPUs to place threads on
+                    if (!cpus.isEmpty()) {
+                        nodes.put(Integer.valueOf(f.getName().substring("node".length())), cpus);
+                    }
+                } catch (Exception e) {
+                    hostLog.warn("Unable to read the CPUs of NUMA " + f.getName() + ": " + e.getMessage());
+                    nodes.clear();
+                    break;
+                }
+            }
+        }
+        if (nodes.isEmpty()) {
+            List<Integer> cpus = new ArrayList<Integer>();
+            for (int i = 0; i < CoreUtils.availableProcessors(); i++) {
+                cpus.add(i);
+            }
+            nodes.put(0, cpus);
+        }
+        return new NumaTopology(nodes);
+    }
+
+    private static String readLine(File f) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(f));
+        try {
+            String line = reader.readLine();
+            return line == null ? "" : line.trim();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Parse a Linux CPU list like "0-7,16-23" or "0,2,4"
+     */
+    static List<Integer> parseCpuList(String cpuList) {
+        List<Integer> cpus = new ArrayList<Integer>();
+        if (cpuList.isEmpty()) {
+            return cpus;
+        }
+        for (String range : cpuList.split(",")) {
+            String[] bounds = range.trim().split("-");
+            int first = Integer.parseInt(bounds[0]);
+            int last = bounds.length > 1 ? Integer.parseInt(bounds[1]) : first;
+            if (last < first) {
+                throw new IllegalArgumentException("Invalid CPU range " + range);
+            }
+            for (int cpu = first; cpu <= last; cpu++) {
+                cpus.add(cpu);
+            }
+        }
+        Collections.sort(cpus);
+        return cpus;
+    }
+
+    public int getNodeCount() {
+        return m_nodes.size();
+    }
+
+    /**
+     * @return The ids of the nodes with CPUs, in ascending order
+     */
+    public List<Integer> getNodes() {
+        return new ArrayList<Integer>(m_nodes.keySet());
+    }
+
+    public List<Integer> getCpus(int node) {
+        return Collections.unmodifiableList(m_nodes.get(node));
+    }
+
+    /**
+     * Placement is only worth it with more than one node, and only possible when
+     * all the CPUs fit in the affinity mask.
+     */
+    public boolean isPlaceable() {
+        if (m_nodes.size() < 2) {
+            return false;
+        }
+        for (List<Integer> cpus : m_nodes.values()) {
+            if (cpus.get(cpus.size() - 1) > MAX_BINDABLE_CPU) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The CPUs of a node in the core binding format of the bindings
+     * command line options, ranges separated by colons like "0-7:16-23"
+     */
+    public String getBinding(int node) {
+        return formatRanges(m_nodes.get(node), ":");
+    }
+
+    /**
+     * Offer the bindings of count threads to the queue, spreading them round robin
+     * across the nodes.
+     */
+    public void assignBindings(int count, Queue<String> bindings) {
+        List<Integer> nodes = getNodes();
+        for (int i = 0; i < count; i++) {
+            bindings.offer(getBinding(nodes.get(i % nodes.size())));
+        }
+    }
+
+    private static String formatRanges(List<Integer> cpus, String separator) {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < cpus.size()) {
+            int j = i;
+            while (j + 1 < cpus.size() && cpus.get(j + 1) == cpus.get(j) + 1) {
+                j++;
+            }
+            if (sb.length() > 0) {
+                sb.append(separator);
+            }
+            sb.append(cpus.get(i));
+            if (j > i) {
+                sb.append('-').append(cpus.get(j));
+            }
+            i = j + 1;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The topology as node ids and CPU lists, like "0:0-7,16-23;1:8-15,24-31"
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Integer node : m_nodes.keySet()) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(node).append(':').append(formatRanges(m_nodes.get(node), ","));
+        }
+        return sb.toString();
+    }
+}
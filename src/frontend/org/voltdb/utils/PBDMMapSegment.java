@@ -42,26 +42,14 @@ class PBDMMapSegment extends PBDSegment {
     private static final VoltLogger LOG = new VoltLogger("HOST");
 
     private MBBContainer m_buf;
-    private ByteBuffer m_readBuf;
 
     //If this is the first time polling a segment, madvise the entire thing
     //into memory
     private boolean m_haveMAdvised;
 
-    //Index of the next object to read, not an offset into the file
-    //The offset is maintained by the ByteBuffer. Used to determine if there is another object
-    int m_objectReadIndex;
-    private int m_bytesRead;
-
     //ID of this segment
     private final Long m_index;
 
-    private boolean m_closed = true;
-
-    //How many entries that have been polled have from this file have been discarded.
-    //Convenient to let PBQ maintain the counter here
-    private int m_discardCount;
-
     public PBDMMapSegment(Long index, File file) {
         super(file);
         m_index = index;
@@ -85,9 +73,7 @@ class PBDMMapSegment extends PBDSegment {
     public void reset() {
         m_syncedSinceLastEdit = true;
         m_haveMAdvised = false;
-        m_objectReadIndex = 0;
-        m_bytesRead = 0;
-        m_discardCount = 0;
+        m_readCursors.clear();
     }
 
     @Override
@@ -103,13 +89,20 @@ class PBDMMapSegment extends PBDSegment {
     }
 
     @Override
-    public boolean isBeingPolled() {
-        return m_objectReadIndex != 0;
+    public int size() throws IOException {
+        if (m_closed) {
+            open(false);
+        }
+        if (m_fc.size() > SEGMENT_HEADER_BYTES) {
+            return m_buf.b().getInt(SIZE_OFFSET);
+        } else {
+            return 0;
+        }
     }
 
     @Override
-    public int readIndex() {
-        return m_objectReadIndex;
+    protected PBDSegmentReader createReader() {
+        return new SegmentReader();
     }
 
     @Override
@@ -150,7 +143,6 @@ class PBDMMapSegment extends PBDSegment {
             //If this is for writing, map the chunk size RW and put the buf positions at the start
             m_buf = DBBPool.wrapMBB(m_fc.map(MapMode.READ_WRITE, 0, CHUNK_SIZE));
             m_buf.b().position(SIZE_OFFSET + 4);
-            m_readBuf = m_buf.b().duplicate();
             if (truncate) {
                 initNumEntries(0, 0);
             }
@@ -159,9 +151,7 @@ class PBDMMapSegment extends PBDSegment {
             //so size is reported correctly
             final long size = m_fc.size();
             m_buf = DBBPool.wrapMBB(m_fc.map(MapMode.READ_ONLY, 0, size));
-            m_readBuf = m_buf.b().duplicate();
             m_buf.b().position((int) size);
-            m_readBuf.position(SIZE_OFFSET + 4);
         }
 
         m_closed = false;
@@ -169,7 +159,8 @@ class PBDMMapSegment extends PBDSegment {
 
     @Override
     public void closeAndDelete() throws IOException {
-        close();
+        //No point in forcing data that is about to be deleted
+        closeChannel();
         if (LOG.isDebugEnabled()) {
             LOG.debug("Deleting segment at Index " + m_index + " File: " + m_file.getAbsolutePath());
         }
@@ -183,6 +174,14 @@ class PBDMMapSegment extends PBDSegment {
 
     @Override
     public void close() throws IOException {
+        try {
+            forceBeforeClose();
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() throws IOException {
         try {
             if (m_fc != null) {
                 m_fc.close();
@@ -190,7 +189,6 @@ class PBDMMapSegment extends PBDSegment {
                 m_fc = null;
                 m_buf.discard();
                 m_buf = null;
-                m_readBuf = null;
             }
         } finally {
             m_closed = true;
@@ -207,18 +205,6 @@ class PBDMMapSegment extends PBDSegment {
         m_syncedSinceLastEdit = true;
     }
 
-    @Override
-    public boolean hasMoreEntries() throws IOException {
-        if (m_closed) throw new IOException("closed");
-        return m_objectReadIndex < m_buf.b().getInt(COUNT_OFFSET);
-    }
-
-    @Override
-    public boolean isEmpty() throws IOException {
-        if (m_closed) throw new IOException("closed");
-        return m_discardCount == getNumEntries();
-    }
-
     @Override
     public boolean offer(BBContainer cont, boolean compress) throws IOException {
         if (m_closed) throw new IOException("closed");
@@ -272,118 +258,158 @@ class PBDMMapSegment extends PBDSegment {
     }
 
     @Override
-    public BBContainer poll(OutputContainerFactory factory) throws IOException {
-        if (m_closed) throw new IOException("closed");
-        final long mBufAddr = m_buf.address();
-        if (!m_haveMAdvised) {
-            final ByteBuffer mbuf = m_buf.b();
-            m_haveMAdvised = true;
-            final long retval = PosixAdvise.madvise(
-                    m_buf.address(),
-                    mbuf.position(),
-                    PosixAdvise.POSIX_MADV_WILLNEED);
-            if (retval != 0) {
-                LOG.warn("madvise will need failed: " + retval);
-            }
+    protected int writeTruncatedEntry(BinaryDeque.TruncatorResponse entry, int length, long offset) throws IOException
+    {
+        final ByteBuffer buf = m_buf.b().duplicate();
+        buf.position((int) offset);
+        return entry.writeTruncatedObject(buf);
+    }
+
+    /**
+     * One cursor's read position in the segment, kept by its own view of the mapped buffer.
+     */
+    private class SegmentReader implements PBDSegmentReader {
+        private final ByteBuffer m_readBuf;
+
+        //Index of the next object to read, not an offset into the file
+        //The offset is maintained by the ByteBuffer. Used to determine if there is another object
+        private int m_objectReadIndex = 0;
+        private int m_bytesRead = 0;
+
+        //How many entries that have been polled have from this file have been discarded.
+        private int m_discardCount = 0;
+
+        SegmentReader() {
+            m_readBuf = m_buf.b().duplicate();
+            m_readBuf.limit(m_readBuf.capacity());
+            m_readBuf.position(SIZE_OFFSET + 4);
         }
 
-        //No more entries to read
-        if (!hasMoreEntries()) {
-            return null;
+        @Override
+        public boolean hasMoreEntries() throws IOException {
+            if (m_closed) throw new IOException("closed");
+            return m_objectReadIndex < m_buf.b().getInt(COUNT_OFFSET);
         }
 
-        m_objectReadIndex++;
+        @Override
+        public boolean allReadAndDiscarded() throws IOException {
+            if (m_closed) throw new IOException("closed");
+            return m_discardCount == getNumEntries();
+        }
+
+        @Override
+        public BBContainer poll(OutputContainerFactory factory) throws IOException {
+            if (m_closed) throw new IOException("closed");
+            final long mBufAddr = m_buf.address();
+            if (!m_haveMAdvised) {
+                final ByteBuffer mbuf = m_buf.b();
+                m_haveMAdvised = true;
+                final long retval = PosixAdvise.madvise(
+                        m_buf.address(),
+                        mbuf.position(),
+                        PosixAdvise.POSIX_MADV_WILLNEED);
+                if (retval != 0) {
+                    LOG.warn("madvise will need failed: " + retval);
+                }
+            }
 
-        //Get the length prefix and then read the object
-        final int nextCompressedLength = m_readBuf.getInt();
-        final int nextFlags = m_readBuf.getInt();
+            //No more entries to read
+            if (!hasMoreEntries()) {
+                return null;
+            }
 
-        //Check for compression
-        final boolean compressed = (nextFlags & FLAG_COMPRESSED) != 0;
-        //Determine the length of the object if uncompressed
-        final int nextUncompressedLength = compressed ? (int)Snappy.uncompressedLength(mBufAddr + m_readBuf.position(), nextCompressedLength) : nextCompressedLength;
-        m_bytesRead += nextUncompressedLength;
+            m_objectReadIndex++;
 
-        final BBContainer retcont;
-        if (compressed) {
-            //Get storage for output
-            retcont = factory.getContainer(nextUncompressedLength);
-            final ByteBuffer retbuf = retcont.b();
+            //Get the length prefix and then read the object
+            final int nextCompressedLength = m_readBuf.getInt();
+            final int nextFlags = m_readBuf.getInt();
 
-            //Limit to appropriate uncompressed size
-            retbuf.limit(nextUncompressedLength);
+            //Check for compression
+            final boolean compressed = (nextFlags & FLAG_COMPRESSED) != 0;
+            //Determine the length of the object if uncompressed
+            final int nextUncompressedLength = compressed ? (int)Snappy.uncompressedLength(mBufAddr + m_readBuf.position(), nextCompressedLength) : nextCompressedLength;
+            m_bytesRead += nextUncompressedLength;
 
-            //Uncompress to output buffer
-            final long sourceAddr = mBufAddr + m_readBuf.position();
-            final long destAddr = retcont.address();
-            Snappy.rawUncompress(sourceAddr, nextCompressedLength, destAddr);
-            m_readBuf.position(m_readBuf.position() + nextCompressedLength);
-        } else {
-            //Return a slice
-            final int oldLimit = m_readBuf.limit();
-            m_readBuf.limit(m_readBuf.position() + nextUncompressedLength);
-            ByteBuffer retbuf = m_readBuf.slice();
-            m_readBuf.position(m_readBuf.limit());
-            m_readBuf.limit(oldLimit);
-
-            /*
-             * For uncompressed data, touch all the pages to make 100% sure
-             * they are available since they will be accessed directly.
-             *
-             * This code mimics MappedByteBuffer.load, but without the expensive
-             * madvise call for data we are 99% sure was already madvised.
-             *
-             * This would only ever be an issue in the unlikely event that the page cache
-             * is trashed at the wrong moment or we are very low on memory
-             */
-            retcont = DBBPool.dummyWrapBB(retbuf);
-            Bits.readEveryPage(retcont);
-        }
+            final BBContainer retcont;
+            if (compressed) {
+                //Get storage for output
+                retcont = factory.getContainer(nextUncompressedLength);
+                final ByteBuffer retbuf = retcont.b();
 
-        return new BBContainer(retcont.b()) {
-            private boolean m_discarded = false;
+                //Limit to appropriate uncompressed size
+                retbuf.limit(nextUncompressedLength);
 
-            @Override
-            public void discard()
-            {
-                checkDoubleFree();
-                if (m_discarded) {
-                    LOG.error("PBD Container discarded more than once");
-                    return;
-                }
-                m_discarded = true;
-                retcont.discard();
-                m_discardCount++;
+                //Uncompress to output buffer
+                final long sourceAddr = mBufAddr + m_readBuf.position();
+                final long destAddr = retcont.address();
+                Snappy.rawUncompress(sourceAddr, nextCompressedLength, destAddr);
+                m_readBuf.position(m_readBuf.position() + nextCompressedLength);
+            } else {
+                //Return a slice
+                final int oldLimit = m_readBuf.limit();
+                m_readBuf.limit(m_readBuf.position() + nextUncompressedLength);
+                ByteBuffer retbuf = m_readBuf.slice();
+                m_readBuf.position(m_readBuf.limit());
+                m_readBuf.limit(oldLimit);
+
+                /*
+                 * For uncompressed data, touch all the pages to make 100% sure
+                 * they are available since they will be accessed directly.
+                 *
+                 * This code mimics MappedByteBuffer.load, but without the expensive
+                 * madvise call for data we are 99% sure was already madvised.
+                 *
+                 * This would only ever be an issue in the unlikely event that the page cache
+                 * is trashed at the wrong moment or we are very low on memory
+                 */
+                retcont = DBBPool.dummyWrapBB(retbuf);
+                Bits.readEveryPage(retcont);
             }
-        };
-    }
 
-    /*
-     * Don't use size in bytes to determine empty, could potentially
-     * diverge from object count on crash or power failure
-     * although incredibly unlikely
-     */
-    @Override
-    public int uncompressedBytesToRead() {
-        if (m_closed) throw new RuntimeException("closed");
-        return Math.max(0, m_buf.b().getInt(SIZE_OFFSET) - m_bytesRead);
-    }
+            return new BBContainer(retcont.b()) {
+                private boolean m_discarded = false;
+
+                @Override
+                public void discard()
+                {
+                    checkDoubleFree();
+                    if (m_discarded) {
+                        LOG.error("PBD Container discarded more than once");
+                        return;
+                    }
+                    m_discarded = true;
+                    retcont.discard();
+                    m_discardCount++;
+                }
+            };
+        }
 
-    @Override
-    protected long readOffset()
-    {
-        return m_readBuf.position();
-    }
+        @Override
+        public int readIndex() {
+            return m_objectReadIndex;
+        }
 
-    @Override
-    protected void rewindReadOffset(int byBytes)
-    {
-        m_readBuf.position(m_readBuf.position() - byBytes);
-    }
+        /*
+         * Don't use size in bytes to determine empty, could potentially
+         * diverge from object count on crash or power failure
+         * although incredibly unlikely
+         */
+        @Override
+        public int uncompressedBytesToRead() {
+            if (m_closed) throw new RuntimeException("closed");
+            return Math.max(0, m_buf.b().getInt(SIZE_OFFSET) - m_bytesRead);
+        }
 
-    @Override
-    protected int writeTruncatedEntry(BinaryDeque.TruncatorResponse entry, int length) throws IOException
-    {
-        return entry.writeTruncatedObject(m_readBuf);
+        @Override
+        public long readOffset()
+        {
+            return m_readBuf.position();
+        }
+
+        @Override
+        public void rewindReadOffset(int byBytes)
+        {
+            m_readBuf.position(m_readBuf.position() - byBytes);
+        }
     }
 }
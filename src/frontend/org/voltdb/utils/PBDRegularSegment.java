@@ -36,16 +36,9 @@ import java.nio.ByteBuffer;
 public class PBDRegularSegment extends PBDSegment {
     private static final VoltLogger LOG = new VoltLogger("HOST");
 
-    //Index of the next object to read, not an offset into the file
-    private int m_objectReadIndex = 0;
-    private int m_bytesRead = 0;
-    // Maintains the read byte offset
-    private long m_readOffset = SEGMENT_HEADER_BYTES;
-
     //ID of this segment
     private final Long m_index;
 
-    private int m_discardCount;
     private int m_numOfEntries = -1;
     private int m_size = -1;
 
@@ -73,10 +66,7 @@ public class PBDRegularSegment extends PBDSegment {
     public void reset()
     {
         m_syncedSinceLastEdit = false;
-        m_objectReadIndex = 0;
-        m_bytesRead = 0;
-        m_readOffset = SEGMENT_HEADER_BYTES;
-        m_discardCount = 0;
+        m_readCursors.clear();
         if (m_tmpHeaderBuf != null) {
             m_tmpHeaderBuf.discard();
             m_tmpHeaderBuf = null;
@@ -103,15 +93,18 @@ public class PBDRegularSegment extends PBDSegment {
     }
 
     @Override
-    public boolean isBeingPolled()
+    public int size() throws IOException
     {
-        return m_objectReadIndex != 0;
+        if (m_size < 0) {
+            getNumEntries();
+        }
+        return m_size;
     }
 
     @Override
-    public int readIndex()
+    protected PBDSegmentReader createReader()
     {
-        return m_objectReadIndex;
+        return new SegmentReader();
     }
 
     @Override
@@ -183,7 +176,8 @@ public class PBDRegularSegment extends PBDSegment {
 
     @Override
     public void closeAndDelete() throws IOException {
-        close();
+        //No point in forcing data that is about to be deleted
+        closeChannel();
         m_file.delete();
 
         m_numOfEntries = -1;
@@ -198,6 +192,14 @@ public class PBDRegularSegment extends PBDSegment {
 
     @Override
     public void close() throws IOException {
+        try {
+            forceBeforeClose();
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() throws IOException {
         try {
             if (m_fc != null) {
                 m_fc.close();
@@ -219,20 +221,6 @@ public class PBDRegularSegment extends PBDSegment {
         m_syncedSinceLastEdit = true;
     }
 
-    @Override
-    public boolean hasMoreEntries() throws IOException
-    {
-        if (m_closed) throw new IOException("Segment closed");
-        return m_objectReadIndex < m_numOfEntries;
-    }
-
-    @Override
-    public boolean isEmpty() throws IOException
-    {
-        if (m_closed) throw new IOException("Segment closed");
-        return m_discardCount == m_numOfEntries;
-    }
-
     @Override
     public boolean offer(DBBPool.BBContainer cont, boolean compress) throws IOException
     {
@@ -308,126 +296,161 @@ public class PBDRegularSegment extends PBDSegment {
     }
 
     @Override
-    public DBBPool.BBContainer poll(BinaryDeque.OutputContainerFactory factory) throws IOException
+    protected int writeTruncatedEntry(BinaryDeque.TruncatorResponse entry, int length, long offset) throws IOException
     {
-        if (m_closed) throw new IOException("closed");
+        m_fc.position(offset);
+        int written = 0;
+        final DBBPool.BBContainer partialCont = DBBPool.allocateDirect(length);
+        try {
+            written += entry.writeTruncatedObject(partialCont.b());
+            partialCont.b().flip();
+
+            while (partialCont.b().hasRemaining()) {
+                m_fc.write(partialCont.b());
+            }
+        } finally {
+            partialCont.discard();
+        }
+        return written;
+    }
+
+    /**
+     * One cursor's read position in the segment. Reads move the file channel to the
+     * read offset and back so that the next write still goes to the end of the segment.
+     */
+    private class SegmentReader implements PBDSegmentReader {
+        //Index of the next object to read, not an offset into the file
+        private int m_objectReadIndex = 0;
+        private int m_bytesRead = 0;
+        // Maintains the read byte offset
+        private long m_readOffset = SEGMENT_HEADER_BYTES;
+        //How many entries that have been polled have from this file have been discarded.
+        private int m_discardCount = 0;
+
+        @Override
+        public boolean hasMoreEntries() throws IOException
+        {
+            if (m_closed) throw new IOException("Segment closed");
+            return m_objectReadIndex < m_numOfEntries;
+        }
 
-        if (!hasMoreEntries()) {
-            return null;
+        @Override
+        public boolean allReadAndDiscarded() throws IOException
+        {
+            if (m_closed) throw new IOException("Segment closed");
+            return m_discardCount == m_numOfEntries;
         }
 
-        final long writePos = m_fc.position();
-        m_fc.position(m_readOffset);
-        m_objectReadIndex++;
+        @Override
+        public DBBPool.BBContainer poll(BinaryDeque.OutputContainerFactory factory) throws IOException
+        {
+            if (m_closed) throw new IOException("closed");
 
-        try {
-            //Get the length and size prefix and then read the object
-            m_tmpHeaderBuf.b().clear();
-            while (m_tmpHeaderBuf.b().hasRemaining()) {
-                int read = m_fc.read(m_tmpHeaderBuf.b());
-                if (read == -1) {
-                    throw new EOFException();
-                }
+            if (!hasMoreEntries()) {
+                return null;
             }
-            m_tmpHeaderBuf.b().flip();
-            final int length = m_tmpHeaderBuf.b().getInt();
-            final int flags = m_tmpHeaderBuf.b().getInt();
-            final boolean compressed = (flags & FLAG_COMPRESSED) != 0;
-            final int uncompressedLen;
 
-            if (length < 1) {
-                throw new IOException("Read an invalid length");
-            }
+            final long writePos = m_fc.position();
+            m_fc.position(m_readOffset);
+            m_objectReadIndex++;
+
+            try {
+                //Get the length and size prefix and then read the object
+                m_tmpHeaderBuf.b().clear();
+                while (m_tmpHeaderBuf.b().hasRemaining()) {
+                    int read = m_fc.read(m_tmpHeaderBuf.b());
+                    if (read == -1) {
+                        throw new EOFException();
+                    }
+                }
+                m_tmpHeaderBuf.b().flip();
+                final int length = m_tmpHeaderBuf.b().getInt();
+                final int flags = m_tmpHeaderBuf.b().getInt();
+                final boolean compressed = (flags & FLAG_COMPRESSED) != 0;
+                final int uncompressedLen;
+
+                if (length < 1) {
+                    throw new IOException("Read an invalid length");
+                }
 
-            final DBBPool.BBContainer retcont;
-            if (compressed) {
-                final DBBPool.BBContainer compressedBuf = DBBPool.allocateDirectAndPool(length);
-                try {
-                    while (compressedBuf.b().hasRemaining()) {
-                        int read = m_fc.read(compressedBuf.b());
+                final DBBPool.BBContainer retcont;
+                if (compressed) {
+                    final DBBPool.BBContainer compressedBuf = DBBPool.allocateDirectAndPool(length);
+                    try {
+                        while (compressedBuf.b().hasRemaining()) {
+                            int read = m_fc.read(compressedBuf.b());
+                            if (read == -1) {
+                                throw new EOFException();
+                            }
+                        }
+                        compressedBuf.b().flip();
+
+                        uncompressedLen = CompressionService.uncompressedLength(compressedBuf.bDR());
+                        retcont = factory.getContainer(uncompressedLen);
+                        retcont.b().limit(uncompressedLen);
+                        CompressionService.decompressBuffer(compressedBuf.bDR(), retcont.b());
+                    } finally {
+                        compressedBuf.discard();
+                    }
+                } else {
+                    uncompressedLen = length;
+                    retcont = factory.getContainer(length);
+                    retcont.b().limit(length);
+                    while (retcont.b().hasRemaining()) {
+                        int read = m_fc.read(retcont.b());
                         if (read == -1) {
                             throw new EOFException();
                         }
                     }
-                    compressedBuf.b().flip();
-
-                    uncompressedLen = CompressionService.uncompressedLength(compressedBuf.bDR());
-                    retcont = factory.getContainer(uncompressedLen);
-                    retcont.b().limit(uncompressedLen);
-                    CompressionService.decompressBuffer(compressedBuf.bDR(), retcont.b());
-                } finally {
-                    compressedBuf.discard();
-                }
-            } else {
-                uncompressedLen = length;
-                retcont = factory.getContainer(length);
-                retcont.b().limit(length);
-                while (retcont.b().hasRemaining()) {
-                    int read = m_fc.read(retcont.b());
-                    if (read == -1) {
-                        throw new EOFException();
-                    }
+                    retcont.b().flip();
                 }
-                retcont.b().flip();
-            }
 
-            m_bytesRead += uncompressedLen;
+                m_bytesRead += uncompressedLen;
 
-            return new DBBPool.BBContainer(retcont.b()) {
-                private boolean m_discarded = false;
+                return new DBBPool.BBContainer(retcont.b()) {
+                    private boolean m_discarded = false;
 
-                @Override
-                public void discard() {
-                    checkDoubleFree();
-                    if (m_discarded) {
-                        LOG.error("PBD Container discarded more than once");
-                        return;
-                    }
+                    @Override
+                    public void discard() {
+                        checkDoubleFree();
+                        if (m_discarded) {
+                            LOG.error("PBD Container discarded more than once");
+                            return;
+                        }
 
-                    m_discarded = true;
-                    retcont.discard();
-                    m_discardCount++;
-                }
-            };
-        } finally {
-            m_readOffset = m_fc.position();
-            m_fc.position(writePos);
+                        m_discarded = true;
+                        retcont.discard();
+                        m_discardCount++;
+                    }
+                };
+            } finally {
+                m_readOffset = m_fc.position();
+                m_fc.position(writePos);
+            }
         }
-    }
-
-    @Override
-    public int uncompressedBytesToRead() {
-        if (m_closed) throw new RuntimeException("Segment closed");
-        return m_size - m_bytesRead;
-    }
 
-    @Override
-    protected long readOffset()
-    {
-        return m_readOffset;
-    }
+        @Override
+        public int readIndex()
+        {
+            return m_objectReadIndex;
+        }
 
-    @Override
-    protected void rewindReadOffset(int byBytes)
-    {
-        m_readOffset -= byBytes;
-    }
+        @Override
+        public int uncompressedBytesToRead() {
+            if (m_closed) throw new RuntimeException("Segment closed");
+            return m_size - m_bytesRead;
+        }
 
-    @Override
-    protected int writeTruncatedEntry(BinaryDeque.TruncatorResponse entry, int length) throws IOException
-    {
-        int written = 0;
-        final DBBPool.BBContainer partialCont = DBBPool.allocateDirect(length);
-        try {
-            written += entry.writeTruncatedObject(partialCont.b());
-            partialCont.b().flip();
+        @Override
+        public long readOffset()
+        {
+            return m_readOffset;
+        }
 
-            while (partialCont.b().hasRemaining()) {
-                m_fc.write(partialCont.b());
-            }
-        } finally {
-            partialCont.discard();
+        @Override
+        public void rewindReadOffset(int byBytes)
+        {
+            m_readOffset -= byBytes;
         }
-        return written;
     }
 }
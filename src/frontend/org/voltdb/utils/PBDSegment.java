@@ -24,6 +24,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 public abstract class PBDSegment {
     static final int NO_FLAGS = 0;
@@ -36,13 +39,45 @@ public abstract class PBDSegment {
     public static final int CHUNK_SIZE = (1024 * 1024) * 64;
     static final int OBJECT_HEADER_BYTES = 8;
     static final int SEGMENT_HEADER_BYTES = 8;
+
+    // Cursor the truncator reads the segment with
+    private static final String TRUNCATOR_CURSOR = "_truncator";
+
+    /**
+     * The read side of a segment for one cursor. Every cursor reading the deque
+     * keeps its own position in each segment it has started reading.
+     */
+    interface PBDSegmentReader {
+        boolean hasMoreEntries() throws IOException;
+
+        /*
+         * True once this cursor has polled every entry and discarded every container it got back
+         */
+        boolean allReadAndDiscarded() throws IOException;
+
+        DBBPool.BBContainer poll(BinaryDeque.OutputContainerFactory factory) throws IOException;
+
+        int readIndex();
+
+        int uncompressedBytesToRead();
+
+        long readOffset();
+
+        void rewindReadOffset(int byBytes);
+    }
+
     protected final File m_file;
 
+    // Readers of the cursors that have started reading this segment, dropped when the segment is closed
+    protected final Map<String, PBDSegmentReader> m_readCursors = new HashMap<String, PBDSegmentReader>();
+
     protected boolean m_closed = true;
     protected RandomAccessFile m_ras;
     protected FileChannel m_fc;
     //Avoid unecessary sync with this flag
     protected boolean m_syncedSinceLastEdit = true;
+    //Set between prepareSync and syncCompleted, while a group commit forces the channel
+    protected boolean m_syncInFlight = false;
 
     public PBDSegment(File file)
     {
@@ -56,9 +91,75 @@ public abstract class PBDSegment {
 
     abstract int getNumEntries() throws IOException;
 
-    abstract boolean isBeingPolled();
+    // Uncompressed size of all the entries in the segment
+    abstract int size() throws IOException;
 
-    abstract int readIndex();
+    abstract protected PBDSegmentReader createReader() throws IOException;
+
+    /**
+     * Get the reader for a cursor, positioned at the first entry if the cursor
+     * hasn't read from this segment before.
+     */
+    PBDSegmentReader openForRead(String cursorId) throws IOException {
+        if (m_closed) throw new IOException("Segment closed");
+        PBDSegmentReader reader = m_readCursors.get(cursorId);
+        if (reader == null) {
+            reader = createReader();
+            m_readCursors.put(cursorId, reader);
+        }
+        return reader;
+    }
+
+    /**
+     * @return the reader for the cursor or null if the cursor hasn't read from this segment
+     */
+    PBDSegmentReader getReader(String cursorId) {
+        return m_readCursors.get(cursorId);
+    }
+
+    void closeReader(String cursorId) {
+        m_readCursors.remove(cursorId);
+    }
+
+    boolean isBeingPolled() {
+        for (PBDSegmentReader reader : m_readCursors.values()) {
+            if (reader.readIndex() != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean hasMoreEntries(String cursorId) throws IOException {
+        if (m_closed) throw new IOException("Segment closed");
+        final PBDSegmentReader reader = m_readCursors.get(cursorId);
+        return reader == null ? getNumEntries() > 0 : reader.hasMoreEntries();
+    }
+
+    /*
+     * Don't use size in bytes to determine empty, could potentially
+     * diverge from object count on crash or power failure
+     * although incredibly unlikely
+     */
+    int uncompressedBytesToRead(String cursorId) throws IOException {
+        if (m_closed) throw new IOException("Segment closed");
+        final PBDSegmentReader reader = m_readCursors.get(cursorId);
+        return reader == null ? size() : reader.uncompressedBytesToRead();
+    }
+
+    /**
+     * @return true if every one of the cursors has polled and discarded all the entries in the segment
+     */
+    boolean isFullyConsumed(Collection<String> cursorIds) throws IOException {
+        if (m_closed) throw new IOException("Segment closed");
+        for (String cursorId : cursorIds) {
+            final PBDSegmentReader reader = m_readCursors.get(cursorId);
+            if (reader == null ? getNumEntries() > 0 : !reader.allReadAndDiscarded()) {
+                return false;
+            }
+        }
+        return true;
+    }
 
     abstract void open(boolean forWrite) throws IOException;
     /**
@@ -78,26 +179,46 @@ public abstract class PBDSegment {
 
     abstract void sync() throws IOException;
 
-    abstract boolean hasMoreEntries() throws IOException;
+    /**
+     * Mark the segment as synced and return the channel to force so the caller can
+     * fsync it without holding the deque's lock. Returns null if there is nothing to sync.
+     * The caller must call syncCompleted once the force is done or has failed.
+     */
+    FileChannel prepareSync() throws IOException {
+        if (m_closed) throw new IOException("Segment closed");
+        if (m_syncedSinceLastEdit) {
+            return null;
+        }
+        m_syncedSinceLastEdit = true;
+        m_syncInFlight = true;
+        return m_fc;
+    }
+
+    void syncCompleted(boolean success) {
+        m_syncInFlight = false;
+        if (!success) {
+            m_syncedSinceLastEdit = false;
+        }
+    }
 
-    abstract boolean isEmpty() throws IOException;
+    /**
+     * Force the channel before closing it if it has edits that aren't known to be on disk,
+     * either because no sync covered them or because the sync covering them hasn't forced
+     * the channel yet. Once the channel is closed that sync can no longer force it.
+     */
+    protected void forceBeforeClose() throws IOException {
+        if (m_fc != null && m_fc.isOpen() && (!m_syncedSinceLastEdit || m_syncInFlight)) {
+            m_fc.force(true);
+            m_syncedSinceLastEdit = true;
+            m_syncInFlight = false;
+        }
+    }
 
     abstract boolean offer(DBBPool.BBContainer cont, boolean compress) throws IOException;
 
     abstract int offer(DeferredSerialization ds) throws IOException;
 
-    abstract DBBPool.BBContainer poll(BinaryDeque.OutputContainerFactory factory) throws IOException;
-
-    /*
-     * Don't use size in bytes to determine empty, could potentially
-     * diverge from object count on crash or power failure
-     * although incredibly unlikely
-     */
-    abstract int uncompressedBytesToRead();
-
-    abstract protected long readOffset();
-    abstract protected void rewindReadOffset(int byBytes);
-    abstract protected int writeTruncatedEntry(BinaryDeque.TruncatorResponse entry, int length) throws IOException;
+    abstract protected int writeTruncatedEntry(BinaryDeque.TruncatorResponse entry, int length, long offset) throws IOException;
 
     /**
      * Parse the segment and truncate the file if necessary.
@@ -110,6 +231,7 @@ public abstract class PBDSegment {
         if (!m_closed) throw new IOException(("Segment should not be open before truncation"));
 
         open(true, false);
+        final PBDSegmentReader reader = openForRead(TRUNCATOR_CURSOR);
 
         // Do stuff
         final int initialEntryCount = getNumEntries();
@@ -118,14 +240,14 @@ public abstract class PBDSegment {
 
         DBBPool.BBContainer cont;
         while (true) {
-            final long beforePos = readOffset();
+            final long beforePos = reader.readOffset();
 
-            cont = poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+            cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
             if (cont == null) {
                 break;
             }
 
-            final int compressedLength = (int) (readOffset() - beforePos - OBJECT_HEADER_BYTES);
+            final int compressedLength = (int) (reader.readOffset() - beforePos - OBJECT_HEADER_BYTES);
             final int uncompressedLength = cont.b().limit();
 
             try {
@@ -137,30 +259,29 @@ public abstract class PBDSegment {
                 } else {
                     //If the returned bytebuffer is empty, remove the object and truncate the file
                     if (retval.status == BinaryDeque.TruncatorResponse.Status.FULL_TRUNCATE) {
-                        if (readIndex() == 1) {
+                        if (reader.readIndex() == 1) {
                             /*
                              * If truncation is occuring at the first object
                              * Whammo! Delete the file.
                              */
                             entriesTruncated = -1;
                         } else {
-                            entriesTruncated = initialEntryCount - (readIndex() - 1);
+                            entriesTruncated = initialEntryCount - (reader.readIndex() - 1);
                             //Don't forget to update the number of entries in the file
-                            initNumEntries(readIndex() - 1, sizeInBytes);
-                            m_fc.truncate(readOffset() - (compressedLength + OBJECT_HEADER_BYTES));
+                            initNumEntries(reader.readIndex() - 1, sizeInBytes);
+                            m_fc.truncate(reader.readOffset() - (compressedLength + OBJECT_HEADER_BYTES));
                         }
                     } else {
                         assert retval.status == BinaryDeque.TruncatorResponse.Status.PARTIAL_TRUNCATE;
-                        entriesTruncated = initialEntryCount - readIndex();
+                        entriesTruncated = initialEntryCount - reader.readIndex();
                         //Partial object truncation
-                        rewindReadOffset(compressedLength + OBJECT_HEADER_BYTES);
-                        final long partialEntryBeginOffset = readOffset();
-                        m_fc.position(partialEntryBeginOffset);
+                        reader.rewindReadOffset(compressedLength + OBJECT_HEADER_BYTES);
+                        final long partialEntryBeginOffset = reader.readOffset();
 
-                        final int written = writeTruncatedEntry(retval, compressedLength);
+                        final int written = writeTruncatedEntry(retval, compressedLength, partialEntryBeginOffset);
                         sizeInBytes += written;
 
-                        initNumEntries(readIndex(), sizeInBytes);
+                        initNumEntries(reader.readIndex(), sizeInBytes);
                         m_fc.truncate(partialEntryBeginOffset + written + OBJECT_HEADER_BYTES);
                     }
 
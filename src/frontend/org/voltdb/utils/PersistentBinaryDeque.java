@@ -20,13 +20,20 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool;
@@ -47,6 +54,10 @@ import com.google_voltpatches.common.base.Throwables;
  * once all objects from the segment have been polled and all the containers returned by poll have been discarded.
  * Push is implemented by creating new segments at the head of the deque containing the objects to be pushed.
  *
+ * Objects can be read by several cursors, each with its own position in the deque. A segment is deleted once
+ * every cursor has polled all of its objects and discarded them. Concurrent calls to sync are coalesced so
+ * that one fsync, done without holding the deque's lock, covers all of them.
+ *
  */
 public class PersistentBinaryDeque implements BinaryDeque {
     private static final VoltLogger LOG = new VoltLogger("HOST");
@@ -75,6 +86,44 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
     public static final OutputContainerFactory UNSAFE_CONTAINER_FACTORY = new UnsafeOutputContainerFactory();
 
+    // Cursor behind the poll, isEmpty, sizeInBytes and getNumObjects methods of the deque itself
+    static final String DEFAULT_CURSOR = "_default";
+
+    // How long the first of a group of syncs waits for others to join it before doing the fsync
+    private static final long SYNC_WINDOW_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Long.getLong("PBD_SYNC_WINDOW_MICROS", 0));
+
+    /**
+     * Counters for one deque since it was opened, times are in nanoseconds.
+     */
+    public static class DequeStats {
+        public final long objectsOffered;
+        public final long bytesOffered;
+        public final long objectsPolled;
+        // Calls to sync and the fsyncs that were done for them
+        public final long syncs;
+        public final long fsyncs;
+        // Time the callers of sync waited, including for fsyncs done on behalf of others
+        public final long totalSyncNanos;
+        public final long maxSyncNanos;
+        public final long totalFsyncNanos;
+        public final long maxFsyncNanos;
+
+        DequeStats(long objectsOffered, long bytesOffered, long objectsPolled,
+                long syncs, long fsyncs, long totalSyncNanos, long maxSyncNanos,
+                long totalFsyncNanos, long maxFsyncNanos) {
+            this.objectsOffered = objectsOffered;
+            this.bytesOffered = bytesOffered;
+            this.objectsPolled = objectsPolled;
+            this.syncs = syncs;
+            this.fsyncs = fsyncs;
+            this.totalSyncNanos = totalSyncNanos;
+            this.maxSyncNanos = maxSyncNanos;
+            this.totalFsyncNanos = totalFsyncNanos;
+            this.maxFsyncNanos = maxFsyncNanos;
+        }
+    }
+
     /**
      * Processors also log using this facility.
      */
@@ -87,9 +136,129 @@ public class PersistentBinaryDeque implements BinaryDeque {
     //Segments that are no longer being written to and can be polled
     //These segments are "immutable". They will not be modified until deletion
     private final Deque<PBDSegment> m_segments = new ArrayDeque<PBDSegment>();
-    private int m_numObjects = 0;
+    private final Map<String, ReadCursor> m_readCursors = new LinkedHashMap<String, ReadCursor>();
+    private final ReadCursor m_defaultCursor;
     private volatile boolean m_closed = false;
 
+    // Group commit, sync requests are numbered under the deque's lock and
+    // the fsyncs covering them are done one at a time under m_syncLock
+    private final Object m_syncLock = new Object();
+    private long m_syncRequests = 0;
+    private long m_syncedRequests = 0;
+    // Run by sync between collecting the channels and forcing them, for tests
+    Runnable m_beforeForce = null;
+
+    // Stats, guarded by the deque's lock
+    private long m_objectsOffered = 0;
+    private long m_bytesOffered = 0;
+    private long m_objectsPolled = 0;
+    // Stats, guarded by m_syncLock
+    private long m_syncs = 0;
+    private long m_fsyncs = 0;
+    private long m_totalSyncNanos = 0;
+    private long m_maxSyncNanos = 0;
+    private long m_totalFsyncNanos = 0;
+    private long m_maxFsyncNanos = 0;
+
+    /**
+     * A cursor's position in the deque is kept by the segments, each has a reader
+     * for every cursor that has started reading it.
+     */
+    private class ReadCursor implements BinaryDequeReader {
+        private final String m_cursorId;
+        private int m_numObjects;
+        private boolean m_cursorClosed = false;
+
+        ReadCursor(String cursorId, int numObjects) {
+            m_cursorId = cursorId;
+            m_numObjects = numObjects;
+        }
+
+        @Override
+        public BBContainer poll(OutputContainerFactory ocf) throws IOException {
+            synchronized (PersistentBinaryDeque.this) {
+                assertions();
+                if (m_closed) {
+                    throw new IOException("Closed");
+                }
+                if (m_cursorClosed) {
+                    throw new IOException("Cursor " + m_cursorId + " closed");
+                }
+
+                BBContainer retcont = null;
+                PBDSegment segment = null;
+
+                for (PBDSegment s : m_segments) {
+                    if (s.isClosed()) {
+                        s.open(false);
+                    }
+
+                    if (s.hasMoreEntries(m_cursorId)) {
+                        segment = s;
+                        retcont = segment.openForRead(m_cursorId).poll(ocf);
+                        break;
+                    }
+                }
+
+                if (retcont == null) {
+                    return null;
+                }
+
+                m_numObjects--;
+                assert(m_numObjects >= 0);
+                m_objectsPolled++;
+                assertions();
+                assert (retcont.b() != null);
+                return wrapRetCont(segment, retcont);
+            }
+        }
+
+        @Override
+        public boolean isEmpty() throws IOException {
+            synchronized (PersistentBinaryDeque.this) {
+                assertions();
+                if (m_closed) {
+                    throw new IOException("Closed");
+                }
+
+                for (PBDSegment s : m_segments) {
+                    final boolean wasClosed = s.isClosed();
+                    try {
+                        if (wasClosed) s.open(false);
+                        if (s.hasMoreEntries(m_cursorId)) return false;
+                    } finally {
+                        if (wasClosed) {
+                            s.close();
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+
+        @Override
+        public long sizeInBytes() throws IOException {
+            synchronized (PersistentBinaryDeque.this) {
+                assertions();
+                long size = 0;
+                for (PBDSegment segment : m_segments) {
+                    final boolean wasClosed = segment.isClosed();
+                    if (wasClosed) segment.open(false);
+                    size += segment.uncompressedBytesToRead(m_cursorId);
+                    if (wasClosed) {
+                        segment.close();
+                    }
+                }
+                return size;
+            }
+        }
+
+        @Override
+        public int getNumObjects() {
+            return m_numObjects;
+        }
+    }
+
     /**
      * Create a persistent binary deque with the specified nonce and storage
      * back at the specified path. Existing files will
@@ -118,6 +287,8 @@ public class PersistentBinaryDeque implements BinaryDeque {
         m_path = path;
         m_nonce = nonce;
         m_usageSpecificLog = logger;
+        m_defaultCursor = new ReadCursor(DEFAULT_CURSOR, 0);
+        m_readCursors.put(DEFAULT_CURSOR, m_defaultCursor);
 
         if (!path.exists() || !path.canRead() || !path.canWrite() || !path.canExecute() || !path.isDirectory()) {
             throw new IOException(path + " is not usable ( !exists || !readable " +
@@ -172,7 +343,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
                                     return false;
                                 }
                             }
-                            m_numObjects += qs.getNumEntries();
+                            m_defaultCursor.m_numObjects += qs.getNumEntries();
                             if (m_usageSpecificLog.isDebugEnabled()) {
                                 m_usageSpecificLog.debug("Segment " + qs.file() + " has been recovered");
                             }
@@ -264,6 +435,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
         PBDSegment tail = m_segments.peekLast();
         final boolean compress = object.b().isDirect() && allowCompression;
+        final int size = object.b().remaining();
         if (!tail.offer(object, compress)) {
             tail = addSegment(tail);
             final boolean success = tail.offer(object, compress);
@@ -272,6 +444,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
             }
         }
         incrementNumObjects();
+        m_bytesOffered += size;
         assertions();
     }
 
@@ -292,13 +465,14 @@ public class PersistentBinaryDeque implements BinaryDeque {
             }
         }
         incrementNumObjects();
+        m_bytesOffered += written;
         assertions();
         return written;
     }
 
     private PBDSegment addSegment(PBDSegment tail) throws IOException {
         //Check to see if the tail is completely consumed so we can close and delete it
-        if (!tail.hasMoreEntries() && tail.isEmpty()) {
+        if (tail.isFullyConsumed(m_readCursors.keySet())) {
             m_segments.pollLast();
             if (m_usageSpecificLog.isDebugEnabled()) {
                 m_usageSpecificLog.debug("Segment " + tail.file() + " has been closed and deleted because of empty queue");
@@ -367,8 +541,11 @@ public class PersistentBinaryDeque implements BinaryDeque {
             }
 
             while (currentSegmentContents.peek() != null) {
-                writeSegment.offer(currentSegmentContents.pollFirst(), false);
+                final BBContainer object = currentSegmentContents.pollFirst();
+                final int size = object.b().remaining();
+                writeSegment.offer(object, false);
                 incrementNumObjects();
+                m_bytesOffered += size;
             }
 
             // Don't close the last one, it'll be used for writes
@@ -382,35 +559,65 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized BBContainer poll(OutputContainerFactory ocf) throws IOException {
-        assertions();
+    public BBContainer poll(OutputContainerFactory ocf) throws IOException {
+        return m_defaultCursor.poll(ocf);
+    }
+
+    @Override
+    public synchronized BinaryDequeReader openForRead(String cursorId) throws IOException {
         if (m_closed) {
             throw new IOException("Closed");
         }
-
-        BBContainer retcont = null;
-        PBDSegment segment = null;
-
-        for (PBDSegment s : m_segments) {
-            if (s.isClosed()) {
-                s.open(false);
-            }
-
-            if (s.hasMoreEntries()) {
-                segment = s;
-                retcont = segment.poll(ocf);
-                break;
+        ReadCursor cursor = m_readCursors.get(cursorId);
+        if (cursor == null) {
+            //The new cursor starts at the beginning of every segment that is still around
+            int numObjects = 0;
+            for (PBDSegment segment : m_segments) {
+                final boolean wasClosed = segment.isClosed();
+                numObjects += segment.getNumEntries();
+                if (wasClosed) {
+                    segment.close();
+                }
             }
+            cursor = new ReadCursor(cursorId, numObjects);
+            m_readCursors.put(cursorId, cursor);
+            assertions();
         }
+        return cursor;
+    }
 
-        if (retcont == null) {
-            return null;
+    @Override
+    public synchronized void closeCursor(String cursorId) throws IOException {
+        if (DEFAULT_CURSOR.equals(cursorId)) {
+            throw new IllegalArgumentException("The default cursor can't be closed");
+        }
+        final ReadCursor cursor = m_readCursors.remove(cursorId);
+        if (cursor == null) {
+            return;
+        }
+        cursor.m_cursorClosed = true;
+        if (m_closed) {
+            return;
         }
 
-        decrementNumObjects();
+        //Segments the closed cursor was the last one to hold on to can go now
+        Iterator<PBDSegment> iterator = m_segments.iterator();
+        while (iterator.hasNext()) {
+            final PBDSegment segment = iterator.next();
+            if (segment.isClosed()) {
+                //Nobody has read a closed segment
+                continue;
+            }
+            segment.closeReader(cursorId);
+            if (segment != m_segments.peekLast() && segment.isFullyConsumed(m_readCursors.keySet())) {
+                iterator.remove();
+                if (m_usageSpecificLog.isDebugEnabled()) {
+                    m_usageSpecificLog.debug("Segment " + segment.file() + " has been closed and deleted after closing cursor " + cursorId);
+                }
+                segment.closeAndDelete();
+            }
+        }
         assertions();
-        assert (retcont.b() != null);
-        return wrapRetCont(segment, retcont);
     }
 
     private BBContainer wrapRetCont(final PBDSegment segment, final BBContainer retcont) {
@@ -429,7 +636,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
                     //Segment is potentially ready for deletion
                     try {
-                        if (segment.isEmpty()) {
+                        if (segment.isFullyConsumed(m_readCursors.keySet())) {
                             if (segment != m_segments.peekLast()) {
                                 m_segments.remove(segment);
                                 if (m_usageSpecificLog.isDebugEnabled()) {
@@ -447,13 +654,89 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void sync() throws IOException {
-        if (m_closed) {
-            throw new IOException("Closed");
+    public void sync() throws IOException {
+        final long startNanos = System.nanoTime();
+        final long request;
+        synchronized (this) {
+            if (m_closed) {
+                throw new IOException("Closed");
+            }
+            request = ++m_syncRequests;
         }
-        for (PBDSegment segment : m_segments) {
-            if (!segment.isClosed()) {
-                segment.sync();
+
+        synchronized (m_syncLock) {
+            //Nothing to do if an fsync that started after this request came in has finished
+            if (m_syncedRequests < request) {
+                //Lead the next group commit, requests that come in while waiting are covered too
+                if (SYNC_WINDOW_NANOS > 0) {
+                    LockSupport.parkNanos(SYNC_WINDOW_NANOS);
+                }
+
+                final List<PBDSegment> segments = new ArrayList<PBDSegment>();
+                final List<FileChannel> channels = new ArrayList<FileChannel>();
+                final long lastRequest;
+                synchronized (this) {
+                    if (m_closed) {
+                        throw new IOException("Closed");
+                    }
+                    lastRequest = m_syncRequests;
+                    for (PBDSegment segment : m_segments) {
+                        if (!segment.isClosed()) {
+                            final FileChannel fc = segment.prepareSync();
+                            if (fc != null) {
+                                segments.add(segment);
+                                channels.add(fc);
+                            }
+                        }
+                    }
+                }
+
+                if (m_beforeForce != null) {
+                    m_beforeForce.run();
+                }
+
+                //Writers and readers can carry on while the data goes to disk
+                final long fsyncStartNanos = System.nanoTime();
+                boolean success = false;
+                try {
+                    for (FileChannel fc : channels) {
+                        try {
+                            fc.force(true);
+                        } catch (ClosedChannelException e) {
+                            //The segment was closed in the mean time, closing it forced the
+                            //channel because the sync was still in flight, or it was deleted
+                        }
+                    }
+                    success = true;
+                } finally {
+                    synchronized (this) {
+                        for (PBDSegment segment : segments) {
+                            segment.syncCompleted(success);
+                        }
+                    }
+                }
+                if (!channels.isEmpty()) {
+                    final long fsyncNanos = System.nanoTime() - fsyncStartNanos;
+                    m_fsyncs++;
+                    m_totalFsyncNanos += fsyncNanos;
+                    m_maxFsyncNanos = Math.max(m_maxFsyncNanos, fsyncNanos);
+                }
+                m_syncedRequests = lastRequest;
+            }
+
+            final long syncNanos = System.nanoTime() - startNanos;
+            m_syncs++;
+            m_totalSyncNanos += syncNanos;
+            m_maxSyncNanos = Math.max(m_maxSyncNanos, syncNanos);
+        }
+    }
+
+    public DequeStats getStats() {
+        synchronized (m_syncLock) {
+            synchronized (this) {
+                return new DequeStats(m_objectsOffered, m_bytesOffered, m_objectsPolled,
+                        m_syncs, m_fsyncs, m_totalSyncNanos, m_maxSyncNanos,
+                        m_totalFsyncNanos, m_maxFsyncNanos);
             }
         }
     }
@@ -471,24 +754,8 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized boolean isEmpty() throws IOException {
-        assertions();
-        if (m_closed) {
-            throw new IOException("Closed");
-        }
-
-        for (PBDSegment s : m_segments) {
-            final boolean wasClosed = s.isClosed();
-            try {
-                if (wasClosed) s.open(false);
-                if (s.hasMoreEntries()) return false;
-            } finally {
-                if (wasClosed) {
-                    s.close();
-                }
-            }
-        }
-        return true;
+    public boolean isEmpty() throws IOException {
+        return m_defaultCursor.isEmpty();
     }
 
     /*
@@ -497,18 +764,8 @@ public class PersistentBinaryDeque implements BinaryDeque {
      * although incredibly unlikely
      */
     @Override
-    public synchronized long sizeInBytes() throws IOException {
-        assertions();
-        long size = 0;
-        for (PBDSegment segment : m_segments) {
-            final boolean wasClosed = segment.isClosed();
-            if (wasClosed) segment.open(false);
-            size += segment.uncompressedBytesToRead();
-            if (wasClosed) {
-                segment.close();
-            }
-        }
-        return size;
+    public long sizeInBytes() throws IOException {
+        return m_defaultCursor.sizeInBytes();
     }
 
     @Override
@@ -643,22 +900,22 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     private void addToNumObjects(int num) {
-        assert(m_numObjects >= 0);
-        m_numObjects += num;
+        for (ReadCursor cursor : m_readCursors.values()) {
+            assert(cursor.m_numObjects >= 0);
+            cursor.m_numObjects += num;
+        }
     }
     private void incrementNumObjects() {
-        assert(m_numObjects >= 0);
-         m_numObjects++;
-    }
-
-    private void decrementNumObjects() {
-        m_numObjects--;
-        assert(m_numObjects >= 0);
+        for (ReadCursor cursor : m_readCursors.values()) {
+            assert(cursor.m_numObjects >= 0);
+            cursor.m_numObjects++;
+        }
+        m_objectsOffered++;
     }
 
     @Override
     public int getNumObjects() {
-        return m_numObjects;
+        return m_defaultCursor.getNumObjects();
     }
 
     @Override
@@ -675,22 +932,26 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
     private void assertions() {
         if (!assertionsOn || m_closed) return;
-        int numObjects = 0;
-        for (PBDSegment segment : m_segments) {
-            final boolean wasClosed = segment.isClosed();
-            try {
-                numObjects += segment.getNumEntries() - segment.readIndex();
-            } catch (Exception e) {
-                Throwables.propagate(e);
-            }
-            if (wasClosed) {
+        for (ReadCursor cursor : m_readCursors.values()) {
+            int numObjects = 0;
+            for (PBDSegment segment : m_segments) {
+                final boolean wasClosed = segment.isClosed();
                 try {
-                    segment.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    final PBDSegment.PBDSegmentReader reader = segment.getReader(cursor.m_cursorId);
+                    numObjects += segment.getNumEntries() - (reader == null ? 0 : reader.readIndex());
+                } catch (Exception e) {
+                    Throwables.propagate(e);
+                }
+                if (wasClosed) {
+                    try {
+                        segment.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
                 }
             }
+            assert numObjects == cursor.m_numObjects :
+                cursor.m_cursorId + ": " + numObjects + " != " + cursor.m_numObjects;
         }
-        assert numObjects == m_numObjects : numObjects + " != " + m_numObjects;
     }
 }
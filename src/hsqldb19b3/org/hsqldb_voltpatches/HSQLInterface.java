@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hsqldb_voltpatches.VoltXMLElement.VoltXMLDiff;
 import org.hsqldb_voltpatches.index.Index;
@@ -102,7 +103,8 @@ public class HSQLInterface {
     static {
         emptySchema.attributes.put("name", XML_SCHEMA_NAME);
     }
-    static int instanceId = 0;
+    // Several planner threads may load instances at once, each needs its own name
+    static final AtomicInteger instanceId = new AtomicInteger();
 
     private HSQLInterface(Session sessionProxy) {
         this.sessionProxy = sessionProxy;
@@ -127,8 +129,7 @@ public class HSQLInterface {
         // This ensures that all VoltDB data paths use the same timezone for representing time.
         TimeZone.setDefault(TimeZone.getTimeZone("GMT+0"));
 
-        String name = "hsqldbinstance-" + String.valueOf(instanceId) + "-" + String.valueOf(System.currentTimeMillis());
-        instanceId++;
+        String name = "hsqldbinstance-" + String.valueOf(instanceId.getAndIncrement()) + "-" + String.valueOf(System.currentTimeMillis());
 
         HsqlProperties props = new HsqlProperties();
         try {
@@ -0,0 +1,259 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+
+#include "test_utils/PlanTestingEngine.hpp"
+
+#include <algorithm>
+#include <sstream>
+#include <string>
+#include <vector>
+
+using namespace voltdb;
+using namespace voltdb::planjson;
+
+namespace {
+
+const int64_t MEMORY_LIMIT = 10 * 1024 * 1024;
+
+// Rows of the outer table L(K, V) and the inner table R(K, V).
+// Both have NULL keys, duplicate keys and keys without a partner.
+const int64_t OUTER_ROWS[][2] = {
+    { 1, 10 }, { 2, 20 }, { 2, 21 }, { INT64_NULL, 30 }, { 4, 40 }, { 5, 50 }
+};
+const int64_t INNER_ROWS[][2] = {
+    { 1, 101 }, { 2, 201 }, { 2, 202 }, { INT64_NULL, 301 }, { 3, 302 }, { 5, 501 }, { 5, 502 }
+};
+
+// Enough keys that unrelated keys share hash buckets.
+const int MANY_ROWS = 2000;
+const int MANY_KEYS = 97;
+
+/**
+ * Predicates of the test plans, in a form that both the plans and the
+ * nested loop producing the expected rows can use.
+ */
+enum Predicate {
+    NO_PREDICATE,
+    // R.V > 201: NULL on the outer join's padded rows.
+    INNER_VALUE_ABOVE_201,
+    // L.V < 40: true or false on the padded rows alike.
+    OUTER_VALUE_BELOW_40
+};
+
+std::string predicateJson(Predicate predicate) {
+    switch (predicate) {
+    case INNER_VALUE_ABOVE_201:
+        return compare(EXPRESSION_TYPE_COMPARE_GREATERTHAN, tve(1, 1), constant(201));
+    case OUTER_VALUE_BELOW_40:
+        return compare(EXPRESSION_TYPE_COMPARE_LESSTHAN, tve(1, 0), constant(40));
+    default:
+        return "";
+    }
+}
+
+bool evalPredicate(Predicate predicate, const PlanTestingRow &outer, const PlanTestingRow &inner) {
+    switch (predicate) {
+    case INNER_VALUE_ABOVE_201:
+        return inner[1] != INT64_NULL && inner[1] > 201;
+    case OUTER_VALUE_BELOW_40:
+        return outer[1] != INT64_NULL && outer[1] < 40;
+    default:
+        return true;
+    }
+}
+
+std::string scanNode(int id, const std::string &tableName) {
+    std::ostringstream node;
+    node << "{\"ID\":" << id << ",\"PLAN_NODE_TYPE\":\"SEQSCAN\","
+         << "\"TARGET_TABLE_NAME\":\"" << tableName << "\","
+         << "\"TARGET_TABLE_ALIAS\":\"" << tableName << "\","
+         << "\"INLINE_NODES\":[{\"ID\":" << (id + 100) << ",\"PLAN_NODE_TYPE\":\"PROJECTION\","
+         << "\"OUTPUT_SCHEMA\":" << outputSchema({ tve(0), tve(1) }) << "}]}";
+    return node.str();
+}
+
+/**
+ * Build SEND <- HASHJOIN(L.K = R.K) <- (SEQSCAN L, SEQSCAN R), with the
+ * given join type and post-join (WHERE) predicate.
+ */
+std::string hashJoinPlan(const std::string &joinType, Predicate wherePredicate) {
+    std::ostringstream join;
+    join << "{\"ID\":2,\"PLAN_NODE_TYPE\":\"HASHJOIN\",\"CHILDREN_IDS\":[3,4],"
+         << "\"OUTPUT_SCHEMA\":" << outputSchema({ tve(0, 0), tve(1, 0), tve(0, 1), tve(1, 1) }) << ","
+         << "\"JOIN_TYPE\":\"" << joinType << "\","
+         << "\"JOIN_PREDICATE\":" << compare(EXPRESSION_TYPE_COMPARE_EQUAL, tve(0, 0), tve(0, 1)) << ",";
+    if (wherePredicate != NO_PREDICATE) {
+        join << "\"WHERE_PREDICATE\":" << predicateJson(wherePredicate) << ",";
+    }
+    join << "\"OUTER_HASH_KEYS\":[" << tve(0, 0) << "],"
+         << "\"INNER_HASH_KEYS\":[" << tve(0, 1) << "]}";
+    return "{\"EXECUTE_LIST\":[3,4,2,1],\"PLAN_NODES\":["
+        "{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},"
+        + join.str() + "," + scanNode(3, "L") + "," + scanNode(4, "R") + "]}";
+}
+
+}
+
+/**
+ * Hash joins checked against the rows a nested loop join over the same
+ * tables and predicates produces.
+ */
+class HashJoinExecutorTest : public Test {
+public:
+    HashJoinExecutorTest() {
+        m_engine.addTable("L", 2);
+        m_engine.addTable("R", 2);
+        m_initialized = m_engine.initialize(MEMORY_LIMIT);
+    }
+
+protected:
+    void insertRows(const std::string &tableName, const int64_t rows[][2], int rowCount,
+                    std::vector<PlanTestingRow> &copy) {
+        for (int ii = 0; ii < rowCount; ii += 1) {
+            PlanTestingRow row;
+            row.push_back(rows[ii][0]);
+            row.push_back(rows[ii][1]);
+            m_engine.insertRow(tableName, row);
+            copy.push_back(row);
+        }
+    }
+
+    void insertSmallTables() {
+        insertRows("L", OUTER_ROWS, sizeof(OUTER_ROWS) / sizeof(OUTER_ROWS[0]), m_outerRows);
+        insertRows("R", INNER_ROWS, sizeof(INNER_ROWS) / sizeof(INNER_ROWS[0]), m_innerRows);
+    }
+
+    /**
+     * The rows of L JOIN R ON L.K = R.K WHERE <predicate>, sorted.
+     */
+    std::vector<PlanTestingRow> nestedLoopJoin(bool leftJoin, Predicate wherePredicate) {
+        std::vector<PlanTestingRow> rows;
+        PlanTestingRow nullRow(2, INT64_NULL);
+        for (int outer = 0; outer < m_outerRows.size(); outer += 1) {
+            const PlanTestingRow &outerRow = m_outerRows[outer];
+            bool match = false;
+            for (int inner = 0; inner < m_innerRows.size(); inner += 1) {
+                const PlanTestingRow &innerRow = m_innerRows[inner];
+                if (outerRow[0] == INT64_NULL || innerRow[0] == INT64_NULL ||
+                    outerRow[0] != innerRow[0]) {
+                    continue;
+                }
+                match = true;
+                if (evalPredicate(wherePredicate, outerRow, innerRow)) {
+                    rows.push_back(joinedRow(outerRow, innerRow));
+                }
+            }
+            if (leftJoin && ! match && evalPredicate(wherePredicate, outerRow, nullRow)) {
+                rows.push_back(joinedRow(outerRow, nullRow));
+            }
+        }
+        std::sort(rows.begin(), rows.end());
+        return rows;
+    }
+
+    void checkJoin(const std::string &joinType, Predicate wherePredicate) {
+        std::vector<PlanTestingRow> rows;
+        ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS,
+                  m_engine.executePlan(hashJoinPlan(joinType, wherePredicate), rows));
+        std::sort(rows.begin(), rows.end());
+        std::vector<PlanTestingRow> expected = nestedLoopJoin(joinType == "LEFT", wherePredicate);
+        ASSERT_EQ(expected.size(), rows.size());
+        for (int idx = 0; idx < rows.size(); idx += 1) {
+            ASSERT_TRUE(expected[idx] == rows[idx]);
+        }
+    }
+
+    static PlanTestingRow joinedRow(const PlanTestingRow &outer, const PlanTestingRow &inner) {
+        PlanTestingRow row(outer);
+        row.insert(row.end(), inner.begin(), inner.end());
+        return row;
+    }
+
+    PlanTestingEngine m_engine;
+    bool m_initialized;
+    std::vector<PlanTestingRow> m_outerRows;
+    std::vector<PlanTestingRow> m_innerRows;
+};
+
+TEST_F(HashJoinExecutorTest, InnerJoin) {
+    ASSERT_TRUE(m_initialized);
+    insertSmallTables();
+    // Key 2 joins two rows with two rows, NULL keys join nothing.
+    ASSERT_EQ(7, nestedLoopJoin(false, NO_PREDICATE).size());
+    checkJoin("INNER", NO_PREDICATE);
+}
+
+TEST_F(HashJoinExecutorTest, LeftJoin) {
+    ASSERT_TRUE(m_initialized);
+    insertSmallTables();
+    // The NULL key and key 4 have no partner and get padded with NULLs.
+    ASSERT_EQ(9, nestedLoopJoin(true, NO_PREDICATE).size());
+    checkJoin("LEFT", NO_PREDICATE);
+}
+
+TEST_F(HashJoinExecutorTest, InnerJoinWithWherePredicate) {
+    ASSERT_TRUE(m_initialized);
+    insertSmallTables();
+    checkJoin("INNER", INNER_VALUE_ABOVE_201);
+    checkJoin("INNER", OUTER_VALUE_BELOW_40);
+}
+
+TEST_F(HashJoinExecutorTest, LeftJoinWithWherePredicate) {
+    ASSERT_TRUE(m_initialized);
+    insertSmallTables();
+    // Outer rows whose matches all fail the WHERE are not padded with NULLs.
+    std::vector<PlanTestingRow> expected = nestedLoopJoin(true, INNER_VALUE_ABOVE_201);
+    ASSERT_EQ(4, expected.size());
+    checkJoin("LEFT", INNER_VALUE_ABOVE_201);
+    // The WHERE also applies to the NULL padded rows.
+    checkJoin("LEFT", OUTER_VALUE_BELOW_40);
+}
+
+TEST_F(HashJoinExecutorTest, ManyDuplicateKeys) {
+    ASSERT_TRUE(m_initialized);
+    for (int ii = 0; ii < MANY_ROWS; ii += 1) {
+        PlanTestingRow outerRow;
+        // Every tenth outer row has a NULL key, and only even keys are on the inner side.
+        outerRow.push_back(ii % 10 == 0 ? INT64_NULL : ii % MANY_KEYS);
+        outerRow.push_back(ii);
+        m_engine.insertRow("L", outerRow);
+        m_outerRows.push_back(outerRow);
+        if (ii % 4 == 0) {
+            PlanTestingRow innerRow;
+            innerRow.push_back((ii / 4) % (MANY_KEYS / 2) * 2);
+            innerRow.push_back(ii);
+            m_engine.insertRow("R", innerRow);
+            m_innerRows.push_back(innerRow);
+        }
+    }
+    checkJoin("INNER", NO_PREDICATE);
+    checkJoin("LEFT", NO_PREDICATE);
+    // Running the plan again starts from an empty hash table.
+    checkJoin("LEFT", NO_PREDICATE);
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
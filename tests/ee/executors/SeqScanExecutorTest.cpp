@@ -0,0 +1,245 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+
+#include "test_utils/PlanTestingEngine.hpp"
+
+#include <algorithm>
+#include <sstream>
+#include <string>
+#include <vector>
+
+using namespace voltdb;
+using namespace voltdb::planjson;
+
+namespace {
+
+const int NUM_OF_TUPLES = 500;
+
+/**
+ * Build a SEND <- SEQSCAN plan over table T.  The scan has an inline
+ * projection with the given expressions, and optionally a predicate
+ * and an inline limit (a negative limit means none).
+ */
+std::string scanPlan(const std::vector<std::string> &projection,
+                     const std::string &predicate = "",
+                     int limit = -1, int offset = 0) {
+    std::ostringstream plan;
+    plan << "{\"EXECUTE_LIST\":[2,1],\"PLAN_NODES\":["
+         << "{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},"
+         << "{\"ID\":2,\"PLAN_NODE_TYPE\":\"SEQSCAN\","
+         << "\"TARGET_TABLE_NAME\":\"T\",\"TARGET_TABLE_ALIAS\":\"T\",";
+    if ( ! predicate.empty()) {
+        plan << "\"PREDICATE\":" << predicate << ",";
+    }
+    plan << "\"INLINE_NODES\":["
+         << "{\"ID\":3,\"PLAN_NODE_TYPE\":\"PROJECTION\",\"OUTPUT_SCHEMA\":"
+         << outputSchema(projection) << "}";
+    if (limit >= 0) {
+        plan << ",{\"ID\":4,\"PLAN_NODE_TYPE\":\"LIMIT\",\"LIMIT\":" << limit
+             << ",\"OFFSET\":" << offset << "}";
+    }
+    plan << "]}]}";
+    return plan.str();
+}
+
+}
+
+/**
+ * Sequential scans with an inline projection.  The projection is
+ * run through the OptimizedProjector, which copies runs of unchanged
+ * columns and evaluates the remaining expressions one at a time.
+ */
+class SeqScanExecutorTest : public Test {
+public:
+    SeqScanExecutorTest() {
+        m_engine.addTable("T", 3);
+        m_initialized = m_engine.initialize();
+        if ( ! m_initialized) {
+            return;
+        }
+        // C0 is a unique row number, C1 has duplicates and NULLs,
+        // C2 runs in the opposite direction to C0.
+        for (int i = 0; i < NUM_OF_TUPLES; i += 1) {
+            m_engine.insertRow("T", row(i, c1For(i), 1000 - i));
+        }
+    }
+
+protected:
+    static int64_t c1For(int i) {
+        return (i % 5 == 0) ? INT64_NULL : i % 7;
+    }
+
+    static PlanTestingRow row(int64_t c0, int64_t c1) {
+        PlanTestingRow result;
+        result.push_back(c0);
+        result.push_back(c1);
+        return result;
+    }
+
+    static PlanTestingRow row(int64_t c0, int64_t c1, int64_t c2) {
+        PlanTestingRow result = row(c0, c1);
+        result.push_back(c2);
+        return result;
+    }
+
+    /**
+     * The scan order of a persistent table is not part of the
+     * contract, so compare the rows in sorted order.
+     */
+    void expectSameRows(std::vector<PlanTestingRow> expected,
+                        std::vector<PlanTestingRow> actual) {
+        std::sort(expected.begin(), expected.end());
+        std::sort(actual.begin(), actual.end());
+        ASSERT_EQ(expected.size(), actual.size());
+        for (int idx = 0; idx < expected.size(); idx += 1) {
+            EXPECT_TRUE(expected[idx] == actual[idx]);
+        }
+    }
+
+    bool m_initialized;
+    PlanTestingEngine m_engine;
+};
+
+TEST_F(SeqScanExecutorTest, CopiedColumnsReordered) {
+    ASSERT_TRUE(m_initialized);
+    std::vector<std::string> projection;
+    projection.push_back(tve(2));
+    projection.push_back(tve(0));
+    projection.push_back(tve(1));
+
+    std::vector<PlanTestingRow> result;
+    ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS, m_engine.executePlan(scanPlan(projection), result));
+
+    std::vector<PlanTestingRow> expected;
+    for (int i = 0; i < NUM_OF_TUPLES; i += 1) {
+        expected.push_back(row(1000 - i, i, c1For(i)));
+    }
+    expectSameRows(expected, result);
+}
+
+TEST_F(SeqScanExecutorTest, ComputedColumnsWithPredicate) {
+    ASSERT_TRUE(m_initialized);
+    // SELECT C0, C0 * 2, C1 FROM T WHERE C0 >= 400
+    std::vector<std::string> projection;
+    projection.push_back(tve(0));
+    projection.push_back(binary(EXPRESSION_TYPE_OPERATOR_MULTIPLY, VALUE_TYPE_BIGINT,
+                                tve(0), constant(2)));
+    projection.push_back(tve(1));
+    std::string predicate = compare(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO,
+                                    tve(0), constant(400));
+
+    std::vector<PlanTestingRow> result;
+    ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS,
+              m_engine.executePlan(scanPlan(projection, predicate), result));
+
+    std::vector<PlanTestingRow> expected;
+    for (int i = 400; i < NUM_OF_TUPLES; i += 1) {
+        expected.push_back(row(i, 2 * i, c1For(i)));
+    }
+    expectSameRows(expected, result);
+}
+
+TEST_F(SeqScanExecutorTest, PredicateOnNullableColumn) {
+    ASSERT_TRUE(m_initialized);
+    // SELECT C1, C0 FROM T WHERE C1 = 3
+    std::vector<std::string> projection;
+    projection.push_back(tve(1));
+    projection.push_back(tve(0));
+    std::string predicate = compare(EXPRESSION_TYPE_COMPARE_EQUAL, tve(1), constant(3));
+
+    std::vector<PlanTestingRow> result;
+    ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS,
+              m_engine.executePlan(scanPlan(projection, predicate), result));
+
+    std::vector<PlanTestingRow> expected;
+    for (int i = 0; i < NUM_OF_TUPLES; i += 1) {
+        if (c1For(i) == 3) {
+            expected.push_back(row(3, i));
+        }
+    }
+    expectSameRows(expected, result);
+}
+
+TEST_F(SeqScanExecutorTest, InlineLimitAndOffset) {
+    ASSERT_TRUE(m_initialized);
+    // SELECT C0, C2 FROM T WHERE C0 < 100 LIMIT 10 OFFSET 5
+    std::vector<std::string> projection;
+    projection.push_back(tve(0));
+    projection.push_back(tve(2));
+    std::string predicate = compare(EXPRESSION_TYPE_COMPARE_LESSTHAN, tve(0), constant(100));
+
+    std::vector<PlanTestingRow> result;
+    ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS,
+              m_engine.executePlan(scanPlan(projection, predicate, 10, 5), result));
+
+    ASSERT_EQ(10, result.size());
+    for (int idx = 0; idx < result.size(); idx += 1) {
+        EXPECT_LT(result[idx][0], 100);
+        EXPECT_EQ(1000 - result[idx][0], result[idx][1]);
+    }
+}
+
+TEST_F(SeqScanExecutorTest, SubqueryScan) {
+    ASSERT_TRUE(m_initialized);
+    // SELECT C1, C0 + 1 FROM (SELECT C0, C2 FROM T WHERE C0 < 50) SUBQ WHERE C0 >= 10
+    std::vector<std::string> innerProjection;
+    innerProjection.push_back(tve(0));
+    innerProjection.push_back(tve(2));
+    std::vector<std::string> outerProjection;
+    outerProjection.push_back(tve(1));
+    outerProjection.push_back(binary(EXPRESSION_TYPE_OPERATOR_PLUS, VALUE_TYPE_BIGINT,
+                                     tve(0), constant(1)));
+
+    std::ostringstream plan;
+    plan << "{\"EXECUTE_LIST\":[3,2,1],\"PLAN_NODES\":["
+         << "{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},"
+         << "{\"ID\":2,\"PLAN_NODE_TYPE\":\"SEQSCAN\",\"CHILDREN_IDS\":[3],"
+         << "\"SUBQUERY_INDICATOR\":\"TRUE\","
+         << "\"TARGET_TABLE_NAME\":\"SUBQ\",\"TARGET_TABLE_ALIAS\":\"SUBQ\","
+         << "\"PREDICATE\":"
+         << compare(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO, tve(0), constant(10)) << ","
+         << "\"INLINE_NODES\":[{\"ID\":4,\"PLAN_NODE_TYPE\":\"PROJECTION\",\"OUTPUT_SCHEMA\":"
+         << outputSchema(outerProjection) << "}]},"
+         << "{\"ID\":3,\"PLAN_NODE_TYPE\":\"SEQSCAN\","
+         << "\"TARGET_TABLE_NAME\":\"T\",\"TARGET_TABLE_ALIAS\":\"T\","
+         << "\"PREDICATE\":"
+         << compare(EXPRESSION_TYPE_COMPARE_LESSTHAN, tve(0), constant(50)) << ","
+         << "\"INLINE_NODES\":[{\"ID\":5,\"PLAN_NODE_TYPE\":\"PROJECTION\",\"OUTPUT_SCHEMA\":"
+         << outputSchema(innerProjection) << "}]}"
+         << "]}";
+
+    std::vector<PlanTestingRow> result;
+    ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS, m_engine.executePlan(plan.str(), result));
+
+    std::vector<PlanTestingRow> expected;
+    for (int i = 10; i < 50; i += 1) {
+        expected.push_back(row(1000 - i, i + 1));
+    }
+    expectSameRows(expected, result);
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
@@ -0,0 +1,291 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+
+#include "test_utils/PlanTestingEngine.hpp"
+
+#include <algorithm>
+#include <cstdio>
+#include <sstream>
+#include <string>
+#include <vector>
+
+using namespace voltdb;
+using namespace voltdb::planjson;
+
+namespace {
+
+/*
+ * The scans below copy their whole input into a temp table, which takes
+ * 7 of the 8 temp table blocks that fit under ORDER_BY_MEMORY_LIMIT.
+ * Sorting that into another temp table would run into the limit, so the
+ * ORDER BY plans only succeed when the sort spills.
+ */
+const int64_t ORDER_BY_MEMORY_LIMIT = 1024 * 1024;
+const int ORDER_BY_TUPLES = 100000;
+// Coprime with ORDER_BY_TUPLES, so that C0 is a shuffled permutation of the row numbers.
+const int SHUFFLE_FACTOR = 7919;
+
+/*
+ * The groups of the hash aggregate take a few megabytes of pool memory,
+ * more than fits next to the input under AGGREGATE_MEMORY_LIMIT, so the
+ * aggregate only succeeds when it spills groups to partition files.
+ */
+const int64_t AGGREGATE_MEMORY_LIMIT = 2 * 1024 * 1024;
+const int AGGREGATE_TUPLES = 100000;
+const int AGGREGATE_GROUPS = 25000;
+
+std::string scanNode(int id, const std::string &tableName) {
+    std::ostringstream node;
+    node << "{\"ID\":" << id << ",\"PLAN_NODE_TYPE\":\"SEQSCAN\","
+         << "\"TARGET_TABLE_NAME\":\"" << tableName << "\","
+         << "\"TARGET_TABLE_ALIAS\":\"" << tableName << "\","
+         << "\"INLINE_NODES\":[{\"ID\":" << (id + 100) << ",\"PLAN_NODE_TYPE\":\"PROJECTION\","
+         << "\"OUTPUT_SCHEMA\":" << outputSchema({ tve(0), tve(1) }) << "}]}";
+    return node.str();
+}
+
+/**
+ * Build an ORDER BY C0 over a scan of T.  With a negative limit the
+ * ORDER BY has no inline LIMIT.
+ */
+std::string orderByNode(int id, int childId, const std::string &direction,
+                        int limit = -1, int offset = 0) {
+    std::ostringstream node;
+    node << "{\"ID\":" << id << ",\"PLAN_NODE_TYPE\":\"ORDERBY\","
+         << "\"CHILDREN_IDS\":[" << childId << "],"
+         << "\"SORT_COLUMNS\":[{\"SORT_EXPRESSION\":" << tve(0)
+         << ",\"SORT_DIRECTION\":\"" << direction << "\"}]";
+    if (limit >= 0) {
+        node << ",\"INLINE_NODES\":[{\"ID\":" << (id + 100) << ",\"PLAN_NODE_TYPE\":\"LIMIT\","
+             << "\"LIMIT\":" << limit << ",\"OFFSET\":" << offset << "}]";
+    }
+    node << "}";
+    return node.str();
+}
+
+}
+
+/**
+ * ORDER BYs whose sorted output does not fit under the temp table
+ * memory limit.  Below a SEND the spilled runs are merged straight
+ * into the result, anywhere else they are merged into the output table.
+ */
+class OrderBySpillTest : public Test {
+public:
+    OrderBySpillTest(const std::string &spillDirectory = P_tmpdir) {
+        m_engine.addTable("T", 2);
+        m_initialized = m_engine.initialize(ORDER_BY_MEMORY_LIMIT, spillDirectory);
+        if ( ! m_initialized) {
+            return;
+        }
+        for (int ii = 0; ii < ORDER_BY_TUPLES; ii += 1) {
+            PlanTestingRow row;
+            row.push_back((static_cast<int64_t>(ii) * SHUFFLE_FACTOR) % ORDER_BY_TUPLES);
+            row.push_back(ii);
+            m_engine.insertRow("T", row);
+        }
+    }
+
+protected:
+    /**
+     * Check that rows are the ones of table T with C0 running from first
+     * in steps of one, up or down.
+     */
+    void checkSortedRows(const std::vector<PlanTestingRow> &rows, int first, int step) {
+        for (int idx = 0; idx < rows.size(); idx += 1) {
+            int64_t expected = first + idx * step;
+            ASSERT_EQ(expected, rows[idx][0]);
+            ASSERT_EQ(expected, (rows[idx][1] * SHUFFLE_FACTOR) % ORDER_BY_TUPLES);
+        }
+    }
+
+    PlanTestingEngine m_engine;
+    bool m_initialized;
+};
+
+TEST_F(OrderBySpillTest, StreamedIntoResult) {
+    ASSERT_TRUE(m_initialized);
+    std::string plan = "{\"EXECUTE_LIST\":[3,2,1],\"PLAN_NODES\":["
+        "{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},"
+        + orderByNode(2, 3, "ASC") + "," + scanNode(3, "T") + "]}";
+    std::vector<PlanTestingRow> rows;
+    ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS, m_engine.executePlan(plan, rows));
+    ASSERT_EQ(ORDER_BY_TUPLES, rows.size());
+    checkSortedRows(rows, 0, 1);
+}
+
+TEST_F(OrderBySpillTest, StreamedWithLimitAndOffset) {
+    ASSERT_TRUE(m_initialized);
+    // Large enough that the limited output still does not fit next to the input.
+    const int limit = 60000;
+    const int offset = 20000;
+    std::string plan = "{\"EXECUTE_LIST\":[3,2,1],\"PLAN_NODES\":["
+        "{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},"
+        + orderByNode(2, 3, "DESC", limit, offset) + "," + scanNode(3, "T") + "]}";
+    std::vector<PlanTestingRow> rows;
+    ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS, m_engine.executePlan(plan, rows));
+    ASSERT_EQ(limit, rows.size());
+    checkSortedRows(rows, ORDER_BY_TUPLES - 1 - offset, -1);
+}
+
+TEST_F(OrderBySpillTest, MergedIntoOutputTable) {
+    ASSERT_TRUE(m_initialized);
+    // The LIMIT consumes the ORDER BY's output table.
+    const int limit = 1000;
+    const int offset = 50000;
+    std::ostringstream limitNode;
+    limitNode << "{\"ID\":2,\"PLAN_NODE_TYPE\":\"LIMIT\",\"CHILDREN_IDS\":[3],"
+              << "\"LIMIT\":" << limit << ",\"OFFSET\":" << offset << "}";
+    std::string plan = "{\"EXECUTE_LIST\":[4,3,2,1],\"PLAN_NODES\":["
+        "{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},"
+        + limitNode.str() + "," + orderByNode(3, 4, "ASC") + "," + scanNode(4, "T") + "]}";
+    std::vector<PlanTestingRow> rows;
+    ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS, m_engine.executePlan(plan, rows));
+    ASSERT_EQ(limit, rows.size());
+    checkSortedRows(rows, offset, 1);
+}
+
+TEST_F(OrderBySpillTest, RepeatedExecution) {
+    ASSERT_TRUE(m_initialized);
+    // The spill files and the merge of one execution must not leak into the next.
+    std::string plan = "{\"EXECUTE_LIST\":[3,2,1],\"PLAN_NODES\":["
+        "{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},"
+        + orderByNode(2, 3, "ASC", 10, 0) + "," + scanNode(3, "T") + "]}";
+    std::string spillingPlan = "{\"EXECUTE_LIST\":[3,2,1],\"PLAN_NODES\":["
+        "{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},"
+        + orderByNode(2, 3, "ASC") + "," + scanNode(3, "T") + "]}";
+    for (int ii = 0; ii < 2; ii += 1) {
+        std::vector<PlanTestingRow> rows;
+        ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS, m_engine.executePlan(spillingPlan, rows));
+        ASSERT_EQ(ORDER_BY_TUPLES, rows.size());
+        checkSortedRows(rows, 0, 1);
+        ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS, m_engine.executePlan(plan, rows));
+        ASSERT_EQ(10, rows.size());
+        checkSortedRows(rows, 0, 1);
+    }
+}
+
+/**
+ * Without a spill directory the same sort fails at the memory limit.
+ */
+class OrderBySpillDisabledTest : public OrderBySpillTest {
+public:
+    OrderBySpillDisabledTest() : OrderBySpillTest("") {
+    }
+};
+
+TEST_F(OrderBySpillDisabledTest, FailsAtLimit) {
+    ASSERT_TRUE(m_initialized);
+    std::string plan = "{\"EXECUTE_LIST\":[3,2,1],\"PLAN_NODES\":["
+        "{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},"
+        + orderByNode(2, 3, "ASC") + "," + scanNode(3, "T") + "]}";
+    std::vector<PlanTestingRow> rows;
+    ASSERT_EQ(ENGINE_ERRORCODE_ERROR, m_engine.executePlan(plan, rows));
+}
+
+/**
+ * A hash aggregate whose groups do not fit under the temp table memory
+ * limit.  The memory pool holding the groups is charged to the limit,
+ * so the aggregate fails unless it spills new groups to partition files.
+ */
+class HashAggregateSpillTest : public Test {
+public:
+    HashAggregateSpillTest(const std::string &spillDirectory = P_tmpdir) {
+        m_engine.addTable("G", 2);
+        m_initialized = m_engine.initialize(AGGREGATE_MEMORY_LIMIT, spillDirectory);
+        if ( ! m_initialized) {
+            return;
+        }
+        for (int ii = 0; ii < AGGREGATE_TUPLES; ii += 1) {
+            PlanTestingRow row;
+            row.push_back(ii % AGGREGATE_GROUPS);
+            row.push_back(ii);
+            m_engine.insertRow("G", row);
+        }
+    }
+
+protected:
+    /** SUM(C1) and COUNT(*) of table G grouped by C0. */
+    std::string aggregatePlan() {
+        std::ostringstream aggregateNode;
+        aggregateNode << "{\"ID\":2,\"PLAN_NODE_TYPE\":\"HASHAGGREGATE\",\"CHILDREN_IDS\":[3],"
+                      << "\"OUTPUT_SCHEMA\":"
+                      << outputSchema({ tve(0), tve(1, 0, VALUE_TYPE_BIGINT), tve(2, 0, VALUE_TYPE_BIGINT) })
+                      << ",\"AGGREGATE_COLUMNS\":["
+                      << "{\"AGGREGATE_TYPE\":\"AGGREGATE_SUM\",\"AGGREGATE_DISTINCT\":0,"
+                      << "\"AGGREGATE_OUTPUT_COLUMN\":1,\"AGGREGATE_EXPRESSION\":" << tve(1) << "},"
+                      << "{\"AGGREGATE_TYPE\":\"AGGREGATE_COUNT_STAR\",\"AGGREGATE_DISTINCT\":0,"
+                      << "\"AGGREGATE_OUTPUT_COLUMN\":2}],"
+                      << "\"GROUPBY_EXPRESSIONS\":[" << tve(0) << "]}";
+        return "{\"EXECUTE_LIST\":[3,2,1],\"PLAN_NODES\":["
+            "{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},"
+            + aggregateNode.str() + "," + scanNode(3, "G") + "]}";
+    }
+
+    PlanTestingEngine m_engine;
+    bool m_initialized;
+};
+
+TEST_F(HashAggregateSpillTest, SumAndCountByGroup) {
+    ASSERT_TRUE(m_initialized);
+    std::string plan = aggregatePlan();
+    std::vector<PlanTestingRow> rows;
+    ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS, m_engine.executePlan(plan, rows));
+    ASSERT_EQ(AGGREGATE_GROUPS, rows.size());
+
+    // Every group shows up exactly once, with all of its rows.
+    const int64_t rowsPerGroup = AGGREGATE_TUPLES / AGGREGATE_GROUPS;
+    std::sort(rows.begin(), rows.end());
+    for (int group = 0; group < AGGREGATE_GROUPS; group += 1) {
+        int64_t expectedSum = rowsPerGroup * group +
+            AGGREGATE_GROUPS * rowsPerGroup * (rowsPerGroup - 1) / 2;
+        ASSERT_EQ(group, rows[group][0]);
+        ASSERT_EQ(expectedSum, rows[group][1]);
+        ASSERT_EQ(rowsPerGroup, rows[group][2]);
+    }
+
+    // Run it again to check that the charge for the groups was given back.
+    ASSERT_EQ(ENGINE_ERRORCODE_SUCCESS, m_engine.executePlan(plan, rows));
+    ASSERT_EQ(AGGREGATE_GROUPS, rows.size());
+}
+
+/**
+ * Without a spill directory the same aggregate fails at the memory limit.
+ */
+class HashAggregateSpillDisabledTest : public HashAggregateSpillTest {
+public:
+    HashAggregateSpillDisabledTest() : HashAggregateSpillTest("") {
+    }
+};
+
+TEST_F(HashAggregateSpillDisabledTest, FailsAtLimit) {
+    ASSERT_TRUE(m_initialized);
+    std::vector<PlanTestingRow> rows;
+    ASSERT_EQ(ENGINE_ERRORCODE_ERROR, m_engine.executePlan(aggregatePlan(), rows));
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
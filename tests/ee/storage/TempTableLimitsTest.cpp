@@ -22,12 +22,19 @@
  */
 
 #include "storage/TempTableLimits.h"
+#include "storage/TempTableSpillFile.h"
 
 #include "harness.h"
 #include "common/SQLException.h"
+#include "common/TupleSchema.h"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
 #include "logging/LogManager.h"
 
+#include <cstdio>
 #include <sstream>
+#include <vector>
 
 using namespace voltdb;
 
@@ -125,6 +132,79 @@ TEST_F(TempTableLimitsTest, CheckLimitException)
     EXPECT_TRUE(threw);
 }
 
+TEST_F(TempTableLimitsTest, CheckShouldSpill)
+{
+    // No spill directory, never spill
+    TempTableLimits noSpill(1024 * 10);
+    EXPECT_FALSE(noSpill.canSpill());
+    EXPECT_FALSE(noSpill.shouldSpill(1024 * 20));
+
+    // No memory limit, nothing to spill for
+    TempTableLimits noLimit(-1, -1, P_tmpdir);
+    EXPECT_FALSE(noLimit.canSpill());
+    EXPECT_FALSE(noLimit.shouldSpill(1024 * 20));
+
+    TempTableLimits dut(1024 * 10, -1, P_tmpdir);
+    EXPECT_TRUE(dut.canSpill());
+    EXPECT_FALSE(dut.shouldSpill(1024 * 10));
+    EXPECT_TRUE(dut.shouldSpill(1024 * 10 + 1));
+    dut.increaseAllocated(1024 * 6);
+    EXPECT_FALSE(dut.shouldSpill(1024 * 4));
+    EXPECT_TRUE(dut.shouldSpill(1024 * 5));
+    dut.reduceAllocated(1024 * 6);
+    EXPECT_FALSE(dut.shouldSpill(1024 * 5));
+}
+
+TEST_F(TempTableLimitsTest, CheckSpillFileRoundTrip)
+{
+    std::vector<ValueType> columnTypes(2, VALUE_TYPE_BIGINT);
+    std::vector<int32_t> columnSizes(2, NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+    std::vector<bool> allowNull(2, true);
+    TupleSchema* schema = TupleSchema::createTupleSchemaForTest(columnTypes, columnSizes, allowNull);
+    {
+        std::vector<char> storage(schema->tupleLength() + TUPLE_HEADER_SIZE);
+        TableTuple tuple(&storage[0], schema);
+
+        TempTableSpillFile dut(P_tmpdir, schema);
+        for (int64_t i = 0; i < 1000; i++) {
+            tuple.setNValue(0, ValueFactory::getBigIntValue(i));
+            tuple.setNValue(1, ValueFactory::getBigIntValue(i * i));
+            dut.append(tuple);
+        }
+        EXPECT_EQ(1000, dut.tupleCount());
+
+        // Reading back can be repeated
+        for (int pass = 0; pass < 2; pass++) {
+            dut.rewind();
+            int64_t i = 0;
+            while (dut.next(tuple)) {
+                EXPECT_EQ(i, ValuePeeker::peekBigInt(tuple.getNValue(0)));
+                EXPECT_EQ(i * i, ValuePeeker::peekBigInt(tuple.getNValue(1)));
+                i++;
+            }
+            EXPECT_EQ(1000, i);
+        }
+    }
+    TupleSchema::freeTupleSchema(schema);
+}
+
+TEST_F(TempTableLimitsTest, CheckSpillFileBadDirectory)
+{
+    std::vector<ValueType> columnTypes(1, VALUE_TYPE_BIGINT);
+    std::vector<int32_t> columnSizes(1, NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+    std::vector<bool> allowNull(1, true);
+    TupleSchema* schema = TupleSchema::createTupleSchemaForTest(columnTypes, columnSizes, allowNull);
+    bool threw = false;
+    try {
+        TempTableSpillFile dut("/no/such/spill/directory", schema);
+    }
+    catch (SQLException& sqle) {
+        threw = true;
+    }
+    EXPECT_TRUE(threw);
+    TupleSchema::freeTupleSchema(schema);
+}
+
 int main()
 {
     return TestSuite::globalInstance()->runAll();
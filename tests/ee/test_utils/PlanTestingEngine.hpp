@@ -0,0 +1,291 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+#ifndef TESTS_EE_TEST_UTILS_PLANTESTINGENGINE_HPP_
+#define TESTS_EE_TEST_UTILS_PLANTESTINGENGINE_HPP_
+
+#include <map>
+#include <sstream>
+#include <string>
+#include <vector>
+
+#include "boost/scoped_ptr.hpp"
+#include "boost/shared_array.hpp"
+
+#include "common/Topend.h"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "execution/VoltDBEngine.h"
+#include "storage/persistenttable.h"
+#include "storage/tableiterator.h"
+#include "storage/temptable.h"
+
+#include "test_utils/LoadTableFrom.hpp"
+
+namespace voltdb {
+
+/**
+ * Helpers to spell out the JSON of plan expressions and output
+ * schemas without pages of escaped string literals.
+ */
+namespace planjson {
+
+inline std::string tve(int columnIdx, int tableIdx = 0,
+                       ValueType valueType = VALUE_TYPE_INTEGER) {
+    std::ostringstream json;
+    json << "{\"TYPE\":" << EXPRESSION_TYPE_VALUE_TUPLE
+         << ",\"VALUE_TYPE\":" << valueType
+         << ",\"COLUMN_IDX\":" << columnIdx
+         << ",\"TABLE_IDX\":" << tableIdx << "}";
+    return json.str();
+}
+
+inline std::string constant(int64_t value, ValueType valueType = VALUE_TYPE_INTEGER) {
+    std::ostringstream json;
+    json << "{\"TYPE\":" << EXPRESSION_TYPE_VALUE_CONSTANT
+         << ",\"VALUE_TYPE\":" << valueType
+         << ",\"ISNULL\":false,\"VALUE\":" << value << "}";
+    return json.str();
+}
+
+inline std::string binary(ExpressionType type, ValueType valueType,
+                          const std::string &left, const std::string &right) {
+    std::ostringstream json;
+    json << "{\"TYPE\":" << type
+         << ",\"VALUE_TYPE\":" << valueType
+         << ",\"LEFT\":" << left
+         << ",\"RIGHT\":" << right << "}";
+    return json.str();
+}
+
+inline std::string compare(ExpressionType type, const std::string &left, const std::string &right) {
+    return binary(type, VALUE_TYPE_BOOLEAN, left, right);
+}
+
+inline std::string outputSchema(const std::vector<std::string> &expressions) {
+    std::ostringstream json;
+    json << "[";
+    for (int idx = 0; idx < expressions.size(); idx += 1) {
+        json << (idx == 0 ? "" : ",")
+             << "{\"COLUMN_NAME\":\"C" << idx << "\",\"EXPRESSION\":" << expressions[idx] << "}";
+    }
+    json << "]";
+    return json.str();
+}
+
+}
+
+/**
+ * A row of INTEGER column values, used both to load tables and to
+ * check results.  INT64_NULL stands for SQL NULL.
+ */
+typedef std::vector<int64_t> PlanTestingRow;
+
+/**
+ * This Topend hands out the JSON plans registered with addPlan
+ * by fragment id.  Other than that, this is just a DummyTopend.
+ */
+class PlanTestingTopend : public DummyTopend {
+    typedef std::map<int64_t, std::string> FragmentMap;
+    FragmentMap m_fragments;
+public:
+    void addPlan(int64_t fragmentId, const std::string &planStr) {
+        m_fragments[fragmentId] = planStr;
+    }
+    std::string planForFragmentId(int64_t fragmentId) {
+        FragmentMap::iterator it = m_fragments.find(fragmentId);
+        if (it == m_fragments.end()) {
+            return "";
+        }
+        return it->second;
+    }
+};
+
+/**
+ * A small engine for executor tests.  Tests declare replicated tables
+ * of nullable INTEGER columns named C0, C1, ..., load rows into them
+ * and then run hand written JSON plans whose top node is a SEND.
+ * The result of each plan is handed back as a list of rows.
+ *
+ * Only fixed size column types can be read back from the result
+ * buffer, see loadTableFrom.
+ */
+class PlanTestingEngine {
+public:
+    PlanTestingEngine()
+        : m_nextFragmentId(100)
+    {
+    }
+
+    /**
+     * Declare a table with the given number of columns.  All tables
+     * must be declared before initialize is called.
+     */
+    void addTable(const std::string &name, int columnCount) {
+        std::string prefix = "/clusters#cluster/databases#database/tables#" + name;
+        std::ostringstream catalog;
+        catalog << "add /clusters#cluster/databases#database tables " << name << "\n"
+                << "set " << prefix << " isreplicated true\n"
+                << "set $PREV partitioncolumn null\n"
+                << "set $PREV estimatedtuplecount 0\n"
+                << "set $PREV materializer null\n"
+                << "set $PREV signature \"" << name << "|" << std::string(columnCount, 'i') << "\"\n"
+                << "set $PREV tuplelimit 2147483647\n"
+                << "set $PREV isDRed false\n";
+        for (int idx = 0; idx < columnCount; idx += 1) {
+            catalog << "add " << prefix << " columns C" << idx << "\n"
+                    << "set " << prefix << "/columns#C" << idx << " index " << idx << "\n"
+                    << "set $PREV type " << VALUE_TYPE_INTEGER << "\n"
+                    << "set $PREV size 4\n"
+                    << "set $PREV nullable true\n"
+                    << "set $PREV name \"C" << idx << "\"\n"
+                    << "set $PREV defaultvalue null\n"
+                    << "set $PREV defaulttype 0\n"
+                    << "set $PREV matview null\n"
+                    << "set $PREV aggregatetype 0\n"
+                    << "set $PREV matviewsource null\n"
+                    << "set $PREV inbytes false\n";
+        }
+        m_tableCatalog += catalog.str();
+    }
+
+    /**
+     * Create the engine and load the catalog.  The temp table memory
+     * limit is what every executor's TempTableLimits is charged against.
+     * Temp tables over the limit spill to tempTableSpillDirectory, or
+     * fail if it is empty.
+     */
+    bool initialize(int64_t tempTableMemoryLimit = DEFAULT_TEMP_TABLE_MEMORY,
+                    const std::string &tempTableSpillDirectory = "") {
+        std::string catalog =
+            "add / clusters cluster\n"
+            "set /clusters#cluster localepoch 1199145600\n"
+            "set $PREV securityEnabled false\n"
+            "set $PREV httpdportno 0\n"
+            "set $PREV jsonapi false\n"
+            "set $PREV networkpartition false\n"
+            "set $PREV voltRoot \"\"\n"
+            "set $PREV exportOverflow \"\"\n"
+            "set $PREV drOverflow \"\"\n"
+            "set $PREV adminport 0\n"
+            "set $PREV adminstartup false\n"
+            "set $PREV heartbeatTimeout 0\n"
+            "set $PREV useddlschema false\n"
+            "set $PREV drConsumerEnabled false\n"
+            "set $PREV drProducerEnabled false\n"
+            "set $PREV drClusterId 0\n"
+            "set $PREV drProducerPort 0\n"
+            "set $PREV drMasterHost \"\"\n"
+            "set $PREV drFlushInterval 0\n"
+            "add /clusters#cluster databases database\n"
+            "set /clusters#cluster/databases#database schema \"\"\n"
+            "set $PREV isActiveActiveDRed false\n"
+            + m_tableCatalog;
+
+        m_topend.reset(new PlanTestingTopend());
+        m_engine.reset(new VoltDBEngine(m_topend.get()));
+        m_parameterBuffer.reset(new char[PARAMETER_BUFFER_SIZE]);
+        m_resultBuffer.reset(new char[RESULT_BUFFER_SIZE]);
+        m_exceptionBuffer.reset(new char[EXCEPTION_BUFFER_SIZE]);
+        m_engine->setBuffers(m_parameterBuffer.get(), PARAMETER_BUFFER_SIZE,
+                             m_resultBuffer.get(), RESULT_BUFFER_SIZE,
+                             m_exceptionBuffer.get(), EXCEPTION_BUFFER_SIZE);
+        m_engine->resetReusedResultOutputBuffer();
+        int partitionCount = 1;
+        if ( ! m_engine->initialize(1, 1, 0, 0, "", 0, 1024, tempTableMemoryLimit, false,
+                                    95, tempTableSpillDirectory)) {
+            return false;
+        }
+        m_engine->updateHashinator(HASHINATOR_LEGACY, (char*)&partitionCount, NULL, 0);
+        return m_engine->loadCatalog(-2, catalog);
+    }
+
+    PersistentTable* getTable(const std::string &name) {
+        return dynamic_cast<PersistentTable*>(m_engine->getTable(name));
+    }
+
+    void insertRow(const std::string &tableName, const PlanTestingRow &row) {
+        PersistentTable* table = getTable(tableName);
+        assert(table);
+        assert(row.size() == table->columnCount());
+        TableTuple &tuple = table->tempTuple();
+        for (int idx = 0; idx < row.size(); idx += 1) {
+            tuple.setNValue(idx, row[idx] == INT64_NULL ?
+                            NValue::getNullValue(VALUE_TYPE_INTEGER) :
+                            ValueFactory::getIntegerValue(static_cast<int32_t>(row[idx])));
+        }
+        table->insertTuple(tuple);
+    }
+
+    /**
+     * Run a plan and return its result rows, in output order.  A
+     * failed execution is reported through the return code and
+     * leaves the result list empty.
+     */
+    int executePlan(const std::string &jsonPlan, std::vector<PlanTestingRow> &result) {
+        int64_t fragmentId = m_nextFragmentId++;
+        m_topend->addPlan(fragmentId, jsonPlan);
+        memset(m_parameterBuffer.get(), 0, PARAMETER_BUFFER_SIZE);
+        ReferenceSerializeInputBE emptyParams(m_parameterBuffer.get(), PARAMETER_BUFFER_SIZE);
+        m_engine->resetReusedResultOutputBuffer();
+        int status = m_engine->executePlanFragments(1, &fragmentId, NULL, emptyParams,
+                                                    1000, 1000, 1000, 1000, 1);
+        result.clear();
+        if (status != ENGINE_ERRORCODE_SUCCESS) {
+            return status;
+        }
+        boost::scoped_ptr<TempTable> resultTable(loadTableFrom(m_resultBuffer.get(),
+                                                               m_engine->getResultsSize()));
+        TableTuple tuple(resultTable->schema());
+        TableIterator iter = resultTable->iterator();
+        while (iter.next(tuple)) {
+            PlanTestingRow row;
+            for (int idx = 0; idx < tuple.sizeInValues(); idx += 1) {
+                row.push_back(ValuePeeker::peekAsBigInt(tuple.getNValue(idx)));
+            }
+            result.push_back(row);
+        }
+        return status;
+    }
+
+    VoltDBEngine* getEngine() {
+        return m_engine.get();
+    }
+
+private:
+    static const int PARAMETER_BUFFER_SIZE = 4 * 1024;
+    static const int RESULT_BUFFER_SIZE = 1024 * 1024 * 2;
+    static const int EXCEPTION_BUFFER_SIZE = 4 * 1024;
+
+    std::string m_tableCatalog;
+    int64_t m_nextFragmentId;
+    boost::scoped_ptr<PlanTestingTopend> m_topend;
+    boost::scoped_ptr<VoltDBEngine> m_engine;
+    boost::shared_array<char> m_parameterBuffer;
+    boost::shared_array<char> m_resultBuffer;
+    boost::shared_array<char> m_exceptionBuffer;
+};
+
+}
+
+#endif /* TESTS_EE_TEST_UTILS_PLANTESTINGENGINE_HPP_ */
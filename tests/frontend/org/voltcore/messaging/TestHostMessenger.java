@@ -25,9 +25,18 @@ package org.voltcore.messaging;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
-
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -38,6 +47,9 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.voltcore.network.InputHandler;
+import org.voltcore.network.PicoNetwork;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.zk.CoreZK;
 import org.voltdb.StartAction;
 
@@ -63,7 +75,13 @@ public class TestHostMessenger {
 
     private HostMessenger createHostMessenger(int index, StartAction action, HostMessenger.MembershipAcceptor acceptor,
                                               boolean start) throws Exception {
+        return createHostMessenger(index, action, acceptor, start, 1);
+    }
+
+    private HostMessenger createHostMessenger(int index, StartAction action, HostMessenger.MembershipAcceptor acceptor,
+                                              boolean start, int lanes) throws Exception {
         HostMessenger.Config config = new HostMessenger.Config();
+        config.foreignHostLanes = lanes;
         config.internalPort = config.internalPort + index;
         config.zkInterface = "127.0.0.1:" + (7181 + index);
         HostMessenger hm = new HostMessenger(config, acceptor, null);
@@ -173,6 +191,71 @@ public class TestHostMessenger {
         hm3.waitForGroupJoin(2);
     }
 
+    @Test
+    public void testStripedLanes() throws Exception {
+        HostMessenger hm1 = createHostMessenger(0, StartAction.CREATE, null, true, 3);
+        final HostMessenger hm2 = createHostMessenger(1, StartAction.CREATE, null, false, 3);
+        hm2.start(null);
+
+        // Lanes are connected after the mesh, wait for both ends to see all three
+        ForeignHost fh1 = hm1.m_foreignHosts.get(hm2.getHostId());
+        ForeignHost fh2 = hm2.m_foreignHosts.get(hm1.getHostId());
+        assertEquals(3, fh1.laneCount());
+        assertEquals(3, fh2.laneCount());
+        for (int ii = 0; ii < 200 && (fh1.networks().size() < 3 || fh2.networks().size() < 3); ii++) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, fh1.networks().size());
+        assertEquals(3, fh2.networks().size());
+
+        // Site mailboxes on hm2 land on different lanes, heartbeats and agents stay on lane 0
+        Mailbox sender = hm1.createMailbox();
+        Mailbox receivers[] = new Mailbox[4];
+        long hsIds[] = new long[receivers.length];
+        for (int ii = 0; ii < receivers.length; ii++) {
+            receivers[ii] = hm2.createMailbox();
+            hsIds[ii] = receivers[ii].getHSId();
+        }
+        assertFalse(ForeignHost.laneFor(hsIds[0], 2) == ForeignHost.laneFor(hsIds[1], 2));
+        assertEquals(0, ForeignHost.laneFor(CoreUtils.getHSIdFromHostAndSite(1, HostMessenger.AGREEMENT_SITE_ID), 2));
+
+        final int count = 100;
+        for (int ii = 0; ii < count; ii++) {
+            sender.send(hsIds, new BinaryPayloadMessage(new byte[] { (byte)ii }, null));
+        }
+        for (Mailbox receiver : receivers) {
+            for (int ii = 0; ii < count; ii++) {
+                BinaryPayloadMessage bpm = (BinaryPayloadMessage)receiver.recvBlocking(10000);
+                assertNotNull(bpm);
+                assertEquals(ii, bpm.m_metadata[0]);
+                assertEquals(sender.getHSId(), bpm.m_sourceHSId);
+            }
+        }
+    }
+
+    @Test
+    public void testCloseMultiLaneForeignHost() throws Exception {
+        PicoNetwork lane0 = mock(PicoNetwork.class);
+        PicoNetwork lane1 = mock(PicoNetwork.class);
+        ForeignHost fh = new ForeignHost(mock(HostMessenger.class), 1, mock(SocketChannel.class), 10000,
+                new InetSocketAddress("127.0.0.1", 3021), lane0, 3);
+        // Lane 2 is not connected yet
+        assertTrue(fh.attachLaneNetwork(1, lane1));
+        assertEquals(2, fh.networks().size());
+
+        fh.close();
+        fh.close();
+        verify(lane0, times(1)).shutdownAsync();
+        verify(lane1, times(1)).shutdownAsync();
+        assertFalse(fh.isUp());
+
+        // A lane connecting after the close is refused and never started
+        PicoNetwork lane2 = mock(PicoNetwork.class);
+        assertFalse(fh.attachLaneNetwork(2, lane2));
+        verify(lane2, never()).start(any(InputHandler.class), anySetOf(Long.class));
+        assertEquals(2, fh.networks().size());
+    }
+
     @Test
     public void testPartitionDetectionMinoritySet() throws Exception
     {
@@ -61,6 +61,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import junit.framework.TestCase;
 
+import org.voltcore.utils.ChunkedDeferredSerialization;
 import org.voltcore.utils.EstTime;
 import org.voltcore.utils.EstTimeUpdater;
 import org.voltdb.AdmissionControlGroup;
@@ -452,4 +453,88 @@ public class TestNIOWriteStream extends TestCase {
         assertEquals(0, queue.get());
     }
 
+    /**
+     * Message that serializes its position in the message into every byte
+     */
+    private static class MockChunkedSerialization implements ChunkedDeferredSerialization {
+        final int m_size;
+        int m_position = 0;
+        boolean m_serializedWhole = false;
+
+        MockChunkedSerialization(int size) {
+            m_size = size;
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf) throws IOException {
+            m_serializedWhole = true;
+            while (buf.hasRemaining()) {
+                buf.put((byte)m_position++);
+            }
+        }
+
+        @Override
+        public void serializeChunk(ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                buf.put((byte)m_position++);
+            }
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public int getSerializedSize() throws IOException {
+            return m_size;
+        }
+    }
+
+    public void testChunkedWrite() throws IOException {
+        MockChannel channel = new MockChannel(MockChannel.SINK, 0);
+        MockPort port = new MockPort();
+        NIOWriteStream wstream = new NIOWriteStream(port);
+        pool.clear();
+        pool = new NetworkDBBPool(4, 4096);
+
+        final int size = NIOWriteStreamBase.CHUNKED_WRITE_THRESHOLD + 1000;
+        MockChunkedSerialization ds = new MockChunkedSerialization(size);
+        wstream.enqueue(ds);
+        wstream.enqueue(ByteBuffer.allocate(4));
+        assertTrue(port.checkWriteSet());
+
+        // Only one chunk of the large message is serialized at a time and
+        // the message queued behind it waits until it is all written
+        int written = 0;
+        int rounds = 0;
+        while (!wstream.isEmpty()) {
+            wstream.swapAndSerializeQueuedWrites(pool);
+            assertTrue(wstream.m_queuedBuffers.size() * 4096 <= NIOWriteStreamBase.CHUNKED_WRITE_SIZE + 4096);
+            written += wstream.drainTo(channel);
+            rounds++;
+            if (written < size) {
+                assertEquals(rounds * NIOWriteStreamBase.CHUNKED_WRITE_SIZE, written);
+            }
+        }
+        assertEquals(size + 4, written);
+        assertEquals(size, ds.m_position);
+        assertFalse(ds.m_serializedWhole);
+        assertEquals(size / NIOWriteStreamBase.CHUNKED_WRITE_SIZE + 1, rounds);
+        wstream.shutdown();
+    }
+
+    public void testChunkedWriteCancelledOnShutdown() throws IOException {
+        MockPort port = new MockPort();
+        NIOWriteStream wstream = new NIOWriteStream(port);
+        pool.clear();
+        pool = new NetworkDBBPool(4, 4096);
+
+        MockChunkedSerialization ds = new MockChunkedSerialization(NIOWriteStreamBase.CHUNKED_WRITE_THRESHOLD * 2);
+        wstream.enqueue(ds);
+        wstream.swapAndSerializeQueuedWrites(pool);
+        assertFalse(wstream.isEmpty());
+        wstream.shutdown();
+        assertTrue(wstream.m_queuedBuffers.isEmpty());
+        assertNull(wstream.m_chunkedWrite);
+    }
 }
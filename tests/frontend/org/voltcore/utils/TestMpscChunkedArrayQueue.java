@@ -0,0 +1,151 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+public class TestMpscChunkedArrayQueue extends TestCase {
+
+    @Test
+    public void testSingleThreadedFifo() {
+        // Small chunks so the test crosses many chunk boundaries
+        MpscChunkedArrayQueue<Integer> queue = new MpscChunkedArrayQueue<Integer>(4);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(queue.offer(i));
+                assertFalse(queue.isEmpty());
+            }
+            for (int i = 0; i < 10; i++) {
+                assertEquals(Integer.valueOf(i), queue.poll());
+            }
+            assertTrue(queue.isEmpty());
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void testRejectsNull() {
+        MpscChunkedArrayQueue<Object> queue = new MpscChunkedArrayQueue<Object>();
+        try {
+            queue.offer(null);
+            fail();
+        } catch (NullPointerException expected) {}
+    }
+
+    @Test
+    public void testMultipleProducers() throws Exception {
+        final int producerCount = 4;
+        final int perProducer = 200000;
+        final MpscChunkedArrayQueue<long[]> queue = new MpscChunkedArrayQueue<long[]>(64);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Thread[] producers = new Thread[producerCount];
+        for (int p = 0; p < producerCount; p++) {
+            final int producerId = p;
+            producers[p] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (long i = 0; i < perProducer; i++) {
+                            queue.offer(new long[] { producerId, i });
+                        }
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            };
+            producers[p].start();
+        }
+        start.countDown();
+
+        // Every element arrives exactly once and in order per producer
+        long[] nextExpected = new long[producerCount];
+        for (int received = 0; received < producerCount * perProducer; received++) {
+            long[] element = queue.take(IdleStrategy.PARK);
+            int producerId = (int) element[0];
+            assertEquals(nextExpected[producerId], element[1]);
+            nextExpected[producerId]++;
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertNull(failure.get());
+        assertTrue(queue.isEmpty());
+        for (int p = 0; p < producerCount; p++) {
+            assertEquals(perProducer, nextExpected[p]);
+        }
+    }
+
+    @Test
+    public void testTakeWakesUpOnOffer() throws Exception {
+        final MpscChunkedArrayQueue<String> queue = new MpscChunkedArrayQueue<String>();
+        final AtomicReference<String> taken = new AtomicReference<String>();
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    taken.set(queue.take(new IdleStrategy.SpinThenPark(1000)));
+                } catch (InterruptedException e) {}
+            }
+        };
+        consumer.start();
+        Thread.sleep(100);
+        queue.offer("wakeup");
+        consumer.join(10000);
+        assertFalse(consumer.isAlive());
+        assertEquals("wakeup", taken.get());
+    }
+
+    @Test
+    public void testTakeIsInterruptible() throws Exception {
+        final MpscChunkedArrayQueue<String> queue = new MpscChunkedArrayQueue<String>();
+        final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    queue.take(IdleStrategy.PARK);
+                } catch (Throwable t) {
+                    thrown.set(t);
+                }
+            }
+        };
+        consumer.start();
+        Thread.sleep(100);
+        consumer.interrupt();
+        consumer.join(10000);
+        assertFalse(consumer.isAlive());
+        assertTrue(thrown.get() instanceof InterruptedException);
+    }
+}
@@ -0,0 +1,100 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.nio.ByteBuffer;
+
+import org.voltdb.types.TimestampType;
+
+/**
+ * Measures the per invocation cost of turning serialized procedure parameters
+ * into run() arguments: deserializing a ParameterSet and converting each value
+ * with tryToMakeCompatible, as ProcedureRunner used to, or reading the values
+ * with the SignatureReader built for the procedure signature before converting
+ * them. Reports the invocations per second of each.
+ *
+ * Usage: ParameterConversionMicrobench [invocations] [rounds]
+ */
+public class ParameterConversionMicrobench {
+
+    // A typical signature, with the values a client sends: an int for a long, the rest of the right types
+    static final Class<?>[] SIGNATURE = new Class<?>[] {
+        long.class, long.class, String.class, double.class, TimestampType.class, byte.class };
+    static final Object[] VALUES = new Object[] {
+        12345L, 678, "customer-42", 3.25, new TimestampType(1000000L), (byte) 1 };
+
+    interface Reader {
+        Object[] read(ByteBuffer serialized) throws Exception;
+    }
+
+    static class ParameterSetReader implements Reader {
+        @Override
+        public Object[] read(ByteBuffer serialized) throws Exception {
+            return ParameterSet.fromByteBuffer(serialized).toArray();
+        }
+    }
+
+    static class SignatureReader implements Reader {
+        final ParameterSet.SignatureReader m_reader = ParameterSet.readerForSignature(SIGNATURE);
+        @Override
+        public Object[] read(ByteBuffer serialized) throws Exception {
+            return m_reader.read(serialized);
+        }
+    }
+
+    static long run(String name, Reader reader, ByteBuffer serialized, int invocations) throws Exception {
+        long checksum = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < invocations; i++) {
+            serialized.rewind();
+            Object[] params = reader.read(serialized);
+            for (int j = 0; j < SIGNATURE.length; j++) {
+                params[j] = ParameterConverter.tryToMakeCompatible(SIGNATURE[j], params[j]);
+            }
+            checksum += (Long) params[0] + (Long) params[1];
+        }
+        final long elapsed = System.nanoTime() - start;
+        System.out.printf("%-20s %,12d invocations/s%n", name, invocations * 1000000000L / elapsed);
+        return checksum;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int invocations = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        ParameterSet pset = ParameterSet.fromArrayNoCopy(VALUES);
+        ByteBuffer serialized = ByteBuffer.allocate(pset.getSerializedSize());
+        pset.flattenToBuffer(serialized);
+
+        System.out.printf("%d parameters, %,d invocations%n", SIGNATURE.length, invocations);
+        long checksum = 0;
+        // The first rounds double as JIT warm up
+        for (int round = 0; round < rounds; round++) {
+            checksum += run("ParameterSet", new ParameterSetReader(), serialized, invocations);
+            checksum += run("SignatureReader", new SignatureReader(), serialized, invocations);
+        }
+        // keep the results live
+        System.out.println(checksum == 0 ? "" : "done");
+    }
+}
@@ -54,6 +54,7 @@
 package org.voltdb;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -66,6 +67,8 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -73,6 +76,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -81,6 +85,7 @@ import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -117,6 +122,8 @@ import org.voltdb.utils.Base64;
 import org.voltdb.utils.Encoder;
 import org.voltdb.utils.MiscUtils;
 
+import com.google_voltpatches.common.io.ByteStreams;
+
 import junit.framework.TestCase;
 
 public class TestJSONInterface extends TestCase {
@@ -182,6 +189,23 @@ public class TestJSONInterface extends TestCase {
         }
     }
 
+    /**
+     * Post to the JSON API with the given Accept-Encoding and return the response
+     * without decompressing its body
+     */
+    private static HttpResponse callProcOverJSONWithEncoding(String varString, String acceptEncoding) throws Exception {
+        URI jsonAPIURI = URI.create("http://localhost:8095/api/1.0/");
+        CloseableHttpClient httpclient = HttpClients.custom().disableContentCompression().build();
+        HttpPost post = new HttpPost(jsonAPIURI);
+        post.setHeader("Accept-Encoding", acceptEncoding);
+        post.setEntity(new StringEntity(varString, utf8ApplicationFormUrlEncoded));
+        HttpResponse response = httpclient.execute(post);
+        // buffer the body so the client can be closed
+        response.setEntity(new ByteArrayEntity(EntityUtils.toByteArray(response.getEntity())));
+        httpclient.close();
+        return response;
+    }
+
     public static String getUrlOverJSON(String url, String user, String password, String scheme, int expectedCode, String expectedCt) throws Exception {
         return httpUrlOverJSON("GET", url, user, password, scheme, expectedCode, expectedCt, null);
     }
@@ -1242,6 +1266,106 @@ public class TestJSONInterface extends TestCase {
         }
     }
 
+    private static boolean acceptsGzip(String... acceptEncodings) {
+        return HTTPClientInterface.acceptsGzip(Collections.enumeration(Arrays.asList(acceptEncodings)));
+    }
+
+    public void testAcceptsGzip() {
+        assertTrue(acceptsGzip("gzip"));
+        assertTrue(acceptsGzip("GZIP"));
+        assertTrue(acceptsGzip("x-gzip"));
+        assertTrue(acceptsGzip("deflate, gzip"));
+        assertTrue(acceptsGzip("deflate", "gzip;q=0.5"));
+        assertTrue(acceptsGzip("gzip ; q = 1.0"));
+        assertTrue(acceptsGzip("*"));
+        assertTrue(acceptsGzip("identity, *;q=0.1"));
+        assertTrue(acceptsGzip("gzip;q=0.5, *;q=0"));
+
+        assertFalse(acceptsGzip());
+        assertFalse(acceptsGzip(""));
+        assertFalse(acceptsGzip("identity"));
+        assertFalse(acceptsGzip("deflate, xgzip"));
+        assertFalse(acceptsGzip("gzip;q=0"));
+        assertFalse(acceptsGzip("gzip;q=0.000"));
+        assertFalse(acceptsGzip("gzip;q=zero"));
+        assertFalse(acceptsGzip("gzip;q=0, *"));
+        assertFalse(acceptsGzip("*;q=0"));
+    }
+
+    public void testGzipResponse() throws Exception {
+        Client client = null;
+        try {
+            String simpleSchema
+                    = "CREATE TABLE foo (\n"
+                    + "    bar BIGINT NOT NULL,\n"
+                    + "    baz VARCHAR(500),\n"
+                    + "    PRIMARY KEY (bar)\n"
+                    + ");";
+
+            VoltProjectBuilder builder = new VoltProjectBuilder();
+            builder.addLiteralSchema(simpleSchema);
+            builder.addPartitionInfo("foo", "bar");
+            builder.addStmtProcedure("Insert", "insert into foo values (?,?);");
+            builder.setHTTPDPort(8095);
+            boolean success = builder.compile(Configuration.getPathToCatalogForTest("json.jar"));
+            assertTrue(success);
+
+            VoltDB.Configuration config = new VoltDB.Configuration();
+            config.m_pathToCatalog = config.setPathToCatalogForTest("json.jar");
+            config.m_pathToDeployment = builder.getPathToDeployment();
+            server = new ServerThread(config);
+            server.start();
+            server.waitForInitialization();
+
+            // Enough rows for the response to be gzipped
+            client = ClientFactory.createClient();
+            client.createConnection("localhost");
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 500; i++) {
+                sb.append('x');
+            }
+            int rows = 2 * HTTPClientInterface.GZIP_MIN_RESPONSE_SIZE / sb.length();
+            for (int i = 0; i < rows; i++) {
+                assertEquals(ClientResponse.SUCCESS, client.callProcedure("Insert", i, sb.toString()).getStatus());
+            }
+
+            HashMap<String, String> params = new HashMap<String, String>();
+            params.put("Procedure", "@AdHoc");
+            params.put("Parameters", ParameterSet.fromArrayNoCopy("select * from foo").toJSONString());
+            String varString = getHTTPVarString(params);
+
+            HttpResponse rsp = callProcOverJSONWithEncoding(varString, "deflate, gzip;q=0.5");
+            assertEquals(200, rsp.getStatusLine().getStatusCode());
+            assertNotNull(rsp.getFirstHeader("Content-Encoding"));
+            assertEquals("gzip", rsp.getFirstHeader("Content-Encoding").getValue());
+            byte[] body = EntityUtils.toByteArray(rsp.getEntity());
+            assertTrue(body.length < HTTPClientInterface.GZIP_MIN_RESPONSE_SIZE);
+            GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body));
+            Response response = responseFromJSON(new String(ByteStreams.toByteArray(in), "UTF-8"));
+            assertEquals(ClientResponse.SUCCESS, response.status);
+            assertEquals(rows, response.results[0].getRowCount());
+
+            // gzip refused with a zero q-value, explicitly or over the wildcard
+            for (String acceptEncoding : new String[] { "gzip;q=0", "gzip;q=0.0, *", "identity" }) {
+                rsp = callProcOverJSONWithEncoding(varString, acceptEncoding);
+                assertEquals(200, rsp.getStatusLine().getStatusCode());
+                assertNull(rsp.getFirstHeader("Content-Encoding"));
+                response = responseFromJSON(EntityUtils.toString(rsp.getEntity()));
+                assertEquals(ClientResponse.SUCCESS, response.status);
+                assertEquals(rows, response.results[0].getRowCount());
+            }
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+            if (server != null) {
+                server.shutdown();
+                server.join();
+            }
+            server = null;
+        }
+    }
+
     public void testProcTimeout() throws Exception {
         try {
             String simpleSchema
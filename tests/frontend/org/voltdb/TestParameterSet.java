@@ -537,4 +537,53 @@ public class TestParameterSet extends TestCase {
 
         assertTrue(Arrays.deepEquals(pset1array, pset2array));
     }
+
+    private static ByteBuffer serialize(Object... params) throws IOException {
+        ParameterSet pset = ParameterSet.fromArrayNoCopy(params);
+        ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize());
+        pset.flattenToBuffer(buf);
+        buf.flip();
+        return buf;
+    }
+
+    public void testSignatureReaderMatchesParameterSet() throws IOException {
+        Class<?>[] signature = new Class<?>[] {
+                long.class, long.class, int.class, short.class, byte.class, double.class, String.class,
+                byte[].class, BigDecimal.class, TimestampType.class, long[].class, VoltTable.class };
+        Object[][] invocations = new Object[][] {
+                { 1L, 2, 3, (short) 4, (byte) 5, 6.0, "seven", new byte[] { 8 }, new BigDecimal("9.5"),
+                  new TimestampType(10), new long[] { 11 }, new VoltTable(new VoltTable.ColumnInfo("A", VoltType.BIGINT)) },
+                { 1, (short) 2, 3L, 4, 5L, 6L, "\\N", "08", 9L, 10L, new long[0], null },
+                { VoltType.NULL_BIGINT, VoltType.NULL_INTEGER, VoltType.NULL_INTEGER, VoltType.NULL_SMALLINT,
+                  VoltType.NULL_TINYINT, VoltType.NULL_FLOAT, VoltType.NULL_STRING_OR_VARBINARY,
+                  VoltType.NULL_STRING_OR_VARBINARY, VoltType.NULL_DECIMAL, VoltType.NULL_TIMESTAMP, null, null },
+                { (byte) 1, VoltType.NULL_SMALLINT, null, null, null, null, null, null, null, null, null, null },
+                // too few and too many parameters are read, and left for the procedure to reject
+                { 1L },
+                { 1L, 2L, 3, (short) 4, (byte) 5, 6.0, "seven", null, null, null, null, null, "extra" } };
+        ParameterSet.SignatureReader reader = ParameterSet.readerForSignature(signature);
+
+        for (Object[] invocation : invocations) {
+            ByteBuffer buf = serialize(invocation);
+            Object[] expected = ParameterSet.fromByteBuffer(buf.duplicate()).toArray();
+            Object[] actual = reader.read(buf);
+            assertFalse(buf.hasRemaining());
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                if (i < signature.length) {
+                    // what the procedure is called with
+                    expected[i] = ParameterConverter.tryToMakeCompatible(signature[i], expected[i]);
+                    actual[i] = ParameterConverter.tryToMakeCompatible(signature[i], actual[i]);
+                }
+            }
+            assertTrue(Arrays.deepEquals(expected, actual));
+        }
+
+        // values that can't be converted still fail in the conversion
+        Object[] actual = ParameterSet.readerForSignature(new Class<?>[] { long.class }).read(serialize("not a number"));
+        try {
+            ParameterConverter.tryToMakeCompatible(long.class, actual[0]);
+            fail();
+        } catch (VoltTypeException expected) {}
+    }
 }
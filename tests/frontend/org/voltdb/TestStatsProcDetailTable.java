@@ -0,0 +1,103 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.HdrHistogram_voltpatches.Histogram;
+import org.junit.Test;
+import org.voltcore.utils.CompressionStrategySnappy;
+
+public class TestStatsProcDetailTable {
+
+    // compressed histogram holding count samples of each value
+    static byte[] histogram(long count, long... values) {
+        Histogram h = new Histogram(ProcedureDetailStatsCollector.SIGNIFICANT_DIGITS);
+        for (long value : values) {
+            h.recordValueWithCount(value, count);
+        }
+        return h.toCompressedBytes(CompressionStrategySnappy.INSTANCE);
+    }
+
+    static void assertWithinPrecision(long expected, long actual) {
+        assertTrue("expected " + expected + " but was " + actual, Math.abs(expected - actual) <= expected / 100);
+    }
+
+    @Test
+    public void testMergeAcrossSites() throws Exception {
+        StatsProcDetailTable dut = new StatsProcDetailTable();
+        // two partitions of a read only procedure, the second has the slow tail
+        dut.updateTable(false, 1000L, "A", "<ALL>", 0L, histogram(990, 1000));
+        dut.updateTable(false, 1001L, "A", "<ALL>", 1L, histogram(10, 200000));
+        dut.updateTable(false, 1000L, "A", "select", 0L, histogram(990, 500));
+        dut.updateTable(false, 1001L, "A", "select", 1L, histogram(10, 150000));
+        dut.updateTable(false, 1000L, "A", "insert", 0L, histogram(1000, 300));
+
+        VoltTable vt = dut.getTable();
+        assertEquals(3, vt.getRowCount());
+
+        vt.advanceRow();
+        assertEquals("A", vt.getString("PROCEDURE"));
+        assertEquals("<ALL>", vt.getString("STATEMENT"));
+        assertEquals(1001L, vt.getLong("TIMESTAMP"));
+        assertEquals(1000L, vt.getLong("INVOCATIONS"));
+        assertWithinPrecision(1000, vt.getLong("P50"));
+        assertWithinPrecision(1000, vt.getLong("P99"));
+        assertWithinPrecision(200000, vt.getLong("P999"));
+        assertWithinPrecision(200000, vt.getLong("MAX"));
+
+        // statements follow the whole procedure in name order
+        vt.advanceRow();
+        assertEquals("insert", vt.getString("STATEMENT"));
+        assertWithinPrecision(300, vt.getLong("P999"));
+
+        vt.advanceRow();
+        assertEquals("select", vt.getString("STATEMENT"));
+        assertEquals(1000L, vt.getLong("INVOCATIONS"));
+        assertWithinPrecision(500, vt.getLong("P50"));
+        assertWithinPrecision(150000, vt.getLong("P999"));
+
+        // the merged histogram is returned for further merging
+        AbstractHistogram merged = AbstractHistogram.fromCompressedBytes(
+                vt.getVarbinary("HISTOGRAM"), CompressionStrategySnappy.INSTANCE);
+        assertEquals(1000L, merged.getTotalCount());
+    }
+
+    @Test
+    public void testDedupReplicas() throws Exception {
+        StatsProcDetailTable dut = new StatsProcDetailTable();
+        // a write procedure runs on every replica of a partition, count each partition once
+        dut.updateTable(true, 1000L, "B", "<ALL>", 0L, histogram(100, 1000));
+        dut.updateTable(true, 1000L, "B", "<ALL>", 0L, histogram(100, 1000));
+        dut.updateTable(true, 1000L, "B", "<ALL>", 1L, histogram(50, 2000));
+
+        VoltTable vt = dut.getTable();
+        assertEquals(1, vt.getRowCount());
+        vt.advanceRow();
+        assertEquals(150L, vt.getLong("INVOCATIONS"));
+        assertWithinPrecision(2000, vt.getLong("MAX"));
+    }
+}
@@ -24,6 +24,7 @@
 package org.voltdb;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
@@ -32,6 +33,7 @@ import java.util.Random;
 import org.json_voltpatches.JSONException;
 import org.voltdb.TableHelper.RandomTable;
 import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.client.ClientResponse;
 import org.voltdb.types.GeographyPointValue;
 import org.voltdb.types.GeographyValue;
 import org.voltdb.types.TimestampType;
@@ -1163,6 +1165,25 @@ public class TestVoltTable extends TestCase {
         assertTrue(t1.equals(t2));
     }
 
+    public void testJSONWriterMatchesJSONString() throws IOException {
+        VoltTable t1 = new VoltTable(new ColumnInfo("bigint", VoltType.BIGINT),
+                new ColumnInfo("string", VoltType.STRING), new ColumnInfo("float", VoltType.FLOAT));
+        for (int i = 0; i < 1000; i++) {
+            t1.addRow(i, i % 7 == 0 ? null : "row \"" + i + "\"", i % 11 == 0 ? Double.NaN : i / 3.0);
+        }
+        VoltTable t2 = new VoltTable(new ColumnInfo("bigint", VoltType.BIGINT));
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS, (byte) 1, "app",
+                new VoltTable[] { t1, t2 }, null);
+
+        StringWriter streamed = new StringWriter();
+        HTTPClientInterface.writeJSON(response, null, streamed);
+        assertEquals(response.toJSONString(), streamed.toString());
+
+        streamed = new StringWriter();
+        HTTPClientInterface.writeJSON(response, "callback", streamed);
+        assertEquals(HTTPClientInterface.asJsonp("callback", response.toJSONString()), streamed.toString());
+    }
+
     /**
      * Java won't let you pass >255 args to a method. Verify it's possible to
      * make a big table using vararg methods and arrays.
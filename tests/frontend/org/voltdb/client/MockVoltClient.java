@@ -159,6 +159,13 @@ public class MockVoltClient implements Client, ReplicaProcCaller{
         return false;
     }
 
+    @Override
+    public boolean callProcedureBatch(ProcedureCallback callback,
+            List<ProcedureCall> calls) throws NoConnectionsException {
+        // TODO Auto-generated method stub
+        return false;
+    }
+
     @Override
     public void drain() {
         // TODO Auto-generated method stub
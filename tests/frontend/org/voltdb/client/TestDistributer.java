@@ -30,11 +30,13 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import junit.framework.TestCase;
 
@@ -87,7 +89,9 @@ public class TestDistributer extends TestCase {
                     } else {
                         vt = new VoltTable[1];
                         vt[0] = new VoltTable(new VoltTable.ColumnInfo("Foo", VoltType.BIGINT));
-                        vt[0].addRow(1);
+                        // Echo a numeric first parameter so responses can be told apart
+                        Object params[] = spi.getParams().toArray();
+                        vt[0].addRow(params.length > 0 && params[0] instanceof Number ? params[0] : 1);
                     }
                     ClientResponseImpl response;
                     if (sendProcTimeout.get()) {
@@ -474,6 +478,132 @@ public class TestDistributer extends TestCase {
         }
     }
 
+    @Test
+    public void testQueueBatch() throws Exception {
+
+        // A batch is spread round-robin like individual invocations,
+        // and each connection gets its share in a single write.
+        MockVolt volt0, volt1, volt2;
+        int handle = 0;
+        volt0 = volt1 = volt2 = null;
+        try {
+            volt0 = new MockVolt(20000);
+            volt0.start();
+            volt1 = new MockVolt(20001);
+            volt1.start();
+            volt2 = new MockVolt(20002);
+            volt2.start();
+
+            Distributer dist = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    false, null /* subject */);
+            dist.createConnection("localhost", "", "", 20000, ClientAuthScheme.HASH_SHA1);
+            dist.createConnection("localhost", "", "", 20001, ClientAuthScheme.HASH_SHA1);
+            dist.createConnection("localhost", "", "", 20002, ClientAuthScheme.HASH_SHA1);
+
+            final AtomicInteger responses = new AtomicInteger();
+            ProcedureCallback cb = new ProcedureCallback() {
+                @Override
+                public void clientCallback(ClientResponse clientResponse) {
+                    if (clientResponse.getStatus() == ClientResponse.SUCCESS) {
+                        responses.incrementAndGet();
+                    }
+                }
+            };
+
+            Map<Long, Long> enqueuedBefore = dist.getSerializationsEnqueuedSnapshot();
+            assertEquals(3, enqueuedBefore.size());
+            Map<Long, Long> messagesBefore = dist.getMessagesWrittenSnapshot();
+            assertEquals(3, messagesBefore.size());
+
+            List<ProcedureInvocation> batch = new ArrayList<ProcedureInvocation>();
+            for (int i = 0; i < 9; i++) {
+                batch.add(new ProcedureInvocation(++handle, "i1", new Integer(i), "a string parameter"));
+            }
+            assertTrue(dist.queue(batch, cb, true, System.nanoTime(), 0));
+
+            dist.drain();
+
+            assertEquals(9, responses.get());
+            assertEquals(3, volt0.handler.roundTrips.get());
+            assertEquals(3, volt1.handler.roundTrips.get());
+            assertEquals(3, volt2.handler.roundTrips.get());
+
+            // Each connection's three invocations were enqueued as one serialization
+            // and went out in one write buffer
+            Map<Long, Long> enqueuedAfter = dist.getSerializationsEnqueuedSnapshot();
+            for (Map.Entry<Long, Long> e : enqueuedBefore.entrySet()) {
+                assertEquals(e.getValue() + 1, enqueuedAfter.get(e.getKey()).longValue());
+            }
+            Map<Long, Long> messagesAfter = dist.getMessagesWrittenSnapshot();
+            for (Map.Entry<Long, Long> e : messagesBefore.entrySet()) {
+                assertEquals(e.getValue() + 1, messagesAfter.get(e.getKey()).longValue());
+            }
+        }
+        finally {
+            if (volt0 != null) {
+                volt0.shutdown();
+            }
+            if (volt1 != null) {
+                volt1.shutdown();
+            }
+            if (volt2 != null) {
+                volt2.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testReuseResponseBuffers() throws Exception {
+
+        // Results read inside async callbacks and held by sync callers
+        // must both survive the next response reusing the read buffer.
+        MockVolt volt = null;
+        try {
+            volt = new MockVolt(20000);
+            volt.start();
+
+            Distributer dist = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    false, null /* subject */);
+            dist.setReuseResponseBuffers(true);
+            dist.createConnection("localhost", "", "", 20000, ClientAuthScheme.HASH_SHA1);
+
+            SyncCallback sc = new SyncCallback();
+            dist.queue(new ProcedureInvocation(1, "i1", 100), sc, true, System.nanoTime(), 0);
+
+            final AtomicInteger matched = new AtomicInteger();
+            for (int i = 0; i < 10; i++) {
+                final long expected = i;
+                ProcedureCallback cb = new ProcedureCallback() {
+                    @Override
+                    public void clientCallback(ClientResponse clientResponse) {
+                        if (clientResponse.getStatus() == ClientResponse.SUCCESS &&
+                                clientResponse.getResults()[0].asScalarLong() == expected) {
+                            matched.incrementAndGet();
+                        }
+                    }
+                };
+                dist.queue(new ProcedureInvocation(i + 2, "i1", i), cb, true, System.nanoTime(), 0);
+            }
+            dist.drain();
+            sc.waitForResponse();
+
+            assertEquals(10, matched.get());
+            assertEquals(ClientResponse.SUCCESS, sc.getResponse().getStatus());
+            assertEquals(1, ((ClientResponseImpl) sc.getResponse()).getClientHandle());
+            assertEquals(100, sc.getResponse().getResults()[0].asScalarLong());
+            dist.shutdown();
+        }
+        finally {
+            if (volt != null) {
+                volt.shutdown();
+            }
+        }
+    }
+
     @Test
     public void testQueueMixed() throws Exception {
 
@@ -554,11 +684,13 @@ public class TestDistributer extends TestCase {
     public void testResponseTimeout() throws Exception {
 
         final CountDownLatch latch = new CountDownLatch(2);
+        final AtomicLong lostHandle = new AtomicLong(-1);
 
         class TimeoutMonitorPCB implements ProcedureCallback {
             @Override
             public void clientCallback(ClientResponse clientResponse) throws Exception {
                 assert(clientResponse.getStatus() == ClientResponse.CONNECTION_LOST);
+                lostHandle.set(((ClientResponseImpl) clientResponse).getClientHandle());
                 latch.countDown();
             }
         }
@@ -599,11 +731,12 @@ public class TestDistributer extends TestCase {
         // tell the mock voltdb to stop responding
         volt.handler.sendResponses.set(false);
 
+        boolean queued = false;
         try {
             // this call should hang until the connection is closed,
             // then will be called with CONNECTION_LOST
             ProcedureInvocation invocation = new ProcedureInvocation(44, "@Ping");
-            dist.queue(invocation, new TimeoutMonitorPCB(), true, System.nanoTime(), 0);
+            queued = dist.queue(invocation, new TimeoutMonitorPCB(), true, System.nanoTime(), 0);
         } catch (NoConnectionsException e) {
             //Ok this is a little odd scheduling wise, would expect to at least be able to submit
             //the transaction before reaching a multi-second timeout, but such is life
@@ -613,6 +746,10 @@ public class TestDistributer extends TestCase {
 
         // wait for both callbacks
         latch.await();
+        if (queued) {
+            // the failure response identifies the invocation it is for
+            assertEquals(44, lostHandle.get());
+        }
 
         // clean up
         dist.shutdown();
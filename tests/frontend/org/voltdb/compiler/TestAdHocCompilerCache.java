@@ -0,0 +1,139 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.compiler;
+
+import junit.framework.TestCase;
+
+import org.voltdb.ParameterSet;
+import org.voltdb.VoltType;
+import org.voltdb.common.Constants;
+import org.voltdb.planner.CorePlan;
+
+public class TestAdHocCompilerCache extends TestCase {
+
+    static AdHocPlannedStatement makePlan(String sql, int fragmentSize) {
+        CorePlan core = new CorePlan(new byte[fragmentSize],
+                                     null,
+                                     new byte[20],
+                                     null,
+                                     false,
+                                     true,
+                                     new VoltType[0],
+                                     new byte[20]);
+        return new AdHocPlannedStatement(sql.getBytes(Constants.UTF8ENCODING),
+                                         core,
+                                         ParameterSet.emptyParameterSet(),
+                                         null);
+    }
+
+    static void put(AdHocCompilerCache cache, AdHocPlannedStatement plan) {
+        String sql = new String(plan.sql, Constants.UTF8ENCODING);
+        cache.put(sql, sql, plan, null, false, false);
+    }
+
+    /**
+     * A plan bigger than one segment's share of the memory bound must
+     * still be cached as long as it fits the oversized plan budget.
+     */
+    public void testLargePlanIsRetained() {
+        AdHocCompilerCache cache = new AdHocCompilerCache(1000, 1000);
+        int largeSize = (int) (cache.MAX_LITERAL_MEM / 8);
+        assertTrue(largeSize > cache.MAX_SEGMENT_LITERAL_WEIGHT);
+        AdHocPlannedStatement large = makePlan("select * from large;", largeSize);
+        put(cache, large);
+
+        assertSame(large, cache.getWithSQL("select * from large;"));
+        assertNotNull(cache.getWithParsedToken("select * from large;"));
+        assertEquals(1, cache.getLiteralCacheSize());
+        assertEquals(0, cache.getLiteralCacheEvictions());
+
+        // Small plans that fit next to it do not push it out either
+        for (int i = 0; i < 100; i++) {
+            put(cache, makePlan("select * from small" + i + ";", 100));
+        }
+        assertSame(large, cache.getWithSQL("select * from large;"));
+        assertEquals(101, cache.getLiteralCacheSize());
+        assertEquals(0, cache.getLiteralCacheEvictions());
+    }
+
+    /**
+     * A plan bigger than the oversized plan budget is only cached
+     * as a parameterized plan.
+     */
+    public void testHugePlanSkipsLiteralCache() {
+        AdHocCompilerCache cache = new AdHocCompilerCache(1000, 1000);
+        int hugeSize = (int) (cache.MAX_OVERSIZED_LITERAL_MEM + 1);
+        put(cache, makePlan("select * from huge;", hugeSize));
+
+        assertNull(cache.getWithSQL("select * from huge;"));
+        assertNotNull(cache.getWithParsedToken("select * from huge;"));
+        assertEquals(0, cache.getLiteralCacheSize());
+        assertEquals(0, cache.getLiteralCacheEvictions());
+    }
+
+    /**
+     * The memory bound applies to the segmented cache...
+     */
+    public void testMemoryBoundEvicts() {
+        AdHocCompilerCache cache = new AdHocCompilerCache(1000, 1000);
+        int planSize = (int) (cache.MAX_SEGMENT_LITERAL_WEIGHT / 2);
+        long segmentedMem = cache.MAX_LITERAL_MEM - cache.MAX_OVERSIZED_LITERAL_MEM;
+        int count = (int) (2 * segmentedMem / planSize);
+        for (int i = 0; i < count; i++) {
+            put(cache, makePlan("select * from t" + i + ";", planSize));
+        }
+        assertTrue(cache.getLiteralCacheSize() <= count / 2);
+        assertTrue(cache.getLiteralCacheEvictions() >= count / 2);
+        assertNotNull(cache.getWithSQL("select * from t" + (count - 1) + ";"));
+    }
+
+    /**
+     * ...and to the oversized plan cache.
+     */
+    public void testOversizedMemoryBoundEvicts() {
+        AdHocCompilerCache cache = new AdHocCompilerCache(1000, 1000);
+        int planSize = (int) (cache.MAX_LITERAL_MEM / 8);
+        for (int i = 0; i < 8; i++) {
+            put(cache, makePlan("select * from t" + i + ";", planSize));
+        }
+        assertTrue(cache.getLiteralCacheSize() < 2);
+        assertEquals(7, cache.getLiteralCacheEvictions());
+        assertNotNull(cache.getWithSQL("select * from t7;"));
+    }
+
+    /**
+     * Small plans are bounded by the entry count.
+     */
+    public void testEntryBoundEvicts() {
+        AdHocCompilerCache cache = new AdHocCompilerCache(10, 10);
+        for (int i = 0; i < 20; i++) {
+            put(cache, makePlan("select * from t" + i + ";", 100));
+        }
+        assertEquals(10, cache.getLiteralCacheSize());
+        assertEquals(10, cache.getCoreCacheSize());
+        assertEquals(10, cache.getLiteralCacheEvictions());
+        assertEquals(10, cache.getCoreCacheEvictions());
+        assertNotNull(cache.getWithSQL("select * from t19;"));
+    }
+}
@@ -25,6 +25,7 @@ package org.voltdb.compiler;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
@@ -91,24 +92,24 @@ public class TestAsyncCompilerAgent {
         m_agent.m_mailbox = spy(m_agent.m_mailbox);
 
         /*
-         * send max + 2 messages to the agent. The first one will be executed
-         * immediately so it doesn't consume queue capacity, the next max number
-         * of messages will use up all the capacity, the last one will be
-         * rejected.
+         * send max + planner threads + 1 messages to the agent. The first ones
+         * will be executed immediately by the planner threads so they don't
+         * consume queue capacity, the next max number of messages will use up
+         * all the capacity, the last one will be rejected.
          */
+        final int requests = AsyncCompilerAgent.MAX_QUEUE_DEPTH + AsyncCompilerAgent.PLANNER_THREADS + 1;
         final AtomicInteger completedRequests = new AtomicInteger();
         final AtomicReference<AsyncCompilerResult> result = new AtomicReference<AsyncCompilerResult>();
-        final long threadId = Thread.currentThread().getId();
-        for (int i = 0; i < AsyncCompilerAgent.MAX_QUEUE_DEPTH + 2; ++i) {
+        for (int i = 0; i < requests; ++i) {
             AsyncCompilerWorkCompletionHandler handler = new AsyncCompilerWorkCompletionHandler() {
                 @Override
                 public void onCompletion(AsyncCompilerResult compilerResult) {
                     completedRequests.incrementAndGet();
                     /*
-                     * A rejected request will be handled in the current thread invoking deliver
-                     * so use that to record the error response
+                     * The mocked planner returns null, so any result is the error
+                     * response for a rejected request
                      */
-                    if (Thread.currentThread().getId() == threadId) {
+                    if (compilerResult != null) {
                         result.set(compilerResult);
                     }
                 }
@@ -123,14 +124,61 @@ public class TestAsyncCompilerAgent {
             m_agent.m_mailbox.deliver(msg);
         }
 
-        // check for one rejected request
+        // check for one rejected request, the planner queue may be filled
+        // a little after the messages are delivered
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (result.get() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotNull(result.get());
         assertNotNull(result.get().errorMsg);
 
         // let all requests return
-        blockingAnswer.flag.release(AsyncCompilerAgent.MAX_QUEUE_DEPTH + 5);
+        blockingAnswer.flag.release(requests + 5);
 
         // check if all previous requests finish
         m_agent.shutdown();
-        assertEquals(AsyncCompilerAgent.MAX_QUEUE_DEPTH + 2, completedRequests.get());
+        assertEquals(requests, completedRequests.get());
+    }
+
+    /**
+     * Ad hoc SQL queued from a stored procedure goes straight to the planner pool,
+     * a rejected request still has to complete with an error batch
+     */
+    @Test
+    public void testMaxQueueDepthForProcedure() throws InterruptedException {
+        BlockingAnswer blockingAnswer = new BlockingAnswer();
+        doAnswer(blockingAnswer).when(m_agent).compileAdHocPlan(any(AdHocPlannerWork.class));
+
+        final int requests = AsyncCompilerAgent.MAX_QUEUE_DEPTH + AsyncCompilerAgent.PLANNER_THREADS + 1;
+        final AtomicInteger completedRequests = new AtomicInteger();
+        final AtomicReference<AsyncCompilerResult> result = new AtomicReference<AsyncCompilerResult>();
+        for (int i = 0; i < requests; ++i) {
+            AsyncCompilerWorkCompletionHandler handler = new AsyncCompilerWorkCompletionHandler() {
+                @Override
+                public void onCompletion(AsyncCompilerResult compilerResult) {
+                    completedRequests.incrementAndGet();
+                    if (compilerResult != null) {
+                        result.set(compilerResult);
+                    }
+                }
+            };
+            AdHocPlannerWork work = AdHocPlannerWork.makeStoredProcAdHocPlannerWork(100, "select * from a",
+                                                                                    null, false, null,
+                                                                                    handler);
+            m_agent.compileAdHocPlanForProcedure(work);
+        }
+
+        // the last request doesn't fit in the planner queue and is rejected right away
+        assertNotNull(result.get());
+        assertTrue(result.get() instanceof AdHocPlannedStmtBatch);
+        assertNotNull(result.get().errorMsg);
+        assertEquals(0, ((AdHocPlannedStmtBatch)result.get()).plannedStatements.size());
+
+        // let all requests return
+        blockingAnswer.flag.release(requests + 5);
+
+        m_agent.shutdown();
+        assertEquals(requests, completedRequests.get());
     }
 }
@@ -0,0 +1,182 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.junit.Test;
+import org.voltdb.VoltType;
+import org.voltdb.export.AdvertisedDataSource.ExportFormat;
+
+public class TestAvroExportEncoder extends TestCase {
+
+    private static final String[] NAMES = { "VOLT_TRANSACTION_ID", "VOLT_EXPORT_TIMESTAMP",
+        "VOLT_EXPORT_SEQUENCE_NUMBER", "VOLT_PARTITION_ID", "VOLT_SITE_ID", "VOLT_EXPORT_OPERATION",
+        "ID", "NAME", "PRICE", "PAYLOAD", "RATIO", "QTY", "CREATED", "LOCATION" };
+    private static final VoltType[] TYPES = { VoltType.BIGINT, VoltType.BIGINT,
+        VoltType.BIGINT, VoltType.BIGINT, VoltType.BIGINT, VoltType.TINYINT,
+        VoltType.BIGINT, VoltType.STRING, VoltType.DECIMAL, VoltType.VARBINARY, VoltType.FLOAT,
+        VoltType.SMALLINT, VoltType.TIMESTAMP, VoltType.GEOGRAPHY_POINT };
+    private static final int NULL_ARRAY_LENGTH = (TYPES.length + 7) / 8;
+
+    private static AdvertisedDataSource source() {
+        ArrayList<Integer> lengths = new ArrayList<Integer>();
+        for (int i = 0; i < TYPES.length; i++) {
+            lengths.add(8);
+        }
+        return new AdvertisedDataSource(3, "sig", "ORDERS", "ID", 0, 1,
+                new ArrayList<String>(Arrays.asList(NAMES)), new ArrayList<VoltType>(Arrays.asList(TYPES)),
+                lengths, ExportFormat.FOURDOTFOUR);
+    }
+
+    /*
+     * Serialize a row the way the EE export tuple stream does, null values are Java nulls
+     */
+    private static void appendRow(ByteBuffer block, Object... values) {
+        final int start = block.position();
+        block.position(start + 4 + NULL_ARRAY_LENGTH);
+        for (int col = 0; col < values.length; col++) {
+            Object v = values[col];
+            if (v == null) {
+                int idx = start + 4 + (col >> 3);
+                block.put(idx, (byte) (block.get(idx) | (0x80 >> (col & 7))));
+                continue;
+            }
+            switch (TYPES[col]) {
+            case TINYINT: block.put(((Number) v).byteValue()); break;
+            case SMALLINT: block.putShort(((Number) v).shortValue()); break;
+            case BIGINT:
+            case TIMESTAMP: block.putLong(((Number) v).longValue()); break;
+            case FLOAT: block.putDouble((Double) v); break;
+            case STRING: {
+                byte[] b = ((String) v).getBytes(StandardCharsets.UTF_8);
+                block.putInt(b.length).put(b);
+                break;
+            }
+            case VARBINARY: block.putInt(((byte[]) v).length).put((byte[]) v); break;
+            case DECIMAL: {
+                byte[] unscaled = ((BigDecimal) v).setScale(12).unscaledValue().toByteArray();
+                byte[] b = new byte[16];
+                Arrays.fill(b, unscaled[0] < 0 ? (byte) -1 : 0);
+                System.arraycopy(unscaled, 0, b, 16 - unscaled.length, unscaled.length);
+                block.put((byte) 12).put((byte) 16).put(b);
+                break;
+            }
+            case GEOGRAPHY_POINT: {
+                double[] pt = (double[]) v;
+                block.putDouble(pt[0]).putDouble(pt[1]);
+                break;
+            }
+            default: fail();
+            }
+        }
+        block.putInt(start, block.position() - start - 4);
+    }
+
+    private static ByteBuffer block() {
+        ByteBuffer block = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 100; i++) {
+            appendRow(block, 1000L + i, 2000L, (long) i, 3L, 4L, (byte) 1,
+                    (long) i, "name-" + i, new BigDecimal("-12.5").add(new BigDecimal(i)), new byte[] { (byte) i, 2 },
+                    i / 4.0, (short) -i, 1000000L * i, new double[] { i, -i });
+        }
+        appendRow(block, 2000L, 2000L, 100L, 3L, 4L, (byte) 0,
+                null, null, null, null, null, null, null, null);
+        block.flip();
+        return block;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        AvroExportEncoder encoder = new AvroExportEncoder(source());
+        ByteBuffer block = block();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(101, encoder.encode(block, out));
+        assertEquals(0, block.position());
+
+        Schema schema = new Schema.Parser().parse(encoder.getSchema().toString());
+        GenericDatumReader<GenericRecord> reader = new GenericDatumReader<GenericRecord>(schema);
+        BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(out.toByteArray(), null);
+        for (int i = 0; i < 100; i++) {
+            GenericRecord r = reader.read(null, decoder);
+            assertEquals(1000L + i, r.get("VOLT_TRANSACTION_ID"));
+            assertEquals(1, r.get("VOLT_EXPORT_OPERATION"));
+            assertEquals((long) i, r.get("ID"));
+            assertEquals("name-" + i, r.get("NAME").toString());
+            ByteBuffer price = (ByteBuffer) r.get("PRICE");
+            byte[] unscaled = new byte[price.remaining()];
+            price.get(unscaled);
+            assertEquals(0, new BigDecimal("-12.5").add(new BigDecimal(i)).compareTo(
+                    new BigDecimal(new BigInteger(unscaled), 12)));
+            assertEquals(ByteBuffer.wrap(new byte[] { (byte) i, 2 }), r.get("PAYLOAD"));
+            assertEquals(i / 4.0, r.get("RATIO"));
+            assertEquals(-i, r.get("QTY"));
+            assertEquals(1000000L * i, r.get("CREATED"));
+            GenericRecord location = (GenericRecord) r.get("LOCATION");
+            assertEquals((double) i, location.get("longitude"));
+            assertEquals((double) -i, location.get("latitude"));
+        }
+        GenericRecord nulls = reader.read(null, decoder);
+        assertEquals(0, nulls.get("VOLT_EXPORT_OPERATION"));
+        for (int col = 6; col < NAMES.length; col++) {
+            assertNull(nulls.get(NAMES[col]));
+        }
+        assertTrue(decoder.isEnd());
+    }
+
+    @Test
+    public void testCorruptRowLength() throws Exception {
+        ByteBuffer block = block();
+        block.putInt(0, block.limit());
+        try {
+            new AvroExportEncoder(source()).encode(block, new ByteArrayOutputStream());
+            fail();
+        } catch (IOException expected) {}
+    }
+
+    @Test
+    public void testForFormat() throws Exception {
+        assertTrue(ExportEncoder.forFormat("AVRO", source()) instanceof AvroExportEncoder);
+        assertTrue(ExportEncoder.forFormat(AvroExportEncoder.class.getName(), source()) instanceof AvroExportEncoder);
+        try {
+            ExportEncoder.forFormat("parquet", source());
+            fail();
+        } catch (IllegalArgumentException expected) {}
+    }
+}
@@ -0,0 +1,188 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.utils.VoltFile;
+
+public class TestStreamBlockQueue {
+
+    private final static File TEST_DIR = new File("/tmp/" + System.getProperty("user.name"));
+    private static final String TEST_NONCE = "sbq_nonce";
+    private static final int BLOCK_SIZE = 1024;
+
+    private StreamBlockQueue m_sbq;
+
+    /*
+     * A block of export data starting at the given USO, each data byte is the low byte of its USO
+     */
+    private static StreamBlock block(long uso) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(StreamBlock.HEADER_SIZE + BLOCK_SIZE);
+        for (int ii = 0; ii < BLOCK_SIZE; ii++) {
+            buf.put(StreamBlock.HEADER_SIZE + ii, (byte)(uso + ii));
+        }
+        return new StreamBlock(DBBPool.wrapBB(buf), uso, false);
+    }
+
+    private static void assertBlock(StreamBlock sb, long uso, int size) {
+        assertEquals(uso, sb.uso());
+        assertEquals(size, sb.totalUso());
+        BBContainer cont = sb.unreleasedContainer();
+        try {
+            for (int ii = 0; ii < size; ii++) {
+                assertEquals((byte)(uso + ii), cont.b().get(ii));
+            }
+        } finally {
+            cont.discard();
+        }
+    }
+
+    @Test
+    public void testCoalescesContiguousOverflow() throws Exception {
+        final int blocks = 100;
+        for (int ii = 0; ii < blocks; ii++) {
+            m_sbq.offer(block(ii * BLOCK_SIZE));
+        }
+        m_sbq.sync(true);
+        StreamBlockQueue.OverflowStats stats = m_sbq.getStats();
+        assertEquals(blocks - 2, stats.blocksOverflowed);
+        assertTrue(stats.diskWrites < stats.blocksOverflowed);
+        assertEquals(blocks * BLOCK_SIZE, m_sbq.sizeInBytes());
+
+        //The two blocks held in memory come back as they were, the overflow as fewer larger blocks
+        long uso = 0;
+        StreamBlock sb;
+        while ((sb = m_sbq.poll()) != null) {
+            assertTrue(sb.totalUso() % BLOCK_SIZE == 0);
+            assertBlock(sb, uso, (int)sb.totalUso());
+            uso += sb.totalUso();
+            sb.discard();
+        }
+        assertEquals(blocks * BLOCK_SIZE, uso);
+        stats = m_sbq.getStats();
+        assertEquals(blocks * BLOCK_SIZE, stats.drainedBytes);
+        assertTrue(m_sbq.isEmpty());
+
+        //The drain rate @Statistics EXPORT reports is measured from when the queue was opened
+        final long elapsed = System.nanoTime() - stats.openedNanos;
+        assertTrue(elapsed > 0);
+        assertEquals((long) (stats.drainedBytes * 1e9 / elapsed), ExportStats.drainRate(stats.drainedBytes, elapsed));
+        assertEquals(0, ExportStats.drainRate(stats.drainedBytes, 0));
+    }
+
+    @Test
+    public void testGapIsNotCoalesced() throws Exception {
+        m_sbq.offer(block(0));
+        m_sbq.offer(block(BLOCK_SIZE));
+        m_sbq.offer(block(2 * BLOCK_SIZE));
+        m_sbq.offer(block(10 * BLOCK_SIZE));
+        m_sbq.offer(block(11 * BLOCK_SIZE));
+
+        for (long uso : new long[] { 0, BLOCK_SIZE }) {
+            StreamBlock sb = m_sbq.pop();
+            assertBlock(sb, uso, BLOCK_SIZE);
+            sb.discard();
+        }
+        //Polling the overflow writes the pending blocks out on demand
+        StreamBlock sb = m_sbq.pop();
+        assertBlock(sb, 2 * BLOCK_SIZE, BLOCK_SIZE);
+        sb.discard();
+        sb = m_sbq.pop();
+        assertBlock(sb, 10 * BLOCK_SIZE, 2 * BLOCK_SIZE);
+        sb.discard();
+        assertNull(m_sbq.poll());
+    }
+
+    @Test
+    public void testFlushExpiredWritesQuietTail() throws Exception {
+        //Two blocks in memory, the next two are coalesced and nothing else arrives
+        for (int ii = 0; ii < 4; ii++) {
+            m_sbq.offer(block(ii * BLOCK_SIZE));
+        }
+        StreamBlockQueue.OverflowStats stats = m_sbq.getStats();
+        assertEquals(2 * BLOCK_SIZE, stats.pendingBytes);
+        assertEquals(0, stats.diskWrites);
+
+        //Too young to be written out yet
+        m_sbq.flushExpired();
+        assertEquals(2 * BLOCK_SIZE, m_sbq.getStats().pendingBytes);
+
+        Thread.sleep(StreamBlockQueue.COALESCE_MILLIS + 10);
+        m_sbq.flushExpired();
+        stats = m_sbq.getStats();
+        assertEquals(0, stats.pendingBytes);
+        assertEquals(1, stats.diskWrites);
+        assertEquals(2 * BLOCK_SIZE, stats.queuedBytes);
+        assertEquals(4 * BLOCK_SIZE, m_sbq.sizeInBytes());
+
+        long uso = 0;
+        StreamBlock sb;
+        while ((sb = m_sbq.poll()) != null) {
+            assertBlock(sb, uso, (int)sb.totalUso());
+            uso += sb.totalUso();
+            sb.discard();
+        }
+        assertEquals(4 * BLOCK_SIZE, uso);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        if (TEST_DIR.exists()) {
+            for (File f : TEST_DIR.listFiles()) {
+                VoltFile.recursivelyDelete(f);
+            }
+            TEST_DIR.delete();
+        }
+        TEST_DIR.mkdir();
+        m_sbq = new StreamBlockQueue(TEST_DIR.getPath(), TEST_NONCE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            m_sbq.closeAndDelete();
+        } catch (Exception e) {}
+        try {
+            if (TEST_DIR.exists()) {
+                for (File f : TEST_DIR.listFiles()) {
+                    f.delete();
+                }
+                TEST_DIR.delete();
+            }
+        } finally {
+            m_sbq = null;
+        }
+    }
+}
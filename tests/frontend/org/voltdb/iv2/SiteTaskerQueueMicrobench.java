@@ -0,0 +1,133 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.LinkedTransferQueue;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.IdleStrategy;
+import org.voltcore.utils.MpscChunkedArrayQueue;
+
+/**
+ * Compares the site task queue against the LinkedTransferQueue it replaced:
+ * several producer threads offer tasks to one consumer thread, as the network
+ * and initiator threads do to a site. Reports throughput and the bytes the
+ * producers allocate per task beyond the task itself.
+ *
+ * Usage: SiteTaskerQueueMicrobench [producers] [tasks per producer] [rounds]
+ */
+public class SiteTaskerQueueMicrobench {
+
+    interface Queue {
+        void offer(Object task);
+        Object take() throws InterruptedException;
+    }
+
+    static class TransferQueue implements Queue {
+        final LinkedTransferQueue<Object> m_queue = new LinkedTransferQueue<Object>();
+        @Override
+        public void offer(Object task) {
+            m_queue.offer(task);
+        }
+        @Override
+        public Object take() throws InterruptedException {
+            return CoreUtils.queueSpinTake(m_queue);
+        }
+    }
+
+    static class ChunkedArrayQueue implements Queue {
+        final MpscChunkedArrayQueue<Object> m_queue = new MpscChunkedArrayQueue<Object>();
+        @Override
+        public void offer(Object task) {
+            m_queue.offer(task);
+        }
+        @Override
+        public Object take() throws InterruptedException {
+            return m_queue.take(IdleStrategy.DEFAULT);
+        }
+    }
+
+    static void run(String name, final Queue queue, int producerCount, final int tasksPerProducer)
+            throws Exception {
+        // Offer the same task over and over so only the queue's own allocations are counted
+        final Object task = new Object();
+        final CyclicBarrier barrier = new CyclicBarrier(producerCount + 1);
+        final long[] producerAllocated = new long[producerCount];
+        Thread[] producers = new Thread[producerCount];
+        for (int p = 0; p < producerCount; p++) {
+            final int producerId = p;
+            producers[p] = new Thread() {
+                @Override
+                public void run() {
+                    com.sun.management.ThreadMXBean bean =
+                            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+                    try {
+                        barrier.await();
+                        long before = bean.getThreadAllocatedBytes(getId());
+                        for (int i = 0; i < tasksPerProducer; i++) {
+                            queue.offer(task);
+                        }
+                        producerAllocated[producerId] = bean.getThreadAllocatedBytes(getId()) - before;
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            producers[p].start();
+        }
+
+        barrier.await();
+        final long start = System.nanoTime();
+        final long total = (long) producerCount * tasksPerProducer;
+        for (long i = 0; i < total; i++) {
+            queue.take();
+        }
+        final long elapsed = System.nanoTime() - start;
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        long allocated = 0;
+        for (long a : producerAllocated) {
+            allocated += a;
+        }
+        System.out.printf("%-20s %,12d tasks/s %8.2f bytes/task%n",
+                name, total * 1000000000L / elapsed, (double) allocated / total);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int tasksPerProducer = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        System.out.printf("%d producers, %,d tasks each%n", producers, tasksPerProducer);
+        // The first rounds double as JIT warm up
+        for (int round = 0; round < rounds; round++) {
+            run("LinkedTransferQueue", new TransferQueue(), producers, tasksPerProducer);
+            run("MpscChunkedArrayQueue", new ChunkedArrayQueue(), producers, tasksPerProducer);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -375,6 +376,75 @@ public class TestMpTransactionState extends TestCase
         System.out.println(results);
     }
 
+    @Test
+    public void testSpreadReplicatedReadFragments() throws IOException
+    {
+        long txnId = 1234l;
+        int batch_size = 5;
+        Iv2InitiateTaskMessage taskmsg =
+            new Iv2InitiateTaskMessage(
+                    3,
+                    4,
+                    (txnId - 1),
+                    txnId,
+                    System.currentTimeMillis(),
+                    true,
+                    false,
+                    new StoredProcedureInvocation(),
+                    0,
+                    0,
+                    false);
+        int hsids = 6;
+        buddyHSId = 3;
+        long[] non_local = configureHSIds(hsids);
+        List<Long> localHSIds = new ArrayList<Long>();
+        localHSIds.add(3L);
+        localHSIds.add(4L);
+        localHSIds.add(5L);
+
+        MpTestPlan plan = createTestPlan(batch_size, true, true, false, non_local);
+
+        Mailbox mailbox = mock(Mailbox.class);
+        SiteProcedureConnection siteConnection = mock(SiteProcedureConnection.class);
+
+        MpTransactionState dut =
+            new MpTransactionState(mailbox, taskmsg, allHsids, partMasters, localHSIds, false);
+
+        dut.setupProcedureResume(true, plan.depsToResume);
+        dut.createLocalFragmentWork(plan.localWork, false);
+        dut.createAllParticipatingFragmentWork(plan.remoteWork);
+
+        // fragments are dealt round-robin, respond for each site with the deps it was given
+        for (int site = 0; site < localHSIds.size(); site++) {
+            FragmentResponseMessage resp = new FragmentResponseMessage(plan.localWork, localHSIds.get(site));
+            resp.m_sourceHSId = localHSIds.get(site);
+            resp.setStatus(FragmentResponseMessage.SUCCESS, null);
+            for (int frag = site; frag < batch_size; frag += localHSIds.size()) {
+                resp.addDependency(plan.depsToResume.get(frag),
+                        new VoltTable(new VoltTable.ColumnInfo("BOGO", VoltType.BIGINT)));
+            }
+            dut.offerReceivedFragmentResponse(resp);
+        }
+
+        Map<Integer, List<VoltTable>> results = dut.recursableRun(siteConnection);
+
+        ArgumentCaptor<BorrowTaskMessage> borrows = ArgumentCaptor.forClass(BorrowTaskMessage.class);
+        ArgumentCaptor<Long> sites = ArgumentCaptor.forClass(Long.class);
+        verify(mailbox, times(3)).send(sites.capture(), borrows.capture());
+        assertEquals(localHSIds, sites.getAllValues());
+        assertEquals(2, borrows.getAllValues().get(0).getFragmentTaskMessage().getFragmentCount());
+        assertEquals(2, borrows.getAllValues().get(1).getFragmentTaskMessage().getFragmentCount());
+        assertEquals(1, borrows.getAllValues().get(2).getFragmentTaskMessage().getFragmentCount());
+        assertEquals(plan.depsToResume.get(3).intValue(),
+                borrows.getAllValues().get(0).getFragmentTaskMessage().getOutputDepId(1));
+
+        // verify returned deps/tables
+        assertEquals(batch_size, results.size());
+        for (int dep : plan.depsToResume) {
+            assertEquals(1, results.get(dep).size());
+        }
+    }
+
     @Test
     public void testOneSitePartitionedReadWithRollback() throws IOException
     {
@@ -24,6 +24,7 @@
 package org.voltdb.jdbc;
 
 import static junit.framework.Assert.assertFalse;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -33,6 +34,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -40,6 +42,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Arrays;
@@ -56,8 +59,10 @@ import org.voltdb.ServerThread;
 import org.voltdb.VoltDB.Configuration;
 import org.voltdb.VoltType;
 import org.voltdb.client.ArbitraryDurationProc;
+import org.voltdb.client.ProcedureCall;
 import org.voltdb.client.TestClientFeatures;
 import org.voltdb.compiler.VoltProjectBuilder;
+import org.voltdb.jdbc.JDBC4Statement.VoltSQL;
 import org.voltdb.types.VoltDecimalHelper;
 import org.voltdb.utils.MiscUtils;
 
@@ -125,6 +130,7 @@ public class TestJDBCDriver {
         pb.addStmtProcedure("InsertA", "INSERT INTO TT VALUES(?,?);", "TT.A1: 0");
         pb.addStmtProcedure("SelectB", "SELECT * FROM TT;");
         pb.addStmtProcedure("SelectC", "SELECT * FROM ALL_TYPES;");
+        pb.addStmtProcedure("CountBlastIt", "SELECT COUNT(*) FROM BLAST_IT WHERE A1 = ?;", "BLAST_IT.A1: 0");
         boolean success = pb.compile(Configuration.getPathToCatalogForTest("jdbcdrivertest.jar"), 3, 1, 0);
         assert(success);
         MiscUtils.copyFile(pb.getPathToDeployment(), Configuration.getPathToCatalogForTest("jdbcdrivertest.xml"));
@@ -363,7 +369,7 @@ public class TestJDBCDriver {
                 conn.getMetaData().getProcedures("blah", "blah", "%");
         int count = 0;
         List<String> names = Arrays.asList(new String[] {"InsertA", "InsertAllTypes",
-            "SelectB", "SelectC", "ArbitraryDurationProc"});
+            "SelectB", "SelectC", "CountBlastIt", "ArbitraryDurationProc"});
         while (procedures.next()) {
             String procedure = procedures.getString("PROCEDURE_NAME");
             if (procedure.contains(".")) {
@@ -375,9 +381,9 @@ public class TestJDBCDriver {
         }
         System.out.println("Procedure count is: " + count);
         // After adding .upsert stored procedure
-        // 9 tables * 5 CRUD/table + 4 procedures +
+        // 9 tables * 5 CRUD/table + 5 procedures +
         // 4 tables * 4 for replicated crud
-        assertEquals(10 * 5 + 4 + 3 * 4, count);
+        assertEquals(10 * 5 + 5 + 3 * 4, count);
     }
 
     @Test
@@ -964,4 +970,274 @@ public class TestJDBCDriver {
             }
         }
     }
+
+    private static int countBlastIt(Connection c) throws SQLException {
+        ResultSet rs = c.createStatement().executeQuery("select count(*) from BLAST_IT;");
+        assertTrue(rs.next());
+        return rs.getInt(1);
+    }
+
+    private static void clearBlastIt() throws SQLException {
+        conn.createStatement().executeUpdate("delete from BLAST_IT;");
+    }
+
+    @Test
+    public void testBatchOrdering() throws SQLException {
+        try {
+            // Ad hoc statements each wait for the one before them
+            Statement stmt = conn.createStatement();
+            stmt.addBatch("insert into BLAST_IT values(1, 1)");
+            stmt.addBatch("update BLAST_IT set A2 = A2 + 1 where A1 = 1");
+            stmt.addBatch("update BLAST_IT set A2 = A2 * 10 where A1 = 1");
+            stmt.addBatch("delete from BLAST_IT where A1 = 1 and A2 = 20");
+            assertArrayEquals(new int[] {1, 1, 1, 1}, stmt.executeBatch());
+            assertEquals(0, countBlastIt(conn));
+
+            // Pipelined single partition calls, spread over several chunks and partitions,
+            // run in order within each partition
+            CallableStatement cs = conn.prepareCall("{call BLAST_IT.upsert(?, ?)}");
+            final int keys = 10;
+            final int rounds = 30;
+            for (int round = 0; round < rounds; round++) {
+                for (int key = 0; key < keys; key++) {
+                    cs.setInt(1, key);
+                    cs.setInt(2, round);
+                    cs.addBatch();
+                }
+            }
+            int[] counts = cs.executeBatch();
+            assertEquals(keys * rounds, counts.length);
+            for (int count : counts) {
+                assertEquals(1, count);
+            }
+            ResultSet rs = conn.createStatement().executeQuery("select A1, A2 from BLAST_IT order by A1;");
+            for (int key = 0; key < keys; key++) {
+                assertTrue(rs.next());
+                assertEquals(key, rs.getInt(1));
+                assertEquals(rounds - 1, rs.getInt(2));
+            }
+            assertFalse(rs.next());
+
+            // A multi-partition ad hoc statement sees every call before it and none after it
+            PreparedStatement ps = conn.prepareStatement("update BLAST_IT set A2 = ?");
+            ps.setInt(1, -1);
+            ps.addBatch();
+            ps.setInt(1, -2);
+            ps.addBatch();
+            assertArrayEquals(new int[] {keys, keys}, ps.executeBatch());
+            rs = conn.createStatement().executeQuery("select count(*) from BLAST_IT where A2 = -2;");
+            assertTrue(rs.next());
+            assertEquals(keys, rs.getInt(1));
+        }
+        finally {
+            clearBlastIt();
+        }
+    }
+
+    @Test
+    public void testBatchMixedReadsAndWrites() throws Exception {
+        try {
+            // Read only calls may go to any replica, so they must not overtake the writes
+            // of their partition before them, nor be overtaken by the writes after them
+            JDBC4Statement stmt = (JDBC4Statement) conn.createStatement();
+            VoltSQL insert = VoltSQL.parseCall("{call BLAST_IT.insert(?, ?)}");
+            VoltSQL delete = VoltSQL.parseCall("{call BLAST_IT.delete(?)}");
+            VoltSQL count = VoltSQL.parseCall("{call CountBlastIt(?)}");
+            assertEquals(-1, ((JDBC4Connection) conn).NativeConnection.getPartitionForCall(
+                    count.getExecutableQuery(1).toProcedureCall()));
+
+            final int keys = 5;
+            final int rounds = 20;
+            int[] expected = new int[keys * rounds * 4];
+            int i = 0;
+            for (int round = 0; round < rounds; round++) {
+                for (int key = 0; key < keys; key++) {
+                    stmt.addBatch(insert.getExecutableQuery(key, round));
+                    expected[i++] = 1;
+                    stmt.addBatch(count.getExecutableQuery(key));
+                    expected[i++] = 1;
+                    stmt.addBatch(delete.getExecutableQuery(key));
+                    expected[i++] = 1;
+                    stmt.addBatch(count.getExecutableQuery(key));
+                    expected[i++] = 0;
+                }
+            }
+            assertArrayEquals(expected, stmt.executeBatch());
+            assertEquals(0, countBlastIt(conn));
+        }
+        finally {
+            clearBlastIt();
+        }
+    }
+
+    @Test
+    public void testBatchPartialFailure() throws SQLException {
+        try {
+            // Statements after a failed ad hoc statement are never sent and get no update count
+            Statement stmt = conn.createStatement();
+            stmt.addBatch("insert into BLAST_IT values(100, 1)");
+            stmt.addBatch("insert into BLAST_IT values(100, 1)");
+            stmt.addBatch("insert into BLAST_IT values(101, 1)");
+            try {
+                stmt.executeBatch();
+                fail();
+            } catch (BatchUpdateException e) {
+                assertArrayEquals(new int[] {1, Statement.EXECUTE_FAILED}, e.getUpdateCounts());
+            }
+            assertEquals(1, countBlastIt(conn));
+            clearBlastIt();
+
+            // Pipelined calls before a failed ad hoc statement complete, the calls after it are not sent
+            CallableStatement insert = conn.prepareCall("{call BLAST_IT.insert(?, ?)}");
+            for (int i = 0; i < 5; i++) {
+                insert.setInt(1, i);
+                insert.setInt(2, i);
+                insert.addBatch();
+            }
+            insert.addBatch("insert into BLAST_IT values(0, 0)");
+            for (int i = 5; i < 10; i++) {
+                insert.setInt(1, i);
+                insert.setInt(2, i);
+                insert.addBatch();
+            }
+            try {
+                insert.executeBatch();
+                fail();
+            } catch (BatchUpdateException e) {
+                assertArrayEquals(new int[] {1, 1, 1, 1, 1, Statement.EXECUTE_FAILED}, e.getUpdateCounts());
+            }
+            assertEquals(5, countBlastIt(conn));
+            clearBlastIt();
+
+            // Pipelined calls before the failure succeed, calls sent along with it may too
+            CallableStatement cs = conn.prepareCall("{call BLAST_IT.insert(?, ?)}");
+            for (int i = 0; i < 20; i++) {
+                cs.setInt(1, i == 10 ? 100 : i);
+                cs.setInt(2, i);
+                cs.addBatch();
+            }
+            try {
+                cs.executeBatch();
+                fail();
+            } catch (BatchUpdateException e) {
+                // The counts end at the last call sent
+                int[] counts = e.getUpdateCounts();
+                assertTrue(counts.length > 10 && counts.length <= 20);
+                int inserted = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    if (i < 10) {
+                        assertEquals(1, counts[i]);
+                    } else if (i == 10) {
+                        assertEquals(Statement.EXECUTE_FAILED, counts[i]);
+                    } else {
+                        assertTrue(counts[i] == 1 || counts[i] == Statement.EXECUTE_FAILED);
+                    }
+                    if (counts[i] == 1) {
+                        inserted++;
+                    }
+                }
+                assertEquals(inserted + 1, countBlastIt(conn));
+            }
+        }
+        finally {
+            clearBlastIt();
+        }
+    }
+
+    @Test
+    public void testBatchPreparedInsert() throws Exception {
+        try {
+            // A prepared insert of every column is sent to the default insert procedure,
+            // so it is pipelined to the partition of the row
+            VoltSQL insert = VoltSQL.parseSQL("insert into blast_it values (?, ?)");
+            ProcedureCall call = insert.getExecutableQuery(1, 1).toProcedureCall();
+            assertEquals("BLAST_IT.insert", call.getProcName());
+            assertTrue(((JDBC4Connection) conn).NativeConnection.getPartitionForCall(call) >= 0);
+            // Anything else is still planned ad hoc
+            VoltSQL insertColumns = VoltSQL.parseSQL("insert into BLAST_IT (A1, A2) values (?, ?)");
+            assertEquals("@AdHoc", insertColumns.getExecutableQuery(1, 1).toProcedureCall().getProcName());
+
+            PreparedStatement ps = conn.prepareStatement("insert into blast_it values (?, ?)");
+            for (int i = 0; i < 250; i++) {
+                ps.setInt(1, i);
+                ps.setInt(2, i);
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            assertEquals(250, counts.length);
+            for (int count : counts) {
+                assertEquals(1, count);
+            }
+            assertEquals(250, countBlastIt(conn));
+
+            // A duplicate key fails the batch like the ad hoc insert does
+            ps.setInt(1, 0);
+            ps.setInt(2, 0);
+            ps.addBatch();
+            try {
+                ps.executeBatch();
+                fail();
+            } catch (BatchUpdateException e) {
+                assertArrayEquals(new int[] {Statement.EXECUTE_FAILED}, e.getUpdateCounts());
+            }
+        }
+        finally {
+            clearBlastIt();
+        }
+    }
+
+    @Test
+    public void testBatchMaxOutstanding() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(JDBC4Connection.BATCH_MAX_OUTSTANDING, "3");
+        myconn = getJdbcConnection("jdbc:voltdb://localhost:21212", props);
+        try {
+            CallableStatement cs = myconn.prepareCall("{call BLAST_IT.insert(?, ?)}");
+            for (int i = 0; i < 50; i++) {
+                cs.setInt(1, i);
+                cs.setInt(2, i);
+                cs.addBatch();
+            }
+            int[] counts = cs.executeBatch();
+            assertEquals(50, counts.length);
+            for (int count : counts) {
+                assertEquals(1, count);
+            }
+            assertEquals(50, cs.getUpdateCount());
+            assertEquals(50, countBlastIt(myconn));
+        }
+        finally {
+            myconn.close();
+            myconn = null;
+            clearBlastIt();
+        }
+    }
+
+    @Test
+    public void testBatchTimeout() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(JDBC4Connection.QUERYTIMEOUT_UNIT, "milliseconds");
+        myconn = getJdbcConnection("jdbc:voltdb://localhost:21212", props);
+        try {
+            CallableStatement cs = myconn.prepareCall("{call ArbitraryDurationProc(?)}");
+            cs.setQueryTimeout(500);
+            cs.setLong(1, 3000);
+            cs.addBatch();
+            cs.setLong(1, 0);
+            cs.addBatch();
+            try {
+                cs.executeBatch();
+                fail();
+            } catch (BatchUpdateException e) {
+                assertEquals(SQLError.CONNECTION_FAILURE, e.getSQLState());
+                // The second call waits for the first, which timed out, so it is never sent
+                assertArrayEquals(new int[] {Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED},
+                        e.getUpdateCounts());
+            }
+        }
+        finally {
+            myconn.close();
+            myconn = null;
+        }
+    }
 }
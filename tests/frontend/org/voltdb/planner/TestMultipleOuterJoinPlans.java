@@ -26,7 +26,9 @@ package org.voltdb.planner;
 import java.util.List;
 
 import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
@@ -40,25 +42,25 @@ public class TestMultipleOuterJoinPlans  extends PlannerTestCase {
     public void testInnerOuterJoin() {
         AbstractPlanNode pn = compile("select * FROM R1 INNER JOIN R2 ON R1.A = R2.A LEFT JOIN R3 ON R3.C = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.INNER == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
 
         pn = compile("select * FROM R1, R2 LEFT JOIN R3 ON R3.C = R2.C WHERE R1.A = R2.A");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.INNER == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
     }
@@ -66,58 +68,58 @@ public class TestMultipleOuterJoinPlans  extends PlannerTestCase {
     public void testOuterOuterJoin() {
         AbstractPlanNode pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.A = R2.A LEFT JOIN R3 ON R3.C = R1.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
 
         pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.A = R2.A RIGHT JOIN R3 ON R3.C = R1.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(1);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
 
         pn = compile("select * FROM R1 RIGHT JOIN R2 ON R1.A = R2.A RIGHT JOIN R3 ON R3.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(1);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
 
         pn = compile("select * FROM R1 RIGHT JOIN R2 ON R1.A = R2.A LEFT JOIN R3 ON R3.C = R1.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         n = nlj.getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
 
         pn = compile("select * FROM R1 RIGHT JOIN R2 ON R1.A = R2.A LEFT JOIN R3 ON R3.C = R1.C WHERE R1.A > 0");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         n = nlj.getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.INNER == nlj.getJoinType());
     }
 
@@ -125,7 +127,7 @@ public class TestMultipleOuterJoinPlans  extends PlannerTestCase {
         AbstractPlanNode pn = compile("select * FROM R1, R2 LEFT JOIN R3 ON R3.A = R2.C OR R3.A = R1.A WHERE R1.C = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
         assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nlj = (NestLoopPlanNode) n;
+        AbstractJoinPlanNode nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         AbstractExpression p = nlj.getJoinPredicate();
@@ -136,13 +138,13 @@ public class TestMultipleOuterJoinPlans  extends PlannerTestCase {
         // R3.A > 0 gets pushed down all the way to the R3 scan node and used as an index
         AbstractPlanNode pn = compile("select * FROM R3, R2 LEFT JOIN R1 ON R1.C = R2.C WHERE R3.C = R2.C AND R3.A > 0");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.INNER == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(0);
@@ -151,13 +153,13 @@ public class TestMultipleOuterJoinPlans  extends PlannerTestCase {
         // R3.A > 0 is now outer join expresion and must stay at the LEF join
         pn = compile("select * FROM R3, R2 LEFT JOIN R1 ON R1.C = R2.C  AND R3.A > 0 WHERE R3.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.INNER == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(0);
@@ -165,13 +167,13 @@ public class TestMultipleOuterJoinPlans  extends PlannerTestCase {
 
         pn = compile("select * FROM R3 JOIN R2 ON R3.C = R2.C RIGHT JOIN R1 ON R1.C = R2.C  AND R3.A > 0");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(1);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.INNER == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(0);
@@ -180,13 +182,13 @@ public class TestMultipleOuterJoinPlans  extends PlannerTestCase {
         // R3.A > 0 gets pushed down all the way to the R3 scan node and used as an index
         pn = compile("select * FROM R2, R3 LEFT JOIN R1 ON R1.C = R2.C WHERE R3.C = R2.C AND R3.A > 0");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.INNER == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(1);
@@ -195,8 +197,8 @@ public class TestMultipleOuterJoinPlans  extends PlannerTestCase {
         // R3.A = R2.C gets pushed down to the R2, R3 join node scan node and used as an index
         pn = compile("select * FROM R2, R3 LEFT JOIN R1 ON R1.C = R2.C WHERE R3.A = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(0);
@@ -211,39 +213,39 @@ public class TestMultipleOuterJoinPlans  extends PlannerTestCase {
 
         AbstractPlanNode pn = compile("select * FROM R1, R3 RIGHT JOIN R2 ON R1.A = R2.A WHERE R3.C = R1.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.INNER == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.INNER == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
 
         // The second R3.C = R2.C join condition is NULL-rejecting for the first LEFT join
         pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.A = R2.A LEFT JOIN R3 ON R3.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
 
         // The second R3.C = R2.C join condition is NULL-rejecting for the first LEFT join
         pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.A = R2.A RIGHT JOIN R3 ON R3.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
         n = nlj.getChild(1);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (AbstractJoinPlanNode) n;
         assertTrue(JoinType.INNER == nlj.getJoinType());
         assertTrue(nlj.getJoinPredicate() != null);
     }
@@ -253,8 +255,8 @@ public class TestMultipleOuterJoinPlans  extends PlannerTestCase {
       List<AbstractPlanNode> lpn = compileToFragments("select *  FROM R3,R1 LEFT JOIN P2 ON R3.A = P2.A WHERE R3.A=R1.A ");
       assertTrue(lpn.size() == 2);
       AbstractPlanNode n = lpn.get(0).getChild(0).getChild(0);
-      assertTrue(n instanceof NestLoopPlanNode);
-      assertTrue(JoinType.LEFT == ((NestLoopPlanNode) n).getJoinType());
+      assertTrue(n instanceof HashJoinPlanNode);
+      assertTrue(JoinType.LEFT == ((AbstractJoinPlanNode) n).getJoinType());
       AbstractPlanNode c = n.getChild(0);
       assertTrue(c instanceof NestLoopIndexPlanNode);
 
@@ -275,8 +277,8 @@ public class TestMultipleOuterJoinPlans  extends PlannerTestCase {
       // to debug */ System.out.println("DEBUG 0.0: " + lpn.get(0).toExplainPlanString());
       // to debug */ System.out.println("DEBUG 0.1: " + lpn.get(1).toExplainPlanString());
       n = lpn.get(0).getChild(0).getChild(0);
-      assertTrue(n instanceof NestLoopPlanNode);
-      assertTrue(JoinType.LEFT == ((NestLoopPlanNode) n).getJoinType());
+      assertTrue(n instanceof HashJoinPlanNode);
+      assertTrue(JoinType.LEFT == ((AbstractJoinPlanNode) n).getJoinType());
       c = n.getChild(0);
       assertTrue(c instanceof NestLoopIndexPlanNode);
       assertTrue(JoinType.INNER == ((NestLoopIndexPlanNode) c).getJoinType());
@@ -295,7 +297,7 @@ public class TestMultipleOuterJoinPlans  extends PlannerTestCase {
       assertTrue(n instanceof NestLoopIndexPlanNode);
       assertTrue(JoinType.INNER == ((NestLoopIndexPlanNode) n).getJoinType());
       n = n.getChild(0);
-      assertTrue(n instanceof NestLoopPlanNode);
+      assertTrue(n instanceof HashJoinPlanNode);
       c = n.getChild(0);
       assertTrue(c instanceof SeqScanPlanNode);
       c = n.getChild(1);
@@ -25,6 +25,7 @@ package org.voltdb.planner;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.TestCase;
 
@@ -132,6 +133,149 @@ public class TestPlannerTool extends TestCase {
         System.out.println(result);
     }
 
+    public void testCacheSharedAcrossPlanners() throws Exception {
+        TPCCProjectBuilder builder = new TPCCProjectBuilder();
+        builder.addAllDefaults();
+        final File jar = new File("tpcc-oop.jar");
+        jar.deleteOnExit();
+        builder.compile("tpcc-oop.jar");
+
+        byte[] bytes = MiscUtils.fileToBytes(new File("tpcc-oop.jar"));
+        String serializedCatalog = CatalogUtil.getSerializedCatalogStringFromJar(CatalogUtil.loadAndUpgradeCatalogFromJar(bytes).getFirst());
+        Catalog catalog = new Catalog();
+        catalog.execute(serializedCatalog);
+        final CatalogContext context = new CatalogContext(0, 0, catalog, bytes, new byte[] {}, 0);
+
+        // Planners for the same catalog share one cache
+        PlannerTool pt1 = new PlannerTool(context.cluster, context.database, context.getCatalogHash());
+        PlannerTool pt2 = new PlannerTool(context.cluster, context.database, context.getCatalogHash());
+        AdHocPlannedStatement first = pt1.planSqlForTest("select * from warehouse where w_id = 5;");
+        // literal cache hit
+        assertSame(first, pt2.planSqlForTest("select * from warehouse where w_id = 5;"));
+        // parameterized cache hit
+        assertSame(first.core, pt2.planSqlForTest("select * from warehouse where w_id = 7;").core);
+
+        // Planner threads hammering the cache concurrently all get usable plans
+        final int threadCount = 4;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int threadId = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            PlannerTool pt = context.acquirePlannerTool();
+                            try {
+                                AdHocPlannedStatement plan =
+                                        pt.planSqlForTest("select * from district where d_id = " + (i % 50) +
+                                                          " and d_w_id = " + threadId + ";");
+                                assertNotNull(plan.core);
+                            }
+                            finally {
+                                context.releasePlannerTool(pt);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+
+        // A planner is never lent out to two threads at once
+        PlannerTool lent1 = context.acquirePlannerTool();
+        PlannerTool lent2 = context.acquirePlannerTool();
+        assertNotSame(lent1, lent2);
+        context.releasePlannerTool(lent1);
+        context.releasePlannerTool(lent2);
+    }
+
+    public void testConcurrentSubqueryPlansMatchSerialPlans() throws Exception {
+        TPCCProjectBuilder builder = new TPCCProjectBuilder();
+        builder.addAllDefaults();
+        final File jar = new File("tpcc-oop.jar");
+        jar.deleteOnExit();
+        builder.compile("tpcc-oop.jar");
+
+        byte[] bytes = MiscUtils.fileToBytes(new File("tpcc-oop.jar"));
+        String serializedCatalog = CatalogUtil.getSerializedCatalogStringFromJar(CatalogUtil.loadAndUpgradeCatalogFromJar(bytes).getFirst());
+        Catalog catalog = new Catalog();
+        catalog.execute(serializedCatalog);
+        final CatalogContext context = new CatalogContext(0, 0, catalog, bytes, new byte[] {}, 0);
+
+        // Statements numbering subqueries and parameters, including correlation parameters
+        final String[] sqls = {
+            "select d_id from district where d_w_id = ? and d_next_o_id > " +
+                    "(select max(o_id) from orders where o_w_id = district.d_w_id and o_d_id = ?);",
+            "select c_id from customer where c_w_id = ? and c_id in " +
+                    "(select o_c_id from orders where o_w_id = customer.c_w_id and o_carrier_id = ?);",
+            "select w_id from warehouse where w_id = ? union " +
+                    "select d_w_id from district where d_id = ? and d_w_id = ?;",
+            "select * from (select o_id, o_c_id from orders where o_w_id = ?) sub where sub.o_id > ?;"
+        };
+
+        // Plan each statement serially first, bypassing the plan cache
+        PlannerTool serial = context.acquirePlannerTool();
+        final String[] expected = new String[sqls.length];
+        try {
+            for (int i = 0; i < sqls.length; i++) {
+                expected[i] = fragments(serial, sqls[i]);
+            }
+        }
+        finally {
+            context.releasePlannerTool(serial);
+        }
+
+        final int threadCount = 4;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int threadId = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 300; i++) {
+                            int stmt = (i + threadId) % sqls.length;
+                            PlannerTool pt = context.acquirePlannerTool();
+                            try {
+                                assertEquals(sqls[stmt], expected[stmt], fragments(pt, sqls[stmt]));
+                            }
+                            finally {
+                                context.releasePlannerTool(pt);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    private static String fragments(PlannerTool pt, String sql) {
+        CompiledPlan plan = pt.planSqlCore(sql, StatementPartitioning.forceSP());
+        StringBuilder sb = new StringBuilder();
+        sb.append(plan.rootPlanGraph.toJSONString());
+        if (plan.subPlanGraph != null) {
+            sb.append(plan.subPlanGraph.toJSONString());
+        }
+        sb.append(plan.parameters.length);
+        return sb.toString();
+    }
+
     public void testBadDDL() throws IOException
     {
         // semicolons in in-lined comments are bad
@@ -32,6 +32,7 @@ import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractScanPlanNode;
 import org.voltdb.plannodes.AggregatePlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
@@ -52,7 +53,7 @@ public class TestPlansJoin extends PlannerTestCase {
         // select * with ON clause should return all columns from all tables
         AbstractPlanNode pn = compile("select * FROM R1 JOIN R2 ON R1.C = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         //assertEquals(JoinType.INNER, nlj.getJoinType());
         for (int ii = 0; ii < 2; ii++) {
             assertTrue(n.getChild(ii) instanceof SeqScanPlanNode);
@@ -61,22 +62,22 @@ public class TestPlansJoin extends PlannerTestCase {
 
         // select * with USING clause should contain only one column for each column from the USING expression
         pn = compile("select * FROM R1 JOIN R2 USING(C)");
-        assertTrue(pn.getChild(0).getChild(0) instanceof NestLoopPlanNode);
+        assertTrue(pn.getChild(0).getChild(0) instanceof HashJoinPlanNode);
         assertEquals(4, pn.getOutputSchema().getColumns().size());
 
         pn = compile("select R1.A,R1.C,D FROM R1 JOIN R2 ON R1.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(3, pn.getOutputSchema().getColumns().size());
 
         pn = compile("select R1.A,C,R1.D FROM R1 JOIN R2 USING(C)");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(3, pn.getOutputSchema().getColumns().size());
 
         pn = compile("select R1.A, R2.C, R1.D FROM R1 JOIN R2 ON R1.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(3, pn.getOutputSchema().getColumns().size());
         assertTrue("R1".equalsIgnoreCase(pn.getOutputSchema().getColumns().get(0).getTableName()));
         assertTrue("R2".equalsIgnoreCase(pn.getOutputSchema().getColumns().get(1).getTableName()));
@@ -85,7 +86,7 @@ public class TestPlansJoin extends PlannerTestCase {
         pn = compile("select R1.A, C, R1.D FROM R1 JOIN R2 USING(C)");
         n = pn.getChild(0).getChild(0);
         String table = pn.getOutputSchema().getColumns().get(1).getTableName();
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(3, pn.getOutputSchema().getColumns().size());
         assertTrue(pn.getOutputSchema().getColumns().get(0).getTableName().equalsIgnoreCase("R1"));
         assertTrue("R2".equalsIgnoreCase(table) || "R1".equalsIgnoreCase(table));
@@ -103,27 +104,27 @@ public class TestPlansJoin extends PlannerTestCase {
     public void testBasicThreeTableInnerJoin() {
         AbstractPlanNode pn = compile("select * FROM R1 JOIN R2 ON R1.C = R2.C JOIN R3 ON R3.C = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        assertTrue(n.getChild(0) instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
+        assertTrue(n.getChild(0) instanceof HashJoinPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
         assertEquals(7, pn.getOutputSchema().getColumns().size());
 
         pn = compile("select R1.C, R2.C R3.C FROM R1 INNER JOIN R2 ON R1.C = R2.C INNER JOIN R3 ON R3.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        assertTrue(n.getChild(0) instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
+        assertTrue(n.getChild(0) instanceof HashJoinPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
 
         pn = compile("select C FROM R1 INNER JOIN R2 USING (C) INNER JOIN R3 USING(C)");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        assertTrue(n.getChild(0) instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
+        assertTrue(n.getChild(0) instanceof HashJoinPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
         assertEquals(1, pn.getOutputSchema().getColumns().size());
 
         pn = compile("select C FROM R1 INNER JOIN R2 USING (C), R3_NOC WHERE R1.A = R3_NOC.A");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertTrue(n.getChild(0) instanceof NestLoopIndexPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
         assertEquals(1, pn.getOutputSchema().getColumns().size());
@@ -246,12 +247,12 @@ public class TestPlansJoin extends PlannerTestCase {
 
         pn = compile("select * FROM R1 JOIN R2 ON R1.A = R2.A JOIN R3 ON R1.C = R3.C WHERE R1.A > 0");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        p = ((NestLoopPlanNode) n).getJoinPredicate();
+        assertTrue(n instanceof HashJoinPlanNode);
+        p = ((HashJoinPlanNode) n).getJoinPredicate();
         assertEquals(ExpressionType.COMPARE_EQUAL, p.getExpressionType());
         n = n.getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        HashJoinPlanNode nlj = (HashJoinPlanNode) n;
         assertEquals(ExpressionType.COMPARE_EQUAL, nlj.getJoinPredicate().getExpressionType());
         n = n.getChild(0);
         assertTrue(n instanceof AbstractScanPlanNode);
@@ -264,7 +265,7 @@ public class TestPlansJoin extends PlannerTestCase {
         AbstractPlanNode pn = compile("select  max(A) FROM R1 JOIN R2 USING(A)");
         pn = pn.getChild(0);
         assertNotNull(AggregatePlanNode.getInlineAggregationNode(pn));
-        assertTrue(pn instanceof NestLoopPlanNode);
+        assertTrue(pn instanceof HashJoinPlanNode);
         NodeSchema ns = pn.getOutputSchema();
         for (SchemaColumn sc : ns.getColumns()) {
             AbstractExpression e = sc.getExpression();
@@ -275,7 +276,7 @@ public class TestPlansJoin extends PlannerTestCase {
 
         pn = compile("select distinct(A) FROM R1 JOIN R2 USING(A)");
         pn = pn.getChild(0);
-        assertTrue(pn instanceof NestLoopPlanNode);
+        assertTrue(pn instanceof HashJoinPlanNode);
         ns = pn.getOutputSchema();
         for (SchemaColumn sc : ns.getColumns()) {
             AbstractExpression e = sc.getExpression();
@@ -307,14 +308,14 @@ public class TestPlansJoin extends PlannerTestCase {
         List<AbstractPlanNode> apl;
         AbstractPlanNode node;
         SeqScanPlanNode seqScan;
-        NestLoopPlanNode nlj;
+        HashJoinPlanNode nlj;
 
         apl = compileToFragments("select * FROM P1 LABEL JOIN R2 USING(A) WHERE A > 0 and R2.C >= 5");
         pn = apl.get(1);
         node = pn.getChild(0);
-        assertTrue(node instanceof NestLoopPlanNode);
+        assertTrue(node instanceof HashJoinPlanNode);
         assertEquals(ExpressionType.COMPARE_EQUAL,
-                     ((NestLoopPlanNode)node).getJoinPredicate().getExpressionType());
+                     ((HashJoinPlanNode)node).getJoinPredicate().getExpressionType());
         assertTrue(node.getChild(0) instanceof SeqScanPlanNode);
         seqScan = (SeqScanPlanNode)node.getChild(0);
         assertTrue(seqScan.getPredicate() == null);
@@ -326,8 +327,8 @@ public class TestPlansJoin extends PlannerTestCase {
         apl = compileToFragments("select * FROM P1 LABEL LEFT JOIN R2 USING(A) WHERE A > 0");
         pn = apl.get(1);
         node = pn.getChild(0);
-        assertTrue(node instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) node;
+        assertTrue(node instanceof HashJoinPlanNode);
+        nlj = (HashJoinPlanNode) node;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertEquals(ExpressionType.COMPARE_EQUAL, nlj.getJoinPredicate().getExpressionType());
         seqScan = (SeqScanPlanNode)node.getChild(0);
@@ -343,8 +344,8 @@ public class TestPlansJoin extends PlannerTestCase {
         assertEquals("P1", sc.getTableName());
         pn = apl.get(1);
         node = pn.getChild(0);
-        assertTrue(node instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) node;
+        assertTrue(node instanceof HashJoinPlanNode);
+        nlj = (HashJoinPlanNode) node;
         assertTrue(JoinType.LEFT == nlj.getJoinType());
         assertEquals(ExpressionType.COMPARE_EQUAL, nlj.getJoinPredicate().getExpressionType());
         seqScan = (SeqScanPlanNode)node.getChild(0);
@@ -358,6 +359,66 @@ public class TestPlansJoin extends PlannerTestCase {
 
     }
 
+    public void testHashJoinKeys() {
+        // An equality between the tables on non-indexed columns hashes the inner table
+        AbstractPlanNode pn = compile("select * FROM R1 JOIN R2 ON R1.C = R2.C AND R1.A > R2.A");
+        AbstractPlanNode n = pn.getChild(0).getChild(0);
+        assertTrue(n instanceof HashJoinPlanNode);
+        HashJoinPlanNode hj = (HashJoinPlanNode) n;
+        assertEquals(1, hj.getOuterHashKeys().size());
+        assertEquals(1, hj.getInnerHashKeys().size());
+        TupleValueExpression outerKey = (TupleValueExpression) hj.getOuterHashKeys().get(0);
+        TupleValueExpression innerKey = (TupleValueExpression) hj.getInnerHashKeys().get(0);
+        assertEquals("R1", outerKey.getTableName());
+        assertEquals("C", outerKey.getColumnName());
+        assertEquals("R2", innerKey.getTableName());
+        assertEquals("C", innerKey.getColumnName());
+        // The keys only pick candidates, the whole join predicate still applies
+        assertEquals(ExpressionType.CONJUNCTION_AND, hj.getJoinPredicate().getExpressionType());
+
+        // Multiple equalities make a composite key
+        pn = compile("select * FROM R1 JOIN R2 ON R1.C = R2.C AND R2.A = R1.A");
+        hj = (HashJoinPlanNode) pn.getChild(0).getChild(0);
+        assertEquals(2, hj.getOuterHashKeys().size());
+        assertEquals(2, hj.getInnerHashKeys().size());
+        for (AbstractExpression key : hj.getOuterHashKeys()) {
+            assertEquals("R1", ((TupleValueExpression) key).getTableName());
+        }
+
+        // No equality between the tables, nothing to hash on
+        pn = compile("select * FROM R1 JOIN R2 ON R1.C > R2.C");
+        assertTrue(pn.getChild(0).getChild(0) instanceof NestLoopPlanNode);
+    }
+
+    public void testHashJoinCosting() {
+        // The hash table is built once over the inner rows and probed once per outer row
+        AbstractPlanNode pn = compile("select * FROM R1 JOIN R2 ON R1.C = R2.C");
+        AbstractPlanNode n = pn.getChild(0).getChild(0);
+        assertTrue(n instanceof HashJoinPlanNode);
+        assertEquals(n.getChild(0).getEstimatedOutputTupleCount() +
+                     n.getChild(1).getEstimatedOutputTupleCount(),
+                     n.getEstimatedProcessedTupleCount());
+
+        // An inner index scan driven by a constant is hashed like any other inner scan
+        pn = compile("select * FROM R1 JOIN R3 ON R1.C = R3.C WHERE R3.A > 0");
+        n = pn.getChild(0).getChild(0);
+        assertTrue(n instanceof HashJoinPlanNode);
+        assertTrue(n.getChild(1) instanceof IndexScanPlanNode);
+
+        // An index the join can drive is cheaper than building a hash table
+        pn = compile("select * FROM R1 JOIN R3 ON R1.C = R3.A");
+        assertTrue(pn.getChild(0).getChild(0) instanceof NestLoopIndexPlanNode);
+
+        // A nested loop join with no hash join alternative is costed as before,
+        // so it doesn't change join order or access path choices
+        pn = compile("select * FROM R1 JOIN R2 ON R1.C > R2.C");
+        n = pn.getChild(0).getChild(0);
+        assertTrue(n instanceof NestLoopPlanNode);
+        assertEquals(n.getChild(0).getEstimatedOutputTupleCount() +
+                     n.getChild(1).getEstimatedOutputTupleCount(),
+                     n.getEstimatedProcessedTupleCount());
+    }
+
     public void testTransitiveValueEquivalenceConditions() {
         // R1.A = R2.A AND R2.A = 1 => R1.A = 1 AND R2.A = 1
         AbstractPlanNode pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.A = R2.A AND R2.A = 1 ");
@@ -520,8 +581,8 @@ public class TestPlansJoin extends PlannerTestCase {
 
         pn = compile("select * FROM R3 JOIN R2 ON R3.A = R2.A JOIN R1 ON R2.A = R1.A WHERE R3.C > 0 and R2.C >= 5");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        p = ((NestLoopPlanNode) n).getJoinPredicate();
+        assertTrue(n instanceof HashJoinPlanNode);
+        p = ((AbstractJoinPlanNode) n).getJoinPredicate();
         assertEquals(ExpressionType.COMPARE_EQUAL, p.getExpressionType());
         assertEquals(ExpressionType.VALUE_TUPLE, p.getLeft().getExpressionType());
         assertEquals(ExpressionType.VALUE_TUPLE, p.getRight().getExpressionType());
@@ -600,16 +661,16 @@ public class TestPlansJoin extends PlannerTestCase {
         // Test multi column condition on non index columns
         AbstractPlanNode pn = compile("select A, C FROM R2 JOIN R1 USING(A, C)");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        HashJoinPlanNode nlj = (HashJoinPlanNode) n;
         AbstractExpression pred = nlj.getJoinPredicate();
         assertNotNull(pred);
         assertEquals(ExpressionType.CONJUNCTION_AND, pred.getExpressionType());
 
         pn = compile("select R1.A, R2.A FROM R2 JOIN R1 on R1.A = R2.A and R1.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nlj = (HashJoinPlanNode) n;
         pred = nlj.getJoinPredicate();
         assertNotNull(pred);
         assertEquals(ExpressionType.CONJUNCTION_AND, pred.getExpressionType());
@@ -669,8 +730,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // select * with ON clause should return all columns from all tables
         AbstractPlanNode pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        HashJoinPlanNode nl = (HashJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertEquals(2, nl.getChildCount());
         AbstractPlanNode c0 = nl.getChild(0);
@@ -682,8 +743,8 @@ public class TestPlansJoin extends PlannerTestCase {
 
         pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C AND R1.A = 5");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (HashJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertEquals(2, nl.getChildCount());
         c0 = nl.getChild(0);
@@ -698,8 +759,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // select * FROM R1 RIGHT JOIN R2 ON R1.C = R2.C => select * FROM R2 LEFT JOIN R1 ON R1.C = R2.C
         AbstractPlanNode pn = compile("select * FROM R1 RIGHT JOIN R2 ON R1.C = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        HashJoinPlanNode nl = (HashJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertEquals(2, nl.getChildCount());
         AbstractPlanNode c0 = nl.getChild(0);
@@ -712,8 +773,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // Same but with distributed table
         pn = compile("select * FROM P1 RIGHT JOIN R2 ON P1.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (HashJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertEquals(2, nl.getChildCount());
         c0 = nl.getChild(0);
@@ -728,8 +789,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // R1.C = R2.C Inner-Outer join Expr stays at the NLJ as Join predicate
         AbstractPlanNode pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nl = (AbstractJoinPlanNode) n;
         assertEquals(ExpressionType.COMPARE_EQUAL, nl.getJoinPredicate().getExpressionType());
         assertNull(nl.getWherePredicate());
         assertEquals(2, nl.getChildCount());
@@ -743,8 +804,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // R2.A < 0 Inner Join Expr is pushed down to the inner SeqScan node
         pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C AND R1.A > 0 AND R2.A < 0");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         assertNotNull(nl.getPreJoinPredicate());
         AbstractExpression p = nl.getPreJoinPredicate();
         assertEquals(ExpressionType.COMPARE_GREATERTHAN, p.getExpressionType());
@@ -764,8 +825,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // (R1.A > 0 OR R2.A < 0) Inner-Outer join Expr stays at the NLJ as Join predicate
         pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C AND (R1.A > 0 OR R2.A < 0)");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         p = nl.getJoinPredicate();
         assertEquals(ExpressionType.CONJUNCTION_AND, p.getExpressionType());
         if (ExpressionType.CONJUNCTION_OR == p.getLeft().getExpressionType()) {
@@ -786,8 +847,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // (R1.C > R2.C OR R2.C IS NULL) Inner-Outer Where stays at the the NLJ as post join (where) predicate
         pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE R1.A > 0 AND R2.A IS NULL AND (R1.C > R2.C OR R2.C IS NULL)");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertNotNull(nl.getJoinPredicate());
         p = nl.getJoinPredicate();
@@ -808,8 +869,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // R3.C < 0 non-index Outer where expr pushed down to IndexScanPlanNode as a predicate
         pn = compile("select * FROM R3 LEFT JOIN R2 ON R3.A = R2.A WHERE R3.A > 3 AND R3.C < 0");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         AbstractPlanNode outerScan = n.getChild(0);
         assertTrue(outerScan instanceof IndexScanPlanNode);
@@ -818,13 +879,13 @@ public class TestPlansJoin extends PlannerTestCase {
         assertNotNull(indexScan.getPredicate());
         assertEquals(ExpressionType.COMPARE_LESSTHAN, indexScan.getPredicate().getExpressionType());
 
-        // R3.C = R2.C Inner-Outer non-index join Expr. NLJ predicate.
+        // R3.C = R2.C Inner-Outer non-index join Expr. Hash join predicate.
         // R3.A > 3 Index null rejecting inner where expr pushed down to IndexScanPlanNode
-        // NLJ is simplified to be INNER
+        // Hash join is simplified to be INNER
         pn = compile("select * FROM R2 LEFT JOIN R3 ON R3.C = R2.C WHERE R3.A > 3");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.INNER, nl.getJoinType());
         outerScan = n.getChild(1);
         assertTrue(outerScan instanceof IndexScanPlanNode);
@@ -847,7 +908,7 @@ public class TestPlansJoin extends PlannerTestCase {
         lpn = compileToFragments("select * FROM P1 LEFT JOIN R2 ON P1.C = R2.C");
         assertEquals(2, lpn.size());
         n = lpn.get(1).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(2, n.getChildCount());
         assertTrue(n.getChild(0) instanceof SeqScanPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
@@ -855,8 +916,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // Distributed Inner table
         pn = compile("select * FROM R2 LEFT JOIN P1 ON P1.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nl = (AbstractJoinPlanNode) n;
         assertEquals(2, nl.getChildCount());
         assertTrue(nl.getChild(0) instanceof SeqScanPlanNode);
         assertTrue(nl.getChild(1) instanceof ReceivePlanNode);
@@ -865,7 +926,7 @@ public class TestPlansJoin extends PlannerTestCase {
         lpn = compileToFragments("select * FROM P1 LEFT JOIN P4 ON P1.A = P4.A");
         assertEquals(2, lpn.size());
         n = lpn.get(1).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(2, n.getChildCount());
         assertTrue(n.getChild(0) instanceof SeqScanPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
@@ -880,8 +941,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // so index can't be used
         AbstractPlanNode pn = compile("select * FROM R3 LEFT JOIN R2 ON R3.A = R2.C");
         AbstractPlanNode n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertEquals(2, nl.getChildCount());
         AbstractPlanNode c0 = nl.getChild(0);
@@ -894,8 +955,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // R3 is indexed but it's the outer table so index can't be used
         pn = compile("select * FROM R2 RIGHT JOIN R3 ON R3.A = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        nl = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nl.getJoinType());
         assertEquals(2, nl.getChildCount());
         c0 = nl.getChild(0);
@@ -941,14 +1002,14 @@ public class TestPlansJoin extends PlannerTestCase {
         assertTrue(c1 instanceof SeqScanPlanNode);
         assertNull(((SeqScanPlanNode)c1).getPredicate());
 
-        // R1.C = R3.A Inner-Outer non-index join Expr. NLJ/IndexScan
+        // R1.C = R3.A Inner-Outer non-index join Expr. Hash join/IndexScan
         // R3.A > 0 Inner index Join Expr is pushed down to the inner IndexScan node as an index
         // R3.C != 0 Non-index Inner Join Expression is pushed down to the inner IndexScan node as a predicate
-        // R2.A < 6 Outer Join Expr is a pre-join predicate for NLJ
+        // R2.A < 6 Outer Join Expr is a pre-join predicate for the hash join
         pn = compile("select * FROM R2 LEFT JOIN R3 ON R3.C = R2.A AND R3.A > 0 AND R3.C != 0 AND R2.A < 6");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nlj = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nlj = (AbstractJoinPlanNode) n;
         assertEquals(JoinType.LEFT, nlj.getJoinType());
         assertNotNull(nlj.getPreJoinPredicate());
         p = nlj.getPreJoinPredicate();
@@ -998,7 +1059,7 @@ public class TestPlansJoin extends PlannerTestCase {
         lpn = compileToFragments("select * FROM P1 LEFT JOIN R2 ON P1.C = R2.C");
         assertEquals(2, lpn.size());
         n = lpn.get(1).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(2, n.getChildCount());
         assertTrue(n.getChild(0) instanceof SeqScanPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
@@ -1006,8 +1067,8 @@ public class TestPlansJoin extends PlannerTestCase {
         // Distributed Inner table
         pn = compile("select * FROM R2 LEFT JOIN P1 ON P1.C = R2.C");
         n = pn.getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) n;
+        assertTrue(n instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nl = (AbstractJoinPlanNode) n;
         assertEquals(2, nl.getChildCount());
         assertTrue(nl.getChild(0) instanceof SeqScanPlanNode);
         assertTrue(nl.getChild(1) instanceof ReceivePlanNode);
@@ -1016,7 +1077,7 @@ public class TestPlansJoin extends PlannerTestCase {
         lpn = compileToFragments("select * FROM P1 LEFT JOIN P4 ON P1.A = P4.A");
         assertEquals(2, lpn.size());
         n = lpn.get(1).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
+        assertTrue(n instanceof HashJoinPlanNode);
         assertEquals(2, n.getChildCount());
         assertTrue(n.getChild(0) instanceof SeqScanPlanNode);
         assertTrue(n.getChild(1) instanceof SeqScanPlanNode);
@@ -1038,7 +1099,7 @@ public class TestPlansJoin extends PlannerTestCase {
         assertEquals(1, n.getChildCount());
         assertTrue(n.getChild(0) instanceof SeqScanPlanNode);
 
-        // Distributed inner  and replicated outer tables -NLJ/IndexScan
+        // Distributed inner  and replicated outer tables -Hash join/IndexScan
         lpn = compileToFragments("select *  FROM R3 LEFT JOIN P2 ON R3.A = P2.A AND P2.A < 0 AND P2.E > 3 WHERE P2.A IS NULL");
         assertEquals(2, lpn.size());
         for (AbstractPlanNode apn: lpn) {
@@ -1046,10 +1107,10 @@ public class TestPlansJoin extends PlannerTestCase {
         }
 
         n = lpn.get(0).getChild(0).getChild(0);
-        assertTrue(n instanceof NestLoopPlanNode);
-        assertEquals(JoinType.LEFT, ((NestLoopPlanNode) n).getJoinType());
-        assertNotNull(((NestLoopPlanNode) n).getJoinPredicate());
-        assertNotNull(((NestLoopPlanNode) n).getWherePredicate());
+        assertTrue(n instanceof HashJoinPlanNode);
+        assertEquals(JoinType.LEFT, ((HashJoinPlanNode) n).getJoinType());
+        assertNotNull(((HashJoinPlanNode) n).getJoinPredicate());
+        assertNotNull(((HashJoinPlanNode) n).getWherePredicate());
         AbstractPlanNode c = n.getChild(0);
         assertTrue(c instanceof SeqScanPlanNode);
         c = n.getChild(1);
@@ -1104,23 +1165,23 @@ public class TestPlansJoin extends PlannerTestCase {
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE R2.C IS NOT NULL");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE R2.C > 0");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 RIGHT JOIN R2 ON R1.C = R2.C WHERE R1.C > 0");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 LEFT JOIN R3 ON R1.C = R3.C WHERE R3.A > 0");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 LEFT JOIN R3 ON R1.C = R3.A WHERE R3.A > 0");
        n = pn.getChild(0).getChild(0);
@@ -1129,58 +1190,58 @@ public class TestPlansJoin extends PlannerTestCase {
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE ABS(R2.C) <  10");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 RIGHT JOIN R2 ON R1.C = R2.C WHERE ABS(R1.C) <  10");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE ABS(R1.C) <  10");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.LEFT);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.LEFT);
 
        pn = compile("select * FROM R1 RIGHT JOIN R2 ON R1.C = R2.C WHERE ABS(R2.C) <  10");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.LEFT);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.LEFT);
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE ABS(R2.C) <  10 AND R1.C = 3");
        n = pn.getChild(0).getChild(0);
        assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE ABS(R2.C) <  10 OR R2.C IS NOT NULL");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE ABS(R1.C) <  10 AND R1.C > 3");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.LEFT);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.LEFT);
 
        pn = compile("select * FROM R1 LEFT JOIN R2 ON R1.C = R2.C WHERE ABS(R1.C) <  10 OR R2.C IS NOT NULL");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.LEFT);
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.LEFT);
 
        // Test with seqscan with different filers.
        pn = compile("select R2.A, R1.* FROM R1 LEFT OUTER JOIN R2 ON R2.A = R1.A WHERE R2.A > 3");
        //* enable for debug */ System.out.println(pn.toExplainPlanString());
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.INNER);
-       ex = ((NestLoopPlanNode) n).getWherePredicate();
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.INNER);
+       ex = ((AbstractJoinPlanNode) n).getWherePredicate();
        assertEquals(ex, null);
 
        pn = compile("select R2.A, R1.* FROM R1 LEFT OUTER JOIN R2 ON R2.A = R1.A WHERE R2.A IS NULL");
        n = pn.getChild(0).getChild(0);
-       assertTrue(n instanceof NestLoopPlanNode);
-       assertEquals(((NestLoopPlanNode) n).getJoinType(), JoinType.LEFT);
-       ex = ((NestLoopPlanNode) n).getWherePredicate();
+       assertTrue(n instanceof HashJoinPlanNode);
+       assertEquals(((AbstractJoinPlanNode) n).getJoinType(), JoinType.LEFT);
+       ex = ((AbstractJoinPlanNode) n).getWherePredicate();
        assertEquals(ex instanceof OperatorExpression, true);
 
        pn = compile("select b.A, a.* FROM R1 a LEFT OUTER JOIN R4 b ON b.A = a.A AND b.C = a.C AND a.D = b.D WHERE b.A IS NULL");
@@ -28,8 +28,10 @@ import java.util.List;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.ConstantValueExpression;
 import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AggregatePlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
@@ -48,7 +50,7 @@ public class TestSelfJoins  extends PlannerTestCase {
     public void testSelfJoin() {
         AbstractPlanNode pn = compile("select * FROM R1 A JOIN R1 B ON A.C = B.C WHERE B.A > 0 AND A.C < 3");
         pn = pn.getChild(0).getChild(0);
-        assertTrue(pn instanceof NestLoopPlanNode);
+        assertTrue(pn instanceof HashJoinPlanNode);
         assertEquals(4, pn.getOutputSchema().getColumns().size());
         assertEquals(2, pn.getChildCount());
         AbstractPlanNode c = pn.getChild(0);
@@ -66,7 +68,7 @@ public class TestSelfJoins  extends PlannerTestCase {
 
         pn = compile("select * FROM R1 JOIN R1 B ON R1.C = B.C");
         pn = pn.getChild(0).getChild(0);
-        assertTrue(pn instanceof NestLoopPlanNode);
+        assertTrue(pn instanceof HashJoinPlanNode);
         assertEquals(4, pn.getOutputSchema().getColumns().size());
         assertEquals(2, pn.getChildCount());
         c = pn.getChild(0);
@@ -82,7 +84,7 @@ public class TestSelfJoins  extends PlannerTestCase {
 
         pn = compile("select A.A, A.C, B.A, B.C FROM R1 A JOIN R1 B ON A.C = B.C");
         pn = pn.getChild(0).getChild(0);
-        assertTrue(pn instanceof NestLoopPlanNode);
+        assertTrue(pn instanceof HashJoinPlanNode);
         assertEquals(4, pn.getOutputSchema().getColumns().size());
 
         pn = compile("select A,B.C  FROM R1 A JOIN R2 B USING(A)");
@@ -103,8 +105,8 @@ public class TestSelfJoins  extends PlannerTestCase {
         // B.A < 0 Inner Join Expr is pushed down to the inner SeqScan node
         AbstractPlanNode pn = compile("select * FROM R1 A LEFT JOIN R1 B ON A.C = B.C AND A.A > 1 AND B.A < 0");
         pn = pn.getChild(0).getChild(0);
-        assertTrue(pn instanceof NestLoopPlanNode);
-        NestLoopPlanNode nl = (NestLoopPlanNode) pn;
+        assertTrue(pn instanceof HashJoinPlanNode);
+        AbstractJoinPlanNode nl = (AbstractJoinPlanNode) pn;
         assertNotNull(nl.getPreJoinPredicate());
         AbstractExpression p = nl.getPreJoinPredicate();
         assertEquals(ExpressionType.COMPARE_GREATERTHAN, p.getExpressionType());
@@ -0,0 +1,158 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.types.TimestampType;
+
+public class TestColumnarChunkCodec extends TestCase {
+
+    private static final String[] REGIONS = { "NORTH", "SOUTH", "EAST", "WEST" };
+
+    private static VoltTable schema() {
+        return new VoltTable(
+                new ColumnInfo("ID", VoltType.BIGINT),
+                new ColumnInfo("REGION", VoltType.STRING),
+                new ColumnInfo("STATUS", VoltType.TINYINT),
+                new ColumnInfo("NAME", VoltType.STRING),
+                new ColumnInfo("PRICE", VoltType.DECIMAL),
+                new ColumnInfo("PAYLOAD", VoltType.VARBINARY),
+                new ColumnInfo("CREATED", VoltType.TIMESTAMP));
+    }
+
+    private static VoltTable populate(int rows, int distinctNames) {
+        VoltTable table = schema();
+        Random r = new Random(0);
+        for (int ii = 0; ii < rows; ii++) {
+            table.addRow(ii,
+                    ii % 10 == 0 ? null : REGIONS[r.nextInt(REGIONS.length)],
+                    ii < rows / 2 ? 0 : 1,
+                    "customer-" + (ii % distinctNames),
+                    new BigDecimal(r.nextInt(1000)),
+                    ii % 3 == 0 ? null : new byte[] { (byte)ii, (byte)(ii >> 8) },
+                    new TimestampType(1000000L * (ii / 100)));
+        }
+        return table;
+    }
+
+    /*
+     * The row count and rows of the table, the layout of a snapshot tuple block
+     */
+    private static ByteBuffer tupleBlock(VoltTable table) {
+        ByteBuffer buf = PrivateVoltTableFactory.getTableDataReference(table);
+        buf.position(buf.getInt(0) + 4);
+        return buf.slice();
+    }
+
+    private static ByteBuffer roundTrip(ColumnarChunkCodec codec, ByteBuffer block, ByteBuffer compressed)
+            throws IOException {
+        compressed.flip();
+        ByteBuffer decoded = ByteBuffer.allocate(block.remaining());
+        codec.decompress(compressed, decoded);
+        decoded.flip();
+        return decoded;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ColumnarChunkCodec codec = ColumnarChunkCodec.forSchema(schema());
+        // Few names for dictionaries with a one byte index, many for two byte indexes and too many for a dictionary
+        for (int distinctNames : new int[] { 5, 1000, 100000 }) {
+            ByteBuffer block = tupleBlock(populate(20000, distinctNames));
+            ByteBuffer compressed = ByteBuffer.allocate(block.remaining() * 2);
+            int written = codec.compress(block, compressed);
+            assertEquals(written, compressed.position());
+            assertEquals(0, block.position());
+            assertEquals(block, roundTrip(codec, block, compressed));
+        }
+    }
+
+    @Test
+    public void testEmptyBlock() throws Exception {
+        ColumnarChunkCodec codec = ColumnarChunkCodec.forSchema(schema());
+        ByteBuffer block = tupleBlock(schema());
+        assertEquals(0, block.getInt(0));
+        ByteBuffer compressed = ByteBuffer.allocate(64);
+        codec.compress(block, compressed);
+        assertEquals(block, roundTrip(codec, block, compressed));
+    }
+
+    @Test
+    public void testLowCardinalityShrinks() throws Exception {
+        ColumnarChunkCodec codec = ColumnarChunkCodec.forSchema(schema());
+        ByteBuffer block = tupleBlock(populate(20000, 5));
+        ByteBuffer compressed = ByteBuffer.allocate(block.remaining() * 2);
+        codec.compress(block, compressed);
+        assertTrue("Compressed " + compressed.position() + " of " + block.remaining() + " bytes",
+                compressed.position() < block.remaining() / 4);
+    }
+
+    @Test
+    public void testCodecFromTableHeader() throws Exception {
+        VoltTable table = schema();
+        ByteBuffer header = ByteBuffer.wrap(PrivateVoltTableFactory.getSchemaBytes(table));
+        ColumnarChunkCodec codec = ColumnarChunkCodec.forTableHeader(header);
+
+        ByteBuffer block = tupleBlock(populate(500, 5));
+        ByteBuffer compressed = ByteBuffer.allocate(block.remaining() * 2);
+        ColumnarChunkCodec.forSchema(table).compress(block, compressed);
+        assertEquals(block, roundTrip(codec, block, compressed));
+    }
+
+    @Test
+    public void testCorruptedRowCount() throws Exception {
+        ColumnarChunkCodec codec = ColumnarChunkCodec.forSchema(schema());
+        ByteBuffer block = tupleBlock(populate(100, 5));
+        block.putInt(0, -1);
+        try {
+            codec.compress(block, ByteBuffer.allocate(block.remaining() * 2));
+            fail();
+        } catch (IOException expected) {}
+    }
+
+    @Test
+    public void testTruncatedChunk() throws Exception {
+        ColumnarChunkCodec codec = ColumnarChunkCodec.forSchema(schema());
+        ByteBuffer block = tupleBlock(populate(1000, 5));
+        ByteBuffer compressed = ByteBuffer.allocate(block.remaining() * 2);
+        codec.compress(block, compressed);
+        compressed.flip();
+        compressed.limit(compressed.limit() / 2);
+        try {
+            codec.decompress(compressed, ByteBuffer.allocate(block.remaining()));
+            fail();
+        } catch (IOException expected) {}
+    }
+}
@@ -0,0 +1,348 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.DefaultSnapshotDataTarget;
+import org.voltdb.EELibraryLoader;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.utils.CompressionService;
+
+import com.google_voltpatches.common.util.concurrent.Callables;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
+/**
+ * Reads compressed save files written by DefaultSnapshotDataTarget. The chunks are
+ * decompressed on the compression service threads and must still come out in file order.
+ */
+public class TestTableSaveFile extends TestCase {
+
+    private static final int CHUNKS = 40;
+    private static final int READ_AHEAD_CHUNKS = 3;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private File m_file;
+    private final ExecutorService m_es = Executors.newCachedThreadPool();
+
+    @Override
+    public void setUp() throws IOException {
+        // The snapshot data target checksums chunks with the native library
+        EELibraryLoader.loadExecutionEngineLibrary(true);
+        m_file = File.createTempFile("TestTableSaveFile", ".vpt");
+    }
+
+    @Override
+    public void tearDown() {
+        m_es.shutdownNow();
+        m_file.delete();
+    }
+
+    private static VoltTable schema() {
+        return new VoltTable(
+                new ColumnInfo("CHUNK", VoltType.INTEGER),
+                new ColumnInfo("ROW", VoltType.INTEGER),
+                new ColumnInfo("PAYLOAD", VoltType.STRING));
+    }
+
+    /*
+     * Chunk i has partition id i % partitions, and its size varies so that
+     * the chunks take different times to decompress
+     */
+    private static VoltTable chunkRows(int chunk) {
+        VoltTable table = schema();
+        int rows = (chunk % 4 == 0) ? 2000 : 10 + chunk;
+        for (int ii = 0; ii < rows; ii++) {
+            table.addRow(chunk, ii, "chunk " + chunk + " row " + ii);
+        }
+        return table;
+    }
+
+    /*
+     * A tuple block the way the EE hands it to the snapshot data target,
+     * the partition id followed by the row count and rows
+     */
+    private static BBContainer tupleBlock(int partitionId, VoltTable table) {
+        ByteBuffer data = PrivateVoltTableFactory.getTableDataReference(table);
+        data.position(data.getInt(0) + 4);
+        BBContainer cont = DBBPool.allocateDirect(4 + data.remaining());
+        cont.b().putInt(partitionId);
+        cont.b().put(data);
+        cont.b().flip();
+        return cont;
+    }
+
+    private void writeSaveFile(int partitions) throws Exception {
+        List<Integer> partitionIds = new ArrayList<Integer>();
+        for (int ii = 0; ii < partitions; ii++) {
+            partitionIds.add(ii);
+        }
+        DefaultSnapshotDataTarget target = new DefaultSnapshotDataTarget(
+                m_file, 0, "cluster", "database", "T", partitions, false, partitionIds,
+                schema(), 0, System.currentTimeMillis());
+        List<ListenableFuture<?>> writes = new ArrayList<ListenableFuture<?>>();
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            writes.add(target.write(Callables.returning(tupleBlock(chunk % partitions, chunkRows(chunk))), 0));
+        }
+        target.close();
+        for (ListenableFuture<?> write : writes) {
+            write.get();
+        }
+    }
+
+    private <T> T getWithTimeout(Future<T> future, String what) throws Exception {
+        try {
+            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            fail("Timed out waiting for " + what);
+            return null;
+        }
+    }
+
+    /*
+     * Read all the chunks of the file, returning the chunk number of each
+     * after checking its rows and partition id
+     */
+    private List<Integer> readChunks(final TableSaveFile saveFile, final int partitions) throws Exception {
+        Future<List<Integer>> chunks = m_es.submit(new Callable<List<Integer>>() {
+            @Override
+            public List<Integer> call() throws Exception {
+                List<Integer> chunks = new ArrayList<Integer>();
+                while (saveFile.hasMoreChunks()) {
+                    TableSaveFile.Container c = (TableSaveFile.Container)saveFile.getNextChunk();
+                    if (c == null) {
+                        continue;
+                    }
+                    try {
+                        VoltTable table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), true);
+                        assertTrue(table.advanceRow());
+                        int chunk = (int)table.getLong(0);
+                        assertEquals(chunk % partitions, c.partitionId);
+                        assertTrue(chunkRows(chunk).hasSameContents(table));
+                        chunks.add(chunk);
+                    } finally {
+                        c.discard();
+                    }
+                }
+                return chunks;
+            }
+        });
+        return getWithTimeout(chunks, "the chunks to be read");
+    }
+
+    private static List<Integer> range(int start, int step) {
+        List<Integer> chunks = new ArrayList<Integer>();
+        for (int chunk = start; chunk < CHUNKS; chunk += step) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    @Test
+    public void testChunksReadInFileOrder() throws Exception {
+        writeSaveFile(2);
+        TableSaveFile saveFile = new TableSaveFile(new FileInputStream(m_file), READ_AHEAD_CHUNKS, null);
+        assertTrue(saveFile.getCompleted());
+        assertTrue(saveFile.isCompressed());
+        assertEquals("T", saveFile.getTableName());
+        try {
+            assertEquals(range(0, 1), readChunks(saveFile, 2));
+            assertTrue(saveFile.getCorruptedPartitionIds().isEmpty());
+        } finally {
+            saveFile.close();
+        }
+    }
+
+    /*
+     * Chunks of other partitions are skipped without being handed out, so they have to
+     * give back their read ahead permit themselves or the reader stalls
+     */
+    @Test
+    public void testSkippedChunksReleaseReadAhead() throws Exception {
+        writeSaveFile(4);
+        TableSaveFile saveFile = new TableSaveFile(new FileInputStream(m_file), 1, new Integer[] { 3 });
+        try {
+            assertEquals(range(3, 4), readChunks(saveFile, 4));
+        } finally {
+            saveFile.close();
+        }
+    }
+
+    /*
+     * Same for chunks skipped because their CRC doesn't match
+     */
+    @Test
+    public void testCorruptedChunksReleaseReadAhead() throws Exception {
+        writeSaveFile(2);
+        // Flip a byte in the compressed payload of the first chunk, past its 16 byte header
+        RandomAccessFile raf = new RandomAccessFile(m_file, "rw");
+        try {
+            long position = firstChunkPosition(raf) + 16 + 8;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(~b);
+        } finally {
+            raf.close();
+        }
+
+        TableSaveFile saveFile = new TableSaveFile(new FileInputStream(m_file), 1, null, true);
+        try {
+            assertEquals(range(1, 1), readChunks(saveFile, 2));
+            assertEquals(Arrays.asList(0), new ArrayList<Integer>(saveFile.getCorruptedPartitionIds()));
+        } finally {
+            saveFile.close();
+        }
+    }
+
+    /*
+     * A reader that fails part way through the file has to fail the consumer,
+     * not leave it waiting for chunks that will never come
+     */
+    @Test
+    public void testTruncatedFileFailsConsumer() throws Exception {
+        writeSaveFile(2);
+        // Cut the file in the middle of the payload of the second chunk
+        RandomAccessFile raf = new RandomAccessFile(m_file, "rw");
+        try {
+            long position = firstChunkPosition(raf);
+            raf.seek(position);
+            raf.setLength(position + 16 + raf.readInt() + 16 + 8);
+        } finally {
+            raf.close();
+        }
+
+        TableSaveFile saveFile = new TableSaveFile(new FileInputStream(m_file), READ_AHEAD_CHUNKS, null);
+        try {
+            readChunks(saveFile, 2);
+            fail("Expected the truncated chunk to fail the read");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        } finally {
+            saveFile.close();
+        }
+    }
+
+    /*
+     * The save file header is a CRC, a length prefixed header and a length prefixed table schema
+     */
+    private static long firstChunkPosition(RandomAccessFile raf) throws IOException {
+        raf.seek(4);
+        int headerLength = raf.readInt();
+        raf.seek(8 + headerLength);
+        int schemaLength = raf.readInt();
+        return 8 + headerLength + 4 + schemaLength;
+    }
+
+    /*
+     * Closing while chunks are still waiting for a compression service thread
+     * has to wait for them, they write into buffers close frees
+     */
+    @Test
+    public void testCloseWithPendingChunks() throws Exception {
+        writeSaveFile(2);
+
+        // Keep every compression service thread busy so nothing gets decompressed
+        final int threads = Math.max(2, CoreUtils.availableProcessors());
+        final CountDownLatch started = new CountDownLatch(threads);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int ii = 0; ii < threads; ii++) {
+            CompressionService.submitCompressionTask(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    started.countDown();
+                    release.await();
+                    return null;
+                }
+            });
+        }
+        try {
+            assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            final TableSaveFile saveFile =
+                    new TableSaveFile(new FileInputStream(m_file), READ_AHEAD_CHUNKS, null);
+            Future<Void> reader = m_es.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    BBContainer c = saveFile.getNextChunk();
+                    if (c != null) {
+                        c.discard();
+                    }
+                    return null;
+                }
+            });
+
+            // The reader stops once it has read ahead as far as it may
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+            while (saveFile.getPendingChunkCount() < READ_AHEAD_CHUNKS) {
+                assertTrue("Timed out waiting for chunks to be read", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            assertFalse(reader.isDone());
+
+            Future<Void> close = m_es.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    saveFile.close();
+                    return null;
+                }
+            });
+            Thread.sleep(200);
+            assertFalse(close.isDone());
+            assertEquals(READ_AHEAD_CHUNKS, saveFile.getPendingChunkCount());
+
+            release.countDown();
+            getWithTimeout(close, "close");
+            getWithTimeout(reader, "getNextChunk");
+            assertEquals(0, saveFile.getPendingChunkCount());
+            assertFalse(saveFile.hasMoreChunks());
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -482,6 +482,40 @@ public class TestCatalogUtil extends TestCase {
         assertEquals(200, sysset.getTemptablemaxsize());
     }
 
+    public void testSystemSettingsTempTableSpill() throws Exception
+    {
+        final String depDefault =
+            "<?xml version='1.0' encoding='UTF-8' standalone='no'?>" +
+            "<deployment>" +
+            "   <cluster hostcount='3' kfactor='1' sitesperhost='2'/>" +
+            "   <paths><voltdbroot path=\"/tmp/" + System.getProperty("user.name") + "\" /></paths>" +
+            "</deployment>";
+
+        final String depOff =
+            "<?xml version='1.0' encoding='UTF-8' standalone='no'?>" +
+            "<deployment>" +
+            "   <cluster hostcount='3' kfactor='1' sitesperhost='2'/>" +
+            "   <paths><voltdbroot path=\"/tmp/" + System.getProperty("user.name") + "\" /></paths>" +
+            "   <systemsettings>" +
+            "      <temptables maxsize=\"200\" spill=\"false\"/>" +
+            "   </systemsettings>" +
+            "</deployment>";
+
+        final File tmpDepDefault = VoltProjectBuilder.writeStringToTempFile(depDefault);
+        String msg = CatalogUtil.compileDeployment(catalog, tmpDepDefault.getPath(), false);
+        assertTrue(msg == null);
+        Systemsettings sysset = catalog.getClusters().get("cluster").getDeployment().get("deployment").getSystemsettings().get("systemsettings");
+        assertTrue(sysset.getTemptablespill());
+
+        setUp();
+        final File tmpDepOff = VoltProjectBuilder.writeStringToTempFile(depOff);
+        msg = CatalogUtil.compileDeployment(catalog, tmpDepOff.getPath(), false);
+        assertTrue(msg == null);
+        sysset = catalog.getClusters().get("cluster").getDeployment().get("deployment").getSystemsettings().get("systemsettings");
+        assertEquals(200, sysset.getTemptablemaxsize());
+        assertFalse(sysset.getTemptablespill());
+    }
+
     public void testSystemSettingsQueryTimeout() throws Exception
     {
         final String depOff =
@@ -0,0 +1,106 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2016 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestNumaTopology {
+
+    @Rule
+    public TemporaryFolder m_sysfs = new TemporaryFolder();
+
+    private void addNode(String name, String cpuList) throws IOException {
+        File dir = m_sysfs.newFolder(name);
+        FileWriter writer = new FileWriter(new File(dir, "cpulist"));
+        try {
+            writer.write(cpuList + "\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testParseCpuList() {
+        assertEquals(Arrays.asList(0, 1, 2, 3, 8, 10), NumaTopology.parseCpuList("0-3,8,10"));
+        assertEquals(Arrays.asList(5), NumaTopology.parseCpuList("5"));
+        assertTrue(NumaTopology.parseCpuList("").isEmpty());
+    }
+
+    @Test
+    public void testTwoSockets() throws Exception {
+        addNode("node0", "0-3,8-11");
+        addNode("node1", "4-7,12-15");
+        // not a node, and a memory only node
+        m_sysfs.newFolder("power");
+        addNode("node2", "");
+
+        NumaTopology topology = NumaTopology.fromSysfs(m_sysfs.getRoot());
+        assertEquals(2, topology.getNodeCount());
+        assertEquals(Arrays.asList(0, 1), topology.getNodes());
+        assertEquals(Arrays.asList(4, 5, 6, 7, 12, 13, 14, 15), topology.getCpus(1));
+        assertTrue(topology.isPlaceable());
+        assertEquals("0-3:8-11", topology.getBinding(0));
+        assertEquals("0:0-3,8-11;1:4-7,12-15", topology.toString());
+
+        Queue<String> bindings = new ArrayDeque<String>();
+        topology.assignBindings(3, bindings);
+        assertEquals(Arrays.asList("0-3:8-11", "4-7:12-15", "0-3:8-11"), Arrays.asList(bindings.toArray()));
+    }
+
+    @Test
+    public void testSingleNodeIsNotPlaced() throws Exception {
+        addNode("node0", "0-7");
+        NumaTopology topology = NumaTopology.fromSysfs(m_sysfs.getRoot());
+        assertEquals(1, topology.getNodeCount());
+        assertFalse(topology.isPlaceable());
+    }
+
+    @Test
+    public void testCpusBeyondAffinityMask() throws Exception {
+        addNode("node0", "0-63");
+        addNode("node1", "64-127");
+        assertFalse(NumaTopology.fromSysfs(m_sysfs.getRoot()).isPlaceable());
+    }
+
+    @Test
+    public void testNoSysfs() throws Exception {
+        NumaTopology topology = NumaTopology.fromSysfs(new File(m_sysfs.getRoot(), "missing"));
+        assertEquals(1, topology.getNodeCount());
+        assertEquals(Runtime.getRuntime().availableProcessors(), topology.getCpus(0).size());
+        assertFalse(topology.isPlaceable());
+    }
+}
@@ -32,9 +32,12 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.Assert;
 
@@ -44,6 +47,7 @@ import org.junit.Test;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
 import org.voltdb.utils.BinaryDeque.BinaryDequeTruncator;
 import org.voltdb.utils.BinaryDeque.TruncatorResponse;
 
@@ -909,6 +913,165 @@ public class TestPersistentBinaryDeque {
         assert(files[0].getName().equals("pbd_nonce.1.pbd"));
     }
 
+    @Test
+    public void testMultipleCursors() throws Exception {
+        System.out.println("Running testMultipleCursors");
+        final int total = 100;
+        for (int i = 0; i < total; i++) {
+            m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(i)));
+        }
+        assertEquals(3, TEST_DIR.listFiles().length);
+
+        BinaryDequeReader other = m_pbd.openForRead("other");
+        assertEquals(total, other.getNumObjects());
+
+        //The default cursor reading everything doesn't delete segments the other hasn't read
+        for (int i = 0; i < total; i++) {
+            BBContainer cont = m_pbd.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+            assertEquals(i, cont.b().getLong(0));
+            cont.discard();
+        }
+        assertTrue(m_pbd.isEmpty());
+        assertEquals(0, m_pbd.getNumObjects());
+        assertEquals(3, TEST_DIR.listFiles().length);
+
+        //The other cursor reads everything from the start
+        assertFalse(other.isEmpty());
+        assertEquals(total, other.getNumObjects());
+        for (int i = 0; i < total; i++) {
+            BBContainer cont = other.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+            assertEquals(i, cont.b().getLong(0));
+            cont.discard();
+        }
+        assertNull(other.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+        assertTrue(other.isEmpty());
+        assertEquals(0, other.sizeInBytes());
+
+        //Now every cursor is done with the old segments, only the write segment is left
+        assertEquals(1, TEST_DIR.listFiles().length);
+
+        //New objects are seen by both cursors
+        m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(total)));
+        assertEquals(1, m_pbd.getNumObjects());
+        assertEquals(1, other.getNumObjects());
+        BBContainer cont = other.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+        assertEquals(total, cont.b().getLong(0));
+        cont.discard();
+        assertTrue(other.isEmpty());
+        assertFalse(m_pbd.isEmpty());
+    }
+
+    @Test
+    public void testCloseCursorDeletesSegments() throws Exception {
+        System.out.println("Running testCloseCursorDeletesSegments");
+        final int total = 100;
+        for (int i = 0; i < total; i++) {
+            m_pbd.offer(defaultContainer());
+        }
+        BinaryDequeReader other = m_pbd.openForRead("other");
+        //Same cursor for the same id
+        assertTrue(other == m_pbd.openForRead("other"));
+        other.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY).discard();
+
+        for (int i = 0; i < total; i++) {
+            m_pbd.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY).discard();
+        }
+        assertEquals(3, TEST_DIR.listFiles().length);
+
+        m_pbd.closeCursor("other");
+        assertEquals(1, TEST_DIR.listFiles().length);
+        try {
+            other.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+            fail();
+        } catch (IOException expected) {}
+    }
+
+    @Test
+    public void testConcurrentSync() throws Exception {
+        System.out.println("Running testConcurrentSync");
+        final int threadCount = 4;
+        final int syncsPerThread = 20;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < syncsPerThread; i++) {
+                            m_pbd.offer(DBBPool.wrapBB(getFilledSmallBuffer(i)));
+                            m_pbd.sync();
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+
+        PersistentBinaryDeque.DequeStats stats = m_pbd.getStats();
+        assertEquals(threadCount * syncsPerThread, stats.objectsOffered);
+        assertEquals(threadCount * syncsPerThread, stats.syncs);
+        //Syncs that overlapped shared an fsync
+        assertTrue(stats.fsyncs >= 1 && stats.fsyncs <= stats.syncs);
+        assertTrue(stats.maxFsyncNanos <= stats.totalFsyncNanos);
+
+        //Nothing changed since the last sync, so no more fsyncs
+        m_pbd.sync();
+        assertEquals(stats.fsyncs, m_pbd.getStats().fsyncs);
+        assertEquals(threadCount * syncsPerThread, m_pbd.getNumObjects());
+    }
+
+    @Test
+    public void testCloseSegmentDuringSync() throws Exception {
+        System.out.println("Running testCloseSegmentDuringSync");
+        //A segment closed after a sync collected its channel is forced by the close
+        PBDRegularSegment segment = new PBDRegularSegment(0L, new VoltFile(TEST_DIR, "sync_test.0.pbd"));
+        segment.open(true);
+        assertTrue(segment.offer(DBBPool.wrapBB(getFilledSmallBuffer(0)), false));
+        FileChannel fc = segment.prepareSync();
+        assertNotNull(fc);
+        assertTrue(segment.m_syncInFlight);
+        segment.close();
+        assertFalse(segment.m_syncInFlight);
+        try {
+            fc.force(true);
+            fail();
+        } catch (ClosedChannelException expected) {}
+        segment.syncCompleted(true);
+        segment.closeAndDelete();
+
+        //Roll the synced segment over while the deque forces it
+        m_pbd.offer(DBBPool.wrapBB(getFilledSmallBuffer(0)));
+        final int bigObjects = PBDSegment.CHUNK_SIZE / (1024 * 1024 * 2) + 1;
+        final TreeSet<String> filesBefore = getSortedDirectoryListing();
+        m_pbd.m_beforeForce = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < bigObjects; i++) {
+                        m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(i)), false);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        m_pbd.sync();
+        m_pbd.m_beforeForce = null;
+        assertTrue(getSortedDirectoryListing().size() > filesBefore.size());
+        m_pbd.sync();
+        m_pbd.close();
+
+        m_pbd = new PersistentBinaryDeque(TEST_NONCE, TEST_DIR, logger);
+        assertEquals(bigObjects + 1, m_pbd.getNumObjects());
+    }
+
     @Before
     public void setUp() throws Exception {
         if (TEST_DIR.exists()) {
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltdb.ServerThread;
@@ -87,6 +88,9 @@ public class TestVoltBulkLoader extends TestCase {
     Random rnd = new Random(28);
     protected static String geo = "polygon((0 0, 1 0, 1 1, 0 1, 0 0))";
     protected static String geopt = "point(0 0)";
+    // Optional loader tuning applied by test_Interface
+    protected long batchLatencyTargetMs = 0;
+    protected int maxInFlightBatches = 0;
 
     public class TestFailureCallback implements BulkLoaderFailureCallBack {
         ArrayList<Integer> failureRows = new ArrayList<Integer>(20);
@@ -226,6 +230,36 @@ public class TestVoltBulkLoader extends TestCase {
         test_Interface(mySchema, myData, myBatchSize, expectedFailures, 0);
     }
 
+    //Test adaptive batch sizes with a single batch in flight per partition, the tiny target
+    //forces the batch size to back off while the rows and failures stay the same.
+    public void testAdaptiveBatchesOneInFlight() throws Exception {
+        String mySchema =
+                "create table BLAH ("
+                + "clm_integer integer default 0 not null, "
+                + // column that is partitioned on
+                "clm_tinyint tinyint default 0, "
+                + "clm_smallint smallint default 0, "
+                + "clm_bigint bigint default 0, "
+                + "clm_string varchar(20) default null, "
+                + "clm_decimal decimal default null, "
+                + "clm_float float default null "
+                + "); ";
+        int myBatchSize = 64;
+        Object [][] myData = new Object[1000][];
+        for (int i = 0; i < myData.length; i++) {
+            // every 100th row has a string that does not fit
+            String str = (i % 100 == 99) ? "this string is far too long to fit" : "row" + i;
+            myData[i] = new Object[] {i, i % 100, i, i, str, 1.10, 1.11};
+        }
+        ArrayList<Integer> expectedFailures = new ArrayList<Integer>();
+        for (int i = 100; i <= myData.length; i += 100) {
+            expectedFailures.add(i);
+        }
+        batchLatencyTargetMs = 1;
+        maxInFlightBatches = 1;
+        test_Interface(mySchema, myData, myBatchSize, expectedFailures, 0);
+    }
+
     //Test flush with good and bad rows in < maxBatch
     public void testBatchOptionCommitByFlush() throws Exception {
         String mySchema
@@ -1082,6 +1116,12 @@ public class TestVoltBulkLoader extends TestCase {
             if (flushInterval > 0) {
                 bulkLoader.setFlushInterval(0, flushInterval);
             }
+            if (batchLatencyTargetMs > 0) {
+                bulkLoader.setBatchLatencyTarget(batchLatencyTargetMs, TimeUnit.MILLISECONDS);
+            }
+            if (maxInFlightBatches > 0) {
+                bulkLoader.setMaxInFlightBatches(maxInFlightBatches);
+            }
             // do the test
 
             VoltTable modCount;